@@ -0,0 +1,92 @@
+package de.dennisguse.opentracks.chart;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class ChartDataTest {
+
+    private static final String TAG = ChartDataTest.class.getSimpleName();
+
+    private static ChartData createChartData(int size) {
+        ChartData chartData = new ChartData(2);
+        float[] row = new float[2];
+        for (int i = 0; i < size; i++) {
+            row[0] = i;
+            row[1] = i % 2 == 0 ? Float.NaN : i;
+            chartData.add(i * 10, row);
+        }
+        return chartData;
+    }
+
+    @Test
+    public void add_grows() {
+        // when
+        ChartData chartData = createChartData(5000);
+
+        // then
+        assertEquals(5000, chartData.size());
+        assertEquals(49990, chartData.getX(4999), 0.01);
+        assertEquals(4999, chartData.getValue(0, 4999), 0.01);
+        assertTrue(Float.isNaN(chartData.getValue(1, 4998)));
+
+        // when
+        chartData.clear();
+
+        // then
+        assertTrue(chartData.isEmpty());
+    }
+
+    @Test
+    public void indexOfX() {
+        // given
+        ChartData chartData = createChartData(100);
+
+        // then
+        assertEquals(0, chartData.indexOfX(-5));
+        assertEquals(0, chartData.indexOfX(0));
+        assertEquals(1, chartData.indexOfX(5));
+        assertEquals(10, chartData.indexOfX(100));
+        assertEquals(100, chartData.indexOfX(10000));
+    }
+
+    @Test
+    public void getIndexRange_includesNeighbours() {
+        // given
+        ChartData chartData = createChartData(100);
+
+        // then
+        assertArrayEquals(new int[]{9, 21}, chartData.getIndexRange(95, 195));
+        assertArrayEquals(new int[]{0, 1}, chartData.getIndexRange(-100, -50));
+        assertArrayEquals(new int[]{99, 100}, chartData.getIndexRange(5000, 6000));
+    }
+
+    @Test
+    public void benchmark() {
+        for (int size : new int[]{10_000, 100_000, 1_000_000}) {
+            // when
+            long start = System.nanoTime();
+            ChartData chartData = createChartData(size);
+            long add_ms = (System.nanoTime() - start) / 1_000_000;
+
+            start = System.nanoTime();
+            int sum = 0;
+            for (int i = 0; i < 1000; i++) {
+                sum += chartData.indexOfX(i * 10.0 * size / 1000);
+            }
+            long search_us = (System.nanoTime() - start) / 1000;
+
+            // then
+            Log.i(TAG, size + " points: " + chartData.getAllocatedBytes() / 1024 + "kB, add " + add_ms + "ms, 1000 lookups " + search_us + "us");
+            assertTrue(sum > 0);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package de.dennisguse.opentracks.chart;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class ChartDecimatorTest {
+
+    @Test
+    public void decimate_keepsFirstMinMaxLastPerColumn() {
+        // given: one column per 10 x units
+        ChartData chartData = new ChartData(1);
+        float[] values = {5, 9, 1, 4, 7, 3};
+        for (int i = 0; i < values.length; i++) {
+            chartData.add(i, new float[]{values[i]});
+        }
+        chartData.add(10, new float[]{2});
+        chartData.add(11, new float[]{Float.NaN});
+
+        ChartDecimator subject = new ChartDecimator();
+
+        // when
+        int count = subject.decimate(chartData, 0, 0, chartData.size(), 0.1);
+
+        // then
+        float[] points = subject.getPoints();
+        assertEquals(5, count);
+        float[] expectedX = {0, 1, 2, 5, 10};
+        float[] expectedY = {5, 9, 1, 3, 2};
+        for (int i = 0; i < count; i++) {
+            assertEquals(expectedX[i], points[2 * i], 0.01);
+            assertEquals(expectedY[i], points[2 * i + 1], 0.01);
+        }
+    }
+
+    @Test
+    public void decimate_boundedByColumns() {
+        // given
+        Random random = new Random(1);
+        ChartData chartData = new ChartData(1);
+        float[] row = new float[1];
+        for (int i = 0; i < 100_000; i++) {
+            row[0] = random.nextFloat() * 100;
+            chartData.add(i, row);
+        }
+
+        ChartDecimator subject = new ChartDecimator();
+
+        // when: 1000 pixel columns
+        int count = subject.decimate(chartData, 0, 0, chartData.size(), 0.01);
+
+        // then
+        assertTrue(count <= 4 * 1000);
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+        for (int i = 0; i < chartData.size(); i++) {
+            min = Math.min(min, chartData.getValue(0, i));
+            max = Math.max(max, chartData.getValue(0, i));
+        }
+        float decimatedMin = Float.MAX_VALUE;
+        float decimatedMax = -Float.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            decimatedMin = Math.min(decimatedMin, subject.getPoints()[2 * i + 1]);
+            decimatedMax = Math.max(decimatedMax, subject.getPoints()[2 * i + 1]);
+        }
+        assertEquals(min, decimatedMin, 0.0001);
+        assertEquals(max, decimatedMax, 0.0001);
+    }
+}
@@ -0,0 +1,90 @@
+package de.dennisguse.opentracks.chart;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.dennisguse.opentracks.content.data.Distance;
+import de.dennisguse.opentracks.content.data.TestDataUtil;
+import de.dennisguse.opentracks.content.data.TrackPoint;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(AndroidJUnit4.class)
+public class ChartPointCacheTest {
+
+    private static final Distance RECORDING_DISTANCE_INTERVAL = Distance.of(50);
+
+    private static List<TrackPoint> createTrackPoints(int size) {
+        List<TrackPoint> trackPoints = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            TrackPoint trackPoint = TestDataUtil.createTrackPoint(i);
+            trackPoint.setId(new TrackPoint.Id(i + 1));
+            trackPoints.add(trackPoint);
+        }
+        return trackPoints;
+    }
+
+    private static void assertChartPointEquals(ChartPoint expected, ChartPoint actual) {
+        assertEquals(expected.getTimeOrDistance(), actual.getTimeOrDistance(), 0.0);
+        assertEquals(expected.getAltitude(), actual.getAltitude(), 0.0);
+        assertEquals(expected.getSpeed(), actual.getSpeed(), 0.0);
+        assertEquals(expected.getPace(), actual.getPace(), 0.0);
+    }
+
+    @Test
+    public void createChartPoint_reloadDoesNotRecompute() {
+        // given
+        List<TrackPoint> trackPoints = createTrackPoints(3000);
+        ChartPointCache chartPointCache = new ChartPointCache();
+
+        List<ChartPoint> firstLoad = new ArrayList<>();
+        for (TrackPoint trackPoint : trackPoints) {
+            firstLoad.add(chartPointCache.createChartPoint(trackPoint, RECORDING_DISTANCE_INTERVAL, true, true));
+        }
+
+        // when
+        List<ChartPoint> secondLoad = new ArrayList<>();
+        for (TrackPoint trackPoint : trackPoints) {
+            secondLoad.add(chartPointCache.createChartPoint(trackPoint, RECORDING_DISTANCE_INTERVAL, true, true));
+        }
+
+        // then
+        assertEquals(3000, chartPointCache.size());
+        for (int i = 0; i < trackPoints.size(); i++) {
+            assertChartPointEquals(firstLoad.get(i), secondLoad.get(i));
+        }
+    }
+
+    @Test
+    public void createChartPoint_sampledOutPointsAreIncluded() {
+        // given
+        List<TrackPoint> trackPoints = createTrackPoints(100);
+        ChartPointCache expectedCache = new ChartPointCache();
+        List<ChartPoint> expected = new ArrayList<>();
+        for (TrackPoint trackPoint : trackPoints) {
+            expected.add(expectedCache.createChartPoint(trackPoint, RECORDING_DISTANCE_INTERVAL, false, true));
+        }
+
+        // when
+        ChartPointCache chartPointCache = new ChartPointCache();
+        for (int i = 0; i < trackPoints.size(); i++) {
+            if (i % 10 == 0) {
+                // then
+                assertChartPointEquals(expected.get(i), chartPointCache.createChartPoint(trackPoints.get(i), RECORDING_DISTANCE_INTERVAL, false, true));
+            } else {
+                chartPointCache.add(trackPoints.get(i), RECORDING_DISTANCE_INTERVAL);
+            }
+        }
+
+        // then: a reload with a different sampling looks up the values
+        for (int i = 5; i < trackPoints.size(); i += 10) {
+            assertChartPointEquals(expected.get(i), chartPointCache.createChartPoint(trackPoints.get(i), RECORDING_DISTANCE_INTERVAL, false, true));
+        }
+        assertEquals(100, chartPointCache.size());
+    }
+}
@@ -15,6 +15,9 @@
  */
 package de.dennisguse.opentracks.chart;
 
+import android.graphics.Matrix;
+import android.graphics.RectF;
+
 import androidx.annotation.NonNull;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
@@ -24,6 +27,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import de.dennisguse.opentracks.R;
+import de.dennisguse.opentracks.stats.ExtremityMonitor;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -106,4 +110,127 @@ public class ChartValueSeriesTest {
         assertEquals(200, series.getMinMarkerValue());
         assertEquals(700, series.getMaxMarkerValue());
     }
+
+    @Test
+    public void testGetFillPath_closedTowardsXAxis() {
+        // given
+        series.appendToPath(0, 10, 100);
+        series.appendToPath(1, 20, 300);
+        series.appendToPath(2, 30, 200);
+
+        Matrix matrix = new Matrix();
+        matrix.setScale(2, -1);
+        matrix.postTranslate(5, 400);
+
+        // when
+        series.setMatrix(matrix, 500);
+
+        // then
+        RectF bounds = new RectF();
+        series.getFillPath(0).computeBounds(bounds, true);
+        assertEquals(25, bounds.left, 0.01);
+        assertEquals(65, bounds.right, 0.01);
+        assertEquals(100, bounds.top, 0.01);
+        assertEquals(500, bounds.bottom, 0.01);
+    }
+
+    @Test
+    public void testAppendToPath_chunks() {
+        // given
+        Matrix matrix = new Matrix();
+        series.setMatrix(matrix, 0);
+        series.appendToPath(0, 0, 100);
+        series.appendToPath(1, 10, 100);
+        series.appendToPath(2, 15, Float.NaN);
+
+        // when
+        series.appendToPath(ChartValueSeries.POINTS_PER_CHUNK, 20, 50);
+
+        // then
+        assertEquals(2, series.getChunkCount());
+        RectF bounds = new RectF();
+        series.getFillPath(0).computeBounds(bounds, true);
+        assertEquals(0, bounds.left, 0.01);
+        assertEquals(10, bounds.right, 0.01);
+
+        // Second chunk continues the line of the first chunk.
+        series.getFillPath(1).computeBounds(bounds, true);
+        assertEquals(10, bounds.left, 0.01);
+        assertEquals(20, bounds.right, 0.01);
+        assertEquals(100, bounds.bottom, 0.01);
+
+        // when
+        series.resetPath();
+
+        // then
+        assertEquals(0, series.getChunkCount());
+    }
+
+    @Test
+    public void testUpdateDimension_visible() {
+        // given
+        series.update(new ChartPoint(0));
+        series.update(new ChartPoint(901));
+        series.updateDimension();
+        ExtremityMonitor visible = new ExtremityMonitor();
+        visible.set(220, 250);
+
+        // when
+        boolean changed = series.updateDimension(visible);
+
+        // then
+        assertTrue(changed);
+        assertEquals(100, series.getInterval());
+        assertEquals(200, series.getMinMarkerValue());
+        assertFalse(series.updateDimension(visible));
+
+        // when: nothing visible
+        visible.reset();
+
+        // then
+        assertTrue(series.updateDimension(visible));
+        assertEquals(1000, series.getInterval());
+    }
+
+    @Test
+    public void testUpdateDimension_visible_throttled() {
+        // given
+        series.update(new ChartPoint(0));
+        series.update(new ChartPoint(901));
+        series.updateDimension();
+        ExtremityMonitor visible = new ExtremityMonitor();
+        visible.set(220, 250);
+        series.updateDimension(visible);
+
+        // when: still within the range
+        visible.set(230, 650);
+
+        // then
+        assertFalse(series.updateDimension(visible));
+        assertEquals(100, series.getInterval());
+        assertEquals(200, series.getMinMarkerValue());
+
+        // when: exceeds the range
+        visible.set(230, 750);
+
+        // then
+        assertTrue(series.updateDimension(visible));
+        assertEquals(1000, series.getInterval());
+        assertEquals(0, series.getMinMarkerValue());
+
+        // when: within the range, but does not fit into a smaller one
+        visible.set(230, 1200);
+
+        // then
+        assertFalse(series.updateDimension(visible));
+        assertEquals(1000, series.getInterval());
+
+        // when: fits into a smaller range
+        visible.set(230, 650);
+
+        // then
+        assertTrue(series.updateDimension(visible));
+        assertEquals(100, series.getInterval());
+        assertEquals(200, series.getMinMarkerValue());
+    }
 }
@@ -0,0 +1,174 @@
+package de.dennisguse.opentracks.chart;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Looper;
+import android.util.Log;
+import android.view.View;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class ChartViewTest {
+
+    private static final String TAG = ChartViewTest.class.getSimpleName();
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 720;
+
+    @BeforeClass
+    public static void preSetUp() {
+        // Prepare looper for Android's message queue
+        if (Looper.myLooper() == null) Looper.prepare();
+    }
+
+    @AfterClass
+    public static void finalTearDown() {
+        if (Looper.myLooper() != null) Looper.myLooper().quit();
+    }
+
+    /**
+     * Frame times while scrolling (like a fling) through a chart.
+     * Only the first frame needs to transform the paths.
+     */
+    @Test
+    public void onDraw_benchmarkScroll50kPoints() {
+        benchmarkScroll(50_000, 1);
+    }
+
+    @Test
+    public void onDraw_benchmarkScrollZoomed10kPoints() {
+        benchmarkScroll(10_000, 10);
+    }
+
+    @Test
+    public void onDraw_benchmarkScrollZoomed100kPoints() {
+        benchmarkScroll(100_000, 10);
+    }
+
+    @Test
+    public void onDraw_benchmarkScrollZoomed1MPoints() {
+        benchmarkScroll(1_000_000, 10);
+    }
+
+    /**
+     * Compares drawing all points vs. decimating to the pixel columns.
+     */
+    @Test
+    public void onDraw_benchmarkDecimation1MPoints() {
+        benchmarkScroll(1_000_000, 1, false);
+        benchmarkScroll(1_000_000, 1, true);
+    }
+
+    /**
+     * Frame times on the UI thread while scrolling if the data series are rasterized in the background.
+     * Frames taking longer than 16ms would be dropped.
+     */
+    @Test
+    public void onDraw_benchmarkBackgroundRendering1MPoints() throws InterruptedException {
+        // given
+        ChartView chartView = createChartView(1_000_000);
+        chartView.setBackgroundRendering(true);
+        Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        drawFrame(chartView, canvas);
+        // Wait for first layer
+        Thread.sleep(500);
+
+        // when
+        int frames = 120;
+        long[] frameTimes_us = new long[frames];
+        int droppedFrames = 0;
+        for (int i = 0; i < frames; i++) {
+            chartView.scrollTo(i * 20, 0);
+
+            frameTimes_us[i] = drawFrame(chartView, canvas);
+            if (frameTimes_us[i] > 16_000) {
+                droppedFrames++;
+            }
+            Thread.sleep(16);
+        }
+        chartView.setBackgroundRendering(false);
+
+        // then
+        Arrays.sort(frameTimes_us);
+        Log.i(TAG, "1M points (background rendering): UI thread median " + frameTimes_us[frames / 2] + "us, max " + frameTimes_us[frames - 1] + "us, dropped frames " + droppedFrames + "/" + frames);
+        assertTrue(frameTimes_us[frames / 2] <= frameTimes_us[frames - 1]);
+    }
+
+    private static long drawFrame(ChartView chartView, Canvas canvas) {
+        long start = System.nanoTime();
+        canvas.save();
+        canvas.translate(-chartView.getScrollX(), 0);
+        chartView.draw(canvas);
+        canvas.restore();
+        return (System.nanoTime() - start) / 1000;
+    }
+
+    private ChartView createChartView(int points) {
+        ChartView chartView = new ChartView(ApplicationProvider.getApplicationContext(), false);
+        List<ChartPoint> chartPoints = new ArrayList<>();
+        for (int i = 0; i < points; i++) {
+            chartPoints.add(new ChartPoint(i * 1000, 100 + 50 * Math.sin(i / 100.0)));
+            if (chartPoints.size() == 10_000) {
+                chartView.addChartPoints(chartPoints);
+                chartPoints.clear();
+            }
+        }
+        chartView.addChartPoints(chartPoints);
+
+        chartView.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY), View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        chartView.layout(0, 0, WIDTH, HEIGHT);
+        return chartView;
+    }
+
+    private void benchmarkScroll(int points, int zoomLevel) {
+        benchmarkScroll(points, zoomLevel, true);
+    }
+
+    private void benchmarkScroll(int points, int zoomLevel, boolean decimation) {
+        // given
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        long memoryBefore = runtime.totalMemory() - runtime.freeMemory();
+
+        ChartView chartView = createChartView(points);
+        runtime.gc();
+        long memory_kb = (runtime.totalMemory() - runtime.freeMemory() - memoryBefore) / 1024;
+
+        chartView.setZoomLevel(zoomLevel);
+        chartView.setDecimationEnabled(decimation);
+
+        Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+
+        // when
+        int frames = 60;
+        long[] frameTimes_us = new long[frames];
+        for (int i = 0; i < frames; i++) {
+            chartView.scrollTo(i * 10, 0);
+
+            frameTimes_us[i] = drawFrame(chartView, canvas);
+        }
+
+        // then
+        long firstFrame_us = frameTimes_us[0];
+        Arrays.sort(frameTimes_us, 1, frames);
+        long median_us = frameTimes_us[frames / 2];
+        long max_us = frameTimes_us[frames - 1];
+        Log.i(TAG, points + " points (zoom " + zoomLevel + ", decimation " + decimation + "): " + memory_kb + "kB; first frame " + firstFrame_us + "us; scrolling median " + median_us + "us, max " + max_us + "us");
+        assertTrue(median_us <= max_us);
+    }
+}
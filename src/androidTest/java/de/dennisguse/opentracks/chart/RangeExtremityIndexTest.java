@@ -0,0 +1,116 @@
+package de.dennisguse.opentracks.chart;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import de.dennisguse.opentracks.stats.ExtremityMonitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class RangeExtremityIndexTest {
+
+    private static final String TAG = RangeExtremityIndexTest.class.getSimpleName();
+
+    private static ChartData createChartData(int size, Random random) {
+        ChartData chartData = new ChartData(1);
+        float[] row = new float[1];
+        for (int i = 0; i < size; i++) {
+            row[0] = random.nextInt(10) == 0 ? Float.NaN : random.nextFloat() * 1000 - 500;
+            chartData.add(i, row);
+        }
+        return chartData;
+    }
+
+    @Test
+    public void getExtremity_equalsBruteForce() {
+        // given
+        Random random = new Random(1);
+        ChartData chartData = createChartData(10_000 + 17, random);
+        ExtremityMonitor result = new ExtremityMonitor();
+
+        for (int n = 0; n < 1000; n++) {
+            int from = random.nextInt(chartData.size());
+            int to = from + random.nextInt(chartData.size() - from + 1);
+
+            // when
+            chartData.getExtremity(0, from, to, result);
+
+            // then
+            ExtremityMonitor expected = new ExtremityMonitor();
+            for (int i = from; i < to; i++) {
+                float value = chartData.getValue(0, i);
+                if (!Float.isNaN(value)) {
+                    expected.update(value);
+                }
+            }
+            assertEquals("[" + from + ", " + to + ")", expected.hasData(), result.hasData());
+            if (expected.hasData()) {
+                assertEquals(expected.getMin(), result.getMin(), 0.0001);
+                assertEquals(expected.getMax(), result.getMax(), 0.0001);
+            }
+        }
+    }
+
+    @Test
+    public void getExtremity_onlyNaN() {
+        // given
+        ChartData chartData = new ChartData(1);
+        for (int i = 0; i < 200; i++) {
+            chartData.add(i, new float[]{Float.NaN});
+        }
+        ExtremityMonitor result = new ExtremityMonitor();
+
+        // when
+        chartData.getExtremity(0, 0, 200, result);
+
+        // then
+        assertFalse(result.hasData());
+    }
+
+    @Test
+    public void getExtremity_afterClear() {
+        // given
+        ChartData chartData = createChartData(1000, new Random(1));
+        chartData.clear();
+        for (int i = 0; i < 1000; i++) {
+            chartData.add(i, new float[]{i});
+        }
+        ExtremityMonitor result = new ExtremityMonitor();
+
+        // when
+        chartData.getExtremity(0, 100, 900, result);
+
+        // then
+        assertEquals(100, result.getMin(), 0.01);
+        assertEquals(899, result.getMax(), 0.01);
+    }
+
+    @Test
+    public void getExtremity_benchmark1M() {
+        // given
+        Random random = new Random(1);
+        ChartData chartData = createChartData(1_000_000, random);
+        ExtremityMonitor result = new ExtremityMonitor();
+
+        // when
+        long start = System.nanoTime();
+        for (int n = 0; n < 10_000; n++) {
+            int from = random.nextInt(chartData.size());
+            chartData.getExtremity(0, from, chartData.size(), result);
+        }
+        long duration_us = (System.nanoTime() - start) / 1000;
+
+        // then
+        Log.i(TAG, "10000 range queries on 1M points: " + duration_us + "us");
+        assertTrue(result.hasData());
+    }
+}
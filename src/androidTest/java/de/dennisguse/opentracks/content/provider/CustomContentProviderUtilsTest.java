@@ -32,12 +32,15 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -52,10 +55,14 @@ import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.data.TrackPoint;
 import de.dennisguse.opentracks.content.data.TrackPointsColumns;
 import de.dennisguse.opentracks.content.data.TracksColumns;
+import de.dennisguse.opentracks.stats.BestEfforts;
+import de.dennisguse.opentracks.stats.Histogram;
+import de.dennisguse.opentracks.stats.MeanMaxCalculator;
 import de.dennisguse.opentracks.stats.SensorStatistics;
 import de.dennisguse.opentracks.stats.TrackStatistics;
 import de.dennisguse.opentracks.util.FileUtils;
 import de.dennisguse.opentracks.util.UUIDUtils;
+import de.dennisguse.opentracks.viewmodels.AggregatedStatistics;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -416,6 +423,208 @@ public class CustomContentProviderUtilsTest {
         assertEquals(nameNew, contentProviderUtils.getTrack(trackId).getName());
     }
 
+    /**
+     * Tests the method {@link ContentProviderUtils#updateTrackStatistics(List)}
+     */
+    @Test
+    public void testUpdateTrackStatistics() {
+        // given
+        Track.Id trackId1 = new Track.Id(System.currentTimeMillis());
+        Track.Id trackId2 = new Track.Id(trackId1.getId() + 1);
+        Track track1 = TestDataUtil.createTrack(trackId1);
+        track1.setName("name1");
+        contentProviderUtils.insertTrack(track1);
+        contentProviderUtils.insertTrack(TestDataUtil.createTrack(trackId2));
+
+        Track update1 = new Track();
+        update1.setId(trackId1);
+        update1.getTrackStatistics().setTotalDistance(Distance.of(100));
+        Track update2 = new Track();
+        update2.setId(trackId2);
+        update2.getTrackStatistics().setTotalDistance(Distance.of(200));
+
+        // when
+        contentProviderUtils.updateTrackStatistics(List.of(update1, update2));
+
+        // then
+        Track result1 = contentProviderUtils.getTrack(trackId1);
+        assertEquals(Distance.of(100), result1.getTrackStatistics().getTotalDistance());
+        assertEquals("name1", result1.getName());
+        assertEquals(Distance.of(200), contentProviderUtils.getTrack(trackId2).getTrackStatistics().getTotalDistance());
+    }
+
+    /**
+     * Tests the method {@link ContentProviderUtils#getTrackIds(Track.Id)}
+     */
+    @Test
+    public void testGetTrackIds() {
+        // given
+        Track.Id trackId1 = new Track.Id(System.currentTimeMillis());
+        Track.Id trackId2 = new Track.Id(trackId1.getId() + 1);
+        contentProviderUtils.insertTrack(TestDataUtil.createTrack(trackId1));
+        contentProviderUtils.insertTrack(TestDataUtil.createTrack(trackId2));
+
+        // when / then
+        assertEquals(List.of(trackId1, trackId2), contentProviderUtils.getTrackIds(null));
+        assertEquals(List.of(trackId2), contentProviderUtils.getTrackIds(trackId1));
+    }
+
+    /**
+     * Tests the methods {@link ContentProviderUtils#updateBestEfforts(Track.Id, BestEfforts)} and {@link ContentProviderUtils#getPersonalRecords(BestEfforts.Type, int)}.
+     */
+    @Test
+    public void testUpdateBestEfforts_getPersonalRecords() {
+        // given
+        Track.Id trackId1 = new Track.Id(System.currentTimeMillis());
+        Track.Id trackId2 = new Track.Id(trackId1.getId() + 1);
+        contentProviderUtils.insertTrack(TestDataUtil.createTrack(trackId1));
+        contentProviderUtils.insertTrack(TestDataUtil.createTrack(trackId2));
+
+        BestEfforts bestEfforts1 = new BestEfforts();
+        bestEfforts1.setValue(BestEfforts.Type.DISTANCE_1KM, 300);
+        bestEfforts1.setValue(BestEfforts.Type.DURATION_1MIN, 4);
+        BestEfforts bestEfforts2 = new BestEfforts();
+        bestEfforts2.setValue(BestEfforts.Type.DISTANCE_1KM, 250);
+        bestEfforts2.setValue(BestEfforts.Type.DURATION_1MIN, 3);
+
+        // when
+        contentProviderUtils.updateBestEfforts(trackId1, new BestEfforts());
+        contentProviderUtils.updateBestEfforts(trackId1, bestEfforts1);
+        contentProviderUtils.updateBestEfforts(trackId2, bestEfforts2);
+
+        // then
+        assertEquals(bestEfforts1, contentProviderUtils.getBestEfforts(trackId1));
+        assertFalse(contentProviderUtils.getTrackIdsWithoutBestEfforts().contains(trackId1));
+
+        List<BestEfforts.Record> fastest = contentProviderUtils.getPersonalRecords(BestEfforts.Type.DISTANCE_1KM, 10);
+        assertEquals(2, fastest.size());
+        assertEquals(trackId2, fastest.get(0).getTrackId());
+        assertEquals(250, fastest.get(0).getValue(), 0.01);
+
+        List<BestEfforts.Record> highestSpeed = contentProviderUtils.getPersonalRecords(BestEfforts.Type.DURATION_1MIN, 1);
+        assertEquals(1, highestSpeed.size());
+        assertEquals(trackId1, highestSpeed.get(0).getTrackId());
+
+        // when
+        contentProviderUtils.deleteTrack(context, trackId1);
+
+        // then
+        assertTrue(contentProviderUtils.getBestEfforts(trackId1).isEmpty());
+    }
+
+    /**
+     * Tests the methods {@link ContentProviderUtils#updateHistograms(Track.Id, Map)} and {@link ContentProviderUtils#getMergedHistogram(Histogram.Type, List)}.
+     */
+    @Test
+    public void testUpdateHistograms_getMergedHistogram() {
+        // given
+        Track.Id trackId1 = new Track.Id(System.currentTimeMillis());
+        Track.Id trackId2 = new Track.Id(trackId1.getId() + 1);
+        contentProviderUtils.insertTrack(TestDataUtil.createTrack(trackId1));
+        contentProviderUtils.insertTrack(TestDataUtil.createTrack(trackId2));
+
+        Histogram histogram1 = new Histogram(Histogram.Type.HEART_RATE);
+        histogram1.add(120, 1000);
+        Histogram histogram2 = new Histogram(Histogram.Type.HEART_RATE);
+        histogram2.add(160, 3000);
+
+        // when
+        contentProviderUtils.updateHistograms(trackId1, Map.of(Histogram.Type.HEART_RATE, histogram1));
+        contentProviderUtils.updateHistograms(trackId2, Map.of(Histogram.Type.HEART_RATE, histogram2));
+
+        // then
+        assertEquals(histogram1, contentProviderUtils.getHistogram(trackId1, Histogram.Type.HEART_RATE));
+        assertNull(contentProviderUtils.getHistogram(trackId1, Histogram.Type.POWER));
+
+        Histogram merged = contentProviderUtils.getMergedHistogram(Histogram.Type.HEART_RATE, List.of(trackId1, trackId2));
+        assertEquals(4000, merged.getTotal_ms());
+        assertEquals(160, merged.getQuantile(0.5), 1);
+    }
+
+    /**
+     * Tests the methods {@link ContentProviderUtils#updateMeanMaxCurves(Track.Id, Map)} and {@link ContentProviderUtils#getMeanMaxCurve(Track.Id, MeanMaxCalculator.Sensor)}.
+     */
+    @Test
+    public void testUpdateMeanMaxCurves_getMeanMaxCurve() {
+        // given
+        Track.Id trackId = new Track.Id(System.currentTimeMillis());
+        contentProviderUtils.insertTrack(TestDataUtil.createTrack(trackId));
+
+        MeanMaxCalculator calculator = new MeanMaxCalculator(MeanMaxCalculator.Sensor.POWER);
+        Instant start = Instant.ofEpochSecond(1000);
+        for (int i = 0; i <= 60; i++) {
+            TrackPoint trackPoint = new TrackPoint(TrackPoint.Type.TRACKPOINT, start.plusSeconds(i));
+            trackPoint.setPower(200f + i);
+            calculator.addTrackPoint(trackPoint);
+        }
+        MeanMaxCalculator.Curve curve = calculator.getCurve();
+
+        // when
+        contentProviderUtils.updateMeanMaxCurves(trackId, Map.of(MeanMaxCalculator.Sensor.POWER, curve));
+
+        // then
+        assertEquals(curve, contentProviderUtils.getMeanMaxCurve(trackId, MeanMaxCalculator.Sensor.POWER));
+        assertNull(contentProviderUtils.getMeanMaxCurve(trackId, MeanMaxCalculator.Sensor.HEART_RATE));
+
+        // when
+        contentProviderUtils.deleteTrack(context, trackId);
+
+        // then
+        assertNull(contentProviderUtils.getMeanMaxCurve(trackId, MeanMaxCalculator.Sensor.POWER));
+    }
+
+    @Test
+    public void testGetAggregatedStatistics_maintainedByTriggers() {
+        // given
+        String category = "aggregates" + System.currentTimeMillis();
+        Instant startTime = Instant.parse("2021-03-03T10:00:00Z"); // Wednesday
+        Track.Id trackId1 = new Track.Id(System.currentTimeMillis());
+        Track.Id trackId2 = new Track.Id(trackId1.getId() + 1);
+
+        Track track1 = TestDataUtil.createTrack(trackId1);
+        track1.setCategory(category);
+        track1.getTrackStatistics().setStartTime(startTime);
+        track1.getTrackStatistics().setTotalDistance(Distance.of(1000));
+        track1.getTrackStatistics().setMaxSpeed(Speed.of(5));
+
+        Track track2 = TestDataUtil.createTrack(trackId2);
+        track2.setCategory(category);
+        track2.getTrackStatistics().setStartTime(startTime.plus(20, ChronoUnit.DAYS));
+        track2.getTrackStatistics().setTotalDistance(Distance.of(500));
+        track2.getTrackStatistics().setMaxSpeed(Speed.of(10));
+
+        // when
+        contentProviderUtils.insertTrack(track1);
+        contentProviderUtils.insertTrack(track2);
+
+        // then
+        AggregatedStatistics.AggregatedStatistic all = contentProviderUtils.getAggregatedStatistics(AggregatedStatistics.TimeFilter.ALL, LocalDate.of(2021, 3, 3)).get(category);
+        assertEquals(2, all.getCountTracks());
+        assertEquals(1500, all.getTrackStatistics().getTotalDistance().toM(), 0.01);
+        assertEquals(10, all.getTrackStatistics().getMaxSpeed().toMPS(), 0.01);
+
+        AggregatedStatistics.AggregatedStatistic week = contentProviderUtils.getAggregatedStatistics(AggregatedStatistics.TimeFilter.WEEK, LocalDate.of(2021, 3, 7)).get(category);
+        assertEquals(1, week.getCountTracks());
+        assertEquals(1000, week.getTrackStatistics().getTotalDistance().toM(), 0.01);
+
+        // when: track with maximum speed is updated
+        track2.getTrackStatistics().setMaxSpeed(Speed.of(2));
+        contentProviderUtils.updateTrack(track2);
+
+        // then
+        all = contentProviderUtils.getAggregatedStatistics(AggregatedStatistics.TimeFilter.ALL, LocalDate.of(2021, 3, 3)).get(category);
+        assertEquals(5, all.getTrackStatistics().getMaxSpeed().toMPS(), 0.01);
+
+        // when
+        contentProviderUtils.deleteTrack(context, trackId1);
+
+        // then
+        all = contentProviderUtils.getAggregatedStatistics(AggregatedStatistics.TimeFilter.ALL, LocalDate.of(2021, 3, 3)).get(category);
+        assertEquals(1, all.getCountTracks());
+        assertEquals(500, all.getTrackStatistics().getTotalDistance().toM(), 0.01);
+        assertNull(contentProviderUtils.getAggregatedStatistics(AggregatedStatistics.TimeFilter.WEEK, LocalDate.of(2021, 3, 3)).get(category));
+    }
+
     /**
      * Tests the method {@link ContentProviderUtils#createContentValues(Marker)}.
      */
@@ -1259,4 +1468,43 @@ public class CustomContentProviderUtilsTest {
     public void testGetSensorStats_withSeveralRandomStartSegments() {
         testGetSensorStats_randomData(5000, true);
     }
+
+    @Test
+    public void testDatabaseSnapshot_restore() {
+        // given
+        Track.Id trackId = new Track.Id(System.currentTimeMillis());
+        TestDataUtil.createTrackAndInsert(contentProviderUtils, trackId, 10);
+        File snapshotFile = new File(context.getCacheDir(), "snapshot.db");
+
+        // when
+        assertTrue(contentProviderUtils.createDatabaseSnapshot(snapshotFile));
+        contentProviderUtils.deleteAllTracks(context);
+        assertNull(contentProviderUtils.getTrack(trackId));
+        boolean success = contentProviderUtils.restoreDatabaseSnapshot(snapshotFile);
+        snapshotFile.delete();
+
+        // then
+        assertTrue(success);
+        assertNotNull(contentProviderUtils.getTrack(trackId));
+        assertEquals(10, TestDataUtil.getTrackPoints(contentProviderUtils, trackId).size());
+    }
+
+    @Test
+    public void testDatabaseSnapshot_restoreInvalid() throws IOException {
+        // given
+        Track.Id trackId = new Track.Id(System.currentTimeMillis());
+        TestDataUtil.createTrackAndInsert(contentProviderUtils, trackId, 10);
+        File snapshotFile = new File(context.getCacheDir(), "snapshot.db");
+        try (FileOutputStream outputStream = new FileOutputStream(snapshotFile)) {
+            outputStream.write("not a database".getBytes());
+        }
+
+        // when
+        boolean success = contentProviderUtils.restoreDatabaseSnapshot(snapshotFile);
+        snapshotFile.delete();
+
+        // then
+        assertFalse(success);
+        assertNotNull(contentProviderUtils.getTrack(trackId));
+    }
 }
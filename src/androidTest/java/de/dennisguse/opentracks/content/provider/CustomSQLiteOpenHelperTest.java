@@ -4,6 +4,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteQueryBuilder;
 
@@ -20,7 +21,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import de.dennisguse.opentracks.content.data.AggregatesColumns;
+import de.dennisguse.opentracks.content.data.BestEffortsColumns;
+import de.dennisguse.opentracks.content.data.HistogramsColumns;
+import de.dennisguse.opentracks.content.data.ImportLedgerColumns;
 import de.dennisguse.opentracks.content.data.MarkerColumns;
+import de.dennisguse.opentracks.content.data.MeanMaxColumns;
 import de.dennisguse.opentracks.content.data.TrackPointsColumns;
 import de.dennisguse.opentracks.content.data.TracksColumns;
 
@@ -92,6 +98,22 @@ public class CustomSQLiteOpenHelperTest {
 
             assertTrue(hasSqlCreate(db, MarkerColumns.CREATE_TABLE));
             assertTrue(hasSqlCreate(db, MarkerColumns.CREATE_TABLE_INDEX));
+
+            assertTrue(hasSqlCreate(db, BestEffortsColumns.CREATE_TABLE));
+            assertTrue(hasSqlCreate(db, BestEffortsColumns.CREATE_TABLE_INDEX));
+            assertTrue(hasSqlCreate(db, BestEffortsColumns.CREATE_TABLE_INDEX_TYPE_VALUE));
+
+            assertTrue(hasSqlCreate(db, HistogramsColumns.CREATE_TABLE));
+            assertTrue(hasSqlCreate(db, HistogramsColumns.CREATE_TABLE_INDEX));
+
+            assertTrue(hasSqlCreate(db, AggregatesColumns.CREATE_TABLE));
+            assertTrue(hasSqlCreate(db, AggregatesColumns.CREATE_TABLE_INDEX));
+
+            assertTrue(hasSqlCreate(db, ImportLedgerColumns.CREATE_TABLE));
+            assertTrue(hasSqlCreate(db, ImportLedgerColumns.CREATE_TABLE_INDEX));
+
+            assertTrue(hasSqlCreate(db, MeanMaxColumns.CREATE_TABLE));
+            assertTrue(hasSqlCreate(db, MeanMaxColumns.CREATE_TABLE_INDEX));
         } catch (Exception e) {
             fail("Database could not be created: " + e);
         }
@@ -120,16 +142,21 @@ public class CustomSQLiteOpenHelperTest {
 
 
         // then - verify table structure
-        int tableCount = 3 + 2; //Three with data tables + two SQLite
+        int tableCount = 8 + 2; //Eight with data tables + two SQLite
         assertEquals(tableCount, tableByUpgrade.size());
         assertEquals(tableByUpgrade.size(), tablesByCreate.size());
 
         assertEquals(tablesByCreate.get(TracksColumns.TABLE_NAME), tableByUpgrade.get(TracksColumns.TABLE_NAME));
         assertEquals(tablesByCreate.get(TrackPointsColumns.TABLE_NAME), tableByUpgrade.get(TrackPointsColumns.TABLE_NAME));
         assertEquals(tablesByCreate.get(MarkerColumns.TABLE_NAME), tableByUpgrade.get(MarkerColumns.TABLE_NAME));
+        assertEquals(tablesByCreate.get(BestEffortsColumns.TABLE_NAME), tableByUpgrade.get(BestEffortsColumns.TABLE_NAME));
+        assertEquals(tablesByCreate.get(HistogramsColumns.TABLE_NAME), tableByUpgrade.get(HistogramsColumns.TABLE_NAME));
+        assertEquals(tablesByCreate.get(AggregatesColumns.TABLE_NAME), tableByUpgrade.get(AggregatesColumns.TABLE_NAME));
+        assertEquals(tablesByCreate.get(ImportLedgerColumns.TABLE_NAME), tableByUpgrade.get(ImportLedgerColumns.TABLE_NAME));
+        assertEquals(tablesByCreate.get(MeanMaxColumns.TABLE_NAME), tableByUpgrade.get(MeanMaxColumns.TABLE_NAME));
 
         // then - verify custom indices
-        assertEquals(3, indicesByCreate.size());
+        assertEquals(9, indicesByCreate.size());
         assertEquals(indicesByUpgrade.get(TracksColumns.TABLE_NAME), indicesByCreate.get(TracksColumns.TABLE_NAME));
         assertEquals(indicesByUpgrade.get(TrackPointsColumns.TABLE_NAME), indicesByCreate.get(TrackPointsColumns.TABLE_NAME));
         assertEquals(indicesByUpgrade.get(MarkerColumns.TABLE_NAME), indicesByCreate.get(MarkerColumns.TABLE_NAME));
@@ -157,6 +184,43 @@ public class CustomSQLiteOpenHelperTest {
         assertEquals(0, indicesByDowngrade.size());
     }
 
+    @Test
+    public void validateAndUpgrade_FromVersion23() {
+        // given
+        createVersion23();
+
+        // when
+        CustomSQLiteOpenHelper.validateAndUpgrade(context, context.getDatabasePath(DATABASE_NAME));
+
+        // then
+        try (SQLiteDatabase db = SQLiteDatabase.openDatabase(context.getDatabasePath(DATABASE_NAME).getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY)) {
+            assertTrue(hasSqlCreate(db, TracksColumns.CREATE_TABLE));
+            assertTrue(hasSqlCreate(db, MarkerColumns.CREATE_TABLE));
+        }
+    }
+
+    @Test(expected = SQLiteException.class)
+    public void validateAndUpgrade_newerVersion() {
+        // given
+        try (SQLiteDatabase db = new CustomSQLiteOpenHelper(context, DATABASE_NAME).getWritableDatabase()) {
+            db.setVersion(1000);
+        }
+
+        // when
+        CustomSQLiteOpenHelper.validateAndUpgrade(context, context.getDatabasePath(DATABASE_NAME));
+    }
+
+    @Test(expected = SQLiteException.class)
+    public void validateAndUpgrade_noDatabase() {
+        // given
+        try (SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(DATABASE_NAME), null)) {
+            db.execSQL("CREATE TABLE other (_id INTEGER PRIMARY KEY)");
+        }
+
+        // when
+        CustomSQLiteOpenHelper.validateAndUpgrade(context, context.getDatabasePath(DATABASE_NAME));
+    }
+
     @Test
     public void track_uuid_unique() {
         try (SQLiteDatabase db = new CustomSQLiteOpenHelper(context, DATABASE_NAME).getWritableDatabase()) {
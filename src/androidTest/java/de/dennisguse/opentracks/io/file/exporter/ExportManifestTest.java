@@ -0,0 +1,111 @@
+package de.dennisguse.opentracks.io.file.exporter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import de.dennisguse.opentracks.content.data.Distance;
+import de.dennisguse.opentracks.content.data.TestDataUtil;
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.io.file.TrackFileFormat;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class ExportManifestTest {
+
+    private static final TrackFileFormat FORMAT = TrackFileFormat.GPX;
+
+    @Test
+    public void isUnchanged_notExported() {
+        // given
+        ExportManifest exportManifest = new ExportManifest();
+
+        // when / then
+        assertFalse(exportManifest.contains(TestDataUtil.createTrack(new Track.Id(1)), FORMAT));
+        assertFalse(exportManifest.isUnchanged(TestDataUtil.createTrack(new Track.Id(1)), FORMAT));
+    }
+
+    @Test
+    public void isUnchanged_exported() {
+        // given
+        Track track = TestDataUtil.createTrack(new Track.Id(1));
+        ExportManifest exportManifest = new ExportManifest();
+
+        // when
+        exportManifest.put(track, FORMAT);
+
+        // then
+        assertTrue(exportManifest.isUnchanged(track, FORMAT));
+        assertFalse(exportManifest.contains(track, TrackFileFormat.KML_WITH_TRACKDETAIL_AND_SENSORDATA));
+    }
+
+    @Test
+    public void isUnchanged_modified() {
+        // given
+        Track track = TestDataUtil.createTrack(new Track.Id(1));
+        ExportManifest exportManifest = new ExportManifest();
+        exportManifest.put(track, FORMAT);
+
+        // when
+        track.getTrackStatistics().setTotalDistance(Distance.of(1000));
+
+        // then
+        assertTrue(exportManifest.contains(track, FORMAT));
+        assertFalse(exportManifest.isUnchanged(track, FORMAT));
+    }
+
+    @Test
+    public void getVersion_changesWithName() {
+        // given
+        Track track = TestDataUtil.createTrack(new Track.Id(1));
+        long version = ExportManifest.getVersion(track);
+
+        // when
+        track.setName("renamed");
+
+        // then
+        assertNotEquals(version, ExportManifest.getVersion(track));
+    }
+
+    @Test
+    public void write_read() throws IOException {
+        // given
+        Track track1 = TestDataUtil.createTrack(new Track.Id(1));
+        Track track2 = TestDataUtil.createTrack(new Track.Id(2));
+        ExportManifest exportManifest = new ExportManifest();
+        exportManifest.put(track1, FORMAT);
+        exportManifest.put(track2, FORMAT);
+
+        // when
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        exportManifest.write(outputStream);
+        ExportManifest actual = new ExportManifest();
+        actual.read(new ByteArrayInputStream(outputStream.toByteArray()));
+
+        // then
+        assertTrue(actual.isUnchanged(track1, FORMAT));
+        assertTrue(actual.isUnchanged(track2, FORMAT));
+    }
+
+    @Test
+    public void read_unknownVersion() throws IOException {
+        // given
+        Track track = TestDataUtil.createTrack(new Track.Id(1));
+        String content = "# OpenTracks export manifest 99\n" + track.getUuid() + ".gpx " + Long.toHexString(ExportManifest.getVersion(track)) + "\n";
+
+        // when
+        ExportManifest exportManifest = new ExportManifest();
+        exportManifest.read(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+
+        // then
+        assertFalse(exportManifest.contains(track, FORMAT));
+    }
+}
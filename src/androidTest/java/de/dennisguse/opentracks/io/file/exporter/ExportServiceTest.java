@@ -0,0 +1,108 @@
+package de.dennisguse.opentracks.io.file.exporter;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.ResultReceiver;
+import android.util.Log;
+
+import androidx.documentfile.provider.DocumentFile;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.filters.LargeTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.dennisguse.opentracks.content.data.TestDataUtil;
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+import de.dennisguse.opentracks.io.file.TrackFileFormat;
+import de.dennisguse.opentracks.util.FileUtils;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class ExportServiceTest {
+
+    private static final String TAG = ExportServiceTest.class.getSimpleName();
+
+    private static final int NUM_TRACKS = 1000;
+    private static final int NUM_POINTS = 50;
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+    private final ContentProviderUtils contentProviderUtils = new ContentProviderUtils(context);
+
+    private final List<Track.Id> trackIds = new ArrayList<>();
+    private File exportDir;
+
+    @Before
+    public void setUp() {
+        long firstId = System.currentTimeMillis();
+        for (int i = 0; i < NUM_TRACKS; i++) {
+            Track.Id trackId = new Track.Id(firstId + i);
+            TestDataUtil.createTrackAndInsert(contentProviderUtils, trackId, NUM_POINTS);
+            trackIds.add(trackId);
+        }
+        exportDir = new File(context.getCacheDir(), "export_benchmark");
+    }
+
+    @After
+    public void tearDown() {
+        contentProviderUtils.deleteTracks(context, trackIds);
+        FileUtils.deleteDirectoryRecurse(exportDir);
+    }
+
+    @LargeTest
+    @Test
+    public void exportTracks_benchmarkWallClock() {
+        long serial_ms = benchmarkExport(1);
+        long parallel_ms = benchmarkExport(ExportService.getParallelism());
+
+        Log.i(TAG, NUM_TRACKS + " tracks: serial " + serial_ms + "ms, " + ExportService.getParallelism() + " threads " + parallel_ms + "ms");
+    }
+
+    private long benchmarkExport(int parallelism) {
+        // given
+        FileUtils.deleteDirectoryRecurse(exportDir);
+        exportDir.mkdirs();
+        CountingResultReceiver resultReceiver = new CountingResultReceiver();
+
+        // when
+        long start = System.nanoTime();
+        ExportService.exportTracks(context, trackIds, TrackFileFormat.GPX, DocumentFile.fromFile(exportDir), parallelism, resultReceiver);
+        long duration_ms = (System.nanoTime() - start) / 1_000_000;
+
+        // then
+        assertEquals(NUM_TRACKS, resultReceiver.successCount);
+        assertEquals(0, resultReceiver.errorCount);
+        // and the ExportManifest
+        assertEquals(NUM_TRACKS + 1, exportDir.list().length);
+        return duration_ms;
+    }
+
+    private static class CountingResultReceiver extends ResultReceiver {
+
+        private int successCount = 0;
+        private int errorCount = 0;
+
+        CountingResultReceiver() {
+            // Results are delivered on the export threads
+            super(null);
+        }
+
+        @Override
+        protected synchronized void onReceiveResult(int resultCode, Bundle resultData) {
+            if (resultCode == ExportServiceResultReceiver.RESULT_CODE_SUCCESS) {
+                successCount++;
+            } else {
+                errorCount++;
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package de.dennisguse.opentracks.io.file.exporter;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.filters.LargeTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+
+import de.dennisguse.opentracks.content.data.TestDataUtil;
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class GPXTrackExporterTest {
+
+    private static final String TAG = GPXTrackExporterTest.class.getSimpleName();
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+    private final ContentProviderUtils contentProviderUtils = new ContentProviderUtils(context);
+
+    @Test
+    public void writeTrackPoint() {
+        String expected = "<trkpt lat=\"37.0012\" lon=\"-57.0012\">\n" +
+                "<ele>30</ele>\n" +
+                "<time>1970-01-01T00:00:13Z</time>\n" +
+                "<extensions><gpxtpx:TrackPointExtension>\n" +
+                "<gpxtpx:speed>6.2</gpxtpx:speed>\n" +
+                "<gpxtpx:hr>112</gpxtpx:hr>\n" +
+                "<gpxtpx:cad>312</gpxtpx:cad>\n" +
+                "<pwr:PowerInWatts>412</pwr:PowerInWatts>\n" +
+                "<opentracks:gain>3</opentracks:gain>\n" +
+                "<opentracks:loss>3</opentracks:loss>\n" +
+                "</gpxtpx:TrackPointExtension></extensions>\n" +
+                "</trkpt>\n";
+
+        // given
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        GPXTrackExporter gpxTrackExporter = new GPXTrackExporter(contentProviderUtils, "test");
+        gpxTrackExporter.prepare(outputStream);
+
+        // when
+        gpxTrackExporter.writeTrackPoint(TestDataUtil.createTrackPoint(12));
+        gpxTrackExporter.close();
+
+        // then
+        assertEquals(expected, outputStream.toString());
+    }
+
+    @LargeTest
+    @Test
+    public void writeTrack_benchmarkThroughput() {
+        // given
+        int numPoints = 100_000;
+        Track.Id trackId = new Track.Id(System.currentTimeMillis());
+        Track track = TestDataUtil.createTrackAndInsert(contentProviderUtils, trackId, numPoints);
+        CountingOutputStream outputStream = new CountingOutputStream();
+
+        try {
+            // when
+            long start = System.nanoTime();
+            boolean success = new GPXTrackExporter(contentProviderUtils, "test").writeTrack(track, outputStream);
+            double duration_s = (System.nanoTime() - start) / 1e9;
+
+            // then
+            assertTrue(success);
+            Log.i(TAG, numPoints + " trackPoints (" + outputStream.count / 1024 + "kB): " + String.format(Locale.US, "%.0f", numPoints / duration_s) + " points/s");
+        } finally {
+            contentProviderUtils.deleteTrack(context, trackId);
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
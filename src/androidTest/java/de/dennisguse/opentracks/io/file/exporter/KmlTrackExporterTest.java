@@ -11,6 +11,7 @@ import org.junit.runners.JUnit4;
 import java.io.ByteArrayOutputStream;
 import java.time.Instant;
 
+import de.dennisguse.opentracks.content.data.Speed;
 import de.dennisguse.opentracks.content.data.TrackPoint;
 import de.dennisguse.opentracks.io.file.TrackFileFormat;
 
@@ -50,4 +51,45 @@ public class KmlTrackExporterTest {
         // then
         assertEquals(expected, outputStream.toString());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void writeCloseSegment_writes_missing_sensordata_as_empty_value() {
+        String expected = "<when>1970-01-01T00:00:00Z</when>\n" +
+                "<gx:coord/>\n" +
+                "<when>1970-01-01T00:00:01Z</when>\n" +
+                "<gx:coord/>\n" +
+                "<ExtendedData>\n" +
+                "<SchemaData schemaUrl=\"#schema\">\n" +
+                "<gx:SimpleArrayData name=\"speed\">\n" +
+                "<gx:value>5.0</gx:value>\n" +
+                "<gx:value />\n" +
+                "</gx:SimpleArrayData>\n" +
+                "<gx:SimpleArrayData name=\"heart_rate\">\n" +
+                "<gx:value>120.0</gx:value>\n" +
+                "<gx:value />\n" +
+                "</gx:SimpleArrayData>\n" +
+                "</SchemaData>\n" +
+                "</ExtendedData>\n" +
+                "</gx:Track>\n";
+
+        // given
+        TrackPoint trackPoint1 = new TrackPoint(TrackPoint.Type.SEGMENT_START_MANUAL, Instant.ofEpochSecond(0));
+        trackPoint1.setSpeed(Speed.of(5));
+        trackPoint1.setHeartRate_bpm(120);
+        TrackPoint trackPoint2 = new TrackPoint(TrackPoint.Type.TRACKPOINT, Instant.ofEpochSecond(1));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        KMLTrackExporter kmlTrackWriter = (KMLTrackExporter) TrackFileFormat.KML_WITH_TRACKDETAIL_AND_SENSORDATA.createTrackExporter(context);
+        kmlTrackWriter.prepare(outputStream);
+
+        kmlTrackWriter.writeTrackPoint(trackPoint1);
+        kmlTrackWriter.writeTrackPoint(trackPoint2);
+
+        // when
+        kmlTrackWriter.writeCloseSegment();
+        kmlTrackWriter.close();
+
+        // then
+        assertEquals(expected, outputStream.toString());
+    }
+}
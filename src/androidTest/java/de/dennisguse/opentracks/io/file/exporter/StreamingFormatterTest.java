@@ -0,0 +1,138 @@
+package de.dennisguse.opentracks.io.file.exporter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.text.NumberFormat;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class StreamingFormatterTest {
+
+    private final StringWriter stringWriter = new StringWriter();
+    private final PrintWriter printWriter = new PrintWriter(stringWriter);
+    private final StreamingFormatter formatter = new StreamingFormatter(printWriter);
+
+    @Test
+    public void writeDecimal_identicalToNumberFormat() {
+        // given
+        Random random = new Random(1);
+        for (int fractionDigits : new int[]{0, 1, 2, 3, 6}) {
+            NumberFormat numberFormat = createNumberFormat(fractionDigits);
+
+            for (int i = 0; i < 100_000; i++) {
+                double value;
+                switch (i % 5) {
+                    case 0:
+                        value = (random.nextDouble() - 0.5) * 400;
+                        break;
+                    case 1:
+                        // Ties in decimal, but not in binary
+                        value = Math.round(random.nextDouble() * 10_000) / 100.0;
+                        break;
+                    case 2:
+                        value = (float) (random.nextDouble() * 300);
+                        break;
+                    case 3:
+                        value = random.nextInt(2000) - 1000 + random.nextInt(10) * 0.05;
+                        break;
+                    default:
+                        value = (random.nextDouble() - 0.5) * 1e-3;
+                }
+
+                // when / then
+                assertEquals(numberFormat.format(value), writeDecimal(value, numberFormat));
+            }
+        }
+    }
+
+    @Test
+    public void writeDecimal_specialValues() {
+        NumberFormat numberFormat = createNumberFormat(1);
+        for (double value : new double[]{0, -0.0, -0.01, 0.05, 0.15, 0.25, 999.95, 1e12, -1e15, Double.NaN, Double.POSITIVE_INFINITY, Double.MIN_VALUE}) {
+            assertEquals(numberFormat.format(value), writeDecimal(value, numberFormat));
+        }
+    }
+
+    @Test
+    public void writeDecimal_grouping() {
+        // given: like GPXTrackExporter's distance (grouping is used)
+        NumberFormat numberFormat = NumberFormat.getInstance(Locale.US);
+        Random random = new Random(1);
+
+        for (int i = 0; i < 100_000; i++) {
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, i % 8);
+
+            // when / then
+            assertEquals(numberFormat.format(value), writeDecimal(value, numberFormat));
+        }
+        assertEquals("1,234.568", writeDecimal(1234.5678, numberFormat));
+        assertEquals("999.999", writeDecimal(999.999, numberFormat));
+        assertEquals("1,000", writeDecimal(999.9999, numberFormat));
+    }
+
+    @Test
+    public void writeTime_identicalToInstant() {
+        // given
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            long epochSecond = i % 2 == 0 ? random.nextLong() % 253402300800L : 1_600_000_000L + i * 7L;
+            int nano;
+            switch (i % 4) {
+                case 0:
+                    nano = 0;
+                    break;
+                case 1:
+                    nano = random.nextInt(1000) * 1_000_000;
+                    break;
+                case 2:
+                    nano = random.nextInt(1_000_000) * 1000;
+                    break;
+                default:
+                    nano = random.nextInt(1_000_000_000);
+            }
+            Instant time = Instant.ofEpochSecond(epochSecond, nano);
+
+            // when / then
+            stringWriter.getBuffer().setLength(0);
+            formatter.writeTime(time);
+            printWriter.flush();
+            assertEquals(time.toString(), stringWriter.toString());
+        }
+    }
+
+    @Test
+    public void writeTime_outOfRange() {
+        Instant time = Instant.ofEpochSecond(300_000_000_000L);
+
+        formatter.writeTime(time);
+        printWriter.flush();
+
+        assertEquals(time.toString(), stringWriter.toString());
+    }
+
+    private String writeDecimal(double value, NumberFormat numberFormat) {
+        stringWriter.getBuffer().setLength(0);
+        formatter.writeDecimal(value, numberFormat);
+        printWriter.flush();
+        return stringWriter.toString();
+    }
+
+    private static NumberFormat createNumberFormat(int fractionDigits) {
+        NumberFormat numberFormat = NumberFormat.getInstance(Locale.US);
+        numberFormat.setMaximumFractionDigits(fractionDigits);
+        numberFormat.setGroupingUsed(false);
+        if (fractionDigits == 6) {
+            // Like GPXTrackExporter's coordinates
+            numberFormat.setMaximumIntegerDigits(3);
+        }
+        return numberFormat;
+    }
+}
@@ -0,0 +1,172 @@
+package de.dennisguse.opentracks.io.file.exporter;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import de.dennisguse.opentracks.content.data.TestDataUtil;
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+import de.dennisguse.opentracks.io.file.TrackFileFormat;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class ZipTrackExporterTest {
+
+    private static final int NUM_TRACKS = 10;
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+    private final ContentProviderUtils contentProviderUtils = new ContentProviderUtils(context);
+
+    private final List<Track.Id> trackIds = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        long firstId = System.currentTimeMillis();
+        for (int i = 0; i < NUM_TRACKS; i++) {
+            Track.Id trackId = new Track.Id(firstId + i);
+            TestDataUtil.createTrackAndInsert(contentProviderUtils, trackId, 10);
+            trackIds.add(trackId);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        contentProviderUtils.deleteTracks(context, trackIds);
+    }
+
+    @Test
+    public void writeTracks_entriesInOrder() throws IOException {
+        // given
+        ZipTrackExporter zipTrackExporter = new ZipTrackExporter(context, TrackFileFormat.GPX, 4);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        List<Track.Id> exported = new ArrayList<>();
+
+        // when
+        boolean success = zipTrackExporter.writeTracks(trackIds, outputStream, (trackId, trackSuccess) -> {
+            assertTrue(trackSuccess);
+            exported.add(trackId);
+        });
+
+        // then
+        assertTrue(success);
+        assertEquals(trackIds, exported);
+
+        List<String> entryNames = readEntryNames(outputStream.toByteArray());
+        assertEquals(NUM_TRACKS, entryNames.size());
+        for (int i = 0; i < NUM_TRACKS; i++) {
+            Track track = contentProviderUtils.getTrack(trackIds.get(i));
+            assertTrue(entryNames.get(i).startsWith(track.getUuid().toString().substring(0, 8)));
+            assertTrue(entryNames.get(i).endsWith(".gpx"));
+        }
+    }
+
+    @Test
+    public void writeTracks_missingTrack() throws IOException {
+        // given
+        Track.Id missing = new Track.Id(-1);
+        List<Track.Id> ids = Arrays.asList(trackIds.get(0), missing, trackIds.get(1));
+        ZipTrackExporter zipTrackExporter = new ZipTrackExporter(context, TrackFileFormat.GPX, 2);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        List<Track.Id> failed = new ArrayList<>();
+
+        // when
+        boolean success = zipTrackExporter.writeTracks(ids, outputStream, (trackId, trackSuccess) -> {
+            if (!trackSuccess) {
+                failed.add(trackId);
+            }
+        });
+
+        // then
+        assertTrue(success);
+        assertEquals(Arrays.asList(missing), failed);
+        assertEquals(2, readEntryNames(outputStream.toByteArray()).size());
+    }
+
+    @Test
+    public void writeTracks_closeFails_allTracksFailed() {
+        // given
+        ZipTrackExporter zipTrackExporter = new ZipTrackExporter(context, TrackFileFormat.GPX, 2);
+        OutputStream outputStream = new ByteArrayOutputStream() {
+            @Override
+            public void close() throws IOException {
+                throw new IOException("close failed");
+            }
+        };
+        List<Track.Id> failed = new ArrayList<>();
+
+        // when
+        boolean success = zipTrackExporter.writeTracks(trackIds, outputStream, (trackId, trackSuccess) -> {
+            assertFalse(trackSuccess);
+            failed.add(trackId);
+        });
+
+        // then
+        assertFalse(success);
+        assertEquals(trackIds, failed);
+    }
+
+    @Test
+    public void writeTracks_largeTrack_bufferedInFile() throws IOException {
+        // given: larger than the in-memory buffer of an encoded track
+        Track.Id largeTrackId = new Track.Id(System.currentTimeMillis() + NUM_TRACKS);
+        TestDataUtil.createTrackAndInsert(contentProviderUtils, largeTrackId, 10_000);
+        trackIds.add(largeTrackId);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        TrackFileFormat.GPX.createTrackExporter(context).writeTrack(contentProviderUtils.getTrack(largeTrackId), expected);
+
+        ZipTrackExporter zipTrackExporter = new ZipTrackExporter(context, TrackFileFormat.GPX, 2);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // when
+        boolean success = zipTrackExporter.writeTracks(Arrays.asList(largeTrackId), outputStream, (trackId, trackSuccess) -> assertTrue(trackSuccess));
+
+        // then
+        assertTrue(success);
+        assertTrue(expected.size() > 512 * 1024);
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(outputStream.toByteArray()))) {
+            zipInputStream.getNextEntry();
+            ByteArrayOutputStream entry = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = zipInputStream.read(buffer)) != -1) {
+                entry.write(buffer, 0, length);
+            }
+            assertArrayEquals(expected.toByteArray(), entry.toByteArray());
+        }
+        File[] temporaryFiles = context.getCacheDir().listFiles((dir, name) -> name.startsWith("export") && name.endsWith(".tmp"));
+        assertEquals(0, temporaryFiles.length);
+    }
+
+    private static List<String> readEntryNames(byte[] archive) throws IOException {
+        List<String> entryNames = new ArrayList<>();
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            ZipEntry zipEntry;
+            while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+                entryNames.add(zipEntry.getName());
+            }
+        }
+        return entryNames;
+    }
+}
@@ -21,6 +21,8 @@ import org.junit.runners.JUnit4;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -37,6 +39,7 @@ import de.dennisguse.opentracks.content.data.TestDataUtil;
 import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.data.TrackPoint;
 import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+import de.dennisguse.opentracks.io.file.BinaryTrackFormat;
 import de.dennisguse.opentracks.io.file.TrackFileFormat;
 import de.dennisguse.opentracks.io.file.exporter.TrackExporter;
 import de.dennisguse.opentracks.services.TrackRecordingService;
@@ -322,6 +325,79 @@ public class ExportImportTest {
         assertNull(trackImported);
     }
 
+    @LargeTest
+    @Test
+    public void opentracks_binary() throws TimeoutException {
+        setUp(true);
+
+        // given
+        Track track = contentProviderUtils.getTrack(trackId);
+
+        TrackExporter trackExporter = TrackFileFormat.OPENTRACKS_BINARY.createTrackExporter(context);
+
+        // when
+        // 1. export
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertTrue(trackExporter.writeTrack(track, outputStream));
+        contentProviderUtils.deleteTrack(context, trackId);
+
+        // 2. import
+        InputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
+        BinaryTrackImporter trackImporter = new BinaryTrackImporter(context, contentProviderUtils);
+        importTrackId = trackImporter.importFile(inputStream).get(0);
+
+        // then
+        // 1. track
+        Track importedTrack = contentProviderUtils.getTrack(importTrackId);
+        assertNotNull(importedTrack);
+        assertEquals(track.getCategory(), importedTrack.getCategory());
+        assertEquals(track.getDescription(), importedTrack.getDescription());
+        assertEquals(track.getName(), importedTrack.getName());
+        assertEquals(track.getIcon(), importedTrack.getIcon());
+        assertEquals(track.getUuid(), importedTrack.getUuid());
+
+        // 2. trackpoints
+        assertTrackpoints(trackPoints, true, true, true, true, true, true);
+
+        List<TrackPoint> importedTrackPoints = TestDataUtil.getTrackPoints(contentProviderUtils, importTrackId);
+        for (int i = 0; i < trackPoints.size(); i++) {
+            assertEquals(trackPoints.get(i).getAccuracy(), importedTrackPoints.get(i).getAccuracy(), 0);
+            if (trackPoints.get(i).hasLocation()) {
+                // Stored in database precision: identical
+                assertEquals(trackPoints.get(i).getLatitude(), importedTrackPoints.get(i).getLatitude(), 0);
+                assertEquals(trackPoints.get(i).getLongitude(), importedTrackPoints.get(i).getLongitude(), 0);
+            }
+        }
+
+        // 3. trackstatistics
+        assertTrackStatistics(false, true, true);
+
+        // 4. markers
+        assertMarkers();
+    }
+
+    @LargeTest
+    @Test(expected = ImportParserException.class)
+    public void opentracks_binary_stringTooLong() throws TimeoutException, IOException {
+        setUp(false);
+
+        // given
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(outputStream);
+        output.writeInt(BinaryTrackFormat.MAGIC);
+        BinaryTrackFormat.writeVarLong(output, BinaryTrackFormat.VERSION);
+        BinaryTrackFormat.writeVarLong(output, 1);
+        output.writeLong(0);
+        output.writeLong(0);
+        BinaryTrackFormat.writeVarLong(output, Integer.MAX_VALUE);
+        output.flush();
+
+        // when
+        InputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
+        BinaryTrackImporter trackImporter = new BinaryTrackImporter(context, contentProviderUtils);
+        trackImporter.importFile(inputStream);
+    }
+
     private void assertMarkers() {
         assertEquals(markers.size(), contentProviderUtils.getMarkerCount(importTrackId));
 
@@ -0,0 +1,240 @@
+package de.dennisguse.opentracks.io.file.importer;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.filters.LargeTest;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+
+import de.dennisguse.opentracks.content.data.Distance;
+import de.dennisguse.opentracks.content.data.Marker;
+import de.dennisguse.opentracks.content.data.TestDataUtil;
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+import de.dennisguse.opentracks.util.PreferencesUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(JUnit4.class)
+public class GpxFileTrackImporterTest {
+
+    private static final String TAG = GpxFileTrackImporterTest.class.getSimpleName();
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+    private final ContentProviderUtils contentProviderUtils = new ContentProviderUtils(context);
+
+    private Track.Id importTrackId;
+
+    @After
+    public void tearDown() {
+        if (importTrackId != null) {
+            contentProviderUtils.deleteTrack(context, importTrackId);
+        }
+    }
+
+    @LargeTest
+    @Test
+    public void importFile_flushesInChunks() {
+        // given
+        int numPoints = AbstractFileTrackImporter.MAX_BUFFERED_TRACK_POINTS * 2 + 1;
+        GpxFileTrackImporter trackImporter = new GpxFileTrackImporter(context, contentProviderUtils);
+
+        // when
+        importTrackId = trackImporter.importFile(new GeneratedGpxInputStream(numPoints, -1)).get(0);
+
+        // then
+        Track importedTrack = contentProviderUtils.getTrack(importTrackId);
+        assertNotNull(importedTrack);
+        assertEquals("generated", importedTrack.getName());
+        assertEquals(numPoints, TestDataUtil.getTrackPoints(contentProviderUtils, importTrackId).size());
+        assertTrue(importedTrack.getTrackStatistics().getTotalDistance().greaterThan(Distance.of(0)));
+        assertEquals(GeneratedGpxInputStream.getTime(0), importedTrack.getTrackStatistics().getStartTime());
+        assertFalse(PreferencesUtils.getIncompleteImports(PreferencesUtils.getSharedPreferences(context), context).contains(importTrackId));
+    }
+
+    @LargeTest
+    @Test
+    public void importFile_rollbackOnFailure() {
+        // given
+        int numTracks = contentProviderUtils.getTracks().size();
+        GpxFileTrackImporter trackImporter = new GpxFileTrackImporter(context, contentProviderUtils);
+
+        // when
+        try {
+            trackImporter.importFile(new GeneratedGpxInputStream(AbstractFileTrackImporter.MAX_BUFFERED_TRACK_POINTS * 2, AbstractFileTrackImporter.MAX_BUFFERED_TRACK_POINTS + 10));
+            fail();
+        } catch (ImportParserException e) {
+            // then
+            assertEquals(numTracks, contentProviderUtils.getTracks().size());
+            assertTrue(PreferencesUtils.getIncompleteImports(PreferencesUtils.getSharedPreferences(context), context).isEmpty());
+        }
+    }
+
+    @LargeTest
+    @Test
+    public void importFile_matchesMarkersWhileStreaming() {
+        // given
+        int numPoints = AbstractFileTrackImporter.MAX_BUFFERED_TRACK_POINTS * 2;
+        GpxFileTrackImporter trackImporter = new GpxFileTrackImporter(context, contentProviderUtils);
+
+        // when
+        importTrackId = trackImporter.importFile(new GeneratedGpxInputStream(numPoints, -1, numPoints - 1, 10)).get(0);
+
+        // then
+        List<Marker> markers = contentProviderUtils.getMarkers(importTrackId);
+        assertEquals(2, markers.size());
+        assertEquals(GeneratedGpxInputStream.getTime(10), markers.get(0).getTime());
+        assertEquals(GeneratedGpxInputStream.getTime(numPoints - 1), markers.get(1).getTime());
+        assertTrue(markers.get(0).getLength().lessThan(markers.get(1).getLength()));
+    }
+
+    /**
+     * The peak heap usage while importing must not depend on the number of trackPoints.
+     */
+    @LargeTest
+    @Test
+    public void importFile_benchmarkPeakHeap() throws InterruptedException {
+        long peakSmall_kb = benchmarkPeakHeap(20_000);
+        long peakLarge_kb = benchmarkPeakHeap(200_000);
+
+        // 10x the trackPoints: without streaming that is ~40MB more.
+        assertTrue("Peak heap grew from " + peakSmall_kb + "kB to " + peakLarge_kb + "kB", peakLarge_kb - peakSmall_kb < 8 * 1024);
+    }
+
+    private long benchmarkPeakHeap(int numPoints) throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        runtime.gc();
+        long baseline = runtime.totalMemory() - runtime.freeMemory();
+
+        long[] peak = {baseline};
+        Thread sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                peak[0] = Math.max(peak[0], runtime.totalMemory() - runtime.freeMemory());
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        sampler.start();
+
+        long start = System.nanoTime();
+        GpxFileTrackImporter trackImporter = new GpxFileTrackImporter(context, contentProviderUtils);
+        Track.Id trackId = trackImporter.importFile(new GeneratedGpxInputStream(numPoints, -1)).get(0);
+        long duration_ms = (System.nanoTime() - start) / 1_000_000;
+
+        sampler.interrupt();
+        sampler.join();
+        contentProviderUtils.deleteTrack(context, trackId);
+
+        long peak_kb = (peak[0] - baseline) / 1024;
+        Log.i(TAG, numPoints + " trackPoints: peak heap " + peak_kb + "kB; " + duration_ms + "ms");
+        return peak_kb;
+    }
+
+    /**
+     * Generates a GPX file with one track while reading; the file is never held in memory.
+     */
+    static class GeneratedGpxInputStream extends InputStream {
+
+        private final int numPoints;
+        private final int invalidPoint;
+        private final int[] markerPoints;
+
+        private int nextPoint = -1;
+        private byte[] buffer = new byte[0];
+        private int position = 0;
+
+        /**
+         * @param invalidPoint the index of a trackPoint with an invalid location; -1 for none.
+         * @param markerPoints the indices of trackPoints with a marker (written before the track)
+         */
+        GeneratedGpxInputStream(int numPoints, int invalidPoint, int... markerPoints) {
+            this.numPoints = numPoints;
+            this.invalidPoint = invalidPoint;
+            this.markerPoints = markerPoints;
+        }
+
+        @Override
+        public int read() {
+            if (!fill()) {
+                return -1;
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.length - position);
+            System.arraycopy(buffer, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        private boolean fill() {
+            if (position < buffer.length) {
+                return true;
+            }
+            if (nextPoint > numPoints) {
+                return false;
+            }
+
+            String content;
+            if (nextPoint == -1) {
+                StringBuilder header = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                        + "<gpx version=\"1.1\" xmlns=\"http://www.topografix.com/GPX/1/1\" xmlns:gpxtpx=\"http://www.garmin.com/xmlschemas/TrackPointExtension/v2\" xmlns:pwr=\"http://www.garmin.com/xmlschemas/PowerExtension/v1\">\n");
+                for (int markerPoint : markerPoints) {
+                    header.append(String.format(Locale.US, "<wpt lat=\"%.6f\" lon=\"%.6f\">\n<name>marker %d</name>\n<time>%s</time>\n</wpt>\n",
+                            getLatitude(markerPoint), getLongitude(markerPoint), markerPoint, getTime(markerPoint)));
+                }
+                header.append("<trk>\n<name>generated</name>\n<trkseg>\n");
+                content = header.toString();
+            } else if (nextPoint == numPoints) {
+                content = "</trkseg>\n</trk>\n</gpx>\n";
+            } else {
+                double latitude = nextPoint == invalidPoint ? 1000 : getLatitude(nextPoint);
+                content = String.format(Locale.US, "<trkpt lat=\"%.6f\" lon=\"%.6f\">\n<ele>%.1f</ele>\n<time>%s</time>\n"
+                                + "<extensions><gpxtpx:TrackPointExtension><gpxtpx:speed>%.2f</gpxtpx:speed><gpxtpx:hr>%d</gpxtpx:hr><gpxtpx:cad>%d</gpxtpx:cad></gpxtpx:TrackPointExtension>"
+                                + "<pwr:PowerInWatts>%.1f</pwr:PowerInWatts></extensions>\n</trkpt>\n",
+                        latitude, getLongitude(nextPoint), 100 + nextPoint % 100 * 0.5, getTime(nextPoint),
+                        5 + nextPoint % 7 * 0.13, 100 + nextPoint % 50, 80 + nextPoint % 20, 200 + nextPoint % 30 * 1.5);
+            }
+            nextPoint++;
+
+            buffer = content.getBytes(StandardCharsets.UTF_8);
+            position = 0;
+            return true;
+        }
+
+        private static double getLatitude(int point) {
+            return 45 + point * 0.0001;
+        }
+
+        private static double getLongitude(int point) {
+            return 7 + point * 0.0001;
+        }
+
+        static Instant getTime(int point) {
+            return Instant.ofEpochSecond(point + 1, point % 3 == 0 ? 250_000_000 : 0);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package de.dennisguse.opentracks.io.file.importer;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.filters.LargeTest;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.dennisguse.opentracks.content.data.Marker;
+import de.dennisguse.opentracks.content.data.TestDataUtil;
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.data.TrackPoint;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+import de.dennisguse.opentracks.stats.TrackStatistics;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class GpxPullFileTrackImporterTest {
+
+    private static final String TAG = GpxPullFileTrackImporterTest.class.getSimpleName();
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+    private final ContentProviderUtils contentProviderUtils = new ContentProviderUtils(context);
+
+    private final List<Track.Id> importTrackIds = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        contentProviderUtils.deleteTracks(context, importTrackIds);
+    }
+
+    @LargeTest
+    @Test
+    public void importFile_identicalToSax() {
+        // given
+        int numPoints = 5000;
+
+        // when
+        Track.Id saxTrackId = importFile(new GpxFileTrackImporter(context, contentProviderUtils), new GpxFileTrackImporterTest.GeneratedGpxInputStream(numPoints, -1, 10, 2500));
+        Track.Id pullTrackId = importFile(new GpxPullFileTrackImporter(context, contentProviderUtils), new GpxFileTrackImporterTest.GeneratedGpxInputStream(numPoints, -1, 10, 2500));
+
+        // then
+        Track saxTrack = contentProviderUtils.getTrack(saxTrackId);
+        Track pullTrack = contentProviderUtils.getTrack(pullTrackId);
+        assertEquals(saxTrack.getName(), pullTrack.getName());
+        assertTrackStatisticsEquals(saxTrack.getTrackStatistics(), pullTrack.getTrackStatistics());
+
+        List<TrackPoint> saxTrackPoints = TestDataUtil.getTrackPoints(contentProviderUtils, saxTrackId);
+        List<TrackPoint> pullTrackPoints = TestDataUtil.getTrackPoints(contentProviderUtils, pullTrackId);
+        assertEquals(numPoints, pullTrackPoints.size());
+        for (int i = 0; i < numPoints; i++) {
+            assertTrackPointEquals(saxTrackPoints.get(i), pullTrackPoints.get(i));
+        }
+
+        List<Marker> saxMarkers = contentProviderUtils.getMarkers(saxTrackId);
+        List<Marker> pullMarkers = contentProviderUtils.getMarkers(pullTrackId);
+        assertEquals(2, pullMarkers.size());
+        for (int i = 0; i < saxMarkers.size(); i++) {
+            assertEquals(saxMarkers.get(i).getName(), pullMarkers.get(i).getName());
+            assertEquals(saxMarkers.get(i).getTime(), pullMarkers.get(i).getTime());
+            assertEquals(saxMarkers.get(i).getLength(), pullMarkers.get(i).getLength());
+        }
+    }
+
+    @Test(expected = ImportParserException.class)
+    public void importFile_invalidAltitude() {
+        // given
+        String gpx = "<gpx><trk><trkseg><trkpt lat=\"45\" lon=\"7\"><ele>1,5</ele><time>2021-01-01T00:00:00Z</time></trkpt></trkseg></trk></gpx>";
+
+        // when
+        new GpxPullFileTrackImporter(context, contentProviderUtils).importFile(new ByteArrayInputStream(gpx.getBytes()));
+    }
+
+    /**
+     * Parses the same 100k trackPoints file with the SAX-based and the pull-based importer (incl. database inserts).
+     */
+    @LargeTest
+    @Test
+    public void importFile_benchmark100kPoints() throws IOException {
+        // given
+        byte[] gpx = readFully(new GpxFileTrackImporterTest.GeneratedGpxInputStream(100_000, -1));
+
+        // when
+        long sax_ms = benchmark(new GpxFileTrackImporter(context, contentProviderUtils), gpx);
+        long pull_ms = benchmark(new GpxPullFileTrackImporter(context, contentProviderUtils), gpx);
+
+        // then
+        Log.i(TAG, "100k trackPoints (" + gpx.length / 1024 + "kB): SAX " + sax_ms + "ms, pull " + pull_ms + "ms");
+    }
+
+    private Track.Id importFile(AbstractFileTrackImporter trackImporter, InputStream inputStream) {
+        Track.Id trackId = trackImporter.importFile(inputStream).get(0);
+        importTrackIds.add(trackId);
+        return trackId;
+    }
+
+    private long benchmark(AbstractFileTrackImporter trackImporter, byte[] gpx) {
+        Runtime.getRuntime().gc();
+        long start = System.nanoTime();
+        importFile(trackImporter, new ByteArrayInputStream(gpx));
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, count);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static void assertTrackStatisticsEquals(TrackStatistics expected, TrackStatistics actual) {
+        assertEquals(expected.getStartTime(), actual.getStartTime());
+        assertEquals(expected.getStopTime(), actual.getStopTime());
+        assertEquals(expected.getTotalDistance(), actual.getTotalDistance());
+        assertEquals(expected.getTotalTime(), actual.getTotalTime());
+        assertEquals(expected.getMovingTime(), actual.getMovingTime());
+        assertEquals(expected.getMaxSpeed(), actual.getMaxSpeed());
+        assertEquals(expected.getMinAltitude(), actual.getMinAltitude(), 0.0);
+        assertEquals(expected.getMaxAltitude(), actual.getMaxAltitude(), 0.0);
+        assertEquals(expected.getTotalAltitudeGain(), actual.getTotalAltitudeGain());
+        assertEquals(expected.getTotalAltitudeLoss(), actual.getTotalAltitudeLoss());
+    }
+
+    private static void assertTrackPointEquals(TrackPoint expected, TrackPoint actual) {
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getTime(), actual.getTime());
+        assertEquals(expected.getLatitude(), actual.getLatitude(), 0.0);
+        assertEquals(expected.getLongitude(), actual.getLongitude(), 0.0);
+        assertEquals(expected.getAltitude(), actual.getAltitude(), 0.0);
+        assertEquals(expected.getSpeed(), actual.getSpeed());
+        assertEquals(expected.getHeartRate_bpm(), actual.getHeartRate_bpm(), 0.0f);
+        assertEquals(expected.getCyclingCadence_rpm(), actual.getCyclingCadence_rpm(), 0.0f);
+        assertEquals(expected.getPower(), actual.getPower(), 0.0f);
+    }
+}
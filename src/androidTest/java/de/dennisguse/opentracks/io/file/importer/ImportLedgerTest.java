@@ -0,0 +1,131 @@
+package de.dennisguse.opentracks.io.file.importer;
+
+import android.content.Context;
+
+import androidx.documentfile.provider.DocumentFile;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import de.dennisguse.opentracks.content.data.TestDataUtil;
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class ImportLedgerTest {
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+    private final ContentProviderUtils contentProviderUtils = new ContentProviderUtils(context);
+    private final ImportLedger importLedger = new ImportLedger(contentProviderUtils);
+
+    private final Track.Id trackId = new Track.Id(System.currentTimeMillis());
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        contentProviderUtils.insertTrack(TestDataUtil.createTrack(trackId));
+        file = new File(context.getCacheDir(), "ledger.gpx");
+        write(file, "<gpx>content</gpx>");
+    }
+
+    @After
+    public void tearDown() {
+        contentProviderUtils.deleteTrack(context, trackId);
+        file.delete();
+    }
+
+    @Test
+    public void isUnchanged_notImported() throws IOException {
+        assertFalse(importLedger.isUnchanged(context, DocumentFile.fromFile(file)));
+    }
+
+    @Test
+    public void isUnchanged_sameSizeAndModified() throws IOException {
+        // given
+        importLedger.record(DocumentFile.fromFile(file), hash(file), trackId);
+
+        // when / then
+        assertTrue(importLedger.isUnchanged(context, DocumentFile.fromFile(file)));
+    }
+
+    @Test
+    public void isUnchanged_onlyTouched() throws IOException {
+        // given
+        importLedger.record(DocumentFile.fromFile(file), hash(file), trackId);
+
+        // when
+        assertTrue(file.setLastModified(file.lastModified() - 60_000));
+
+        // then
+        assertTrue(importLedger.isUnchanged(context, DocumentFile.fromFile(file)));
+    }
+
+    @Test
+    public void isUnchanged_contentChanged() throws IOException {
+        // given
+        importLedger.record(DocumentFile.fromFile(file), hash(file), trackId);
+
+        // when: same size, but different content
+        write(file, "<gpx>CONTENT</gpx>");
+        assertTrue(file.setLastModified(file.lastModified() - 60_000));
+
+        // then
+        assertFalse(importLedger.isUnchanged(context, DocumentFile.fromFile(file)));
+    }
+
+    @Test
+    public void isUnchanged_trackDeleted() throws IOException {
+        // given
+        importLedger.record(DocumentFile.fromFile(file), hash(file), trackId);
+
+        // when
+        contentProviderUtils.deleteTrack(context, trackId);
+
+        // then
+        assertFalse(importLedger.isUnchanged(context, DocumentFile.fromFile(file)));
+    }
+
+    @Test
+    public void hashingInputStream_hashesSkippedAndRemainingBytes() throws IOException {
+        // given
+        byte[] data = "0123456789".getBytes(StandardCharsets.UTF_8);
+        ImportLedger.HashingInputStream expected = new ImportLedger.HashingInputStream(new ByteArrayInputStream(data));
+        ImportLedger.HashingInputStream actual = new ImportLedger.HashingInputStream(new ByteArrayInputStream(data));
+
+        // when
+        actual.read();
+        actual.skip(3);
+
+        // then
+        assertArrayEquals(expected.finish(), actual.finish());
+    }
+
+    private static byte[] hash(File file) throws IOException {
+        try (InputStream inputStream = new FileInputStream(file)) {
+            return new ImportLedger.HashingInputStream(inputStream).finish();
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
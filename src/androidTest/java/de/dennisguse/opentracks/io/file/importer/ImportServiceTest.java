@@ -0,0 +1,130 @@
+package de.dennisguse.opentracks.io.file.importer;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.ResultReceiver;
+import android.util.Log;
+
+import androidx.documentfile.provider.DocumentFile;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.filters.LargeTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+import de.dennisguse.opentracks.util.FileUtils;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(JUnit4.class)
+public class ImportServiceTest {
+
+    private static final String TAG = ImportServiceTest.class.getSimpleName();
+
+    private static final int NUM_FILES = 100;
+    private static final int NUM_POINTS = 500;
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+    private final ContentProviderUtils contentProviderUtils = new ContentProviderUtils(context);
+
+    private File corpusDir;
+    private final List<DocumentFile> files = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        corpusDir = new File(context.getCacheDir(), "import_corpus");
+        corpusDir.mkdirs();
+        for (int i = 0; i < NUM_FILES; i++) {
+            File file = new File(corpusDir, "track" + i + ".gpx");
+            writeGpx(file, i);
+            files.add(DocumentFile.fromFile(file));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteDirectoryRecurse(corpusDir);
+    }
+
+    @LargeTest
+    @Test
+    public void importFiles_benchmarkThroughput() {
+        double serial = benchmarkImport(1);
+        double parallel = benchmarkImport(ImportService.getParallelism());
+
+        Log.i(TAG, "Speedup with " + ImportService.getParallelism() + " threads: " + parallel / serial);
+    }
+
+    /**
+     * @return the files per second.
+     */
+    private double benchmarkImport(int parallelism) {
+        // given
+        CollectingResultReceiver resultReceiver = new CollectingResultReceiver();
+
+        // when
+        long start = System.nanoTime();
+        ImportService.importFiles(context, files, parallelism, resultReceiver);
+        double duration_s = (System.nanoTime() - start) / 1e9;
+
+        // then
+        assertEquals(NUM_FILES, resultReceiver.importedCount);
+        assertEquals(0, resultReceiver.errorCount);
+
+        contentProviderUtils.deleteTracks(context, resultReceiver.trackIds);
+
+        double filesPerSecond = NUM_FILES / duration_s;
+        Log.i(TAG, NUM_FILES + " files (" + NUM_POINTS + " trackPoints each), " + parallelism + " threads: " + String.format(Locale.US, "%.1f", filesPerSecond) + " files/s");
+        return filesPerSecond;
+    }
+
+    private static void writeGpx(File file, int fileIndex) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<gpx version=\"1.1\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n");
+            writer.write("<trk>\n<name>track " + fileIndex + "</name>\n<trkseg>\n");
+            for (int i = 0; i < NUM_POINTS; i++) {
+                writer.write(String.format(Locale.US, "<trkpt lat=\"%.6f\" lon=\"%.6f\">\n<ele>%.1f</ele>\n<time>%s</time>\n</trkpt>\n",
+                        45 + fileIndex * 0.01 + i * 0.0001, 7 + i * 0.0001, 100 + i % 100 * 0.5, Instant.ofEpochSecond(fileIndex * 100_000L + i)));
+            }
+            writer.write("</trkseg>\n</trk>\n</gpx>\n");
+        }
+    }
+
+    private static class CollectingResultReceiver extends ResultReceiver {
+
+        private final List<Track.Id> trackIds = new ArrayList<>();
+        private int importedCount = 0;
+        private int errorCount = 0;
+
+        CollectingResultReceiver() {
+            // Results are delivered on the import threads
+            super(null);
+        }
+
+        @Override
+        protected synchronized void onReceiveResult(int resultCode, Bundle resultData) {
+            if (resultCode == ImportServiceResultReceiver.RESULT_CODE_IMPORTED) {
+                importedCount++;
+                trackIds.addAll(resultData.getParcelableArrayList(ImportServiceResultReceiver.RESULT_EXTRA_LIST_TRACK_ID));
+            } else {
+                errorCount++;
+            }
+        }
+    }
+}
@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import de.dennisguse.opentracks.content.data.Distance;
 import de.dennisguse.opentracks.content.data.TestDataUtil;
 import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.data.TrackPoint;
@@ -32,10 +33,12 @@ import de.dennisguse.opentracks.content.sensor.SensorDataHeartRate;
 import de.dennisguse.opentracks.content.sensor.SensorDataSet;
 import de.dennisguse.opentracks.services.sensors.BluetoothRemoteSensorManager;
 import de.dennisguse.opentracks.util.PreferencesUtils;
+import de.dennisguse.opentracks.viewmodels.IntervalStatistics;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 /**
  * Tests insert location.
@@ -309,6 +312,29 @@ public class TrackRecordingServiceTestLocation {
         ), trackPoints);
     }
 
+    @MediumTest
+    @Test
+    public void testGetLastInterval() throws Exception {
+        // given
+        Track.Id trackId = service.startNewTrack();
+        assertNull(service.getLastInterval());
+
+        // when
+        for (int i = 0; i <= 12; i++) {
+            TrackRecordingServiceTest.newTrackPoint(service, 45.0 + i * 0.001, 35.0, 1, 10);
+        }
+
+        // then
+        IntervalStatistics.Interval lastInterval = service.getLastInterval();
+        assertNotNull(lastInterval);
+
+        IntervalStatistics expected = new IntervalStatistics(TestDataUtil.getTrackPoints(contentProviderUtils, trackId), Distance.one(true));
+        assertEquals(expected.getLastInterval().getDistance().toM(), lastInterval.getDistance().toM(), 0.01);
+        assertEquals(expected.getLastInterval().getSpeed().toMPS(), lastInterval.getSpeed().toMPS(), 0.01);
+
+        service.endCurrentTrack();
+    }
+
     private void assertTrackPoints(List<Pair<TrackPoint.Type, Object>> typeAndAccuracy, List<TrackPoint> actual) {
         assertEquals(typeAndAccuracy.size(), actual.size());
         for (int i = 0; i < typeAndAccuracy.size(); i++) {
@@ -0,0 +1,119 @@
+package de.dennisguse.opentracks.stats;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import de.dennisguse.opentracks.content.data.Distance;
+import de.dennisguse.opentracks.content.data.TrackPoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class BestEffortsCalculatorTest {
+
+    private static final String TAG = BestEffortsCalculatorTest.class.getSimpleName();
+
+    /**
+     * Adds one trackPoint per second with the given speed.
+     *
+     * @return the time of the last trackPoint
+     */
+    private static Instant addConstantSpeed(BestEffortsCalculator subject, Instant start, double speed_mps, int seconds) {
+        Instant time = start;
+        for (int i = 0; i < seconds; i++) {
+            time = time.plusSeconds(1);
+            TrackPoint trackPoint = new TrackPoint(TrackPoint.Type.TRACKPOINT, time);
+            trackPoint.setSensorDistance(Distance.of(speed_mps));
+            subject.addTrackPoint(trackPoint);
+        }
+        return time;
+    }
+
+    @Test
+    public void getBestEfforts_fastestPart() {
+        // given
+        BestEffortsCalculator subject = new BestEffortsCalculator();
+        Instant time = Instant.ofEpochSecond(1000);
+        subject.addTrackPoint(new TrackPoint(TrackPoint.Type.SEGMENT_START_MANUAL, time));
+        time = addConstantSpeed(subject, time, 5, 300);
+        time = addConstantSpeed(subject, time, 10, 100);
+        addConstantSpeed(subject, time, 5, 300);
+
+        // when
+        BestEfforts bestEfforts = subject.getBestEfforts();
+
+        // then
+        assertEquals(Duration.ofSeconds(40), bestEfforts.getDuration(BestEfforts.Type.DISTANCE_400M));
+        assertEquals(Duration.ofSeconds(100), bestEfforts.getDuration(BestEfforts.Type.DISTANCE_1KM));
+        assertFalse(bestEfforts.has(BestEfforts.Type.DISTANCE_5KM));
+
+        assertEquals(10, bestEfforts.getSpeed(BestEfforts.Type.DURATION_1MIN).toMPS(), 0.001);
+        assertEquals(2000 / 300d, bestEfforts.getSpeed(BestEfforts.Type.DURATION_5MIN).toMPS(), 0.001);
+        assertFalse(bestEfforts.has(BestEfforts.Type.DURATION_20MIN));
+    }
+
+    @Test
+    public void getBestEfforts_pauseIsIgnored() {
+        // given
+        BestEffortsCalculator subject = new BestEffortsCalculator();
+        Instant time = Instant.ofEpochSecond(1000);
+        subject.addTrackPoint(new TrackPoint(TrackPoint.Type.SEGMENT_START_MANUAL, time));
+        time = addConstantSpeed(subject, time, 5, 120);
+        subject.addTrackPoint(new TrackPoint(TrackPoint.Type.SEGMENT_END_MANUAL, time));
+
+        time = time.plus(Duration.ofHours(1));
+        subject.addTrackPoint(new TrackPoint(TrackPoint.Type.SEGMENT_START_MANUAL, time));
+        addConstantSpeed(subject, time, 5, 120);
+
+        // when
+        BestEfforts bestEfforts = subject.getBestEfforts();
+
+        // then
+        assertEquals(Duration.ofSeconds(200), bestEfforts.getDuration(BestEfforts.Type.DISTANCE_1KM));
+        assertEquals(5, bestEfforts.getSpeed(BestEfforts.Type.DURATION_1MIN).toMPS(), 0.001);
+    }
+
+    @Test
+    public void bestIncrease_interpolates() {
+        // given
+        double[] distance_m = {0, 300, 600, 900, 1200};
+        double[] time_s = {0, 60, 90, 150, 210};
+
+        // when
+        double fastest_s = BestEffortsCalculator.bestIncrease(distance_m, time_s, distance_m.length, 400, false);
+        double longest_m = BestEffortsCalculator.bestIncrease(time_s, distance_m, time_s.length, 30, true);
+
+        // then
+        // 400m within [200m, 600m]: 20s (interpolated) + 30s
+        assertEquals(50, fastest_s, 0.001);
+        assertEquals(300, longest_m, 0.001);
+    }
+
+    @Test
+    public void getBestEfforts_benchmark4hAt1Hz() {
+        // given
+        BestEffortsCalculator subject = new BestEffortsCalculator();
+        Instant time = Instant.ofEpochSecond(1000);
+        subject.addTrackPoint(new TrackPoint(TrackPoint.Type.SEGMENT_START_MANUAL, time));
+        addConstantSpeed(subject, time, 3, 4 * 60 * 60);
+
+        // when
+        long start = System.nanoTime();
+        BestEfforts bestEfforts = subject.getBestEfforts();
+        long duration_ms = (System.nanoTime() - start) / 1_000_000;
+
+        // then
+        Log.i(TAG, "getBestEfforts() for 4h@1Hz: " + duration_ms + "ms");
+        assertTrue(bestEfforts.has(BestEfforts.Type.DISTANCE_MARATHON));
+        assertEquals(Duration.ofSeconds(14065), bestEfforts.getDuration(BestEfforts.Type.DISTANCE_MARATHON));
+    }
+}
@@ -0,0 +1,123 @@
+package de.dennisguse.opentracks.stats;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import de.dennisguse.opentracks.content.data.TrackPoint;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class HistogramTest {
+
+    @Test
+    public void getQuantile() {
+        // given
+        Histogram subject = new Histogram(Histogram.Type.POWER);
+        subject.add(100, 1000);
+        subject.add(200, 2000);
+        subject.add(300, 1000);
+
+        // then
+        assertEquals(4000, subject.getTotal_ms());
+        assertEquals(202.5, subject.getQuantile(0.5), 0.01);
+        assertEquals(100, subject.getQuantile(0), 0.01);
+        assertEquals(305, subject.getQuantile(1), 0.01);
+        assertTrue(Double.isNaN(new Histogram(Histogram.Type.POWER).getQuantile(0.5)));
+    }
+
+    @Test
+    public void getDurations_zones() {
+        // given
+        Histogram subject = new Histogram(Histogram.Type.HEART_RATE);
+        subject.add(90, 1000);
+        subject.add(130, 2000);
+        subject.add(150, 3000);
+        subject.add(300, 4000); // out of range
+
+        // when
+        long[] durations_ms = subject.getDurations_ms(new double[]{0, 120, 140, 250});
+
+        // then
+        assertArrayEquals(new long[]{1000, 2000, 7000}, durations_ms);
+    }
+
+    @Test
+    public void merge() {
+        // given
+        Histogram subject = new Histogram(Histogram.Type.SPEED);
+        subject.add(1, 1000);
+        Histogram other = new Histogram(Histogram.Type.SPEED);
+        other.add(1, 500);
+        other.add(3, 500);
+
+        // when
+        subject.merge(other);
+
+        // then
+        assertEquals(2000, subject.getTotal_ms());
+        assertEquals(1500, subject.getDuration_ms(0, 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void merge_differentTypes() {
+        new Histogram(Histogram.Type.SPEED).merge(new Histogram(Histogram.Type.POWER));
+    }
+
+    @Test
+    public void toBytes_fromBytes() {
+        // given
+        Histogram subject = new Histogram(Histogram.Type.HEART_RATE);
+        subject.add(60, 1);
+        subject.add(140, 3_600_000);
+        subject.add(249, 100_000_000_000L);
+
+        // when
+        byte[] data = subject.toBytes();
+        Histogram result = Histogram.fromBytes(Histogram.Type.HEART_RATE, data);
+
+        // then
+        assertTrue(data.length < 20);
+        assertEquals(subject, result);
+        assertEquals(subject.getTotal_ms(), result.getTotal_ms());
+        assertEquals(0, new Histogram(Histogram.Type.HEART_RATE).toBytes().length);
+    }
+
+    @Test
+    public void histogramCalculator_timeWeighted() {
+        // given
+        Instant start = Instant.ofEpochSecond(1000);
+        TrackPoint tp1 = new TrackPoint(TrackPoint.Type.TRACKPOINT, start);
+        tp1.setHeartRate_bpm(100f);
+        TrackPoint tp2 = new TrackPoint(TrackPoint.Type.TRACKPOINT, start.plusSeconds(10));
+        tp2.setHeartRate_bpm(150f);
+        TrackPoint tp3 = new TrackPoint(TrackPoint.Type.SEGMENT_END_MANUAL, start.plusSeconds(15));
+        TrackPoint tp4 = new TrackPoint(TrackPoint.Type.SEGMENT_START_MANUAL, start.plus(Duration.ofHours(1)));
+        tp4.setHeartRate_bpm(80f);
+        TrackPoint tp5 = new TrackPoint(TrackPoint.Type.TRACKPOINT, start.plus(Duration.ofHours(1)).plusSeconds(5));
+
+        // when
+        HistogramCalculator subject = new HistogramCalculator();
+        for (TrackPoint trackPoint : new TrackPoint[]{tp1, tp2, tp3, tp4, tp5}) {
+            subject.addTrackPoint(trackPoint);
+        }
+        Map<Histogram.Type, Histogram> histograms = subject.getHistograms();
+
+        // then
+        assertFalse(histograms.containsKey(Histogram.Type.POWER));
+        Histogram heartRate = histograms.get(Histogram.Type.HEART_RATE);
+        assertEquals(20_000, heartRate.getTotal_ms());
+        assertEquals(10_000, heartRate.getDuration_ms(100, 101));
+        assertEquals(5_000, heartRate.getDuration_ms(150, 151));
+        assertEquals(5_000, heartRate.getDuration_ms(80, 81));
+    }
+}
@@ -0,0 +1,176 @@
+package de.dennisguse.opentracks.stats;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Random;
+
+import de.dennisguse.opentracks.content.data.TrackPoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(AndroidJUnit4.class)
+public class MeanMaxCalculatorTest {
+
+    private static final String TAG = MeanMaxCalculatorTest.class.getSimpleName();
+
+    private static TrackPoint createTrackPoint(Instant time, Float power, Float heartRate_bpm) {
+        TrackPoint trackPoint = new TrackPoint(TrackPoint.Type.TRACKPOINT, time);
+        trackPoint.setPower(power);
+        trackPoint.setHeartRate_bpm(heartRate_bpm);
+        return trackPoint;
+    }
+
+    @Test
+    public void addTrackPoint_resamplesTo1Hz() {
+        // given
+        MeanMaxCalculator subject = new MeanMaxCalculator(MeanMaxCalculator.Sensor.POWER);
+        Instant start = Instant.ofEpochSecond(1000);
+
+        // when
+        subject.addTrackPoint(new TrackPoint(TrackPoint.Type.SEGMENT_START_MANUAL, start));
+        subject.addTrackPoint(createTrackPoint(start.plusSeconds(1), 100f, null));
+        subject.addTrackPoint(createTrackPoint(start.plusSeconds(11), 300f, null));
+        subject.addTrackPoint(createTrackPoint(start.plusSeconds(16), 100f, null));
+        subject.addTrackPoint(new TrackPoint(TrackPoint.Type.SEGMENT_END_MANUAL, start.plusSeconds(21)));
+
+        // Pause: not part of the curve
+        subject.addTrackPoint(new TrackPoint(TrackPoint.Type.SEGMENT_START_MANUAL, start.plus(Duration.ofHours(1))));
+        subject.addTrackPoint(createTrackPoint(start.plus(Duration.ofHours(1)).plusSeconds(1), 200f, null));
+        subject.addTrackPoint(createTrackPoint(start.plus(Duration.ofHours(1)).plusSeconds(11), 200f, null));
+
+        // then
+        // 10s@100W, 5s@300W, 5s@100W, 10s@200W
+        assertEquals(30, subject.getDuration_s());
+        MeanMaxCalculator.Curve curve = subject.getCurve();
+        assertEquals(300, curve.getValue(Duration.ofSeconds(5)), 0.01);
+        assertEquals(200, curve.getValue(Duration.ofSeconds(10)), 0.01);
+        assertEquals((5 * 300 + 5 * 100 + 10 * 200) / 20d, curve.getValue(Duration.ofSeconds(20)), 0.01);
+        assertEquals((10 * 100 + 5 * 300 + 5 * 100 + 10 * 200) / 30d, curve.getValue(Duration.ofSeconds(30)), 0.01);
+    }
+
+    @Test
+    public void getCurve_wholeTrack() {
+        // given
+        MeanMaxCalculator subject = new MeanMaxCalculator(MeanMaxCalculator.Sensor.HEART_RATE);
+        for (int i = 0; i < 7; i++) {
+            subject.append(100 + i);
+        }
+
+        // when
+        MeanMaxCalculator.Curve curve = subject.getCurve();
+
+        // then
+        assertEquals(5, curve.size());
+        assertEquals(Duration.ofSeconds(7), curve.getDuration(4));
+        assertEquals(103, curve.getValue(4), 0.01);
+        assertEquals(106, curve.getValue(Duration.ofSeconds(1)), 0.01);
+    }
+
+    @Test
+    public void getCurve_equalsBruteForce() {
+        // given
+        Random random = new Random(1);
+        double[] values = new double[2000];
+        MeanMaxCalculator subject = new MeanMaxCalculator(MeanMaxCalculator.Sensor.POWER);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(500);
+            subject.append(values[i]);
+        }
+
+        // when
+        MeanMaxCalculator.Curve curve = subject.getCurve();
+
+        // then
+        for (int c = 0; c < curve.size(); c++) {
+            int duration_s = (int) curve.getDuration(c).getSeconds();
+            double expected = 0;
+            for (int start = 0; start + duration_s <= values.length; start++) {
+                double sum = 0;
+                for (int i = start; i < start + duration_s; i++) {
+                    sum += values[i];
+                }
+                expected = Math.max(expected, sum / duration_s);
+            }
+            assertEquals("duration " + duration_s, expected, curve.getValue(c), 0.001);
+        }
+    }
+
+    @Test
+    public void getNormalizedAverage() {
+        // given
+        MeanMaxCalculator subject = new MeanMaxCalculator(MeanMaxCalculator.Sensor.POWER);
+
+        // then
+        assertTrue(Double.isNaN(subject.getNormalizedAverage()));
+
+        // when: constant power
+        for (int i = 0; i < 60; i++) {
+            subject.append(200);
+        }
+
+        // then
+        assertEquals(200, subject.getNormalizedAverage(), 0.01);
+
+        // when: variable power increases normalized power above average power
+        for (int i = 0; i < 60; i++) {
+            subject.append(i % 120 < 30 ? 400 : 0);
+        }
+        assertTrue(subject.getNormalizedAverage() > subject.getCurve().getValue(subject.getCurve().size() - 1));
+    }
+
+    @Test
+    public void curve_toBytes_fromBytes() {
+        // given
+        MeanMaxCalculator subject = new MeanMaxCalculator(MeanMaxCalculator.Sensor.POWER);
+        for (int i = 0; i < 100; i++) {
+            subject.append(150 + i % 7);
+        }
+        MeanMaxCalculator.Curve curve = subject.getCurve();
+
+        // when
+        MeanMaxCalculator.Curve decoded = MeanMaxCalculator.Curve.fromBytes(curve.toBytes());
+
+        // then
+        assertEquals(curve, decoded);
+        assertEquals(subject.getNormalizedAverage(), decoded.getNormalizedAverage(), 0);
+    }
+
+    @Test
+    public void addTrackPoint_benchmark5hAt1Hz() {
+        // given
+        int seconds = 5 * 60 * 60;
+        Random random = new Random(1);
+        Instant start = Instant.ofEpochSecond(1000);
+        TrackPoint[] trackPoints = new TrackPoint[seconds];
+        for (int i = 0; i < seconds; i++) {
+            trackPoints[i] = createTrackPoint(start.plusSeconds(i), 150f + random.nextInt(200), 120f + random.nextInt(60));
+        }
+
+        // when
+        long startTime = System.nanoTime();
+        MeanMaxCalculator power = new MeanMaxCalculator(MeanMaxCalculator.Sensor.POWER);
+        MeanMaxCalculator heartRate = new MeanMaxCalculator(MeanMaxCalculator.Sensor.HEART_RATE);
+        for (TrackPoint trackPoint : trackPoints) {
+            power.addTrackPoint(trackPoint);
+            heartRate.addTrackPoint(trackPoint);
+        }
+        MeanMaxCalculator.Curve powerCurve = power.getCurve();
+        MeanMaxCalculator.Curve heartRateCurve = heartRate.getCurve();
+        double normalizedPower = power.getNormalizedAverage();
+        long duration_ms = (System.nanoTime() - startTime) / 1_000_000;
+
+        // then
+        Log.i(TAG, "Power and heart rate curves for 5h@1Hz: " + duration_ms + "ms");
+        assertEquals(seconds - 1, power.getDuration_s());
+        assertTrue(powerCurve.getValue(Duration.ofSeconds(1)) >= normalizedPower);
+        assertTrue(heartRateCurve.getValue(Duration.ofHours(1)) > 120);
+    }
+}
@@ -1,5 +1,7 @@
 package de.dennisguse.opentracks.viewmodels;
 
+import android.util.Log;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -15,6 +17,7 @@ import de.dennisguse.opentracks.stats.TrackStatisticsUpdater;
 import de.dennisguse.opentracks.util.UnitConversions;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 @RunWith(JUnit4.class)
 public class IntervalStatisticsTest {
@@ -113,6 +116,74 @@ public class IntervalStatisticsTest {
         whenAndThen(trackPoints, trackStatistics, distanceInterval);
     }
 
+    /**
+     * Tests that adding trackPoints incrementally results in the same intervals as computing them at once.
+     */
+    @Test
+    public void testAddTrackPoint_incrementalEqualsBatch() {
+        // given
+        List<TrackPoint> trackPoints = buildTrackPoints(1000);
+        Distance distanceInterval = Distance.of(1000);
+
+        // when
+        IntervalStatistics incremental = new IntervalStatistics(distanceInterval);
+        assertNull(incremental.getLastInterval());
+        for (int i = 0; i < trackPoints.size(); i += 7) {
+            incremental.addTrackPoints(trackPoints.subList(i, Math.min(i + 7, trackPoints.size())));
+        }
+        IntervalStatistics batch = new IntervalStatistics(trackPoints, distanceInterval);
+
+        // then
+        assertIntervalsEquals(batch.getIntervalList(), incremental.getIntervalList());
+        assertEquals(batch.getLastInterval().getDistance().toM(), incremental.getLastInterval().getDistance().toM(), 0.001);
+    }
+
+    /**
+     * Simulates a 4h recording at 1Hz that updates the intervals every 5s.
+     * Compares the incremental update with re-computing all intervals (as it was done before).
+     */
+    @Test
+    public void testAddTrackPoint_benchmark4hAt1Hz() {
+        // given
+        int numberOfTrackPoints = 4 * 60 * 60;
+        int updateEvery = 5;
+        List<TrackPoint> trackPoints = buildTrackPoints(numberOfTrackPoints);
+        Distance distanceInterval = Distance.of(1000);
+
+        // when: incremental
+        long start = System.nanoTime();
+        IntervalStatistics incremental = new IntervalStatistics(distanceInterval);
+        List<IntervalStatistics.Interval> incrementalResult = null;
+        for (int i = 0; i < numberOfTrackPoints; i += updateEvery) {
+            incremental.addTrackPoints(trackPoints.subList(i, Math.min(i + updateEvery, numberOfTrackPoints)));
+            incrementalResult = incremental.getIntervalList();
+        }
+        long incrementalNanos = System.nanoTime() - start;
+
+        // when: re-computation (only every 60s to keep the test's runtime reasonable)
+        start = System.nanoTime();
+        List<IntervalStatistics.Interval> recomputedResult = null;
+        for (int i = 60; i <= numberOfTrackPoints; i += 60) {
+            recomputedResult = new IntervalStatistics(trackPoints.subList(0, i), distanceInterval).getIntervalList();
+        }
+        long recomputedNanos = System.nanoTime() - start;
+
+        Log.i(TAG, "4h at 1Hz: incremental (every " + updateEvery + "s) " + incrementalNanos / 1_000_000 + "ms; recomputing (every 60s) " + recomputedNanos / 1_000_000 + "ms");
+
+        // then
+        assertIntervalsEquals(recomputedResult, incrementalResult);
+    }
+
+    private void assertIntervalsEquals(List<IntervalStatistics.Interval> expected, List<IntervalStatistics.Interval> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getDistance().toM(), actual.get(i).getDistance().toM(), 0.001);
+            assertEquals(expected.get(i).getSpeed().toMPS(), actual.get(i).getSpeed().toMPS(), 0.001);
+            assertEquals(expected.get(i).getGain_m(), actual.get(i).getGain_m(), 0.001);
+            assertEquals(expected.get(i).getLoss_m(), actual.get(i).getLoss_m(), 0.001);
+        }
+    }
+
     private void whenAndThen(List<TrackPoint> trackPoints, TrackStatistics trackStatistics, float distanceInterval) {
         IntervalStatistics intervalStatistics = new IntervalStatistics(trackPoints, Distance.of(distanceInterval));
         List<IntervalStatistics.Interval> intervalList = intervalStatistics.getIntervalList();
@@ -1,12 +1,16 @@
 package de.dennisguse.opentracks;
 
 import android.os.Bundle;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 
+import androidx.annotation.NonNull;
 import androidx.lifecycle.ViewModelProvider;
 
 import de.dennisguse.opentracks.adapters.AggregatedStatisticsAdapter;
 import de.dennisguse.opentracks.databinding.AggregatedStatsBinding;
+import de.dennisguse.opentracks.viewmodels.AggregatedStatistics;
 import de.dennisguse.opentracks.viewmodels.AggregatedStatisticsModel;
 
 public class AggregatedStatisticsActivity extends AbstractActivity {
@@ -15,13 +19,15 @@ public class AggregatedStatisticsActivity extends AbstractActivity {
 
     private AggregatedStatisticsAdapter adapter;
 
+    private AggregatedStatisticsModel viewModel;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
         viewBinding.aggregatedStatsList.setEmptyView(viewBinding.aggregatedStatsEmptyView);
 
-        final AggregatedStatisticsModel viewModel = new ViewModelProvider(this).get(AggregatedStatisticsModel.class);
+        viewModel = new ViewModelProvider(this).get(AggregatedStatisticsModel.class);
         viewModel.getAggregatedStats().observe(this, aggregatedStatistics -> {
             if (aggregatedStatistics != null) {
                 adapter = new AggregatedStatisticsAdapter(this, aggregatedStatistics);
@@ -31,6 +37,51 @@ public class AggregatedStatisticsActivity extends AbstractActivity {
         });
     }
 
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.aggregated_stats, menu);
+        return super.onCreateOptionsMenu(menu);
+    }
+
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        switch (viewModel.getTimeFilter()) {
+            case YEAR:
+                menu.findItem(R.id.aggregated_stats_filter_year).setChecked(true);
+                break;
+            case MONTH:
+                menu.findItem(R.id.aggregated_stats_filter_month).setChecked(true);
+                break;
+            case WEEK:
+                menu.findItem(R.id.aggregated_stats_filter_week).setChecked(true);
+                break;
+            default:
+                menu.findItem(R.id.aggregated_stats_filter_all).setChecked(true);
+        }
+        return super.onPrepareOptionsMenu(menu);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        AggregatedStatistics.TimeFilter timeFilter;
+        int itemId = item.getItemId();
+        if (itemId == R.id.aggregated_stats_filter_all) {
+            timeFilter = AggregatedStatistics.TimeFilter.ALL;
+        } else if (itemId == R.id.aggregated_stats_filter_year) {
+            timeFilter = AggregatedStatistics.TimeFilter.YEAR;
+        } else if (itemId == R.id.aggregated_stats_filter_month) {
+            timeFilter = AggregatedStatistics.TimeFilter.MONTH;
+        } else if (itemId == R.id.aggregated_stats_filter_week) {
+            timeFilter = AggregatedStatistics.TimeFilter.WEEK;
+        } else {
+            return super.onOptionsItemSelected(item);
+        }
+
+        item.setChecked(true);
+        viewModel.setTimeFilter(timeFilter);
+        return true;
+    }
+
     @Override
     protected View getRootView() {
         viewBinding = AggregatedStatsBinding.inflate(getLayoutInflater());
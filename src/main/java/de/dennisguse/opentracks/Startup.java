@@ -7,6 +7,7 @@ import android.util.Log;
 
 import java.util.Locale;
 
+import de.dennisguse.opentracks.io.file.importer.IncompleteImports;
 import de.dennisguse.opentracks.util.ActivityUtils;
 import de.dennisguse.opentracks.util.PreferencesUtils;
 
@@ -36,6 +37,8 @@ public class Startup extends Application {
 
         ActivityUtils.applyNightMode(sharedPreferences, this);
 
+        IncompleteImports.deleteInterrupted(this);
+
         // In debug builds: show thread and VM warnings.
         if (BuildConfig.DEBUG) {
             Log.d(TAG, "Enabling strict mode");
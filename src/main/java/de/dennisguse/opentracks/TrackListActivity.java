@@ -53,6 +53,7 @@ import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.data.TracksColumns;
 import de.dennisguse.opentracks.databinding.TrackListBinding;
 import de.dennisguse.opentracks.fragments.ConfirmDeleteDialogFragment;
+import de.dennisguse.opentracks.services.StatisticsRecomputeService;
 import de.dennisguse.opentracks.services.TrackRecordingService;
 import de.dennisguse.opentracks.services.TrackRecordingServiceConnection;
 import de.dennisguse.opentracks.services.TrackRecordingServiceStatus;
@@ -169,6 +170,9 @@ public class TrackListActivity extends AbstractListActivity implements ConfirmDe
 
         sharedPreferences = PreferencesUtils.getSharedPreferences(this);
 
+        // Compute best efforts of tracks recorded before these were stored.
+        StatisticsRecomputeService.enqueueBestEffortsBackfill(this);
+
         trackRecordingServiceConnection = new TrackRecordingServiceConnection(bindChangedCallback);
         trackController = new TrackController(this, viewBinding.trackControllerContainer, trackRecordingServiceConnection, true, this);
 
@@ -0,0 +1,130 @@
+package de.dennisguse.opentracks.chart;
+
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Arrays;
+
+import de.dennisguse.opentracks.stats.ExtremityMonitor;
+
+/**
+ * Growable column store of the chart data: one column for the x axis (time or distance) and one per {@link ChartValueSeries}.
+ * <p>
+ * Compared to a list of {@link ChartPoint}s, no object per point is kept and the values of one series are adjacent in memory.
+ * The y values are stored as float (same precision as used for drawing); x as double as it is used for the binary search.
+ * The x values are expected to be non-decreasing.
+ */
+class ChartData {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private double[] x;
+    private final float[][] values;
+    private final RangeExtremityIndex[] extremityIndices;
+
+    private int size = 0;
+
+    ChartData(int seriesCount) {
+        x = new double[INITIAL_CAPACITY];
+        values = new float[seriesCount][INITIAL_CAPACITY];
+        extremityIndices = new RangeExtremityIndex[seriesCount];
+        for (int i = 0; i < seriesCount; i++) {
+            extremityIndices[i] = new RangeExtremityIndex(this, i);
+        }
+    }
+
+    /**
+     * @param row the values of all series (NaN if not available)
+     */
+    void add(double xValue, float[] row) {
+        if (size == x.length) {
+            grow();
+        }
+        x[size] = xValue;
+        for (int i = 0; i < values.length; i++) {
+            values[i][size] = row[i];
+        }
+        size++;
+
+        if (size % RangeExtremityIndex.BLOCK_SIZE == 0) {
+            for (RangeExtremityIndex extremityIndex : extremityIndices) {
+                extremityIndex.update();
+            }
+        }
+    }
+
+    private void grow() {
+        int capacity = x.length + (x.length >> 1);
+        x = Arrays.copyOf(x, capacity);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Arrays.copyOf(values[i], capacity);
+        }
+    }
+
+    void clear() {
+        size = 0;
+        for (RangeExtremityIndex extremityIndex : extremityIndices) {
+            extremityIndex.clear();
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int getSeriesCount() {
+        return values.length;
+    }
+
+    double getX(int index) {
+        return x[index];
+    }
+
+    float getValue(int series, int index) {
+        return values[series][index];
+    }
+
+    /**
+     * @return the index of the first point with an x value not smaller than xValue; size() if there is none.
+     */
+    int indexOfX(double xValue) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (x[mid] < xValue) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the index range [from, to) of the points needed to draw the x range [fromX, toX] (including one point outside on each side).
+     */
+    int[] getIndexRange(double fromX, double toX) {
+        int from = Math.max(0, indexOfX(fromX) - 1);
+        int to = Math.min(size, indexOfX(toX) + 1);
+        return new int[]{from, Math.max(from, to)};
+    }
+
+    /**
+     * Sets the minimum and maximum of a series within [fromIndex, toIndex); O(1) except for the partially covered blocks.
+     */
+    void getExtremity(int series, int fromIndex, int toIndex, ExtremityMonitor result) {
+        extremityIndices[series].getExtremity(fromIndex, toIndex, result);
+    }
+
+    /**
+     * @return the allocated memory of the columns in bytes.
+     */
+    @VisibleForTesting
+    long getAllocatedBytes() {
+        return (long) x.length * (Double.BYTES + values.length * Float.BYTES);
+    }
+}
@@ -0,0 +1,91 @@
+package de.dennisguse.opentracks.chart;
+
+import java.util.Arrays;
+
+/**
+ * Reduces the points of a series to at most four per pixel column: the first, the minimum, the maximum, and the last (in order of occurrence).
+ * <p>
+ * Keeps the visual appearance (extremes and connections between columns) while the drawing work only depends on the width of the chart.
+ */
+class ChartDecimator {
+
+    // x, y pairs in data coordinates
+    private float[] points = new float[1024];
+    private int size = 0;
+
+    /**
+     * @param fromIndex  the first index (inclusive)
+     * @param toIndex    the last index (exclusive)
+     * @param pixelsPerX the number of pixels per x unit
+     * @return the number of points
+     */
+    int decimate(ChartData chartData, int series, int fromIndex, int toIndex, double pixelsPerX) {
+        size = 0;
+
+        long column = Long.MIN_VALUE;
+        int first = -1;
+        int min = -1;
+        int max = -1;
+        int last = -1;
+        for (int i = fromIndex; i < toIndex; i++) {
+            float value = chartData.getValue(series, i);
+            if (Float.isNaN(value)) {
+                continue;
+            }
+
+            long currentColumn = (long) Math.floor(chartData.getX(i) * pixelsPerX);
+            if (currentColumn != column) {
+                if (first != -1) {
+                    addColumn(chartData, series, first, min, max, last);
+                }
+                column = currentColumn;
+                first = i;
+                min = i;
+                max = i;
+            } else {
+                if (value < chartData.getValue(series, min)) {
+                    min = i;
+                }
+                if (value > chartData.getValue(series, max)) {
+                    max = i;
+                }
+            }
+            last = i;
+        }
+        if (first != -1) {
+            addColumn(chartData, series, first, min, max, last);
+        }
+
+        return size / 2;
+    }
+
+    private void addColumn(ChartData chartData, int series, int first, int min, int max, int last) {
+        addPoint(chartData, series, first);
+        int low = Math.min(min, max);
+        int high = Math.max(min, max);
+        if (low != first && low != last) {
+            addPoint(chartData, series, low);
+        }
+        if (high != low && high != first && high != last) {
+            addPoint(chartData, series, high);
+        }
+        if (last != first) {
+            addPoint(chartData, series, last);
+        }
+    }
+
+    private void addPoint(ChartData chartData, int series, int index) {
+        if (size + 2 > points.length) {
+            points = Arrays.copyOf(points, points.length * 2);
+        }
+        points[size++] = (float) chartData.getX(index);
+        points[size++] = chartData.getValue(series, index);
+    }
+
+    /**
+     * @return the x, y pairs of the last {@link #decimate(ChartData, int, int, int, double)}.
+     */
+    float[] getPoints() {
+        return points;
+    }
+}
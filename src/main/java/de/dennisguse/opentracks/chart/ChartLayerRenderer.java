@@ -0,0 +1,224 @@
+package de.dennisguse.opentracks.chart;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Picture;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Rasterizes a layer of a {@link View} (e.g., the data series of the chart) into a bitmap on a background thread.
+ * <p>
+ * Double buffered: the UI thread draws the last completed bitmap (front) while the next one is rendered (back).
+ * With hardware acceleration, drawing a bitmap only records a reference that is uploaded later by the RenderThread.
+ * So, a replaced front bitmap is only reused as back after a frame with the new front was drawn.
+ * The bitmap covers the visible area plus a margin on both sides, so small scroll offsets do not require a new bitmap.
+ * The layer is recorded into a {@link Picture} while holding the lock of the data; rasterization happens without holding it.
+ *
+ * @param <S> the state the layer was drawn with (e.g., the scale); the UI thread can draw related content consistently with the shown layer.
+ */
+class ChartLayerRenderer<S> {
+
+    private static final String TAG = ChartLayerRenderer.class.getSimpleName();
+
+    interface Layer<S> {
+        /**
+         * Draws the layer for the horizontal range [left, right] (in view coordinates).
+         * Called on the render thread.
+         *
+         * @return the state the layer was drawn with (see {@link #getFrontState()}).
+         */
+        S drawLayer(@NonNull Canvas canvas, int left, int right);
+
+        /**
+         * @return the lock to be held while recording the layer.
+         */
+        Object getLock();
+    }
+
+    private final View view;
+    private final Layer<S> layer;
+
+    private final Object lock = new Object();
+
+    private HandlerThread handlerThread;
+    private volatile Handler handler;
+
+    // Guarded by lock
+    private Bitmap front;
+    private int frontScrollX;
+    private int frontLeft;
+    private int frontVersion = -1;
+    private S frontState;
+    private Bitmap back;
+    private Bitmap retired;
+    private boolean retiredReplaced;
+    private int version = 0;
+    private int requestedScrollX;
+    private int requestedWidth;
+    private int requestedHeight;
+    private boolean renderPending = false;
+
+    private final Canvas backCanvas = new Canvas();
+    private final Picture picture = new Picture();
+
+    private final Runnable renderRunnable = this::render;
+
+    ChartLayerRenderer(@NonNull View view, @NonNull Layer<S> layer) {
+        this.view = view;
+        this.layer = layer;
+    }
+
+    void start() {
+        if (handlerThread != null) {
+            return;
+        }
+        handlerThread = new HandlerThread(TAG);
+        handlerThread.start();
+        handler = new Handler(handlerThread.getLooper());
+    }
+
+    void stop() {
+        if (handlerThread == null) {
+            return;
+        }
+        handlerThread.getLooper().quit();
+        handlerThread = null;
+
+        synchronized (lock) {
+            handler = null;
+            renderPending = false;
+            front = null;
+            frontState = null;
+            back = null;
+            retired = null;
+            frontVersion = -1;
+        }
+    }
+
+    boolean isRunning() {
+        return handler != null;
+    }
+
+    /**
+     * The layer needs to be rendered again (e.g., data, dimensions, or zoom level changed).
+     */
+    void invalidate() {
+        synchronized (lock) {
+            version++;
+        }
+    }
+
+    /**
+     * Draws the last completed layer and requests a new one if it is outdated.
+     * To be called on the UI thread.
+     *
+     * @return false if no layer is available yet.
+     */
+    boolean draw(@NonNull Canvas canvas, int scrollX, int width, int height) {
+        synchronized (lock) {
+            int margin = getMargin(width);
+            boolean outdated = front == null || frontVersion != version
+                    || front.getWidth() != width + 2 * margin || front.getHeight() != height
+                    || Math.abs(scrollX - frontScrollX) > margin / 2;
+            if (outdated) {
+                requestRender(scrollX, width, height);
+            }
+
+            if (front == null) {
+                return false;
+            }
+            canvas.drawBitmap(front, frontLeft, 0, null);
+
+            if (retired != null) {
+                if (retiredReplaced) {
+                    // The frame drawn before this one did not reference the retired bitmap anymore.
+                    back = retired;
+                    retired = null;
+                } else {
+                    retiredReplaced = true;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return the state the last completed layer was drawn with; null if no layer is available yet.
+     */
+    S getFrontState() {
+        synchronized (lock) {
+            return frontState;
+        }
+    }
+
+    private void requestRender(int scrollX, int width, int height) {
+        requestedScrollX = scrollX;
+        requestedWidth = width;
+        requestedHeight = height;
+        if (!renderPending && handler != null && width > 0 && height > 0) {
+            renderPending = true;
+            handler.post(renderRunnable);
+        }
+    }
+
+    private static int getMargin(int width) {
+        return width / 4;
+    }
+
+    private void render() {
+        int scrollX;
+        int width;
+        int height;
+        int renderVersion;
+        Bitmap bitmap;
+        synchronized (lock) {
+            renderPending = false;
+            scrollX = requestedScrollX;
+            width = requestedWidth;
+            height = requestedHeight;
+            renderVersion = version;
+            bitmap = back;
+            back = null;
+        }
+
+        int margin = getMargin(width);
+        int bitmapWidth = width + 2 * margin;
+        if (bitmap == null || bitmap.getWidth() != bitmapWidth || bitmap.getHeight() != height) {
+            bitmap = Bitmap.createBitmap(bitmapWidth, height, Bitmap.Config.ARGB_8888);
+        }
+
+        int left = scrollX - margin;
+        Canvas recordingCanvas = picture.beginRecording(bitmapWidth, height);
+        recordingCanvas.translate(-left, 0);
+        S state;
+        synchronized (layer.getLock()) {
+            state = layer.drawLayer(recordingCanvas, left, left + bitmapWidth);
+        }
+        picture.endRecording();
+
+        bitmap.eraseColor(Color.TRANSPARENT);
+        backCanvas.setBitmap(bitmap);
+        backCanvas.drawPicture(picture);
+        backCanvas.setBitmap(null);
+
+        synchronized (lock) {
+            if (handler == null) {
+                // Stopped meanwhile
+                return;
+            }
+            retired = front;
+            retiredReplaced = false;
+            front = bitmap;
+            frontState = state;
+            frontScrollX = scrollX;
+            frontLeft = left;
+            frontVersion = renderVersion;
+        }
+        view.postInvalidateOnAnimation();
+    }
+}
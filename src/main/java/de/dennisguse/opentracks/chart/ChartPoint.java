@@ -3,9 +3,11 @@ package de.dennisguse.opentracks.chart;
 import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 
+import java.time.Duration;
+
+import de.dennisguse.opentracks.content.data.Distance;
+import de.dennisguse.opentracks.content.data.Speed;
 import de.dennisguse.opentracks.content.data.TrackPoint;
-import de.dennisguse.opentracks.stats.TrackStatistics;
-import de.dennisguse.opentracks.stats.TrackStatisticsUpdater;
 import de.dennisguse.opentracks.util.UnitConversions;
 
 public class ChartPoint {
@@ -25,22 +27,30 @@ public class ChartPoint {
         this.altitude = altitude;
     }
 
-    public ChartPoint(@NonNull TrackStatisticsUpdater trackStatisticsUpdater, TrackPoint trackPoint, boolean chartByDistance, boolean metricUnits) {
-        TrackStatistics trackStatistics = trackStatisticsUpdater.getTrackStatistics();
+    @VisibleForTesting
+    ChartPoint(double timeOrDistance, double altitude) {
+        this.timeOrDistance = timeOrDistance;
+        this.altitude = altitude;
+    }
 
+    /**
+     * @param altitude_m the smoothed altitude
+     * @param speed      the smoothed speed
+     */
+    public ChartPoint(@NonNull Distance totalDistance, @NonNull Duration totalTime, double altitude_m, @NonNull Speed speed, TrackPoint trackPoint, boolean chartByDistance, boolean metricUnits) {
         if (chartByDistance) {
-            timeOrDistance = trackStatistics.getTotalDistance().to(metricUnits);
+            timeOrDistance = totalDistance.to(metricUnits);
         } else {
-            timeOrDistance = trackStatistics.getTotalTime().toMillis();
+            timeOrDistance = totalTime.toMillis();
         }
 
-        altitude = trackStatisticsUpdater.getSmoothedAltitude();
+        altitude = altitude_m;
         if (!metricUnits) {
             altitude *= UnitConversions.M_TO_FT;
         }
 
-        speed = trackStatisticsUpdater.getSmoothedSpeed().to(metricUnits);
-        pace = trackStatisticsUpdater.getSmoothedSpeed().toPace(metricUnits).toMillis() * UnitConversions.MS_TO_S * UnitConversions.S_TO_MIN;
+        this.speed = speed.to(metricUnits);
+        pace = speed.toPace(metricUnits).toMillis() * UnitConversions.MS_TO_S * UnitConversions.S_TO_MIN;
         if (trackPoint != null) {
             if (trackPoint.hasHeartRate()) {
                 heartRate = trackPoint.getHeartRate_bpm();
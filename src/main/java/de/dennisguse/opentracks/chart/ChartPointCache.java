@@ -0,0 +1,97 @@
+package de.dennisguse.opentracks.chart;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+import de.dennisguse.opentracks.content.data.Distance;
+import de.dennisguse.opentracks.content.data.Speed;
+import de.dennisguse.opentracks.content.data.TrackPoint;
+import de.dennisguse.opentracks.stats.TrackStatistics;
+import de.dennisguse.opentracks.stats.TrackStatisticsUpdater;
+
+/**
+ * The statistics needed for {@link ChartPoint}s (total distance, total time, smoothed altitude and speed) of one track; computed once per {@link TrackPoint}.
+ * <p>
+ * {@link TrackPoint}s are expected in the order of their ids (as delivered by the {@link de.dennisguse.opentracks.content.TrackDataHub}).
+ * Already known {@link TrackPoint}s (e.g., after a reload) are looked up via binary search instead of being fed to the {@link TrackStatisticsUpdater} again.
+ * Memory: 40 bytes per {@link TrackPoint}.
+ */
+public class ChartPointCache {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final TrackStatisticsUpdater trackStatisticsUpdater = new TrackStatisticsUpdater();
+
+    private long[] trackPointIds = new long[INITIAL_CAPACITY];
+    private double[] totalDistance_m = new double[INITIAL_CAPACITY];
+    private long[] totalTime_ms = new long[INITIAL_CAPACITY];
+    private double[] altitude_m = new double[INITIAL_CAPACITY];
+    private double[] speed_mps = new double[INITIAL_CAPACITY];
+    private int size = 0;
+
+    private long lastTrackPointId = -1;
+
+    /**
+     * Adds the trackPoint to the statistics if it is not yet known.
+     *
+     * @return the index of the trackPoint's values
+     */
+    public synchronized int add(@NonNull TrackPoint trackPoint, @NonNull Distance recordingDistanceInterval) {
+        TrackPoint.Id trackPointId = trackPoint.getId();
+        if (trackPointId != null && trackPointId.getId() <= lastTrackPointId) {
+            return indexOf(trackPointId.getId());
+        }
+
+        trackStatisticsUpdater.addTrackPoint(trackPoint, recordingDistanceInterval);
+        TrackStatistics trackStatistics = trackStatisticsUpdater.getTrackStatistics();
+
+        if (size == trackPointIds.length) {
+            grow();
+        }
+        trackPointIds[size] = trackPointId != null ? trackPointId.getId() : lastTrackPointId;
+        totalDistance_m[size] = trackStatistics.getTotalDistance().toM();
+        totalTime_ms[size] = trackStatistics.getTotalTime().toMillis();
+        altitude_m[size] = trackStatisticsUpdater.getSmoothedAltitude();
+        speed_mps[size] = trackStatisticsUpdater.getSmoothedSpeed().toMPS();
+        if (trackPointId != null) {
+            lastTrackPointId = trackPointId.getId();
+        }
+        return size++;
+    }
+
+    /**
+     * Adds the trackPoint (if not yet known) and creates its {@link ChartPoint}.
+     */
+    public synchronized ChartPoint createChartPoint(@NonNull TrackPoint trackPoint, @NonNull Distance recordingDistanceInterval, boolean chartByDistance, boolean metricUnits) {
+        int index = add(trackPoint, recordingDistanceInterval);
+        return new ChartPoint(Distance.of(totalDistance_m[index]), Duration.ofMillis(totalTime_ms[index]), altitude_m[index], Speed.of(speed_mps[index]), trackPoint, chartByDistance, metricUnits);
+    }
+
+    /**
+     * @return the index of the trackPoint with the id; if unknown (e.g., was not delivered before), the index of the preceding one.
+     */
+    private int indexOf(long trackPointId) {
+        int index = Arrays.binarySearch(trackPointIds, 0, size, trackPointId);
+        if (index < 0) {
+            index = Math.max(0, -index - 2);
+        }
+        return index;
+    }
+
+    private void grow() {
+        int capacity = trackPointIds.length + (trackPointIds.length >> 1);
+        trackPointIds = Arrays.copyOf(trackPointIds, capacity);
+        totalDistance_m = Arrays.copyOf(totalDistance_m, capacity);
+        totalTime_ms = Arrays.copyOf(totalTime_ms, capacity);
+        altitude_m = Arrays.copyOf(altitude_m, capacity);
+        speed_mps = Arrays.copyOf(speed_mps, capacity);
+    }
+
+    @VisibleForTesting
+    synchronized int size() {
+        return size;
+    }
+}
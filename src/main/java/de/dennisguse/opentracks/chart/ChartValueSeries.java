@@ -18,14 +18,19 @@ package de.dennisguse.opentracks.chart;
 
 import android.content.Context;
 import android.graphics.Canvas;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Paint.Align;
 import android.graphics.Paint.Style;
 import android.graphics.Path;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import de.dennisguse.opentracks.stats.ExtremityMonitor;
 
@@ -38,6 +43,12 @@ abstract class ChartValueSeries {
 
     private static final float STROKE_WIDTH = 2f;
 
+    // Number of ChartData indices per path chunk.
+    static final int POINTS_PER_CHUNK = 1024;
+
+    // The y axis of the visible values is only narrowed if the interval shrinks at least by this factor.
+    private static final float SHRINK_THRESHOLD = 0.5f;
+
     private final int absoluteMin;
     private final int absoluteMax;
     private final int[] intervalValues;
@@ -49,7 +60,17 @@ abstract class ChartValueSeries {
     private final Paint markerPaint;
     private final ExtremityMonitor extremityMonitor = new ExtremityMonitor();
     private final NumberFormat numberFormat = NumberFormat.getIntegerInstance();
-    private final Path path = new Path();
+    private final List<PathChunk> chunks = new ArrayList<>();
+    private final Matrix matrix = new Matrix();
+    private final float[] corners = new float[4];
+    private final Path decimatedStrokePath = new Path();
+    private final Path decimatedFillPath = new Path();
+    private float[] screenPoints = new float[0];
+    private float yCorner;
+    private int matrixVersion = 0;
+    private boolean hasPathData = false;
+    private float lastX;
+    private float lastY;
 
     private int interval = 1;
     private int minMarkerValue = 0;
@@ -140,13 +161,140 @@ abstract class ChartValueSeries {
 
     protected abstract boolean drawIfChartPointHasNoData();
 
-    Path getPath() {
-        return path;
+    /**
+     * Appends a point to the path (in data coordinates); NaN values are skipped.
+     *
+     * @param index the index of the point in the {@link ChartData}
+     */
+    void appendToPath(int index, float x, float y) {
+        if (Float.isNaN(y)) {
+            return;
+        }
+
+        int chunkIndex = index / POINTS_PER_CHUNK;
+        while (chunks.size() <= chunkIndex) {
+            chunks.add(new PathChunk());
+        }
+
+        PathChunk chunk = chunks.get(chunkIndex);
+        if (chunk.isEmpty) {
+            chunk.isEmpty = false;
+            if (hasPathData) {
+                // Continue the line of the previous chunk.
+                chunk.dataPath.moveTo(lastX, lastY);
+                chunk.firstX = lastX;
+                chunk.dataPath.lineTo(x, y);
+            } else {
+                chunk.dataPath.moveTo(x, y);
+                chunk.firstX = x;
+            }
+        } else {
+            chunk.dataPath.lineTo(x, y);
+        }
+        chunk.lastX = x;
+        chunk.version = -1;
+
+        hasPathData = true;
+        lastX = x;
+        lastY = y;
+    }
+
+    void resetPath() {
+        chunks.clear();
+        hasPathData = false;
+    }
+
+    /**
+     * Sets the transformation from data to screen coordinates; the chunks are transformed lazily when drawn.
+     *
+     * @param matrix  data to screen coordinates
+     * @param yCorner the screen y coordinate of the x axis
+     */
+    void setMatrix(Matrix matrix, float yCorner) {
+        this.matrix.set(matrix);
+        this.yCorner = yCorner;
+        matrixVersion++;
+    }
+
+    /**
+     * Draws the chunks containing the points within [fromIndex, toIndex).
+     */
+    void drawPath(Canvas canvas, int fromIndex, int toIndex) {
+        if (toIndex <= fromIndex) {
+            return;
+        }
+
+        int lastChunk = Math.min(chunks.size() - 1, (toIndex - 1) / POINTS_PER_CHUNK);
+        for (int i = fromIndex / POINTS_PER_CHUNK; i <= lastChunk; i++) {
+            PathChunk chunk = getTransformedChunk(i);
+            if (chunk.isEmpty) {
+                continue;
+            }
+            canvas.drawPath(chunk.fillPath, fillPaint);
+            canvas.drawPath(chunk.strokePath, strokePaint);
+        }
+    }
+
+    /**
+     * Draws already decimated points (see {@link ChartDecimator}) instead of the chunks.
+     *
+     * @param points x, y pairs in data coordinates
+     * @param count  the number of points
+     */
+    void drawDecimatedPath(Canvas canvas, float[] points, int count) {
+        if (count == 0) {
+            return;
+        }
+
+        if (screenPoints.length < count * 2) {
+            screenPoints = Arrays.copyOf(screenPoints, Math.max(count * 2, screenPoints.length * 2));
+        }
+        matrix.mapPoints(screenPoints, 0, points, 0, count);
+
+        decimatedStrokePath.rewind();
+        decimatedStrokePath.moveTo(screenPoints[0], screenPoints[1]);
+        for (int i = 1; i < count; i++) {
+            decimatedStrokePath.lineTo(screenPoints[2 * i], screenPoints[2 * i + 1]);
+        }
+
+        decimatedFillPath.set(decimatedStrokePath);
+        decimatedFillPath.lineTo(screenPoints[2 * count - 2], yCorner);
+        decimatedFillPath.lineTo(screenPoints[0], yCorner);
+        decimatedFillPath.close();
+
+        canvas.drawPath(decimatedFillPath, fillPaint);
+        canvas.drawPath(decimatedStrokePath, strokePaint);
+    }
+
+    private PathChunk getTransformedChunk(int chunkIndex) {
+        PathChunk chunk = chunks.get(chunkIndex);
+        if (chunk.isEmpty || chunk.version == matrixVersion) {
+            return chunk;
+        }
+
+        chunk.dataPath.transform(matrix, chunk.strokePath);
+
+        // Close the filled area towards the x axis.
+        corners[0] = chunk.lastX;
+        corners[2] = chunk.firstX;
+        matrix.mapPoints(corners);
+        chunk.fillPath.set(chunk.strokePath);
+        chunk.fillPath.lineTo(corners[0], yCorner);
+        chunk.fillPath.lineTo(corners[2], yCorner);
+        chunk.fillPath.close();
+
+        chunk.version = matrixVersion;
+        return chunk;
+    }
+
+    @VisibleForTesting
+    int getChunkCount() {
+        return chunks.size();
     }
 
-    void drawPath(Canvas canvas) {
-        canvas.drawPath(path, fillPaint);
-        canvas.drawPath(path, strokePaint);
+    @VisibleForTesting
+    Path getFillPath(int chunkIndex) {
+        return getTransformedChunk(chunkIndex).fillPath;
     }
 
     /**
@@ -155,6 +303,37 @@ abstract class ChartValueSeries {
     void updateDimension() {
         double min = hasData() ? extremityMonitor.getMin() : 0.0;
         double max = hasData() ? extremityMonitor.getMax() : 1.0;
+        updateDimension(min, max);
+    }
+
+    /**
+     * Updates the y axis dimension to the visible values (e.g., while zoomed in); uses all values if visible has no data.
+     * To avoid rescaling on every scroll step, the dimension is only changed if the visible values exceed the current range or fit into a range that is at most {@link #SHRINK_THRESHOLD} of it.
+     *
+     * @return true if the dimension changed.
+     */
+    boolean updateDimension(ExtremityMonitor visible) {
+        int oldInterval = interval;
+        int oldMinMarkerValue = minMarkerValue;
+        if (!visible.hasData()) {
+            updateDimension();
+            return oldInterval != interval || oldMinMarkerValue != minMarkerValue;
+        }
+
+        double min = Math.max(visible.getMin(), absoluteMin);
+        double max = Math.min(visible.getMax(), absoluteMax);
+        boolean exceeds = min < minMarkerValue || max > maxMarkerValue;
+        int newInterval = getInterval(min, max);
+        boolean shrinks = newInterval <= interval * SHRINK_THRESHOLD;
+        if (!exceeds && !shrinks) {
+            return false;
+        }
+
+        updateDimension(min, max);
+        return oldInterval != interval || oldMinMarkerValue != minMarkerValue;
+    }
+
+    private void updateDimension(double min, double max) {
         min = Math.max(min, absoluteMin);
         max = Math.min(max, absoluteMax);
         interval = getInterval(min, max);
@@ -255,4 +434,20 @@ abstract class ChartValueSeries {
     String formatMarker(int value) {
         return numberFormat.format(value);
     }
+
+    /**
+     * Part of the path of up to {@link #POINTS_PER_CHUNK} points; only the visible chunks are transformed and drawn.
+     */
+    private static class PathChunk {
+        // The line in data coordinates (x: time or distance, y: value).
+        private final Path dataPath = new Path();
+        // Screen coordinates; derived from dataPath.
+        private final Path strokePath = new Path();
+        private final Path fillPath = new Path();
+
+        private boolean isEmpty = true;
+        private float firstX;
+        private float lastX;
+        private int version = -1;
+    }
 }
@@ -20,10 +20,10 @@ import android.content.Context;
 import android.content.Intent;
 import android.graphics.Canvas;
 import android.graphics.DashPathEffect;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Paint.Align;
 import android.graphics.Paint.Style;
-import android.graphics.Path;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.view.GestureDetector;
@@ -34,6 +34,7 @@ import android.view.ViewParent;
 import android.widget.Scroller;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import androidx.core.content.ContextCompat;
 import androidx.core.view.GestureDetectorCompat;
 
@@ -41,7 +42,6 @@ import java.text.NumberFormat;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
 import de.dennisguse.opentracks.MarkerDetailActivity;
 import de.dennisguse.opentracks.R;
@@ -65,6 +65,9 @@ public class ChartView extends View {
 
     private static final int TARGET_X_AXIS_INTERVALS = 4;
 
+    // Decimate if there are more points visible than this per pixel column.
+    private static final int DECIMATION_POINTS_PER_PIXEL = 2;
+
     private static final int MIN_ZOOM_LEVEL = 1;
     private static final int MAX_ZOOM_LEVEL = 10;
 
@@ -86,9 +89,10 @@ public class ChartView extends View {
     private final ChartValueSeries speedSeries;
     private final ChartValueSeries paceSeries;
 
-    private final List<ChartPoint> chartPoints = new ArrayList<>();
+    private final ChartData chartData;
     private final List<Marker> markers = new ArrayList<>();
     private final ExtremityMonitor xExtremityMonitor = new ExtremityMonitor();
+    private final ExtremityMonitor visibleExtremityMonitor = new ExtremityMonitor();
     private final int backgroundColor;
     private final Paint axisPaint;
     private final Paint xAxisMarkerPaint;
@@ -99,8 +103,30 @@ public class ChartView extends View {
     private final int markerWidth;
     private final int markerHeight;
     private final Scroller scroller;
+    private final Matrix pathMatrix = new Matrix();
+    private final ChartDecimator chartDecimator = new ChartDecimator();
+    private boolean decimationEnabled = true;
+    // Rasterizes the data series in the background; not running if not attached to a window.
+    // The y axis is drawn with the scales of the shown layer, so it matches the series while a rescaled layer is rendered.
+    private final ChartLayerRenderer<YScale[]> seriesRenderer = new ChartLayerRenderer<>(this, new ChartLayerRenderer.Layer<YScale[]>() {
+        @Override
+        public YScale[] drawLayer(@NonNull Canvas canvas, int left, int right) {
+            if (pathsDirty) {
+                updatePaths();
+            }
+            drawDataSeries(canvas, left, right);
+            return getYScales();
+        }
+
+        @Override
+        public Object getLock() {
+            return chartData;
+        }
+    });
     private double maxX = 1.0;
     private int zoomLevel = 1;
+    // Paths need to be transformed to screen coordinates again (data, dimensions, or zoom changed); not needed for scrolling.
+    private boolean pathsDirty = true;
 
     private int leftBorder = BORDER;
     private int topBorder = BORDER;
@@ -322,6 +348,8 @@ public class ChartView extends View {
             }
         });
 
+        chartData = new ChartData(seriesList.size());
+
         backgroundColor = ThemeUtils.getBackgroundColor(context);
 
         axisPaint = new Paint();
@@ -397,12 +425,14 @@ public class ChartView extends View {
             if (!speedSeries.isEnabled()) {
                 speedSeries.setEnabled(true);
                 paceSeries.setEnabled(false);
+                seriesRenderer.invalidate();
                 return true;
             }
         } else {
             if (!paceSeries.isEnabled()) {
                 speedSeries.setEnabled(false);
                 paceSeries.setEnabled(true);
+                seriesRenderer.invalidate();
                 return true;
             }
         }
@@ -415,16 +445,20 @@ public class ChartView extends View {
     }
 
     public void addChartPoints(List<ChartPoint> dataPoints) {
-        synchronized (chartPoints) {
-            chartPoints.addAll(dataPoints);
+        synchronized (chartData) {
+            float[] row = new float[seriesList.size()];
             for (ChartPoint dataPoint : dataPoints) {
-                xExtremityMonitor.update(dataPoint.getTimeOrDistance());
-                for (ChartValueSeries i : seriesList) {
-                    i.update(dataPoint);
+                double x = dataPoint.getTimeOrDistance();
+                xExtremityMonitor.update(x);
+                for (int i = 0; i < seriesList.size(); i++) {
+                    ChartValueSeries chartValueSeries = seriesList.get(i);
+                    chartValueSeries.update(dataPoint);
+                    row[i] = (float) chartValueSeries.extractDataFromChartPoint(dataPoint);
+                    chartValueSeries.appendToPath(chartData.size(), (float) x, row[i]);
                 }
+                chartData.add(x, row);
             }
             updateDimensions();
-            updatePaths();
         }
     }
 
@@ -432,9 +466,12 @@ public class ChartView extends View {
      * Clears all data.
      */
     public void reset() {
-        synchronized (chartPoints) {
-            chartPoints.clear();
+        synchronized (chartData) {
+            chartData.clear();
             xExtremityMonitor.reset();
+            for (ChartValueSeries chartValueSeries : seriesList) {
+                chartValueSeries.resetPath();
+            }
             zoomLevel = 1;
             updateDimensions();
         }
@@ -471,11 +508,38 @@ public class ChartView extends View {
     private void zoomIn() {
         if (canZoomIn()) {
             zoomLevel++;
-            updatePaths();
+            invalidatePaths();
             invalidate();
         }
     }
 
+    @VisibleForTesting
+    void setDecimationEnabled(boolean decimationEnabled) {
+        this.decimationEnabled = decimationEnabled;
+    }
+
+    @VisibleForTesting
+    void setZoomLevel(int zoomLevel) {
+        this.zoomLevel = Math.max(MIN_ZOOM_LEVEL, Math.min(zoomLevel, MAX_ZOOM_LEVEL));
+        invalidatePaths();
+    }
+
+    @VisibleForTesting
+    void setBackgroundRendering(boolean enabled) {
+        if (enabled) {
+            seriesRenderer.start();
+        } else {
+            seriesRenderer.stop();
+        }
+    }
+
+    private void invalidatePaths() {
+        synchronized (chartData) {
+            pathsDirty = true;
+        }
+        seriesRenderer.invalidate();
+    }
+
     private void zoomOut() {
         if (canZoomOut()) {
             zoomLevel--;
@@ -486,7 +550,7 @@ public class ChartView extends View {
                 scrollX = maxWidth;
                 scrollTo(scrollX, 0);
             }
-            updatePaths();
+            invalidatePaths();
             invalidate();
         }
     }
@@ -563,13 +627,32 @@ public class ChartView extends View {
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        updateEffectiveDimensionsIfChanged(View.MeasureSpec.getSize(widthMeasureSpec), View.MeasureSpec.getSize(heightMeasureSpec));
+        synchronized (chartData) {
+            updateEffectiveDimensionsIfChanged(View.MeasureSpec.getSize(widthMeasureSpec), View.MeasureSpec.getSize(heightMeasureSpec));
+        }
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        seriesRenderer.start();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        seriesRenderer.stop();
+        super.onDetachedFromWindow();
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
-        synchronized (chartPoints) {
+        synchronized (chartData) {
+            updateVisibleDimensions();
+            if (!seriesRenderer.isRunning() && pathsDirty) {
+                updatePaths();
+            }
+
             canvas.save();
 
             canvas.drawColor(backgroundColor);
@@ -577,7 +660,17 @@ public class ChartView extends View {
             canvas.save();
 
             clipToGraphArea(canvas);
-            drawDataSeries(canvas);
+            YScale[] yScales = null;
+            if (!seriesRenderer.isRunning()) {
+                drawDataSeries(canvas, getScrollX() + leftBorder, getScrollX() + leftBorder + effectiveWidth);
+            } else {
+                // Drawn in the background; an outdated layer is shown until the next is ready.
+                seriesRenderer.draw(canvas, getScrollX(), width, height);
+                yScales = seriesRenderer.getFrontState();
+            }
+            if (yScales == null || yScales.length != seriesList.size()) {
+                yScales = getYScales();
+            }
             drawMarker(canvas);
             drawGrid(canvas);
 
@@ -585,12 +678,12 @@ public class ChartView extends View {
 
             drawSeriesTitles(canvas);
             drawXAxis(canvas);
-            drawYAxis(canvas);
+            drawYAxis(canvas, yScales);
 
             canvas.restore();
 
             if (showPointer) {
-                drawPointer(canvas);
+                drawPointer(canvas, yScales);
             }
         }
     }
@@ -610,11 +703,28 @@ public class ChartView extends View {
      * Draws the data series.
      *
      * @param canvas the canvas
+     * @param left   the left edge of the area to draw (view coordinates)
+     * @param right  the right edge of the area to draw (view coordinates)
      */
-    private void drawDataSeries(Canvas canvas) {
-        for (ChartValueSeries chartValueSeries : seriesList) {
+    private void drawDataSeries(Canvas canvas, int left, int right) {
+        if (effectiveWidth <= 0 || right <= left) {
+            return;
+        }
+
+        // Only the points within the x range are drawn.
+        double scaleX = effectiveWidth * zoomLevel / maxX;
+        int[] indexRange = chartData.getIndexRange((left - leftBorder) / scaleX, (right - leftBorder) / scaleX);
+        boolean decimate = decimationEnabled && indexRange[1] - indexRange[0] > (right - left) * DECIMATION_POINTS_PER_PIXEL;
+
+        for (int i = 0; i < seriesList.size(); i++) {
+            ChartValueSeries chartValueSeries = seriesList.get(i);
             if (chartValueSeries.isEnabled() && chartValueSeries.hasData()) {
-                chartValueSeries.drawPath(canvas);
+                if (decimate) {
+                    int count = chartDecimator.decimate(chartData, i, indexRange[0], indexRange[1], scaleX);
+                    chartValueSeries.drawDecimatedPath(canvas, chartDecimator.getPoints(), count);
+                } else {
+                    chartValueSeries.drawPath(canvas, indexRange[0], indexRange[1]);
+                }
             }
         }
     }
@@ -776,9 +886,10 @@ public class ChartView extends View {
     /**
      * Draws the y axis.
      *
-     * @param canvas the canvas
+     * @param canvas  the canvas
+     * @param yScales the scales of the series
      */
-    private void drawYAxis(Canvas canvas) {
+    private void drawYAxis(Canvas canvas, YScale[] yScales) {
         int x = getScrollX() + leftBorder;
         int y = topBorder;
         canvas.drawLine(x, y, x, y + effectiveHeight, axisPaint);
@@ -789,7 +900,7 @@ public class ChartView extends View {
             int index = seriesList.size() - 1 - i;
             ChartValueSeries chartValueSeries = seriesList.get(index);
             if (chartValueSeries.isEnabled() && chartValueSeries.hasData() || allowIfEmpty(chartValueSeries)) {
-                markerXPosition -= drawYAxisMarkers(chartValueSeries, canvas, markerXPosition) + spacer;
+                markerXPosition -= drawYAxisMarkers(chartValueSeries, yScales[index], canvas, markerXPosition) + spacer;
             }
         }
     }
@@ -798,16 +909,16 @@ public class ChartView extends View {
      * Draws the y axis markers for a chart value series.
      *
      * @param chartValueSeries the chart value series
+     * @param yScale           the scale of the chart value series
      * @param canvas           the canvas
      * @param xPosition        the right most x position
      * @return the maximum marker width.
      */
-    private float drawYAxisMarkers(ChartValueSeries chartValueSeries, Canvas canvas, int xPosition) {
-        int interval = chartValueSeries.getInterval();
+    private float drawYAxisMarkers(ChartValueSeries chartValueSeries, YScale yScale, Canvas canvas, int xPosition) {
         float maxMarkerWidth = 0;
         for (int i = 0; i <= Y_AXIS_INTERVALS; i++) {
-            maxMarkerWidth = Math.max(maxMarkerWidth, drawYAxisMarker(chartValueSeries, canvas, xPosition,
-                    i * interval + chartValueSeries.getMinMarkerValue()));
+            maxMarkerWidth = Math.max(maxMarkerWidth, drawYAxisMarker(chartValueSeries, yScale, canvas, xPosition,
+                    i * yScale.interval + yScale.minMarkerValue));
         }
         return maxMarkerWidth;
     }
@@ -816,16 +927,17 @@ public class ChartView extends View {
      * Draws a y axis marker.
      *
      * @param chartValueSeries the chart value series
+     * @param yScale           the scale of the chart value series
      * @param canvas           the canvas
      * @param xPosition        the right most x position
      * @param yValue           the y value
      * @return the marker width.
      */
-    private float drawYAxisMarker(ChartValueSeries chartValueSeries, Canvas canvas, int xPosition, int yValue) {
+    private float drawYAxisMarker(ChartValueSeries chartValueSeries, YScale yScale, Canvas canvas, int xPosition, int yValue) {
         String marker = chartValueSeries.formatMarker(yValue);
         Paint paint = chartValueSeries.getMarkerPaint();
         Rect rect = getRect(paint, marker);
-        int yPosition = getY(chartValueSeries, yValue) + (rect.height() / 2);
+        int yPosition = getY(yScale, yValue) + (rect.height() / 2);
         canvas.drawText(marker, xPosition, yPosition, paint);
         return paint.measureText(marker);
     }
@@ -833,83 +945,80 @@ public class ChartView extends View {
     /**
      * Draws the current pointer.
      *
-     * @param canvas the canvas
+     * @param canvas  the canvas
+     * @param yScales the scales of the series
      */
-    private void drawPointer(Canvas canvas) {
-        ChartValueSeries firstChartValueSeries = null;
-        for (ChartValueSeries chartValueSeries : seriesList) {
+    private void drawPointer(Canvas canvas, YScale[] yScales) {
+        int firstSeriesIndex = -1;
+        for (int i = 0; i < seriesList.size(); i++) {
+            ChartValueSeries chartValueSeries = seriesList.get(i);
             if (chartValueSeries.isEnabled() && chartValueSeries.hasData()) {
-                firstChartValueSeries = chartValueSeries;
+                firstSeriesIndex = i;
                 break;
             }
         }
-        if (firstChartValueSeries != null && chartPoints.size() > 0) {
+        if (firstSeriesIndex != -1 && !chartData.isEmpty()) {
             int dx = getX(maxX) - pointer.getIntrinsicWidth() / 2;
-            double value = firstChartValueSeries.extractDataFromChartPoint(chartPoints.get(chartPoints.size() - 1));
-            int dy = getY(firstChartValueSeries, value) - pointer.getIntrinsicHeight();
+            double value = chartData.getValue(firstSeriesIndex, chartData.size() - 1);
+            int dy = getY(yScales[firstSeriesIndex], value) - pointer.getIntrinsicHeight();
             canvas.translate(dx, dy);
             pointer.draw(canvas);
         }
     }
 
     /**
-     * Updates paths.
-     * The path needs to be updated any time after the data or the dimensions change.
+     * Updates paths: sets the transformation from data to screen coordinates of all series (visible chunks are transformed when drawn).
+     * The path needs to be updated any time after the data, the dimensions, or the zoom level change; scrolling is done by the canvas.
      */
     private void updatePaths() {
-        synchronized (chartPoints) {
+        synchronized (chartData) {
+            float scaleX = (float) (effectiveWidth * zoomLevel / maxX);
+            int rangeHeight = effectiveHeight - 2 * yAxisOffset;
+            int yCorner = topBorder + effectiveHeight;
+
             for (ChartValueSeries chartValueSeries : seriesList) {
-                chartValueSeries.getPath().reset();
+                // Same as getY(): topBorder + yAxisOffset + (1 - (value - minMarkerValue) / effectiveSpread) * rangeHeight
+                float scaleY = -(float) rangeHeight / (chartValueSeries.getInterval() * Y_AXIS_INTERVALS);
+                pathMatrix.setScale(scaleX, scaleY);
+                pathMatrix.postTranslate(leftBorder, topBorder + yAxisOffset + rangeHeight - scaleY * chartValueSeries.getMinMarkerValue());
+
+                chartValueSeries.setMatrix(pathMatrix, yCorner);
             }
-            drawPaths();
-            closePaths();
+            pathsDirty = false;
         }
     }
 
-    private void drawPaths() {
-        boolean[] hasMoved = new boolean[seriesList.size()];
+    /**
+     * Scales the y axis of the series to the values within the visible x range.
+     */
+    private void updateVisibleDimensions() {
+        if (effectiveWidth <= 0 || chartData.isEmpty()) {
+            return;
+        }
 
-        for (ChartPoint dataPoint : chartPoints) {
-            for (int i = 0; i < seriesList.size(); i++) {
-                ChartValueSeries chartValueSeries = seriesList.get(i);
+        double scaleX = effectiveWidth * zoomLevel / maxX;
+        int[] indexRange = chartData.getIndexRange(getScrollX() / scaleX, (getScrollX() + effectiveWidth) / scaleX);
 
-                if (!chartValueSeries.isChartPointValid(dataPoint)) {
-                    continue;
-                }
-
-                double value = chartValueSeries.extractDataFromChartPoint(dataPoint);
-                Path path = chartValueSeries.getPath();
-                int x = getX(dataPoint.getTimeOrDistance());
-                int y = getY(chartValueSeries, value);
-                if (!hasMoved[i]) {
-                    hasMoved[i] = true;
-                    path.moveTo(x, y);
-                } else {
-                    path.lineTo(x, y);
-                }
-            }
+        boolean changed = false;
+        for (int i = 0; i < seriesList.size(); i++) {
+            chartData.getExtremity(i, indexRange[0], indexRange[1], visibleExtremityMonitor);
+            changed |= seriesList.get(i).updateDimension(visibleExtremityMonitor);
+        }
+        if (changed) {
+            invalidatePaths();
         }
     }
 
-    private void closePaths() {
-        for (ChartValueSeries chartValueSeries : seriesList) {
-            Optional<ChartPoint> firstValid = chartPoints.stream().filter(chartValueSeries::isChartPointValid)
-                    .findFirst();
-            Optional<ChartPoint> lastValid = chartPoints.stream().filter(chartValueSeries::isChartPointValid)
-                    .reduce((first, second) -> second);
-
-            if (firstValid.isPresent() && lastValid.isPresent()) {
-                Path path = chartValueSeries.getPath();
-
-                int yCorner = topBorder + effectiveHeight;
-
-                path.lineTo(getX(lastValid.get().getTimeOrDistance()), yCorner);
-                path.lineTo(getX(firstValid.get().getTimeOrDistance()), yCorner);
-
-                double value = chartValueSeries.extractDataFromChartPoint(firstValid.get());
-                path.lineTo(getX(firstValid.get().getTimeOrDistance()), getY(chartValueSeries, value));
-            }
+    /**
+     * Gets the current y axis scales of all series (same order as the series).
+     */
+    private YScale[] getYScales() {
+        YScale[] yScales = new YScale[seriesList.size()];
+        for (int i = 0; i < yScales.length; i++) {
+            ChartValueSeries chartValueSeries = seriesList.get(i);
+            yScales[i] = new YScale(chartValueSeries.getInterval(), chartValueSeries.getMinMarkerValue());
         }
+        return yScales;
     }
 
     /**
@@ -948,6 +1057,8 @@ public class ChartView extends View {
     private void updateEffectiveDimensions() {
         effectiveWidth = Math.max(0, width - leftBorder - rightBorder);
         effectiveHeight = Math.max(0, height - topBorder - bottomBorder);
+        pathsDirty = true;
+        seriesRenderer.invalidate();
     }
 
     /**
@@ -961,7 +1072,6 @@ public class ChartView extends View {
             width = newWidth;
             height = newHeight;
             updateEffectiveDimensions();
-            updatePaths();
         }
     }
 
@@ -981,12 +1091,12 @@ public class ChartView extends View {
     /**
      * Gets the y position for a value in a chart value series
      *
-     * @param chartValueSeries the chart value series
-     * @param value            the value
+     * @param yScale the scale of the chart value series
+     * @param value  the value
      */
-    private int getY(ChartValueSeries chartValueSeries, double value) {
-        int effectiveSpread = chartValueSeries.getInterval() * Y_AXIS_INTERVALS;
-        double percentage = (value - chartValueSeries.getMinMarkerValue()) / effectiveSpread;
+    private int getY(YScale yScale, double value) {
+        int effectiveSpread = yScale.interval * Y_AXIS_INTERVALS;
+        double percentage = (value - yScale.minMarkerValue) / effectiveSpread;
         int rangeHeight = effectiveHeight - 2 * yAxisOffset;
         return topBorder + yAxisOffset + (int) ((1 - percentage) * rangeHeight);
     }
@@ -1015,10 +1125,23 @@ public class ChartView extends View {
      * Returns true if the index is allowed when the chartData is empty.
      */
     private boolean allowIfEmpty(ChartValueSeries chartValueSeries) {
-        if (!chartPoints.isEmpty()) {
+        if (!chartData.isEmpty()) {
             return false;
         }
 
         return chartValueSeries.drawIfChartPointHasNoData();
     }
+
+    /**
+     * The y axis scale of a chart value series.
+     */
+    private static final class YScale {
+        final int interval;
+        final int minMarkerValue;
+
+        YScale(int interval, int minMarkerValue) {
+            this.interval = interval;
+            this.minMarkerValue = minMarkerValue;
+        }
+    }
 }
@@ -0,0 +1,133 @@
+package de.dennisguse.opentracks.chart;
+
+import java.util.Arrays;
+
+import de.dennisguse.opentracks.stats.ExtremityMonitor;
+
+/**
+ * Minimum and maximum of a {@link ChartData} series for any index range.
+ * <p>
+ * A sparse table over blocks of {@link #BLOCK_SIZE} values answers the fully covered blocks in O(1); the partially covered blocks at both ends are scanned (at most 2 * {@link #BLOCK_SIZE} values).
+ * Memory: O(n / BLOCK_SIZE * log(n / BLOCK_SIZE)); appending is O(log n) per completed block.
+ * NaN values are ignored.
+ */
+class RangeExtremityIndex {
+
+    static final int BLOCK_SIZE = 64;
+
+    private final ChartData chartData;
+    private final int series;
+
+    // [level][block]: extremity of the blocks [block, block + 2^level)
+    private float[][] min = new float[0][];
+    private float[][] max = new float[0][];
+    private int blocks = 0;
+
+    RangeExtremityIndex(ChartData chartData, int series) {
+        this.chartData = chartData;
+        this.series = series;
+    }
+
+    /**
+     * Adds the completed blocks of the {@link ChartData}.
+     */
+    void update() {
+        while ((blocks + 1) * BLOCK_SIZE <= chartData.size()) {
+            addBlock();
+        }
+    }
+
+    void clear() {
+        blocks = 0;
+    }
+
+    private void addBlock() {
+        int block = blocks;
+        ensureCapacity(block + 1);
+
+        float blockMin = Float.POSITIVE_INFINITY;
+        float blockMax = Float.NEGATIVE_INFINITY;
+        for (int i = block * BLOCK_SIZE; i < (block + 1) * BLOCK_SIZE; i++) {
+            float value = chartData.getValue(series, i);
+            if (value < blockMin) {
+                blockMin = value;
+            }
+            if (value > blockMax) {
+                blockMax = value;
+            }
+        }
+        min[0][block] = blockMin;
+        max[0][block] = blockMax;
+
+        // Entries of the higher levels that end with this block
+        for (int level = 1; level < min.length; level++) {
+            int start = block - (1 << level) + 1;
+            if (start < 0) {
+                break;
+            }
+            int half = start + (1 << (level - 1));
+            min[level][start] = Math.min(min[level - 1][start], min[level - 1][half]);
+            max[level][start] = Math.max(max[level - 1][start], max[level - 1][half]);
+        }
+
+        blocks++;
+    }
+
+    private void ensureCapacity(int blockCount) {
+        int levels = 32 - Integer.numberOfLeadingZeros(blockCount);
+        if (levels > min.length) {
+            min = Arrays.copyOf(min, levels);
+            max = Arrays.copyOf(max, levels);
+        }
+        for (int level = 0; level < levels; level++) {
+            if (min[level] == null) {
+                min[level] = new float[Math.max(16, blockCount)];
+                max[level] = new float[Math.max(16, blockCount)];
+            } else if (min[level].length < blockCount) {
+                int capacity = Math.max(blockCount, min[level].length * 2);
+                min[level] = Arrays.copyOf(min[level], capacity);
+                max[level] = Arrays.copyOf(max[level], capacity);
+            }
+        }
+    }
+
+    /**
+     * Sets the minimum and maximum of the values within [fromIndex, toIndex).
+     * The result has no data if there are only NaN values.
+     */
+    void getExtremity(int fromIndex, int toIndex, ExtremityMonitor result) {
+        result.reset();
+        if (toIndex <= fromIndex) {
+            return;
+        }
+
+        int fromBlock = (fromIndex + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int toBlock = Math.min(blocks, toIndex / BLOCK_SIZE);
+        if (fromBlock >= toBlock) {
+            scan(fromIndex, toIndex, result);
+            return;
+        }
+
+        scan(fromIndex, fromBlock * BLOCK_SIZE, result);
+        int level = 31 - Integer.numberOfLeadingZeros(toBlock - fromBlock);
+        int secondStart = toBlock - (1 << level);
+        updateIfValid(result, Math.min(min[level][fromBlock], min[level][secondStart]));
+        updateIfValid(result, Math.max(max[level][fromBlock], max[level][secondStart]));
+        scan(toBlock * BLOCK_SIZE, toIndex, result);
+    }
+
+    private void scan(int fromIndex, int toIndex, ExtremityMonitor result) {
+        for (int i = fromIndex; i < toIndex; i++) {
+            float value = chartData.getValue(series, i);
+            if (!Float.isNaN(value)) {
+                result.update(value);
+            }
+        }
+    }
+
+    private static void updateIfValid(ExtremityMonitor result, float value) {
+        if (!Float.isInfinite(value)) {
+            result.update(value);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package de.dennisguse.opentracks.content.data;
+
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+
+/**
+ * Constants for the aggregates table: rollup of the {@link TracksColumns} statistics per category and time bucket.
+ * <p>
+ * A bucket is the intersection of a week (starting Monday) and a month of the track's start time (device's local time); so it can be summed up per week, month, or year.
+ * The table is maintained by triggers on the tracks table within the same transaction.
+ * If the time zone changes, the table must be rebuilt from the tracks (see {@link #DELETE_ALL} and {@link #INSERT_FROM_TRACKS}); otherwise updates would not find the buckets of existing tracks.
+ * The maximum speed is recomputed from the tracks only if the track with the maximum speed was removed from a bucket.
+ */
+public interface AggregatesColumns extends BaseColumns {
+
+    String TABLE_NAME = "aggregates";
+    Uri CONTENT_URI = Uri.parse(ContentProviderUtils.CONTENT_BASE_URI + "/" + TABLE_NAME);
+    String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.de.dennisguse.aggregate";
+
+    // Columns
+    String CATEGORY = "category"; // track activity type
+    String YEAR = "year"; // e.g., 2021
+    String MONTH = "month"; // 1 - 12
+    String WEEK = "week"; // epoch day of the Monday of the week
+    String TRACKCOUNT = "trackcount"; // number of tracks
+    String TOTALDISTANCE = "totaldistance"; // sum of total distance
+    String TOTALTIME = "totaltime"; // sum of total time
+    String MOVINGTIME = "movingtime"; // sum of moving time
+    String MAXSPEED = "maxspeed"; // maximum speed
+    String ALTITUDE_GAIN = "elevationgain"; // sum of altitude gain
+    String ALTITUDE_LOSS = "elevationloss"; // sum of altitude loss
+
+    String CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " ("
+            + _ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + CATEGORY + " TEXT NOT NULL, "
+            + YEAR + " INTEGER NOT NULL, "
+            + MONTH + " INTEGER NOT NULL, "
+            + WEEK + " INTEGER NOT NULL, "
+            + TRACKCOUNT + " INTEGER NOT NULL DEFAULT 0, "
+            + TOTALDISTANCE + " FLOAT NOT NULL DEFAULT 0, "
+            + TOTALTIME + " INTEGER NOT NULL DEFAULT 0, "
+            + MOVINGTIME + " INTEGER NOT NULL DEFAULT 0, "
+            + MAXSPEED + " FLOAT NOT NULL DEFAULT 0, "
+            + ALTITUDE_GAIN + " FLOAT NOT NULL DEFAULT 0, "
+            + ALTITUDE_LOSS + " FLOAT NOT NULL DEFAULT 0)";
+
+    String CREATE_TABLE_INDEX = "CREATE UNIQUE INDEX " + TABLE_NAME + "_" + YEAR + "_" + MONTH + "_" + WEEK + "_" + CATEGORY + "_index ON " + TABLE_NAME + "(" + YEAR + ", " + MONTH + ", " + WEEK + ", " + CATEGORY + ")";
+
+    String DELETE_ALL = "DELETE FROM " + TABLE_NAME;
+
+    String INSERT_FROM_TRACKS = "INSERT INTO " + TABLE_NAME + " (" + CATEGORY + ", " + YEAR + ", " + MONTH + ", " + WEEK + ", " + TRACKCOUNT + ", " + TOTALDISTANCE + ", " + TOTALTIME + ", " + MOVINGTIME + ", " + MAXSPEED + ", " + ALTITUDE_GAIN + ", " + ALTITUDE_LOSS + ") "
+            + "SELECT " + Sql.category(TracksColumns.TABLE_NAME) + ", " + Sql.year(TracksColumns.TABLE_NAME) + ", " + Sql.month(TracksColumns.TABLE_NAME) + ", " + Sql.week(TracksColumns.TABLE_NAME) + ", COUNT(*), "
+            + "SUM(IFNULL(" + TracksColumns.TOTALDISTANCE + ", 0)), SUM(IFNULL(" + TracksColumns.TOTALTIME + ", 0)), SUM(IFNULL(" + TracksColumns.MOVINGTIME + ", 0)), MAX(IFNULL(" + TracksColumns.MAXSPEED + ", 0)), "
+            + "SUM(IFNULL(" + TracksColumns.ALTITUDE_GAIN + ", 0)), SUM(IFNULL(" + TracksColumns.ALTITUDE_LOSS + ", 0)) "
+            + "FROM " + TracksColumns.TABLE_NAME + " WHERE " + TracksColumns.STARTTIME + " IS NOT NULL GROUP BY 1, 2, 3, 4";
+
+    String CREATE_TRIGGER_INSERT = "CREATE TRIGGER " + TABLE_NAME + "_insert AFTER INSERT ON " + TracksColumns.TABLE_NAME + " BEGIN "
+            + Sql.add("NEW")
+            + "END";
+
+    String CREATE_TRIGGER_DELETE = "CREATE TRIGGER " + TABLE_NAME + "_delete AFTER DELETE ON " + TracksColumns.TABLE_NAME + " BEGIN "
+            + Sql.remove("OLD", "1")
+            + "END";
+
+    String CREATE_TRIGGER_UPDATE = "CREATE TRIGGER " + TABLE_NAME + "_update AFTER UPDATE OF "
+            + TracksColumns.CATEGORY + ", " + TracksColumns.STARTTIME + ", " + TracksColumns.TOTALDISTANCE + ", " + TracksColumns.TOTALTIME + ", " + TracksColumns.MOVINGTIME + ", " + TracksColumns.MAXSPEED + ", " + TracksColumns.ALTITUDE_GAIN + ", " + TracksColumns.ALTITUDE_LOSS
+            + " ON " + TracksColumns.TABLE_NAME + " BEGIN "
+            // Maximum speed only needs to be recomputed, if it decreased or the track was moved to another bucket.
+            + Sql.remove("OLD", "NOT (" + Sql.sameBucket("NEW", "OLD") + " AND IFNULL(NEW." + TracksColumns.MAXSPEED + ", 0) >= IFNULL(OLD." + TracksColumns.MAXSPEED + ", 0))")
+            + Sql.add("NEW")
+            + "END";
+
+    /**
+     * SQL snippets for the triggers.
+     */
+    class Sql {
+
+        private Sql() {
+        }
+
+        static String category(String row) {
+            return "IFNULL(" + row + "." + TracksColumns.CATEGORY + ", '')";
+        }
+
+        static String year(String row) {
+            return "CAST(strftime('%Y', " + row + "." + TracksColumns.STARTTIME + " / 1000, 'unixepoch', 'localtime') AS INTEGER)";
+        }
+
+        static String month(String row) {
+            return "CAST(strftime('%m', " + row + "." + TracksColumns.STARTTIME + " / 1000, 'unixepoch', 'localtime') AS INTEGER)";
+        }
+
+        static String week(String row) {
+            // Next Sunday (or same day) minus six days is the Monday of the week; 2440587.5 is the julian day of 1970-01-01.
+            return "CAST(julianday(" + row + "." + TracksColumns.STARTTIME + " / 1000, 'unixepoch', 'localtime', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER)";
+        }
+
+        static String bucketOf(String row) {
+            return CATEGORY + " = " + category(row) + " AND " + YEAR + " = " + year(row) + " AND " + MONTH + " = " + month(row) + " AND " + WEEK + " = " + week(row);
+        }
+
+        static String sameBucket(String row1, String row2) {
+            return category(row1) + " = " + category(row2) + " AND " + year(row1) + " = " + year(row2) + " AND " + month(row1) + " = " + month(row2) + " AND " + week(row1) + " = " + week(row2);
+        }
+
+        static String add(String row) {
+            return "INSERT OR IGNORE INTO " + TABLE_NAME + " (" + CATEGORY + ", " + YEAR + ", " + MONTH + ", " + WEEK + ") "
+                    + "SELECT " + category(row) + ", " + year(row) + ", " + month(row) + ", " + week(row) + " WHERE " + row + "." + TracksColumns.STARTTIME + " IS NOT NULL; "
+                    + "UPDATE " + TABLE_NAME + " SET "
+                    + TRACKCOUNT + " = " + TRACKCOUNT + " + 1, "
+                    + TOTALDISTANCE + " = " + TOTALDISTANCE + " + IFNULL(" + row + "." + TracksColumns.TOTALDISTANCE + ", 0), "
+                    + TOTALTIME + " = " + TOTALTIME + " + IFNULL(" + row + "." + TracksColumns.TOTALTIME + ", 0), "
+                    + MOVINGTIME + " = " + MOVINGTIME + " + IFNULL(" + row + "." + TracksColumns.MOVINGTIME + ", 0), "
+                    + MAXSPEED + " = MAX(" + MAXSPEED + ", IFNULL(" + row + "." + TracksColumns.MAXSPEED + ", 0)), "
+                    + ALTITUDE_GAIN + " = " + ALTITUDE_GAIN + " + IFNULL(" + row + "." + TracksColumns.ALTITUDE_GAIN + ", 0), "
+                    + ALTITUDE_LOSS + " = " + ALTITUDE_LOSS + " + IFNULL(" + row + "." + TracksColumns.ALTITUDE_LOSS + ", 0) "
+                    + "WHERE " + bucketOf(row) + "; ";
+        }
+
+        /**
+         * @param recomputeMaxSpeedCondition additional condition to recompute the maximum speed of the bucket
+         */
+        static String remove(String row, String recomputeMaxSpeedCondition) {
+            return "UPDATE " + TABLE_NAME + " SET "
+                    + TRACKCOUNT + " = " + TRACKCOUNT + " - 1, "
+                    + TOTALDISTANCE + " = " + TOTALDISTANCE + " - IFNULL(" + row + "." + TracksColumns.TOTALDISTANCE + ", 0), "
+                    + TOTALTIME + " = " + TOTALTIME + " - IFNULL(" + row + "." + TracksColumns.TOTALTIME + ", 0), "
+                    + MOVINGTIME + " = " + MOVINGTIME + " - IFNULL(" + row + "." + TracksColumns.MOVINGTIME + ", 0), "
+                    + ALTITUDE_GAIN + " = " + ALTITUDE_GAIN + " - IFNULL(" + row + "." + TracksColumns.ALTITUDE_GAIN + ", 0), "
+                    + ALTITUDE_LOSS + " = " + ALTITUDE_LOSS + " - IFNULL(" + row + "." + TracksColumns.ALTITUDE_LOSS + ", 0) "
+                    + "WHERE " + bucketOf(row) + "; "
+                    + "DELETE FROM " + TABLE_NAME + " WHERE " + bucketOf(row) + " AND " + TRACKCOUNT + " <= 0; "
+                    + "UPDATE " + TABLE_NAME + " SET " + MAXSPEED + " = IFNULL((SELECT MAX(t." + TracksColumns.MAXSPEED + ") FROM " + TracksColumns.TABLE_NAME + " t WHERE t." + TracksColumns.STARTTIME + " IS NOT NULL AND "
+                    + category("t") + " = " + TABLE_NAME + "." + CATEGORY + " AND " + year("t") + " = " + TABLE_NAME + "." + YEAR + " AND " + month("t") + " = " + TABLE_NAME + "." + MONTH + " AND " + week("t") + " = " + TABLE_NAME + "." + WEEK + "), 0) "
+                    + "WHERE " + bucketOf(row) + " AND " + MAXSPEED + " <= IFNULL(" + row + "." + TracksColumns.MAXSPEED + ", 0) AND " + recomputeMaxSpeedCondition + "; ";
+        }
+    }
+}
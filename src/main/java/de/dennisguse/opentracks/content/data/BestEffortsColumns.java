@@ -0,0 +1,36 @@
+package de.dennisguse.opentracks.content.data;
+
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+import de.dennisguse.opentracks.stats.BestEfforts;
+
+/**
+ * Constants for the best efforts table.
+ * One row per track and {@link BestEfforts.Type}.
+ */
+public interface BestEffortsColumns extends BaseColumns {
+
+    String TABLE_NAME = "bestefforts";
+    Uri CONTENT_URI = Uri.parse(ContentProviderUtils.CONTENT_BASE_URI + "/" + TABLE_NAME);
+    String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.de.dennisguse.besteffort";
+    String DEFAULT_SORT_ORDER = _ID;
+
+    // Columns
+    String TRACKID = "trackid"; // track id
+    String TYPE = "type"; // BestEfforts.Type
+    String VALUE = "value"; // duration in s (distance types) or speed in m/s (duration types)
+
+    String CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " ("
+            + _ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + TRACKID + " INTEGER NOT NULL, "
+            + TYPE + " INTEGER NOT NULL, "
+            + VALUE + " FLOAT NOT NULL, "
+            + "FOREIGN KEY (" + TRACKID + ") REFERENCES " + TracksColumns.TABLE_NAME + "(" + TracksColumns._ID + ") ON UPDATE CASCADE ON DELETE CASCADE"
+            + ")";
+
+    String CREATE_TABLE_INDEX = "CREATE UNIQUE INDEX " + TABLE_NAME + "_" + TRACKID + "_" + TYPE + "_index ON " + TABLE_NAME + "(" + TRACKID + ", " + TYPE + ")";
+
+    String CREATE_TABLE_INDEX_TYPE_VALUE = "CREATE INDEX " + TABLE_NAME + "_" + TYPE + "_" + VALUE + "_index ON " + TABLE_NAME + "(" + TYPE + ", " + VALUE + ")";
+}
@@ -0,0 +1,34 @@
+package de.dennisguse.opentracks.content.data;
+
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+import de.dennisguse.opentracks.stats.Histogram;
+
+/**
+ * Constants for the histograms table.
+ * One row per track and {@link Histogram.Type}; the bins are stored as compact BLOB (see {@link Histogram#toBytes()}).
+ */
+public interface HistogramsColumns extends BaseColumns {
+
+    String TABLE_NAME = "histograms";
+    Uri CONTENT_URI = Uri.parse(ContentProviderUtils.CONTENT_BASE_URI + "/" + TABLE_NAME);
+    String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.de.dennisguse.histogram";
+    String DEFAULT_SORT_ORDER = _ID;
+
+    // Columns
+    String TRACKID = "trackid"; // track id
+    String TYPE = "type"; // Histogram.Type
+    String DATA = "data"; // encoded bins
+
+    String CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " ("
+            + _ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + TRACKID + " INTEGER NOT NULL, "
+            + TYPE + " INTEGER NOT NULL, "
+            + DATA + " BLOB NOT NULL, "
+            + "FOREIGN KEY (" + TRACKID + ") REFERENCES " + TracksColumns.TABLE_NAME + "(" + TracksColumns._ID + ") ON UPDATE CASCADE ON DELETE CASCADE"
+            + ")";
+
+    String CREATE_TABLE_INDEX = "CREATE UNIQUE INDEX " + TABLE_NAME + "_" + TRACKID + "_" + TYPE + "_index ON " + TABLE_NAME + "(" + TRACKID + ", " + TYPE + ")";
+}
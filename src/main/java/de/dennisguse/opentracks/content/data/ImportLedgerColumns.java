@@ -0,0 +1,38 @@
+package de.dennisguse.opentracks.content.data;
+
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+
+/**
+ * Constants for the import ledger table.
+ * One row per imported source document; used to skip unchanged files without parsing them.
+ * Rows are removed together with the imported track.
+ */
+public interface ImportLedgerColumns extends BaseColumns {
+
+    String TABLE_NAME = "importledger";
+    Uri CONTENT_URI = Uri.parse(ContentProviderUtils.CONTENT_BASE_URI + "/" + TABLE_NAME);
+    String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.de.dennisguse.importledger";
+    String DEFAULT_SORT_ORDER = _ID;
+
+    // Columns
+    String SOURCE = "source"; // uri of the source document
+    String SIZE = "size"; // size of the source document in bytes
+    String MODIFIED = "modified"; // last modified time of the source document (epoch ms)
+    String HASH = "hash"; // SHA-256 of the source document
+    String TRACKID = "trackid"; // imported track id
+
+    String CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " ("
+            + _ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + SOURCE + " TEXT NOT NULL, "
+            + SIZE + " INTEGER NOT NULL, "
+            + MODIFIED + " INTEGER NOT NULL, "
+            + HASH + " BLOB NOT NULL, "
+            + TRACKID + " INTEGER NOT NULL, "
+            + "FOREIGN KEY (" + TRACKID + ") REFERENCES " + TracksColumns.TABLE_NAME + "(" + TracksColumns._ID + ") ON UPDATE CASCADE ON DELETE CASCADE"
+            + ")";
+
+    String CREATE_TABLE_INDEX = "CREATE UNIQUE INDEX " + TABLE_NAME + "_" + SOURCE + "_index ON " + TABLE_NAME + "(" + SOURCE + ")";
+}
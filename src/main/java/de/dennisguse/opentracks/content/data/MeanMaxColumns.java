@@ -0,0 +1,34 @@
+package de.dennisguse.opentracks.content.data;
+
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+import de.dennisguse.opentracks.stats.MeanMaxCalculator;
+
+/**
+ * Constants for the mean-maximal curves table.
+ * One row per track and {@link MeanMaxCalculator.Sensor}; the curve is stored as BLOB (see {@link MeanMaxCalculator.Curve#toBytes()}).
+ */
+public interface MeanMaxColumns extends BaseColumns {
+
+    String TABLE_NAME = "meanmax";
+    Uri CONTENT_URI = Uri.parse(ContentProviderUtils.CONTENT_BASE_URI + "/" + TABLE_NAME);
+    String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.de.dennisguse.meanmax";
+    String DEFAULT_SORT_ORDER = _ID;
+
+    // Columns
+    String TRACKID = "trackid"; // track id
+    String SENSOR = "sensor"; // MeanMaxCalculator.Sensor
+    String DATA = "data"; // encoded curve
+
+    String CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " ("
+            + _ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + TRACKID + " INTEGER NOT NULL, "
+            + SENSOR + " INTEGER NOT NULL, "
+            + DATA + " BLOB NOT NULL, "
+            + "FOREIGN KEY (" + TRACKID + ") REFERENCES " + TracksColumns.TABLE_NAME + "(" + TracksColumns._ID + ") ON UPDATE CASCADE ON DELETE CASCADE"
+            + ")";
+
+    String CREATE_TABLE_INDEX = "CREATE UNIQUE INDEX " + TABLE_NAME + "_" + TRACKID + "_" + SENSOR + "_index ON " + TABLE_NAME + "(" + TRACKID + ", " + SENSOR + ")";
+}
@@ -16,14 +16,22 @@
 
 package de.dennisguse.opentracks.content.provider;
 
+import android.content.ContentProvider;
+import android.content.ContentProviderClient;
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteException;
 import android.location.Location;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.RemoteException;
 import android.text.TextUtils;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -32,25 +40,38 @@ import androidx.annotation.VisibleForTesting;
 import java.io.File;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Predicate;
 
 import de.dennisguse.opentracks.BuildConfig;
+import de.dennisguse.opentracks.content.data.AggregatesColumns;
+import de.dennisguse.opentracks.content.data.BestEffortsColumns;
 import de.dennisguse.opentracks.content.data.Distance;
+import de.dennisguse.opentracks.content.data.HistogramsColumns;
+import de.dennisguse.opentracks.content.data.ImportLedgerColumns;
 import de.dennisguse.opentracks.content.data.Marker;
 import de.dennisguse.opentracks.content.data.MarkerColumns;
+import de.dennisguse.opentracks.content.data.MeanMaxColumns;
 import de.dennisguse.opentracks.content.data.Speed;
 import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.data.TrackPoint;
 import de.dennisguse.opentracks.content.data.TrackPointsColumns;
 import de.dennisguse.opentracks.content.data.TracksColumns;
+import de.dennisguse.opentracks.io.file.importer.ImportLedger;
+import de.dennisguse.opentracks.stats.BestEfforts;
+import de.dennisguse.opentracks.stats.Histogram;
+import de.dennisguse.opentracks.stats.MeanMaxCalculator;
 import de.dennisguse.opentracks.stats.SensorStatistics;
 import de.dennisguse.opentracks.stats.TrackStatistics;
 import de.dennisguse.opentracks.util.FileUtils;
 import de.dennisguse.opentracks.util.UUIDUtils;
+import de.dennisguse.opentracks.viewmodels.AggregatedStatistics;
 
 /**
  * {@link ContentProviderUtils} implementation.
@@ -169,6 +190,59 @@ public class ContentProviderUtils {
         FileUtils.deleteDirectoryRecurse(dir);
     }
 
+    /**
+     * Writes a consistent snapshot of the whole database into a file; can be used while recording.
+     *
+     * @return true if successful.
+     */
+    public boolean createDatabaseSnapshot(@NonNull File snapshotFile) {
+        return withLocalContentProvider(provider -> provider.createSnapshot(snapshotFile));
+    }
+
+    /**
+     * Replaces the whole database with a snapshot; older schema versions are upgraded.
+     * Must not be used while recording.
+     *
+     * @return true if successful; the database is not changed if the snapshot is invalid.
+     */
+    public boolean restoreDatabaseSnapshot(@NonNull File snapshotFile) {
+        return withLocalContentProvider(provider -> provider.restoreSnapshot(snapshotFile));
+    }
+
+    /**
+     * Recomputes the aggregates table from the tracks; needed if the time zone changed (see {@link AggregatesColumns}).
+     *
+     * @return true if successful.
+     */
+    public boolean rebuildAggregates() {
+        Bundle result = contentResolver.call(Uri.parse(CONTENT_BASE_URI), CustomContentProvider.METHOD_REBUILD_AGGREGATES, null, null);
+        return result != null && result.getBoolean(CustomContentProvider.RESULT_SUCCESS);
+    }
+
+    /**
+     * Snapshots take file paths and are therefore not exposed via {@link ContentResolver#call(Uri, String, String, Bundle)}.
+     * They directly use the provider instance running in this process.
+     */
+    @SuppressWarnings("deprecation")
+    private boolean withLocalContentProvider(Predicate<CustomContentProvider> method) {
+        ContentProviderClient client = contentResolver.acquireContentProviderClient(AUTHORITY_PACKAGE);
+        if (client == null) {
+            Log.e(TAG, "Content provider not available");
+            return false;
+        }
+        try {
+            ContentProvider provider = client.getLocalContentProvider();
+            if (!(provider instanceof CustomContentProvider)) {
+                Log.e(TAG, "Content provider is not running in this process");
+                return false;
+            }
+            return method.test((CustomContentProvider) provider);
+        } finally {
+            // ContentProviderClient.close() requires API 24.
+            client.release();
+        }
+    }
+
     public void deleteTracks(Context context, @NonNull List<Track.Id> trackIds) {
         // Delete track folder resources.
         for (Track.Id trackId : trackIds) {
@@ -230,6 +304,51 @@ public class ContentProviderUtils {
         return null;
     }
 
+    /**
+     * Gets the ids of all tracks ordered by id.
+     *
+     * @param afterTrackId only return ids greater than this one; `null` to ignore
+     */
+    @NonNull
+    public List<Track.Id> getTrackIds(@Nullable Track.Id afterTrackId) {
+        String selection = null;
+        String[] selectionArgs = null;
+        if (afterTrackId != null) {
+            selection = TracksColumns._ID + ">?";
+            selectionArgs = new String[]{Long.toString(afterTrackId.getId())};
+        }
+
+        ArrayList<Track.Id> trackIds = new ArrayList<>();
+        try (Cursor cursor = contentResolver.query(TracksColumns.CONTENT_URI, new String[]{TracksColumns._ID}, selection, selectionArgs, TracksColumns._ID)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                trackIds.ensureCapacity(cursor.getCount());
+                do {
+                    trackIds.add(new Track.Id(cursor.getLong(0)));
+                } while (cursor.moveToNext());
+            }
+        }
+        return trackIds;
+    }
+
+    /**
+     * Gets the ids of all tracks without any stored {@link BestEfforts} ordered by id.
+     */
+    @NonNull
+    public List<Track.Id> getTrackIdsWithoutBestEfforts() {
+        String selection = TracksColumns._ID + " NOT IN (SELECT " + BestEffortsColumns.TRACKID + " FROM " + BestEffortsColumns.TABLE_NAME + ")";
+
+        ArrayList<Track.Id> trackIds = new ArrayList<>();
+        try (Cursor cursor = contentResolver.query(TracksColumns.CONTENT_URI, new String[]{TracksColumns._ID}, selection, null, TracksColumns._ID)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                trackIds.ensureCapacity(cursor.getCount());
+                do {
+                    trackIds.add(new Track.Id(cursor.getLong(0)));
+                } while (cursor.moveToNext());
+            }
+        }
+        return trackIds;
+    }
+
     /**
      * Gets a track cursor.
      * The caller owns the returned cursor and is responsible for closing it.
@@ -263,9 +382,43 @@ public class ContentProviderUtils {
         contentResolver.update(TracksColumns.CONTENT_URI, createContentValues(track), TracksColumns._ID + "=?", new String[]{Long.toString(track.getId().getId())});
     }
 
+    /**
+     * Updates only the {@link TrackStatistics} of several tracks within one transaction.
+     * NOTE: name, description, category, and icon are not touched.
+     *
+     * @param tracks the tracks; must have an id
+     */
+    public void updateTrackStatistics(@NonNull List<Track> tracks) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(tracks.size());
+        for (Track track : tracks) {
+            addUpdateTrackStatistics(operations, track);
+        }
+        applyBatch(operations);
+    }
+
+    /**
+     * Adds the operation of {@link #updateTrackStatistics(List)} for one track; to be applied with {@link #applyBatch(ArrayList)}.
+     */
+    public void addUpdateTrackStatistics(@NonNull ArrayList<ContentProviderOperation> operations, @NonNull Track track) {
+        operations.add(ContentProviderOperation.newUpdate(TracksColumns.CONTENT_URI)
+                .withValues(createContentValues(track.getTrackStatistics()))
+                .withSelection(TracksColumns._ID + "=?", new String[]{Long.toString(track.getId().getId())})
+                .build());
+    }
+
+    /**
+     * Applies the operations within one transaction.
+     */
+    public void applyBatch(@NonNull ArrayList<ContentProviderOperation> operations) {
+        try {
+            contentResolver.applyBatch(AUTHORITY_PACKAGE, operations);
+        } catch (RemoteException | OperationApplicationException e) {
+            throw new SQLiteException("Failed to apply batch", e);
+        }
+    }
+
     private ContentValues createContentValues(Track track) {
-        ContentValues values = new ContentValues();
-        TrackStatistics trackStatistics = track.getTrackStatistics();
+        ContentValues values = createContentValues(track.getTrackStatistics());
 
         if (track.getId() != null) {
             values.put(TracksColumns._ID, track.getId().getId());
@@ -274,6 +427,13 @@ public class ContentProviderUtils {
         values.put(TracksColumns.NAME, track.getName());
         values.put(TracksColumns.DESCRIPTION, track.getDescription());
         values.put(TracksColumns.CATEGORY, track.getCategory());
+        values.put(TracksColumns.ICON, track.getIcon());
+
+        return values;
+    }
+
+    private ContentValues createContentValues(TrackStatistics trackStatistics) {
+        ContentValues values = new ContentValues();
         if (trackStatistics.getStartTime() != null) {
             values.put(TracksColumns.STARTTIME, trackStatistics.getStartTime().toEpochMilli());
         }
@@ -290,11 +450,264 @@ public class ContentProviderUtils {
         values.put(TracksColumns.MAX_ALTITUDE, trackStatistics.getMaxAltitude());
         values.put(TracksColumns.ALTITUDE_GAIN, trackStatistics.getTotalAltitudeGain());
         values.put(TracksColumns.ALTITUDE_LOSS, trackStatistics.getTotalAltitudeLoss());
-        values.put(TracksColumns.ICON, track.getIcon());
 
         return values;
     }
 
+    /**
+     * Replaces the {@link BestEfforts} of a track within one transaction.
+     *
+     * @param trackId     the track id
+     * @param bestEfforts the best efforts; types without a value are removed
+     */
+    public void updateBestEfforts(@NonNull Track.Id trackId, @NonNull BestEfforts bestEfforts) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        addUpdateBestEfforts(operations, trackId, bestEfforts);
+        applyBatch(operations);
+    }
+
+    /**
+     * Adds the operations of {@link #updateBestEfforts(Track.Id, BestEfforts)}; to be applied with {@link #applyBatch(ArrayList)}.
+     */
+    public void addUpdateBestEfforts(@NonNull ArrayList<ContentProviderOperation> operations, @NonNull Track.Id trackId, @NonNull BestEfforts bestEfforts) {
+        operations.add(ContentProviderOperation.newDelete(BestEffortsColumns.CONTENT_URI)
+                .withSelection(BestEffortsColumns.TRACKID + "=?", new String[]{Long.toString(trackId.getId())})
+                .build());
+        for (Map.Entry<BestEfforts.Type, Double> entry : bestEfforts.getValues().entrySet()) {
+            operations.add(ContentProviderOperation.newInsert(BestEffortsColumns.CONTENT_URI)
+                    .withValue(BestEffortsColumns.TRACKID, trackId.getId())
+                    .withValue(BestEffortsColumns.TYPE, entry.getKey().type_db)
+                    .withValue(BestEffortsColumns.VALUE, entry.getValue())
+                    .build());
+        }
+    }
+
+    @NonNull
+    public BestEfforts getBestEfforts(@NonNull Track.Id trackId) {
+        BestEfforts bestEfforts = new BestEfforts();
+        try (Cursor cursor = contentResolver.query(BestEffortsColumns.CONTENT_URI, new String[]{BestEffortsColumns.TYPE, BestEffortsColumns.VALUE}, BestEffortsColumns.TRACKID + "=?", new String[]{Long.toString(trackId.getId())}, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                do {
+                    bestEfforts.setValue(BestEfforts.Type.getById(cursor.getInt(0)), cursor.getDouble(1));
+                } while (cursor.moveToNext());
+            }
+        }
+        return bestEfforts;
+    }
+
+    /**
+     * Gets the best results of one {@link BestEfforts.Type} across all tracks (i.e., personal records); best first.
+     *
+     * @param type     the type
+     * @param maxCount the maximum number of records
+     */
+    @NonNull
+    public List<BestEfforts.Record> getPersonalRecords(@NonNull BestEfforts.Type type, int maxCount) {
+        String sortOrder = BestEffortsColumns.VALUE + (type.isDistance() ? " ASC" : " DESC") + " LIMIT " + maxCount;
+
+        List<BestEfforts.Record> records = new ArrayList<>();
+        try (Cursor cursor = contentResolver.query(BestEffortsColumns.CONTENT_URI, new String[]{BestEffortsColumns.TRACKID, BestEffortsColumns.VALUE}, BestEffortsColumns.TYPE + "=?", new String[]{Integer.toString(type.type_db)}, sortOrder)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                do {
+                    records.add(new BestEfforts.Record(new Track.Id(cursor.getLong(0)), type, cursor.getDouble(1)));
+                } while (cursor.moveToNext());
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Replaces the {@link Histogram}s of a track within one transaction.
+     *
+     * @param trackId    the track id
+     * @param histograms the histograms; missing types are removed
+     */
+    public void updateHistograms(@NonNull Track.Id trackId, @NonNull Map<Histogram.Type, Histogram> histograms) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        addUpdateHistograms(operations, trackId, histograms);
+        applyBatch(operations);
+    }
+
+    /**
+     * Adds the operations of {@link #updateHistograms(Track.Id, Map)}; to be applied with {@link #applyBatch(ArrayList)}.
+     */
+    public void addUpdateHistograms(@NonNull ArrayList<ContentProviderOperation> operations, @NonNull Track.Id trackId, @NonNull Map<Histogram.Type, Histogram> histograms) {
+        operations.add(ContentProviderOperation.newDelete(HistogramsColumns.CONTENT_URI)
+                .withSelection(HistogramsColumns.TRACKID + "=?", new String[]{Long.toString(trackId.getId())})
+                .build());
+        for (Histogram histogram : histograms.values()) {
+            operations.add(ContentProviderOperation.newInsert(HistogramsColumns.CONTENT_URI)
+                    .withValue(HistogramsColumns.TRACKID, trackId.getId())
+                    .withValue(HistogramsColumns.TYPE, histogram.getType().type_db)
+                    .withValue(HistogramsColumns.DATA, histogram.toBytes())
+                    .build());
+        }
+    }
+
+    @Nullable
+    public Histogram getHistogram(@NonNull Track.Id trackId, @NonNull Histogram.Type type) {
+        return getMergedHistogram(type, Collections.singletonList(trackId));
+    }
+
+    /**
+     * Merges the {@link Histogram}s of several tracks (without reading their trackpoints).
+     *
+     * @param type     the type
+     * @param trackIds the tracks; null for all tracks
+     * @return null if none of the tracks has such a histogram.
+     */
+    @Nullable
+    public Histogram getMergedHistogram(@NonNull Histogram.Type type, @Nullable List<Track.Id> trackIds) {
+        String selection = HistogramsColumns.TYPE + "=?";
+        if (trackIds != null) {
+            selection += " AND " + HistogramsColumns.TRACKID + " IN (" + TextUtils.join(ID_SEPARATOR, trackIds.stream().map(Track.Id::getId).toArray()) + ")";
+        }
+
+        Histogram histogram = null;
+        try (Cursor cursor = contentResolver.query(HistogramsColumns.CONTENT_URI, new String[]{HistogramsColumns.DATA}, selection, new String[]{Integer.toString(type.type_db)}, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                histogram = new Histogram(type);
+                do {
+                    histogram.merge(Histogram.fromBytes(type, cursor.getBlob(0)));
+                } while (cursor.moveToNext());
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Replaces the mean-maximal curves of a track within one transaction.
+     *
+     * @param trackId the track id
+     * @param curves  the curves; missing sensors are removed
+     */
+    public void updateMeanMaxCurves(@NonNull Track.Id trackId, @NonNull Map<MeanMaxCalculator.Sensor, MeanMaxCalculator.Curve> curves) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        addUpdateMeanMaxCurves(operations, trackId, curves);
+        applyBatch(operations);
+    }
+
+    /**
+     * Adds the operations of {@link #updateMeanMaxCurves(Track.Id, Map)}; to be applied with {@link #applyBatch(ArrayList)}.
+     */
+    public void addUpdateMeanMaxCurves(@NonNull ArrayList<ContentProviderOperation> operations, @NonNull Track.Id trackId, @NonNull Map<MeanMaxCalculator.Sensor, MeanMaxCalculator.Curve> curves) {
+        operations.add(ContentProviderOperation.newDelete(MeanMaxColumns.CONTENT_URI)
+                .withSelection(MeanMaxColumns.TRACKID + "=?", new String[]{Long.toString(trackId.getId())})
+                .build());
+        for (Map.Entry<MeanMaxCalculator.Sensor, MeanMaxCalculator.Curve> curve : curves.entrySet()) {
+            operations.add(ContentProviderOperation.newInsert(MeanMaxColumns.CONTENT_URI)
+                    .withValue(MeanMaxColumns.TRACKID, trackId.getId())
+                    .withValue(MeanMaxColumns.SENSOR, curve.getKey().type_db)
+                    .withValue(MeanMaxColumns.DATA, curve.getValue().toBytes())
+                    .build());
+        }
+    }
+
+    /**
+     * @return null if the track has no such curve.
+     */
+    @Nullable
+    public MeanMaxCalculator.Curve getMeanMaxCurve(@NonNull Track.Id trackId, @NonNull MeanMaxCalculator.Sensor sensor) {
+        String selection = MeanMaxColumns.TRACKID + "=? AND " + MeanMaxColumns.SENSOR + "=?";
+        String[] selectionArgs = new String[]{Long.toString(trackId.getId()), Integer.toString(sensor.type_db)};
+        try (Cursor cursor = contentResolver.query(MeanMaxColumns.CONTENT_URI, new String[]{MeanMaxColumns.DATA}, selection, selectionArgs, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                return MeanMaxCalculator.Curve.fromBytes(cursor.getBlob(0));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Inserts or replaces the entry of the entry's source document.
+     */
+    public void insertImportLedgerEntry(@NonNull ImportLedger.Entry entry) {
+        ContentValues values = new ContentValues();
+        values.put(ImportLedgerColumns.SOURCE, entry.getSource().toString());
+        values.put(ImportLedgerColumns.SIZE, entry.getSize());
+        values.put(ImportLedgerColumns.MODIFIED, entry.getModified());
+        values.put(ImportLedgerColumns.HASH, entry.getHash());
+        values.put(ImportLedgerColumns.TRACKID, entry.getTrackId().getId());
+        contentResolver.insert(ImportLedgerColumns.CONTENT_URI, values);
+    }
+
+    /**
+     * @param source the uri of the imported source document
+     * @return null if the source document was not imported or its track was deleted.
+     */
+    @Nullable
+    public ImportLedger.Entry getImportLedgerEntry(@NonNull Uri source) {
+        String[] projection = {ImportLedgerColumns.SIZE, ImportLedgerColumns.MODIFIED, ImportLedgerColumns.HASH, ImportLedgerColumns.TRACKID};
+        try (Cursor cursor = contentResolver.query(ImportLedgerColumns.CONTENT_URI, projection, ImportLedgerColumns.SOURCE + "=?", new String[]{source.toString()}, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                return new ImportLedger.Entry(source, cursor.getLong(0), cursor.getLong(1), cursor.getBlob(2), new Track.Id(cursor.getLong(3)));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the statistics of all tracks aggregated per category from the aggregates table (i.e., without reading the tracks).
+     *
+     * @param timeFilter the time range
+     * @param date       a day within the time range (local time); ignored for {@link AggregatedStatistics.TimeFilter#ALL}
+     */
+    @NonNull
+    public AggregatedStatistics getAggregatedStatistics(@NonNull AggregatedStatistics.TimeFilter timeFilter, @NonNull LocalDate date) {
+        String selection;
+        String[] selectionArgs;
+        switch (timeFilter) {
+            case ALL:
+                selection = null;
+                selectionArgs = null;
+                break;
+            case YEAR:
+                selection = AggregatesColumns.YEAR + "=?";
+                selectionArgs = new String[]{Integer.toString(date.getYear())};
+                break;
+            case MONTH:
+                selection = AggregatesColumns.YEAR + "=? AND " + AggregatesColumns.MONTH + "=?";
+                selectionArgs = new String[]{Integer.toString(date.getYear()), Integer.toString(date.getMonthValue())};
+                break;
+            case WEEK:
+                LocalDate monday = date.minusDays(date.getDayOfWeek().getValue() - 1);
+                selection = AggregatesColumns.WEEK + "=?";
+                selectionArgs = new String[]{Long.toString(monday.toEpochDay())};
+                break;
+            default:
+                throw new RuntimeException("Not implemented: " + timeFilter);
+        }
+
+        String[] projection = new String[]{
+                AggregatesColumns.CATEGORY,
+                "SUM(" + AggregatesColumns.TRACKCOUNT + ")",
+                "SUM(" + AggregatesColumns.TOTALDISTANCE + ")",
+                "SUM(" + AggregatesColumns.TOTALTIME + ")",
+                "SUM(" + AggregatesColumns.MOVINGTIME + ")",
+                "MAX(" + AggregatesColumns.MAXSPEED + ")",
+                "SUM(" + AggregatesColumns.ALTITUDE_GAIN + ")",
+                "SUM(" + AggregatesColumns.ALTITUDE_LOSS + ")"
+        };
+
+        List<AggregatedStatistics.AggregatedStatistic> aggregatedStatistics = new ArrayList<>();
+        try (Cursor cursor = contentResolver.query(AggregatesColumns.CONTENT_URI, projection, selection, selectionArgs, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                do {
+                    TrackStatistics trackStatistics = new TrackStatistics();
+                    trackStatistics.setTotalDistance(Distance.of(cursor.getDouble(2)));
+                    trackStatistics.setTotalTime(Duration.ofMillis(cursor.getLong(3)));
+                    trackStatistics.setMovingTime(Duration.ofMillis(cursor.getLong(4)));
+                    trackStatistics.setMaxSpeed(Speed.of(cursor.getDouble(5)));
+                    trackStatistics.setTotalAltitudeGain(cursor.getFloat(6));
+                    trackStatistics.setTotalAltitudeLoss(cursor.getFloat(7));
+
+                    aggregatedStatistics.add(new AggregatedStatistics.AggregatedStatistic(cursor.getString(0), trackStatistics, cursor.getInt(1)));
+                } while (cursor.moveToNext());
+            }
+        }
+        return AggregatedStatistics.of(aggregatedStatistics);
+    }
+
     public Marker createMarker(Cursor cursor) {
         int idIndex = cursor.getColumnIndexOrThrow(MarkerColumns._ID);
         int nameIndex = cursor.getColumnIndexOrThrow(MarkerColumns.NAME);
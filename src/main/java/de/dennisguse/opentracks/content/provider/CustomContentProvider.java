@@ -17,9 +17,12 @@
 package de.dennisguse.opentracks.content.provider;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.SQLException;
@@ -27,21 +30,41 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Process;
 import android.text.TextUtils;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import de.dennisguse.opentracks.content.data.AggregatesColumns;
+import de.dennisguse.opentracks.content.data.BestEffortsColumns;
+import de.dennisguse.opentracks.content.data.HistogramsColumns;
+import de.dennisguse.opentracks.content.data.ImportLedgerColumns;
 import de.dennisguse.opentracks.content.data.MarkerColumns;
+import de.dennisguse.opentracks.content.data.MeanMaxColumns;
 import de.dennisguse.opentracks.content.data.TrackPoint;
 import de.dennisguse.opentracks.content.data.TrackPointsColumns;
 import de.dennisguse.opentracks.content.data.TracksColumns;
+import de.dennisguse.opentracks.services.TrackRecordingServiceStatus;
 
 /**
- * A {@link ContentProvider} that handles access to track points, tracks, and markers tables.
+ * A {@link ContentProvider} that handles access to track points, tracks, markers, best efforts, histograms, mean-maximal curves, and import ledger tables.
+ * The aggregates table is maintained by database triggers and therefore read-only.
  * <p>
  * Data consistency is enforced using Foreign Key Constraints within the database incl. cascading deletes.
  *
@@ -53,9 +76,20 @@ public class CustomContentProvider extends ContentProvider {
 
     private static final String SQL_LIST_DELIMITER = ",";
 
+    /**
+     * {@link #call(String, String, Bundle)}: rebuilds the aggregates table from the tracks (e.g., after the time zone changed).
+     */
+    static final String METHOD_REBUILD_AGGREGATES = "rebuildAggregates";
+    static final String RESULT_SUCCESS = "success";
+
     private final UriMatcher uriMatcher;
 
-    private SQLiteDatabase db;
+    private volatile SQLiteDatabase db;
+
+    /**
+     * Shared by all database accesses; exclusive while the database is replaced (see {@link #restoreSnapshot(File)}).
+     */
+    private final ReentrantReadWriteLock databaseLock = new ReentrantReadWriteLock();
 
     /**
      * The string representing the query that compute sensor stats from trackpoints table.
@@ -102,6 +136,16 @@ public class CustomContentProvider extends ContentProvider {
         uriMatcher.addURI(ContentProviderUtils.AUTHORITY_PACKAGE, MarkerColumns.CONTENT_URI.getPath(), UrlType.MARKERS.ordinal());
         uriMatcher.addURI(ContentProviderUtils.AUTHORITY_PACKAGE, MarkerColumns.CONTENT_URI.getPath() + "/#", UrlType.MARKERS_BY_ID.ordinal());
         uriMatcher.addURI(ContentProviderUtils.AUTHORITY_PACKAGE, MarkerColumns.CONTENT_URI_BY_TRACKID.getPath() + "/*", UrlType.MARKERS_BY_TRACKID.ordinal());
+
+        uriMatcher.addURI(ContentProviderUtils.AUTHORITY_PACKAGE, BestEffortsColumns.CONTENT_URI.getPath(), UrlType.BEST_EFFORTS.ordinal());
+
+        uriMatcher.addURI(ContentProviderUtils.AUTHORITY_PACKAGE, HistogramsColumns.CONTENT_URI.getPath(), UrlType.HISTOGRAMS.ordinal());
+
+        uriMatcher.addURI(ContentProviderUtils.AUTHORITY_PACKAGE, MeanMaxColumns.CONTENT_URI.getPath(), UrlType.MEAN_MAX.ordinal());
+
+        uriMatcher.addURI(ContentProviderUtils.AUTHORITY_PACKAGE, AggregatesColumns.CONTENT_URI.getPath(), UrlType.AGGREGATES.ordinal());
+
+        uriMatcher.addURI(ContentProviderUtils.AUTHORITY_PACKAGE, ImportLedgerColumns.CONTENT_URI.getPath(), UrlType.IMPORT_LEDGER.ordinal());
     }
 
     @Override
@@ -143,25 +187,43 @@ public class CustomContentProvider extends ContentProvider {
             case MARKERS:
                 table = MarkerColumns.TABLE_NAME;
                 break;
+            case BEST_EFFORTS:
+                table = BestEffortsColumns.TABLE_NAME;
+                break;
+            case HISTOGRAMS:
+                table = HistogramsColumns.TABLE_NAME;
+                break;
+            case MEAN_MAX:
+                table = MeanMaxColumns.TABLE_NAME;
+                break;
+            case IMPORT_LEDGER:
+                table = ImportLedgerColumns.TABLE_NAME;
+                break;
             default:
                 throw new IllegalArgumentException("Unknown URL " + url);
         }
 
         Log.w(TAG, "Deleting table " + table);
         int count;
+        Lock lock = databaseLock.readLock();
+        lock.lock();
         try {
-            db.beginTransaction();
-            count = db.delete(table, where, selectionArgs);
-            db.setTransactionSuccessful();
-        } finally {
-            db.endTransaction();
-        }
-        getContext().getContentResolver().notifyChange(url, null, false);
+            try {
+                db.beginTransaction();
+                count = db.delete(table, where, selectionArgs);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            getContext().getContentResolver().notifyChange(url, null, false);
 
-        if (shouldVacuum) {
-            // If a potentially large amount of data was deleted, reclaim its space.
-            Log.i(TAG, "Vacuuming the database.");
-            db.execSQL("VACUUM");
+            if (shouldVacuum) {
+                // If a potentially large amount of data was deleted, reclaim its space.
+                Log.i(TAG, "Vacuuming the database.");
+                db.execSQL("VACUUM");
+            }
+        } finally {
+            lock.unlock();
         }
         return count;
     }
@@ -183,6 +245,16 @@ public class CustomContentProvider extends ContentProvider {
             case MARKERS_BY_ID:
             case MARKERS_BY_TRACKID:
                 return MarkerColumns.CONTENT_ITEMTYPE;
+            case BEST_EFFORTS:
+                return BestEffortsColumns.CONTENT_TYPE;
+            case HISTOGRAMS:
+                return HistogramsColumns.CONTENT_TYPE;
+            case MEAN_MAX:
+                return MeanMaxColumns.CONTENT_TYPE;
+            case AGGREGATES:
+                return AggregatesColumns.CONTENT_TYPE;
+            case IMPORT_LEDGER:
+                return ImportLedgerColumns.CONTENT_TYPE;
             default:
                 throw new IllegalArgumentException("Unknown URL " + url);
         }
@@ -194,12 +266,15 @@ public class CustomContentProvider extends ContentProvider {
             initialValues = new ContentValues();
         }
         Uri result;
+        Lock lock = databaseLock.readLock();
+        lock.lock();
         try {
             db.beginTransaction();
             result = insertContentValues(url, getUrlType(url), initialValues);
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
+            lock.unlock();
         }
         getContext().getContentResolver().notifyChange(url, null, false);
         return result;
@@ -208,6 +283,8 @@ public class CustomContentProvider extends ContentProvider {
     @Override
     public int bulkInsert(@NonNull Uri url, @NonNull ContentValues[] valuesBulk) {
         int numInserted;
+        Lock lock = databaseLock.readLock();
+        lock.lock();
         try {
             // Use a transaction in order to make the insertions run as a single batch
             db.beginTransaction();
@@ -223,15 +300,48 @@ public class CustomContentProvider extends ContentProvider {
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
+            lock.unlock();
         }
         getContext().getContentResolver().notifyChange(url, null, false);
         return numInserted;
     }
 
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations) throws OperationApplicationException {
+        ContentProviderResult[] results;
+        Lock lock = databaseLock.readLock();
+        lock.lock();
+        try {
+            // Use a transaction in order to make the operations run as a single batch
+            db.beginTransaction();
+            results = super.applyBatch(operations);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            lock.unlock();
+        }
+        return results;
+    }
+
     @Override
     public Cursor query(@NonNull Uri url, String[] projection, String selection, String[] selectionArgs, String sort) {
+        Lock lock = databaseLock.readLock();
+        lock.lock();
+        try {
+            Cursor cursor = queryDatabase(url, projection, selection, selectionArgs, sort);
+            // Fill the first window while the database cannot be replaced.
+            cursor.getCount();
+            return cursor;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Cursor queryDatabase(@NonNull Uri url, String[] projection, String selection, String[] selectionArgs, String sort) {
         SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
         String sortOrder = null;
+        String groupBy = null;
         switch (getUrlType(url)) {
             case TRACKPOINTS:
                 queryBuilder.setTables(TrackPointsColumns.TABLE_NAME);
@@ -272,10 +382,32 @@ public class CustomContentProvider extends ContentProvider {
                 queryBuilder.setTables(MarkerColumns.TABLE_NAME);
                 queryBuilder.appendWhere(MarkerColumns.TRACKID + " IN (" + TextUtils.join(SQL_LIST_DELIMITER, ContentProviderUtils.parseTrackIdsFromUri(url)) + ")");
                 break;
+            case BEST_EFFORTS:
+                queryBuilder.setTables(BestEffortsColumns.TABLE_NAME);
+                sortOrder = sort != null ? sort : BestEffortsColumns.DEFAULT_SORT_ORDER;
+                break;
+            case HISTOGRAMS:
+                queryBuilder.setTables(HistogramsColumns.TABLE_NAME);
+                sortOrder = sort != null ? sort : HistogramsColumns.DEFAULT_SORT_ORDER;
+                break;
+            case MEAN_MAX:
+                queryBuilder.setTables(MeanMaxColumns.TABLE_NAME);
+                sortOrder = sort != null ? sort : MeanMaxColumns.DEFAULT_SORT_ORDER;
+                break;
+            case AGGREGATES:
+                // Sums up all buckets per category
+                queryBuilder.setTables(AggregatesColumns.TABLE_NAME);
+                groupBy = AggregatesColumns.CATEGORY;
+                sortOrder = sort;
+                break;
+            case IMPORT_LEDGER:
+                queryBuilder.setTables(ImportLedgerColumns.TABLE_NAME);
+                sortOrder = sort != null ? sort : ImportLedgerColumns.DEFAULT_SORT_ORDER;
+                break;
             default:
                 throw new IllegalArgumentException("Unknown url " + url);
         }
-        Cursor cursor = queryBuilder.query(db, projection, selection, selectionArgs, null, null, sortOrder);
+        Cursor cursor = queryBuilder.query(db, projection, selection, selectionArgs, groupBy, null, sortOrder);
         cursor.setNotificationUri(getContext().getContentResolver(), url);
         return cursor;
     }
@@ -323,17 +455,189 @@ public class CustomContentProvider extends ContentProvider {
                 throw new IllegalArgumentException("Unknown url " + url);
         }
         int count;
+        Lock lock = databaseLock.readLock();
+        lock.lock();
         try {
             db.beginTransaction();
             count = db.update(table, values, whereClause, selectionArgs);
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
+            lock.unlock();
         }
         getContext().getContentResolver().notifyChange(url, null, false);
         return count;
     }
 
+    @Override
+    public Bundle call(@NonNull String method, @Nullable String arg, @Nullable Bundle extras) {
+        // The provider is exported (see ShareContentProvider); only this app may use these methods.
+        if (Binder.getCallingUid() != Process.myUid()) {
+            throw new SecurityException("Method " + method + " is not available to other apps");
+        }
+
+        boolean success;
+        switch (method) {
+            case METHOD_REBUILD_AGGREGATES:
+                success = rebuildAggregates();
+                break;
+            default:
+                return super.call(method, arg, extras);
+        }
+
+        Bundle result = new Bundle();
+        result.putBoolean(RESULT_SUCCESS, success);
+        return result;
+    }
+
+    /**
+     * Recomputes all buckets in the current time zone (see {@link AggregatesColumns}).
+     */
+    private boolean rebuildAggregates() {
+        Lock lock = databaseLock.readLock();
+        lock.lock();
+        try {
+            db.beginTransaction();
+            try {
+                db.execSQL(AggregatesColumns.DELETE_ALL);
+                db.execSQL(AggregatesColumns.INSERT_FROM_TRACKS);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } catch (SQLException e) {
+            Log.e(TAG, "Unable to rebuild aggregates", e);
+            return false;
+        } finally {
+            lock.unlock();
+        }
+
+        getContext().getContentResolver().notifyChange(AggregatesColumns.CONTENT_URI, null, false);
+        return true;
+    }
+
+    /**
+     * Writes a consistent copy of the database; can be used while a track is recorded.
+     * Only available in-process (see {@link ContentProviderUtils#createDatabaseSnapshot(File)}).
+     */
+    boolean createSnapshot(File snapshotFile) {
+        SQLiteDatabase.deleteDatabase(snapshotFile);
+        Lock lock = databaseLock.readLock();
+        lock.lock();
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                // SQLite >= 3.27: copies within a read transaction of a separate read-only connection.
+                // So, the primary connection (and thus writers) are not blocked if the database uses write-ahead logging.
+                try (SQLiteDatabase snapshotSource = SQLiteDatabase.openDatabase(db.getPath(), null, SQLiteDatabase.OPEN_READONLY)) {
+                    snapshotSource.execSQL("VACUUM INTO ?", new Object[]{snapshotFile.getAbsolutePath()});
+                }
+                return true;
+            }
+
+            // Writers are blocked while copying the database file and the committed content of the write-ahead log (if any).
+            File databaseFile = new File(db.getPath());
+            File walFile = new File(db.getPath() + "-wal");
+            File snapshotWalFile = new File(snapshotFile.getPath() + "-wal");
+            db.beginTransaction();
+            try {
+                copy(databaseFile, snapshotFile);
+                if (walFile.exists()) {
+                    copy(walFile, snapshotWalFile);
+                }
+            } finally {
+                db.endTransaction();
+            }
+
+            // Merge the write-ahead log into the snapshot file.
+            try (SQLiteDatabase snapshot = SQLiteDatabase.openDatabase(snapshotFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READWRITE);
+                 Cursor cursor = snapshot.rawQuery("PRAGMA journal_mode=DELETE", null)) {
+                cursor.moveToFirst();
+            }
+            return true;
+        } catch (IOException | SQLException e) {
+            Log.e(TAG, "Unable to create database snapshot", e);
+            SQLiteDatabase.deleteDatabase(snapshotFile);
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the database with a snapshot (see {@link CustomSQLiteOpenHelper#validateAndUpgrade(Context, File)}).
+     * The current database is only replaced if the snapshot is valid and was copied completely; not possible while recording.
+     * Only available in-process (see {@link ContentProviderUtils#restoreDatabaseSnapshot(File)}).
+     */
+    boolean restoreSnapshot(File snapshotFile) {
+        if (TrackRecordingServiceStatus.isAnyTrackRecording()) {
+            Log.w(TAG, "Cannot restore database while recording");
+            return false;
+        }
+
+        Context context = getContext();
+        try {
+            CustomSQLiteOpenHelper.validateAndUpgrade(context, snapshotFile);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Invalid database snapshot", e);
+            return false;
+        }
+
+        // Copy next to the database first, so the database is kept if that fails.
+        File databaseFile = new File(db.getPath());
+        File restoreFile = new File(databaseFile.getPath() + ".restore");
+        try {
+            copy(snapshotFile, restoreFile);
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to restore database snapshot", e);
+            restoreFile.delete();
+            return false;
+        }
+
+        boolean success;
+        Lock lock = databaseLock.writeLock();
+        lock.lock();
+        try {
+            if (TrackRecordingServiceStatus.isAnyTrackRecording()) {
+                Log.w(TAG, "Cannot restore database while recording");
+                restoreFile.delete();
+                return false;
+            }
+
+            db.close();
+            // Atomically replaces the database file; the old database stays in place if this fails.
+            boolean replaced = restoreFile.renameTo(databaseFile);
+            if (replaced) {
+                // Belong to the replaced database.
+                for (String suffix : new String[]{"-wal", "-shm", "-journal"}) {
+                    new File(databaseFile.getPath() + suffix).delete();
+                }
+            } else {
+                Log.e(TAG, "Unable to replace database");
+                restoreFile.delete();
+            }
+
+            success = onCreate(context) && replaced;
+        } finally {
+            lock.unlock();
+        }
+
+        for (Uri url : new Uri[]{TracksColumns.CONTENT_URI, TrackPointsColumns.CONTENT_URI_BY_ID, MarkerColumns.CONTENT_URI, BestEffortsColumns.CONTENT_URI, HistogramsColumns.CONTENT_URI, MeanMaxColumns.CONTENT_URI, AggregatesColumns.CONTENT_URI, ImportLedgerColumns.CONTENT_URI}) {
+            context.getContentResolver().notifyChange(url, null, false);
+        }
+        return success;
+    }
+
+    private static void copy(File src, File dst) throws IOException {
+        try (FileChannel in = new FileInputStream(src).getChannel();
+             FileChannel out = new FileOutputStream(dst).getChannel()) {
+            long position = 0;
+            long size = in.size();
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+    }
+
     @NonNull
     private UrlType getUrlType(Uri url) {
         UrlType[] urlTypes = UrlType.values();
@@ -360,6 +664,14 @@ public class CustomContentProvider extends ContentProvider {
                 return insertTrack(url, contentValues);
             case MARKERS:
                 return insertMarker(url, contentValues);
+            case BEST_EFFORTS:
+                return insertBestEffort(url, contentValues);
+            case HISTOGRAMS:
+                return insertHistogram(url, contentValues);
+            case MEAN_MAX:
+                return insertMeanMax(url, contentValues);
+            case IMPORT_LEDGER:
+                return insertImportLedgerEntry(url, contentValues);
             default:
                 throw new IllegalArgumentException("Unknown url " + url);
         }
@@ -393,6 +705,38 @@ public class CustomContentProvider extends ContentProvider {
         throw new SQLException("Failed to insert a marker " + url);
     }
 
+    private Uri insertBestEffort(Uri url, ContentValues contentValues) {
+        long rowId = db.insertWithOnConflict(BestEffortsColumns.TABLE_NAME, BestEffortsColumns._ID, contentValues, SQLiteDatabase.CONFLICT_REPLACE);
+        if (rowId >= 0) {
+            return ContentUris.appendId(BestEffortsColumns.CONTENT_URI.buildUpon(), rowId).build();
+        }
+        throw new SQLException("Failed to insert a best effort " + url);
+    }
+
+    private Uri insertHistogram(Uri url, ContentValues contentValues) {
+        long rowId = db.insertWithOnConflict(HistogramsColumns.TABLE_NAME, HistogramsColumns._ID, contentValues, SQLiteDatabase.CONFLICT_REPLACE);
+        if (rowId >= 0) {
+            return ContentUris.appendId(HistogramsColumns.CONTENT_URI.buildUpon(), rowId).build();
+        }
+        throw new SQLException("Failed to insert a histogram " + url);
+    }
+
+    private Uri insertMeanMax(Uri url, ContentValues contentValues) {
+        long rowId = db.insertWithOnConflict(MeanMaxColumns.TABLE_NAME, MeanMaxColumns._ID, contentValues, SQLiteDatabase.CONFLICT_REPLACE);
+        if (rowId >= 0) {
+            return ContentUris.appendId(MeanMaxColumns.CONTENT_URI.buildUpon(), rowId).build();
+        }
+        throw new SQLException("Failed to insert a mean-maximal curve " + url);
+    }
+
+    private Uri insertImportLedgerEntry(Uri url, ContentValues contentValues) {
+        long rowId = db.insertWithOnConflict(ImportLedgerColumns.TABLE_NAME, ImportLedgerColumns._ID, contentValues, SQLiteDatabase.CONFLICT_REPLACE);
+        if (rowId >= 0) {
+            return ContentUris.appendId(ImportLedgerColumns.CONTENT_URI.buildUpon(), rowId).build();
+        }
+        throw new SQLException("Failed to insert an import ledger entry " + url);
+    }
+
     @VisibleForTesting
     enum UrlType {
         TRACKPOINTS,
@@ -403,6 +747,11 @@ public class CustomContentProvider extends ContentProvider {
         TRACKS_SENSOR_STATS,
         MARKERS,
         MARKERS_BY_ID,
-        MARKERS_BY_TRACKID
+        MARKERS_BY_TRACKID,
+        BEST_EFFORTS,
+        HISTOGRAMS,
+        MEAN_MAX,
+        AGGREGATES,
+        IMPORT_LEDGER
     }
 }
@@ -4,14 +4,21 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
 
 import androidx.annotation.VisibleForTesting;
 
+import java.io.File;
 import java.util.UUID;
 
+import de.dennisguse.opentracks.content.data.AggregatesColumns;
+import de.dennisguse.opentracks.content.data.BestEffortsColumns;
+import de.dennisguse.opentracks.content.data.HistogramsColumns;
+import de.dennisguse.opentracks.content.data.ImportLedgerColumns;
 import de.dennisguse.opentracks.content.data.MarkerColumns;
+import de.dennisguse.opentracks.content.data.MeanMaxColumns;
 import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.data.TrackPointsColumns;
 import de.dennisguse.opentracks.content.data.TracksColumns;
@@ -25,7 +32,7 @@ public class CustomSQLiteOpenHelper extends SQLiteOpenHelper {
 
     private static final String TAG = CustomSQLiteOpenHelper.class.getSimpleName();
 
-    private static final int DATABASE_VERSION = 31;
+    private static final int DATABASE_VERSION = 37;
 
     @VisibleForTesting
     public static final String DATABASE_NAME = "database.db";
@@ -44,6 +51,31 @@ public class CustomSQLiteOpenHelper extends SQLiteOpenHelper {
         super(context, databaseName, null, databaseVersion);
     }
 
+    /**
+     * Checks that a database file (e.g., a backup) can replace the current database and upgrades it to the current schema.
+     *
+     * @throws SQLiteException if the file is not an intact database or has a newer schema version.
+     */
+    public static void validateAndUpgrade(Context context, File databaseFile) {
+        try (SQLiteDatabase db = SQLiteDatabase.openDatabase(databaseFile.getAbsolutePath(), null, SQLiteDatabase.OPEN_READONLY)) {
+            int version = db.getVersion();
+            if (version <= 0 || version > DATABASE_VERSION) {
+                throw new SQLiteException("Unsupported database version " + version + " (current: " + DATABASE_VERSION + ")");
+            }
+            if (!db.isDatabaseIntegrityOk()) {
+                throw new SQLiteException("Database integrity check failed");
+            }
+        }
+
+        CustomSQLiteOpenHelper databaseHelper = new CustomSQLiteOpenHelper(context, databaseFile.getAbsolutePath());
+        try {
+            // Runs onUpgrade() if necessary.
+            databaseHelper.getWritableDatabase();
+        } finally {
+            databaseHelper.close();
+        }
+    }
+
     @Override
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(TrackPointsColumns.CREATE_TABLE);
@@ -54,6 +86,25 @@ public class CustomSQLiteOpenHelper extends SQLiteOpenHelper {
 
         db.execSQL(MarkerColumns.CREATE_TABLE);
         db.execSQL(MarkerColumns.CREATE_TABLE_INDEX);
+
+        db.execSQL(BestEffortsColumns.CREATE_TABLE);
+        db.execSQL(BestEffortsColumns.CREATE_TABLE_INDEX);
+        db.execSQL(BestEffortsColumns.CREATE_TABLE_INDEX_TYPE_VALUE);
+
+        db.execSQL(HistogramsColumns.CREATE_TABLE);
+        db.execSQL(HistogramsColumns.CREATE_TABLE_INDEX);
+
+        db.execSQL(AggregatesColumns.CREATE_TABLE);
+        db.execSQL(AggregatesColumns.CREATE_TABLE_INDEX);
+        db.execSQL(AggregatesColumns.CREATE_TRIGGER_INSERT);
+        db.execSQL(AggregatesColumns.CREATE_TRIGGER_UPDATE);
+        db.execSQL(AggregatesColumns.CREATE_TRIGGER_DELETE);
+
+        db.execSQL(ImportLedgerColumns.CREATE_TABLE);
+        db.execSQL(ImportLedgerColumns.CREATE_TABLE_INDEX);
+
+        db.execSQL(MeanMaxColumns.CREATE_TABLE);
+        db.execSQL(MeanMaxColumns.CREATE_TABLE_INDEX);
     }
 
     @Override
@@ -85,6 +136,24 @@ public class CustomSQLiteOpenHelper extends SQLiteOpenHelper {
                 case 31:
                     upgradeFrom30to31(db);
                     break;
+                case 32:
+                    upgradeFrom31to32(db);
+                    break;
+                case 33:
+                    upgradeFrom32to33(db);
+                    break;
+                case 34:
+                    upgradeFrom33to34(db);
+                    break;
+                case 35:
+                    upgradeFrom34to35(db);
+                    break;
+                case 36:
+                    upgradeFrom35to36(db);
+                    break;
+                case 37:
+                    upgradeFrom36to37(db);
+                    break;
 
                 default:
                     throw new RuntimeException("Not implemented: upgrade to " + toVersion);
@@ -121,6 +190,24 @@ public class CustomSQLiteOpenHelper extends SQLiteOpenHelper {
                 case 30:
                     downgradeFrom31to30(db);
                     break;
+                case 31:
+                    downgradeFrom32to31(db);
+                    break;
+                case 32:
+                    downgradeFrom33to32(db);
+                    break;
+                case 33:
+                    downgradeFrom34to33(db);
+                    break;
+                case 34:
+                    downgradeFrom35to34(db);
+                    break;
+                case 35:
+                    downgradeFrom36to35(db);
+                    break;
+                case 36:
+                    downgradeFrom37to36(db);
+                    break;
                 default:
                     throw new RuntimeException("Not implemented: downgrade to " + toVersion);
             }
@@ -427,4 +514,158 @@ public class CustomSQLiteOpenHelper extends SQLiteOpenHelper {
         db.setTransactionSuccessful();
         db.endTransaction();
     }
+
+    private void upgradeFrom31to32(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("CREATE TABLE bestefforts (_id INTEGER PRIMARY KEY AUTOINCREMENT, trackid INTEGER NOT NULL, type INTEGER NOT NULL, value FLOAT NOT NULL, FOREIGN KEY (trackid) REFERENCES tracks(_id) ON UPDATE CASCADE ON DELETE CASCADE)");
+        db.execSQL("CREATE UNIQUE INDEX bestefforts_trackid_type_index ON bestefforts(trackid, type)");
+        db.execSQL("CREATE INDEX bestefforts_type_value_index ON bestefforts(type, value)");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    private void downgradeFrom32to31(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("DROP TABLE bestefforts");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    private void upgradeFrom32to33(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("CREATE TABLE histograms (_id INTEGER PRIMARY KEY AUTOINCREMENT, trackid INTEGER NOT NULL, type INTEGER NOT NULL, data BLOB NOT NULL, FOREIGN KEY (trackid) REFERENCES tracks(_id) ON UPDATE CASCADE ON DELETE CASCADE)");
+        db.execSQL("CREATE UNIQUE INDEX histograms_trackid_type_index ON histograms(trackid, type)");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    private void downgradeFrom33to32(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("DROP TABLE histograms");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    private void upgradeFrom33to34(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("CREATE TABLE aggregates (_id INTEGER PRIMARY KEY AUTOINCREMENT, category TEXT NOT NULL, year INTEGER NOT NULL, month INTEGER NOT NULL, week INTEGER NOT NULL, trackcount INTEGER NOT NULL DEFAULT 0, totaldistance FLOAT NOT NULL DEFAULT 0, totaltime INTEGER NOT NULL DEFAULT 0, movingtime INTEGER NOT NULL DEFAULT 0, maxspeed FLOAT NOT NULL DEFAULT 0, elevationgain FLOAT NOT NULL DEFAULT 0, elevationloss FLOAT NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE UNIQUE INDEX aggregates_year_month_week_category_index ON aggregates(year, month, week, category)");
+
+        // Buckets by UTC (see upgradeFrom36to37()).
+        db.execSQL("CREATE TRIGGER aggregates_insert AFTER INSERT ON tracks BEGIN "
+                + "INSERT OR IGNORE INTO aggregates (category, year, month, week) SELECT IFNULL(NEW.category, ''), CAST(strftime('%Y', NEW.starttime / 1000, 'unixepoch') AS INTEGER), CAST(strftime('%m', NEW.starttime / 1000, 'unixepoch') AS INTEGER), CAST(julianday(NEW.starttime / 1000, 'unixepoch', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER) WHERE NEW.starttime IS NOT NULL; "
+                + "UPDATE aggregates SET trackcount = trackcount + 1, totaldistance = totaldistance + IFNULL(NEW.totaldistance, 0), totaltime = totaltime + IFNULL(NEW.totaltime, 0), movingtime = movingtime + IFNULL(NEW.movingtime, 0), maxspeed = MAX(maxspeed, IFNULL(NEW.maxspeed, 0)), elevationgain = elevationgain + IFNULL(NEW.elevationgain, 0), elevationloss = elevationloss + IFNULL(NEW.elevationloss, 0) WHERE category = IFNULL(NEW.category, '') AND year = CAST(strftime('%Y', NEW.starttime / 1000, 'unixepoch') AS INTEGER) AND month = CAST(strftime('%m', NEW.starttime / 1000, 'unixepoch') AS INTEGER) AND week = CAST(julianday(NEW.starttime / 1000, 'unixepoch', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER); "
+                + "END");
+        db.execSQL("CREATE TRIGGER aggregates_update AFTER UPDATE OF category, starttime, totaldistance, totaltime, movingtime, maxspeed, elevationgain, elevationloss ON tracks BEGIN "
+                + "UPDATE aggregates SET trackcount = trackcount - 1, totaldistance = totaldistance - IFNULL(OLD.totaldistance, 0), totaltime = totaltime - IFNULL(OLD.totaltime, 0), movingtime = movingtime - IFNULL(OLD.movingtime, 0), elevationgain = elevationgain - IFNULL(OLD.elevationgain, 0), elevationloss = elevationloss - IFNULL(OLD.elevationloss, 0) WHERE category = IFNULL(OLD.category, '') AND year = CAST(strftime('%Y', OLD.starttime / 1000, 'unixepoch') AS INTEGER) AND month = CAST(strftime('%m', OLD.starttime / 1000, 'unixepoch') AS INTEGER) AND week = CAST(julianday(OLD.starttime / 1000, 'unixepoch', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER); "
+                + "DELETE FROM aggregates WHERE category = IFNULL(OLD.category, '') AND year = CAST(strftime('%Y', OLD.starttime / 1000, 'unixepoch') AS INTEGER) AND month = CAST(strftime('%m', OLD.starttime / 1000, 'unixepoch') AS INTEGER) AND week = CAST(julianday(OLD.starttime / 1000, 'unixepoch', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER) AND trackcount <= 0; "
+                + "UPDATE aggregates SET maxspeed = IFNULL((SELECT MAX(t.maxspeed) FROM tracks t WHERE t.starttime IS NOT NULL AND IFNULL(t.category, '') = aggregates.category AND CAST(strftime('%Y', t.starttime / 1000, 'unixepoch') AS INTEGER) = aggregates.year AND CAST(strftime('%m', t.starttime / 1000, 'unixepoch') AS INTEGER) = aggregates.month AND CAST(julianday(t.starttime / 1000, 'unixepoch', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER) = aggregates.week), 0) WHERE category = IFNULL(OLD.category, '') AND year = CAST(strftime('%Y', OLD.starttime / 1000, 'unixepoch') AS INTEGER) AND month = CAST(strftime('%m', OLD.starttime / 1000, 'unixepoch') AS INTEGER) AND week = CAST(julianday(OLD.starttime / 1000, 'unixepoch', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER) AND maxspeed <= IFNULL(OLD.maxspeed, 0) AND NOT (IFNULL(NEW.category, '') = IFNULL(OLD.category, '') AND CAST(strftime('%Y', NEW.starttime / 1000, 'unixepoch') AS INTEGER) = CAST(strftime('%Y', OLD.starttime / 1000, 'unixepoch') AS INTEGER) AND CAST(strftime('%m', NEW.starttime / 1000, 'unixepoch') AS INTEGER) = CAST(strftime('%m', OLD.starttime / 1000, 'unixepoch') AS INTEGER) AND CAST(julianday(NEW.starttime / 1000, 'unixepoch', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER) = CAST(julianday(OLD.starttime / 1000, 'unixepoch', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER) AND IFNULL(NEW.maxspeed, 0) >= IFNULL(OLD.maxspeed, 0)); "
+                + "INSERT OR IGNORE INTO aggregates (category, year, month, week) SELECT IFNULL(NEW.category, ''), CAST(strftime('%Y', NEW.starttime / 1000, 'unixepoch') AS INTEGER), CAST(strftime('%m', NEW.starttime / 1000, 'unixepoch') AS INTEGER), CAST(julianday(NEW.starttime / 1000, 'unixepoch', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER) WHERE NEW.starttime IS NOT NULL; "
+                + "UPDATE aggregates SET trackcount = trackcount + 1, totaldistance = totaldistance + IFNULL(NEW.totaldistance, 0), totaltime = totaltime + IFNULL(NEW.totaltime, 0), movingtime = movingtime + IFNULL(NEW.movingtime, 0), maxspeed = MAX(maxspeed, IFNULL(NEW.maxspeed, 0)), elevationgain = elevationgain + IFNULL(NEW.elevationgain, 0), elevationloss = elevationloss + IFNULL(NEW.elevationloss, 0) WHERE category = IFNULL(NEW.category, '') AND year = CAST(strftime('%Y', NEW.starttime / 1000, 'unixepoch') AS INTEGER) AND month = CAST(strftime('%m', NEW.starttime / 1000, 'unixepoch') AS INTEGER) AND week = CAST(julianday(NEW.starttime / 1000, 'unixepoch', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER); "
+                + "END");
+        db.execSQL("CREATE TRIGGER aggregates_delete AFTER DELETE ON tracks BEGIN "
+                + "UPDATE aggregates SET trackcount = trackcount - 1, totaldistance = totaldistance - IFNULL(OLD.totaldistance, 0), totaltime = totaltime - IFNULL(OLD.totaltime, 0), movingtime = movingtime - IFNULL(OLD.movingtime, 0), elevationgain = elevationgain - IFNULL(OLD.elevationgain, 0), elevationloss = elevationloss - IFNULL(OLD.elevationloss, 0) WHERE category = IFNULL(OLD.category, '') AND year = CAST(strftime('%Y', OLD.starttime / 1000, 'unixepoch') AS INTEGER) AND month = CAST(strftime('%m', OLD.starttime / 1000, 'unixepoch') AS INTEGER) AND week = CAST(julianday(OLD.starttime / 1000, 'unixepoch', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER); "
+                + "DELETE FROM aggregates WHERE category = IFNULL(OLD.category, '') AND year = CAST(strftime('%Y', OLD.starttime / 1000, 'unixepoch') AS INTEGER) AND month = CAST(strftime('%m', OLD.starttime / 1000, 'unixepoch') AS INTEGER) AND week = CAST(julianday(OLD.starttime / 1000, 'unixepoch', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER) AND trackcount <= 0; "
+                + "UPDATE aggregates SET maxspeed = IFNULL((SELECT MAX(t.maxspeed) FROM tracks t WHERE t.starttime IS NOT NULL AND IFNULL(t.category, '') = aggregates.category AND CAST(strftime('%Y', t.starttime / 1000, 'unixepoch') AS INTEGER) = aggregates.year AND CAST(strftime('%m', t.starttime / 1000, 'unixepoch') AS INTEGER) = aggregates.month AND CAST(julianday(t.starttime / 1000, 'unixepoch', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER) = aggregates.week), 0) WHERE category = IFNULL(OLD.category, '') AND year = CAST(strftime('%Y', OLD.starttime / 1000, 'unixepoch') AS INTEGER) AND month = CAST(strftime('%m', OLD.starttime / 1000, 'unixepoch') AS INTEGER) AND week = CAST(julianday(OLD.starttime / 1000, 'unixepoch', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER) AND maxspeed <= IFNULL(OLD.maxspeed, 0) AND 1; "
+                + "END");
+
+        db.execSQL("INSERT INTO aggregates (category, year, month, week, trackcount, totaldistance, totaltime, movingtime, maxspeed, elevationgain, elevationloss) SELECT IFNULL(tracks.category, ''), CAST(strftime('%Y', tracks.starttime / 1000, 'unixepoch') AS INTEGER), CAST(strftime('%m', tracks.starttime / 1000, 'unixepoch') AS INTEGER), CAST(julianday(tracks.starttime / 1000, 'unixepoch', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER), COUNT(*), SUM(IFNULL(totaldistance, 0)), SUM(IFNULL(totaltime, 0)), SUM(IFNULL(movingtime, 0)), MAX(IFNULL(maxspeed, 0)), SUM(IFNULL(elevationgain, 0)), SUM(IFNULL(elevationloss, 0)) FROM tracks WHERE starttime IS NOT NULL GROUP BY 1, 2, 3, 4");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    private void downgradeFrom34to33(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("DROP TRIGGER aggregates_insert");
+        db.execSQL("DROP TRIGGER aggregates_update");
+        db.execSQL("DROP TRIGGER aggregates_delete");
+        db.execSQL("DROP TABLE aggregates");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    private void upgradeFrom34to35(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("CREATE TABLE importledger (_id INTEGER PRIMARY KEY AUTOINCREMENT, source TEXT NOT NULL, size INTEGER NOT NULL, modified INTEGER NOT NULL, hash BLOB NOT NULL, trackid INTEGER NOT NULL, FOREIGN KEY (trackid) REFERENCES tracks(_id) ON UPDATE CASCADE ON DELETE CASCADE)");
+        db.execSQL("CREATE UNIQUE INDEX importledger_source_index ON importledger(source)");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    private void downgradeFrom35to34(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("DROP TABLE importledger");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    private void upgradeFrom35to36(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("CREATE TABLE meanmax (_id INTEGER PRIMARY KEY AUTOINCREMENT, trackid INTEGER NOT NULL, sensor INTEGER NOT NULL, data BLOB NOT NULL, FOREIGN KEY (trackid) REFERENCES tracks(_id) ON UPDATE CASCADE ON DELETE CASCADE)");
+        db.execSQL("CREATE UNIQUE INDEX meanmax_trackid_sensor_index ON meanmax(trackid, sensor)");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    private void downgradeFrom36to35(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        db.execSQL("DROP TABLE meanmax");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    private void upgradeFrom36to37(SQLiteDatabase db) {
+        db.beginTransaction();
+
+        // Buckets by local time instead of UTC.
+        db.execSQL("DROP TRIGGER aggregates_insert");
+        db.execSQL("DROP TRIGGER aggregates_update");
+        db.execSQL("DROP TRIGGER aggregates_delete");
+        db.execSQL("CREATE TRIGGER aggregates_insert AFTER INSERT ON tracks BEGIN "
+                + "INSERT OR IGNORE INTO aggregates (category, year, month, week) SELECT IFNULL(NEW.category, ''), CAST(strftime('%Y', NEW.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER), CAST(strftime('%m', NEW.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER), CAST(julianday(NEW.starttime / 1000, 'unixepoch', 'localtime', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER) WHERE NEW.starttime IS NOT NULL; "
+                + "UPDATE aggregates SET trackcount = trackcount + 1, totaldistance = totaldistance + IFNULL(NEW.totaldistance, 0), totaltime = totaltime + IFNULL(NEW.totaltime, 0), movingtime = movingtime + IFNULL(NEW.movingtime, 0), maxspeed = MAX(maxspeed, IFNULL(NEW.maxspeed, 0)), elevationgain = elevationgain + IFNULL(NEW.elevationgain, 0), elevationloss = elevationloss + IFNULL(NEW.elevationloss, 0) WHERE category = IFNULL(NEW.category, '') AND year = CAST(strftime('%Y', NEW.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) AND month = CAST(strftime('%m', NEW.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) AND week = CAST(julianday(NEW.starttime / 1000, 'unixepoch', 'localtime', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER); "
+                + "END");
+        db.execSQL("CREATE TRIGGER aggregates_update AFTER UPDATE OF category, starttime, totaldistance, totaltime, movingtime, maxspeed, elevationgain, elevationloss ON tracks BEGIN "
+                + "UPDATE aggregates SET trackcount = trackcount - 1, totaldistance = totaldistance - IFNULL(OLD.totaldistance, 0), totaltime = totaltime - IFNULL(OLD.totaltime, 0), movingtime = movingtime - IFNULL(OLD.movingtime, 0), elevationgain = elevationgain - IFNULL(OLD.elevationgain, 0), elevationloss = elevationloss - IFNULL(OLD.elevationloss, 0) WHERE category = IFNULL(OLD.category, '') AND year = CAST(strftime('%Y', OLD.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) AND month = CAST(strftime('%m', OLD.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) AND week = CAST(julianday(OLD.starttime / 1000, 'unixepoch', 'localtime', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER); "
+                + "DELETE FROM aggregates WHERE category = IFNULL(OLD.category, '') AND year = CAST(strftime('%Y', OLD.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) AND month = CAST(strftime('%m', OLD.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) AND week = CAST(julianday(OLD.starttime / 1000, 'unixepoch', 'localtime', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER) AND trackcount <= 0; "
+                + "UPDATE aggregates SET maxspeed = IFNULL((SELECT MAX(t.maxspeed) FROM tracks t WHERE t.starttime IS NOT NULL AND IFNULL(t.category, '') = aggregates.category AND CAST(strftime('%Y', t.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) = aggregates.year AND CAST(strftime('%m', t.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) = aggregates.month AND CAST(julianday(t.starttime / 1000, 'unixepoch', 'localtime', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER) = aggregates.week), 0) WHERE category = IFNULL(OLD.category, '') AND year = CAST(strftime('%Y', OLD.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) AND month = CAST(strftime('%m', OLD.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) AND week = CAST(julianday(OLD.starttime / 1000, 'unixepoch', 'localtime', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER) AND maxspeed <= IFNULL(OLD.maxspeed, 0) AND NOT (IFNULL(NEW.category, '') = IFNULL(OLD.category, '') AND CAST(strftime('%Y', NEW.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) = CAST(strftime('%Y', OLD.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) AND CAST(strftime('%m', NEW.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) = CAST(strftime('%m', OLD.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) AND CAST(julianday(NEW.starttime / 1000, 'unixepoch', 'localtime', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER) = CAST(julianday(OLD.starttime / 1000, 'unixepoch', 'localtime', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER) AND IFNULL(NEW.maxspeed, 0) >= IFNULL(OLD.maxspeed, 0)); "
+                + "INSERT OR IGNORE INTO aggregates (category, year, month, week) SELECT IFNULL(NEW.category, ''), CAST(strftime('%Y', NEW.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER), CAST(strftime('%m', NEW.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER), CAST(julianday(NEW.starttime / 1000, 'unixepoch', 'localtime', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER) WHERE NEW.starttime IS NOT NULL; "
+                + "UPDATE aggregates SET trackcount = trackcount + 1, totaldistance = totaldistance + IFNULL(NEW.totaldistance, 0), totaltime = totaltime + IFNULL(NEW.totaltime, 0), movingtime = movingtime + IFNULL(NEW.movingtime, 0), maxspeed = MAX(maxspeed, IFNULL(NEW.maxspeed, 0)), elevationgain = elevationgain + IFNULL(NEW.elevationgain, 0), elevationloss = elevationloss + IFNULL(NEW.elevationloss, 0) WHERE category = IFNULL(NEW.category, '') AND year = CAST(strftime('%Y', NEW.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) AND month = CAST(strftime('%m', NEW.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) AND week = CAST(julianday(NEW.starttime / 1000, 'unixepoch', 'localtime', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER); "
+                + "END");
+        db.execSQL("CREATE TRIGGER aggregates_delete AFTER DELETE ON tracks BEGIN "
+                + "UPDATE aggregates SET trackcount = trackcount - 1, totaldistance = totaldistance - IFNULL(OLD.totaldistance, 0), totaltime = totaltime - IFNULL(OLD.totaltime, 0), movingtime = movingtime - IFNULL(OLD.movingtime, 0), elevationgain = elevationgain - IFNULL(OLD.elevationgain, 0), elevationloss = elevationloss - IFNULL(OLD.elevationloss, 0) WHERE category = IFNULL(OLD.category, '') AND year = CAST(strftime('%Y', OLD.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) AND month = CAST(strftime('%m', OLD.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) AND week = CAST(julianday(OLD.starttime / 1000, 'unixepoch', 'localtime', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER); "
+                + "DELETE FROM aggregates WHERE category = IFNULL(OLD.category, '') AND year = CAST(strftime('%Y', OLD.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) AND month = CAST(strftime('%m', OLD.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) AND week = CAST(julianday(OLD.starttime / 1000, 'unixepoch', 'localtime', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER) AND trackcount <= 0; "
+                + "UPDATE aggregates SET maxspeed = IFNULL((SELECT MAX(t.maxspeed) FROM tracks t WHERE t.starttime IS NOT NULL AND IFNULL(t.category, '') = aggregates.category AND CAST(strftime('%Y', t.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) = aggregates.year AND CAST(strftime('%m', t.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) = aggregates.month AND CAST(julianday(t.starttime / 1000, 'unixepoch', 'localtime', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER) = aggregates.week), 0) WHERE category = IFNULL(OLD.category, '') AND year = CAST(strftime('%Y', OLD.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) AND month = CAST(strftime('%m', OLD.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER) AND week = CAST(julianday(OLD.starttime / 1000, 'unixepoch', 'localtime', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER) AND maxspeed <= IFNULL(OLD.maxspeed, 0) AND 1; "
+                + "END");
+
+        db.execSQL("DELETE FROM aggregates");
+        db.execSQL("INSERT INTO aggregates (category, year, month, week, trackcount, totaldistance, totaltime, movingtime, maxspeed, elevationgain, elevationloss) SELECT IFNULL(tracks.category, ''), CAST(strftime('%Y', tracks.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER), CAST(strftime('%m', tracks.starttime / 1000, 'unixepoch', 'localtime') AS INTEGER), CAST(julianday(tracks.starttime / 1000, 'unixepoch', 'localtime', 'start of day', 'weekday 0', '-6 days') - 2440587.5 AS INTEGER), COUNT(*), SUM(IFNULL(totaldistance, 0)), SUM(IFNULL(totaltime, 0)), SUM(IFNULL(movingtime, 0)), MAX(IFNULL(maxspeed, 0)), SUM(IFNULL(elevationgain, 0)), SUM(IFNULL(elevationloss, 0)) FROM tracks WHERE starttime IS NOT NULL GROUP BY 1, 2, 3, 4");
+
+        db.setTransactionSuccessful();
+        db.endTransaction();
+    }
+
+    private void downgradeFrom37to36(SQLiteDatabase db) {
+        // Nothing to do: the schema is unchanged; version 36 works with the local time buckets.
+    }
 }
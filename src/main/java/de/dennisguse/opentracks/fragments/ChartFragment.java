@@ -27,6 +27,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentActivity;
+import androidx.lifecycle.ViewModelProvider;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -34,6 +35,7 @@ import java.util.List;
 import de.dennisguse.opentracks.R;
 import de.dennisguse.opentracks.TrackActivityDataHubInterface;
 import de.dennisguse.opentracks.chart.ChartPoint;
+import de.dennisguse.opentracks.chart.ChartPointCache;
 import de.dennisguse.opentracks.chart.ChartView;
 import de.dennisguse.opentracks.content.TrackDataHub;
 import de.dennisguse.opentracks.content.TrackDataListener;
@@ -42,13 +44,12 @@ import de.dennisguse.opentracks.content.data.Marker;
 import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.data.TrackPoint;
 import de.dennisguse.opentracks.databinding.ChartBinding;
-import de.dennisguse.opentracks.stats.TrackStatistics;
-import de.dennisguse.opentracks.stats.TrackStatisticsUpdater;
 import de.dennisguse.opentracks.util.PreferencesUtils;
+import de.dennisguse.opentracks.viewmodels.ChartPointCacheModel;
 
 /**
  * A fragment to display track chart to the user.
- * ChartFragment uses a {@link TrackStatisticsUpdater} internally and recomputes the {@link TrackStatistics} from the beginning.
+ * ChartFragment uses a {@link ChartPointCache} (shared via {@link ChartPointCacheModel}), so the statistics of a track are only computed once; a reload (e.g., after a rotation) looks them up.
  *
  * @author Sandor Dornbush
  * @author Rodrigo Damazio
@@ -72,7 +73,8 @@ public class ChartFragment extends Fragment implements TrackDataListener {
     private TrackDataHub trackDataHub;
 
     // Stats gathered from the received data
-    private TrackStatisticsUpdater trackStatisticsUpdater = new TrackStatisticsUpdater();
+    private ChartPointCacheModel chartPointCacheModel;
+    private ChartPointCache chartPointCache;
     private final List<ChartPoint> pendingPoints = new ArrayList<>();
     private String category = "";
 
@@ -141,6 +143,8 @@ public class ChartFragment extends Fragment implements TrackDataListener {
 
         recordingDistanceInterval = PreferencesUtils.getRecordingDistanceIntervalDefault(getContext());
 
+        chartPointCacheModel = new ViewModelProvider(requireActivity()).get(ChartPointCacheModel.class);
+
         // Create a chartView here to store data thus won't need to reload all the data on every onStart or onResume.
         chartView = new ChartView(getContext(), chartByDistance);
     }
@@ -205,6 +209,7 @@ public class ChartFragment extends Fragment implements TrackDataListener {
                 return;
             }
 
+            chartPointCache = chartPointCacheModel.getChartPointCache(track.getId());
             category = track.getCategory();
             boolean reportSpeed = PreferencesUtils.isReportSpeed(PreferencesUtils.getSharedPreferences(getContext()), getContext(), category);
             if (reportSpeed != chartView.getReportSpeed()) {
@@ -217,7 +222,6 @@ public class ChartFragment extends Fragment implements TrackDataListener {
     @Override
     public void clearTrackPoints() {
         if (isResumed()) {
-            trackStatisticsUpdater = new TrackStatisticsUpdater();
             pendingPoints.clear();
             chartView.reset();
             runOnUiThread(() -> {
@@ -238,9 +242,7 @@ public class ChartFragment extends Fragment implements TrackDataListener {
     @Override
     public void onSampledOutTrackPoint(@NonNull TrackPoint trackPoint) {
         if (isResumed()) {
-            if (trackStatisticsUpdater != null) {
-                trackStatisticsUpdater.addTrackPoint(trackPoint, recordingDistanceInterval);
-            }
+            getChartPointCache().add(trackPoint, recordingDistanceInterval);
         }
     }
 
@@ -322,10 +324,17 @@ public class ChartFragment extends Fragment implements TrackDataListener {
         }
     }
 
+    private ChartPointCache getChartPointCache() {
+        if (chartPointCache == null) {
+            // No track yet (or not attached to an activity)
+            chartPointCache = new ChartPointCache();
+        }
+        return chartPointCache;
+    }
+
     @VisibleForTesting
     ChartPoint createPendingPoint(@NonNull TrackPoint trackPoint) {
-        trackStatisticsUpdater.addTrackPoint(trackPoint, recordingDistanceInterval);
-        return new ChartPoint(trackStatisticsUpdater, trackPoint, chartByDistance, chartView.getMetricUnits());
+        return getChartPointCache().createChartPoint(trackPoint, recordingDistanceInterval, chartByDistance, chartView.getMetricUnits());
     }
 
     @VisibleForTesting
@@ -0,0 +1,147 @@
+package de.dennisguse.opentracks.io.file;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Definition of the OpenTracks binary track format (see {@link TrackFileFormat#OPENTRACKS_BINARY}).
+ * <p>
+ * A file starts with {@link #MAGIC}, the {@link #VERSION} and the number of tracks; per track:
+ * <ul>
+ * <li>UUID, name, description, category, icon, and statistics,</li>
+ * <li>the number of markers and the markers,</li>
+ * <li>the trackPoints in blocks of up to {@link #BLOCK_SIZE}; a block of size 0 ends the track.
+ * A block is stored column by column: type, flags, time, latitude, longitude, and then one column per float value.
+ * Time (ms), latitude and longitude (1E-6 degree) are stored as varint deltas to the previous value.</li>
+ * </ul>
+ * Values are stored in the precision of the database, so an export/import round trip is lossless.
+ */
+public final class BinaryTrackFormat {
+
+    public static final int MAGIC = 0x4F54424E; // "OTBN"
+    public static final int VERSION = 1;
+
+    public static final int BLOCK_SIZE = 1024;
+
+    /**
+     * Maximal length of a string in UTF-8 bytes; protects the import against huge allocations for corrupt files.
+     */
+    public static final int MAX_STRING_LENGTH = 1 << 20;
+
+    // TrackPoint flags
+    public static final int HAS_TIME = 1;
+    public static final int HAS_LOCATION = 1 << 1;
+    public static final int HAS_ALTITUDE = 1 << 2;
+    public static final int HAS_ACCURACY = 1 << 3;
+    public static final int HAS_SPEED = 1 << 4;
+    public static final int HAS_BEARING = 1 << 5;
+    public static final int HAS_HEART_RATE = 1 << 6;
+    public static final int HAS_CADENCE = 1 << 7;
+    public static final int HAS_POWER = 1 << 8;
+    public static final int HAS_SENSOR_DISTANCE = 1 << 9;
+    public static final int HAS_ALTITUDE_GAIN = 1 << 10;
+    public static final int HAS_ALTITUDE_LOSS = 1 << 11;
+
+    // Statistics flags (trackPoint flags are reused for markers)
+    public static final int HAS_START_TIME = 1;
+    public static final int HAS_STOP_TIME = 1 << 1;
+    public static final int HAS_TOTAL_ALTITUDE_GAIN = 1 << 2;
+    public static final int HAS_TOTAL_ALTITUDE_LOSS = 1 << 3;
+
+    private BinaryTrackFormat() {
+    }
+
+    public static void writeVarLong(@NonNull DataOutput output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    public static long readVarLong(@NonNull DataInput input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public static int readVarInt(@NonNull DataInput input) throws IOException {
+        long value = readVarLong(input);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Varint out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    /**
+     * Writes a signed value; small absolute values (e.g., deltas) need few bytes.
+     */
+    public static void writeZigZag(@NonNull DataOutput output, long value) throws IOException {
+        writeVarLong(output, (value << 1) ^ (value >> 63));
+    }
+
+    public static long readZigZag(@NonNull DataInput input) throws IOException {
+        long value = readVarLong(input);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes a UTF-8 string of up to {@link #MAX_STRING_LENGTH} bytes (in contrast to {@link DataOutput#writeUTF(String)}); may be null.
+     */
+    public static void writeString(@NonNull DataOutput output, @Nullable String value) throws IOException {
+        if (value == null) {
+            writeVarLong(output, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_LENGTH) {
+            throw new IOException("String too long: " + bytes.length + " bytes");
+        }
+        writeVarLong(output, bytes.length + 1L);
+        output.write(bytes);
+    }
+
+    @Nullable
+    public static String readString(@NonNull DataInput input) throws IOException {
+        int length = readVarInt(input);
+        if (length == 0) {
+            return null;
+        }
+        if (length - 1 > MAX_STRING_LENGTH) {
+            throw new IOException("String too long: " + (length - 1) + " bytes");
+        }
+        byte[] bytes = new byte[length - 1];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Coordinate in 1E-6 degree (as stored in the database); for coordinates loaded from the database (value / 1E6).
+     */
+    public static int toE6(double coordinate) {
+        return (int) Math.round(coordinate * 1E6);
+    }
+
+    /**
+     * Inverse of {@link #toE6(double)}: returns a coordinate that the database stores as e6 again.
+     * The database truncates (coordinate * 1E6), so e6 / 1E6 would be stored as e6 - 1 for some values.
+     */
+    public static double fromE6(int e6) {
+        double coordinate = e6 / 1E6;
+        while ((int) (coordinate * 1E6) != e6) {
+            coordinate = Math.nextAfter(coordinate, e6 > 0 ? Double.POSITIVE_INFINITY : Double.NEGATIVE_INFINITY);
+        }
+        return coordinate;
+    }
+}
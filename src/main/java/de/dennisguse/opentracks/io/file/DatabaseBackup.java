@@ -0,0 +1,113 @@
+package de.dennisguse.opentracks.io.file;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+import de.dennisguse.opentracks.util.PreferencesUtils;
+
+/**
+ * Backup and restore of the whole database as one gzip-compressed SQLite file.
+ * <p>
+ * The backup is a consistent snapshot and can be created while recording.
+ * A restore validates the snapshot (incl. its schema version) before it replaces the database.
+ */
+public final class DatabaseBackup {
+
+    private static final String TAG = DatabaseBackup.class.getSimpleName();
+
+    public static final String MIME_TYPE = "application/gzip";
+    public static final String EXTENSION = "db.gz";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private DatabaseBackup() {
+    }
+
+    /**
+     * Should not be called from the UI thread.
+     *
+     * @return true if successful.
+     */
+    public static boolean backup(@NonNull Context context, @NonNull Uri backupUri) {
+        File snapshotFile = null;
+        try {
+            snapshotFile = createTempFile(context);
+            if (!new ContentProviderUtils(context).createDatabaseSnapshot(snapshotFile)) {
+                return false;
+            }
+
+            try (InputStream inputStream = new FileInputStream(snapshotFile);
+                 OutputStream outputStream = new GZIPOutputStream(context.getContentResolver().openOutputStream(backupUri, "wt"), BUFFER_SIZE)) {
+                copy(inputStream, outputStream);
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Unable to write backup", e);
+            return false;
+        } finally {
+            if (snapshotFile != null) {
+                SQLiteDatabase.deleteDatabase(snapshotFile);
+            }
+        }
+    }
+
+    /**
+     * Replaces the database; must not be called while recording.
+     * Should not be called from the UI thread.
+     *
+     * @return true if successful; if false, the database was not changed.
+     */
+    public static boolean restore(@NonNull Context context, @NonNull Uri backupUri) {
+        File snapshotFile = null;
+        try {
+            snapshotFile = createTempFile(context);
+            try (InputStream inputStream = new GZIPInputStream(context.getContentResolver().openInputStream(backupUri), BUFFER_SIZE);
+                 OutputStream outputStream = new FileOutputStream(snapshotFile)) {
+                copy(inputStream, outputStream);
+            }
+
+            if (!new ContentProviderUtils(context).restoreDatabaseSnapshot(snapshotFile)) {
+                return false;
+            }
+            // The backup's aggregates may be bucketed in another time zone.
+            PreferencesUtils.setAggregatesTimeZone(PreferencesUtils.getSharedPreferences(context), context, null);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Unable to read backup", e);
+            return false;
+        } finally {
+            if (snapshotFile != null) {
+                SQLiteDatabase.deleteDatabase(snapshotFile);
+            }
+        }
+    }
+
+    /**
+     * Unique per call, so a backup and a restore can run at the same time.
+     */
+    private static File createTempFile(Context context) throws IOException {
+        return File.createTempFile("database-snapshot", ".db", context.getCacheDir());
+    }
+
+    private static void copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int count;
+        while ((count = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, count);
+        }
+    }
+}
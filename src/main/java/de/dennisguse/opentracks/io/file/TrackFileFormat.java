@@ -6,6 +6,7 @@ import java.util.Locale;
 
 import de.dennisguse.opentracks.R;
 import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+import de.dennisguse.opentracks.io.file.exporter.BinaryTrackExporter;
 import de.dennisguse.opentracks.io.file.exporter.GPXTrackExporter;
 import de.dennisguse.opentracks.io.file.exporter.KMLTrackExporter;
 import de.dennisguse.opentracks.io.file.exporter.KmzTrackExporter;
@@ -174,6 +175,24 @@ public enum TrackFileFormat {
         public String getExtension() {
             return "gpx";
         }
+    },
+    /**
+     * Lossless and compact; see {@link BinaryTrackFormat}.
+     */
+    OPENTRACKS_BINARY {
+        @Override
+        public TrackExporter createTrackExporter(Context context) {
+            return new BinaryTrackExporter(new ContentProviderUtils(context));
+        }
+
+        @Override
+        public String getMimeType() {
+            return "application/octet-stream";
+        }
+
+        public String getExtension() {
+            return "otb";
+        }
     };
 
     private static final String MIME_KMZ = "application/vnd.google-earth.kmz";
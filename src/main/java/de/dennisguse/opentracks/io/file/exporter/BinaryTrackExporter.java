@@ -0,0 +1,237 @@
+package de.dennisguse.opentracks.io.file.exporter;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.dennisguse.opentracks.content.data.Marker;
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.data.TrackPoint;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+import de.dennisguse.opentracks.content.provider.TrackPointIterator;
+import de.dennisguse.opentracks.io.file.BinaryTrackFormat;
+import de.dennisguse.opentracks.stats.TrackStatistics;
+
+import static de.dennisguse.opentracks.io.file.BinaryTrackFormat.writeString;
+import static de.dennisguse.opentracks.io.file.BinaryTrackFormat.writeVarLong;
+import static de.dennisguse.opentracks.io.file.BinaryTrackFormat.writeZigZag;
+
+/**
+ * Writes tracks (incl. statistics, markers, and trackPoints) in the {@link BinaryTrackFormat}.
+ * The trackPoints are streamed from the database block by block.
+ */
+public class BinaryTrackExporter implements TrackExporter {
+
+    private static final String TAG = BinaryTrackExporter.class.getSimpleName();
+
+    private final ContentProviderUtils contentProviderUtils;
+
+    private final List<TrackPoint> block = new ArrayList<>(BinaryTrackFormat.BLOCK_SIZE);
+    // Previous values for the delta encoding (per track).
+    private long previousTime;
+    private int previousLatitude;
+    private int previousLongitude;
+
+    public BinaryTrackExporter(ContentProviderUtils contentProviderUtils) {
+        this.contentProviderUtils = contentProviderUtils;
+    }
+
+    @Override
+    public boolean writeTrack(Track track, @NonNull OutputStream outputStream) {
+        return writeTrack(new Track[]{track}, outputStream);
+    }
+
+    @Override
+    public boolean writeTrack(Track[] tracks, @NonNull OutputStream outputStream) {
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream));
+            output.writeInt(BinaryTrackFormat.MAGIC);
+            writeVarLong(output, BinaryTrackFormat.VERSION);
+            writeVarLong(output, tracks.length);
+            for (Track track : tracks) {
+                writeTrack(output, track);
+            }
+            output.flush();
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to write track", e);
+            return false;
+        }
+    }
+
+    private void writeTrack(DataOutputStream output, Track track) throws IOException {
+        output.writeLong(track.getUuid().getMostSignificantBits());
+        output.writeLong(track.getUuid().getLeastSignificantBits());
+        writeString(output, track.getName());
+        writeString(output, track.getDescription());
+        writeString(output, track.getCategory());
+        writeString(output, track.getIcon());
+        writeTrackStatistics(output, track.getTrackStatistics());
+
+        List<Marker> markers = contentProviderUtils.getMarkers(track.getId());
+        writeVarLong(output, markers.size());
+        for (Marker marker : markers) {
+            writeMarker(output, marker);
+        }
+
+        previousTime = 0;
+        previousLatitude = 0;
+        previousLongitude = 0;
+        try (TrackPointIterator trackPointIterator = contentProviderUtils.getTrackPointLocationIterator(track.getId(), null)) {
+            while (trackPointIterator.hasNext()) {
+                block.add(trackPointIterator.next());
+                if (block.size() == BinaryTrackFormat.BLOCK_SIZE) {
+                    writeBlock(output);
+                }
+            }
+        }
+        if (!block.isEmpty()) {
+            writeBlock(output);
+        }
+        // End of track
+        writeVarLong(output, 0);
+    }
+
+    private static void writeTrackStatistics(DataOutputStream output, TrackStatistics trackStatistics) throws IOException {
+        int flags = 0;
+        if (trackStatistics.getStartTime() != null) flags |= BinaryTrackFormat.HAS_START_TIME;
+        if (trackStatistics.getStopTime() != null) flags |= BinaryTrackFormat.HAS_STOP_TIME;
+        if (trackStatistics.getTotalAltitudeGain() != null) flags |= BinaryTrackFormat.HAS_TOTAL_ALTITUDE_GAIN;
+        if (trackStatistics.getTotalAltitudeLoss() != null) flags |= BinaryTrackFormat.HAS_TOTAL_ALTITUDE_LOSS;
+        writeVarLong(output, flags);
+
+        if (trackStatistics.getStartTime() != null) {
+            writeZigZag(output, trackStatistics.getStartTime().toEpochMilli());
+        }
+        if (trackStatistics.getStopTime() != null) {
+            writeZigZag(output, trackStatistics.getStopTime().toEpochMilli());
+        }
+        output.writeFloat((float) trackStatistics.getTotalDistance().toM());
+        writeVarLong(output, trackStatistics.getTotalTime().toMillis());
+        writeVarLong(output, trackStatistics.getMovingTime().toMillis());
+        output.writeFloat((float) trackStatistics.getMaxSpeed().toMPS());
+        output.writeFloat((float) trackStatistics.getMinAltitude());
+        output.writeFloat((float) trackStatistics.getMaxAltitude());
+        if (trackStatistics.getTotalAltitudeGain() != null) {
+            output.writeFloat(trackStatistics.getTotalAltitudeGain());
+        }
+        if (trackStatistics.getTotalAltitudeLoss() != null) {
+            output.writeFloat(trackStatistics.getTotalAltitudeLoss());
+        }
+    }
+
+    private static void writeMarker(DataOutputStream output, Marker marker) throws IOException {
+        writeString(output, marker.getName());
+        writeString(output, marker.getDescription());
+        writeString(output, marker.getCategory());
+        writeString(output, marker.getIcon());
+        writeString(output, marker.getPhotoUrl());
+        writeZigZag(output, marker.getTime().toEpochMilli());
+        output.writeFloat((float) marker.getLength().toM());
+        writeVarLong(output, marker.getDuration().toMillis());
+
+        int flags = 0;
+        if (marker.hasLocation()) flags |= BinaryTrackFormat.HAS_LOCATION;
+        if (marker.hasAltitude()) flags |= BinaryTrackFormat.HAS_ALTITUDE;
+        if (marker.hasAccuracy()) flags |= BinaryTrackFormat.HAS_ACCURACY;
+        if (marker.hasBearing()) flags |= BinaryTrackFormat.HAS_BEARING;
+        writeVarLong(output, flags);
+
+        if (marker.hasLocation()) {
+            output.writeInt(BinaryTrackFormat.toE6(marker.getLatitude()));
+            output.writeInt(BinaryTrackFormat.toE6(marker.getLongitude()));
+        }
+        if (marker.hasAltitude()) output.writeFloat(marker.getAltitude().floatValue());
+        if (marker.hasAccuracy()) output.writeFloat(marker.getAccuracy());
+        if (marker.hasBearing()) output.writeFloat(marker.getBearing());
+    }
+
+    private void writeBlock(DataOutputStream output) throws IOException {
+        writeVarLong(output, block.size());
+
+        for (TrackPoint trackPoint : block) {
+            writeZigZag(output, trackPoint.getType().type_db);
+        }
+        for (TrackPoint trackPoint : block) {
+            writeVarLong(output, getFlags(trackPoint));
+        }
+        for (TrackPoint trackPoint : block) {
+            if (trackPoint.getTime() != null) {
+                long time = trackPoint.getTime().toEpochMilli();
+                writeZigZag(output, time - previousTime);
+                previousTime = time;
+            }
+        }
+        for (TrackPoint trackPoint : block) {
+            if (trackPoint.hasLocation()) {
+                int latitude = BinaryTrackFormat.toE6(trackPoint.getLatitude());
+                writeZigZag(output, (long) latitude - previousLatitude);
+                previousLatitude = latitude;
+            }
+        }
+        for (TrackPoint trackPoint : block) {
+            if (trackPoint.hasLocation()) {
+                int longitude = BinaryTrackFormat.toE6(trackPoint.getLongitude());
+                writeZigZag(output, (long) longitude - previousLongitude);
+                previousLongitude = longitude;
+            }
+        }
+
+        for (TrackPoint trackPoint : block) {
+            if (trackPoint.hasAltitude()) output.writeFloat((float) trackPoint.getAltitude());
+        }
+        for (TrackPoint trackPoint : block) {
+            if (trackPoint.hasAccuracy()) output.writeFloat(trackPoint.getAccuracy());
+        }
+        for (TrackPoint trackPoint : block) {
+            if (trackPoint.hasSpeed()) output.writeFloat((float) trackPoint.getSpeed().toMPS());
+        }
+        for (TrackPoint trackPoint : block) {
+            if (trackPoint.hasBearing()) output.writeFloat(trackPoint.getBearing());
+        }
+        for (TrackPoint trackPoint : block) {
+            if (trackPoint.hasHeartRate()) output.writeFloat(trackPoint.getHeartRate_bpm());
+        }
+        for (TrackPoint trackPoint : block) {
+            if (trackPoint.hasCyclingCadence()) output.writeFloat(trackPoint.getCyclingCadence_rpm());
+        }
+        for (TrackPoint trackPoint : block) {
+            if (trackPoint.hasPower()) output.writeFloat(trackPoint.getPower());
+        }
+        for (TrackPoint trackPoint : block) {
+            if (trackPoint.hasSensorDistance()) output.writeFloat((float) trackPoint.getSensorDistance().toM());
+        }
+        for (TrackPoint trackPoint : block) {
+            if (trackPoint.hasAltitudeGain()) output.writeFloat(trackPoint.getAltitudeGain());
+        }
+        for (TrackPoint trackPoint : block) {
+            if (trackPoint.hasAltitudeLoss()) output.writeFloat(trackPoint.getAltitudeLoss());
+        }
+
+        block.clear();
+    }
+
+    private static int getFlags(TrackPoint trackPoint) {
+        int flags = 0;
+        if (trackPoint.getTime() != null) flags |= BinaryTrackFormat.HAS_TIME;
+        if (trackPoint.hasLocation()) flags |= BinaryTrackFormat.HAS_LOCATION;
+        if (trackPoint.hasAltitude()) flags |= BinaryTrackFormat.HAS_ALTITUDE;
+        if (trackPoint.hasAccuracy()) flags |= BinaryTrackFormat.HAS_ACCURACY;
+        if (trackPoint.hasSpeed()) flags |= BinaryTrackFormat.HAS_SPEED;
+        if (trackPoint.hasBearing()) flags |= BinaryTrackFormat.HAS_BEARING;
+        if (trackPoint.hasHeartRate()) flags |= BinaryTrackFormat.HAS_HEART_RATE;
+        if (trackPoint.hasCyclingCadence()) flags |= BinaryTrackFormat.HAS_CADENCE;
+        if (trackPoint.hasPower()) flags |= BinaryTrackFormat.HAS_POWER;
+        if (trackPoint.hasSensorDistance()) flags |= BinaryTrackFormat.HAS_SENSOR_DISTANCE;
+        if (trackPoint.hasAltitudeGain()) flags |= BinaryTrackFormat.HAS_ALTITUDE_GAIN;
+        if (trackPoint.hasAltitudeLoss()) flags |= BinaryTrackFormat.HAS_ALTITUDE_LOSS;
+        return flags;
+    }
+}
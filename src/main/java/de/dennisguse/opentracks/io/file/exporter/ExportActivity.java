@@ -20,6 +20,7 @@ import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
+import android.util.Log;
 import android.view.View;
 import android.widget.Toast;
 
@@ -27,10 +28,15 @@ import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
 import androidx.documentfile.provider.DocumentFile;
 import androidx.fragment.app.FragmentActivity;
+import androidx.lifecycle.ViewModelProvider;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Collectors;
 
 import de.dennisguse.opentracks.R;
 import de.dennisguse.opentracks.content.data.Track;
@@ -53,6 +59,7 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
 
     public static final String EXTRA_DIRECTORY_URI_KEY = "directory_uri";
     public static final String EXTRA_TRACKFILEFORMAT_KEY = "trackfileformat";
+    public static final String EXTRA_ARCHIVE_KEY = "archive";
 
     private static final String BUNDLE_AUTO_CONFLICT = "auto_conflict";
     private static final String BUNDLE_SUCCESS_COUNT = "track_export_success_count";
@@ -62,6 +69,8 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
     private static final String BUNDLE_TOTAL_COUNT = "track_export_total_count";
     private static final String BUNDLE_DIRECTORY_FILES = "track_directory_files";
     private static final String BUNDLE_TRACK_ERRORS = "track_errors";
+    private static final String BUNDLE_FINISHED_TRACK_IDS = "finished_track_ids";
+    private static final String BUNDLE_ARCHIVE_URIS = "archive_uris";
 
     private static final int CONFLICT_NONE = 0;
     private static final int CONFLICT_OVERWRITE = 1;
@@ -69,10 +78,19 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
 
     private TrackFileFormat trackFileFormat;
     private Uri directoryUri;
+    // Export all tracks into ZIP archives (one per ExportService.ARCHIVE_BATCH_SIZE tracks)
+    private boolean archive;
+    private ArrayList<Uri> archiveUris;
+    // The archives are written by jobs started before a configuration change.
+    private boolean reattachArchive;
 
-    private ExportServiceResultReceiver resultReceiver;
+    // Survives configuration changes together with the running export jobs.
+    private ExportViewModel viewModel;
 
     private List<String> directoryFiles;
+    private Set<String> exportFileKeys;
+
+    private ExportManifest exportManifest;
 
     private int trackExportSuccessCount;
     private int trackExportErrorCount;
@@ -93,6 +111,12 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
     // List of tracks to be exported.
     private final ArrayList<Track> tracks = new ArrayList<>();
 
+    // Tracks that are done (exported, skipped, or failed); the tracks finish in any order.
+    private ArrayList<Track.Id> finishedTrackIds = new ArrayList<>();
+
+    // Tracks without (or with resolved) conflict; enqueued together (ExportService splits them into jobs).
+    private final ArrayList<Track.Id> pendingExports = new ArrayList<>();
+
     private final LinkedBlockingQueue<PendingConflict> conflictsQueue = new LinkedBlockingQueue<>();
     private final Handler conflictsHandler = new Handler();
 
@@ -138,6 +162,7 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
 
         directoryUri = getIntent().getParcelableExtra(EXTRA_DIRECTORY_URI_KEY);
         trackFileFormat = (TrackFileFormat) getIntent().getSerializableExtra(EXTRA_TRACKFILEFORMAT_KEY);
+        archive = getIntent().getBooleanExtra(EXTRA_ARCHIVE_KEY, false);
 
         contentProviderUtils = new ContentProviderUtils(this);
 
@@ -146,14 +171,22 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
 
         viewBinding.toolbar.toolbar.setTitle(getString(R.string.export_progress_message, directoryDisplayName));
 
-        resultReceiver = new ExportServiceResultReceiver(new Handler(), this);
+        viewModel = new ViewModelProvider(this).get(ExportViewModel.class);
 
         if (savedInstanceState == null) {
             autoConflict = CONFLICT_NONE;
             setProgress();
             new Thread(() -> {
-                directoryFiles = ExportUtils.getAllFiles(ExportActivity.this, documentFile.getUri());
-                runOnUiThread(() -> initExport(0));
+                if (archive) {
+                    archiveUris = createArchives(documentFile);
+                    runOnUiThread(this::initExport);
+                    return;
+                }
+                Map<String, Uri> directoryFileUris = ExportUtils.getAllFileUris(ExportActivity.this, documentFile);
+                directoryFiles = new ArrayList<>(directoryFileUris.keySet());
+                exportFileKeys = ExportUtils.getExportFileKeys(directoryFiles);
+                exportManifest = ExportManifest.read(ExportActivity.this, directoryFileUris);
+                runOnUiThread(this::initExport);
             }).start();
         } else {
             autoConflict = savedInstanceState.getInt(BUNDLE_AUTO_CONFLICT);
@@ -164,9 +197,33 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
             trackExportTotalCount = savedInstanceState.getInt(BUNDLE_TOTAL_COUNT);
             directoryFiles = savedInstanceState.getStringArrayList(BUNDLE_DIRECTORY_FILES);
             trackErrors = savedInstanceState.getStringArrayList(BUNDLE_TRACK_ERRORS);
+            finishedTrackIds = savedInstanceState.getParcelableArrayList(BUNDLE_FINISHED_TRACK_IDS);
+            archiveUris = savedInstanceState.getParcelableArrayList(BUNDLE_ARCHIVE_URIS);
+
+            if (archive && viewModel.getArchiveUris() == null && getTotalDone() < trackExportTotalCount) {
+                // The process was killed while writing the archives: the jobs are gone and the archives are incomplete.
+                // Written tracks are only reported once their archive is closed, so all tracks are written again (into the same archives).
+                trackExportSuccessCount = 0;
+                trackExportErrorCount = 0;
+                trackErrors.clear();
+                finishedTrackIds.clear();
+            } else {
+                reattachArchive = archive;
+            }
 
             setProgress();
-            initExport(getTotalDone());
+            new Thread(() -> {
+                if (archive) {
+                    if (!reattachArchive && archiveUris == null) {
+                        archiveUris = createArchives(documentFile);
+                    }
+                    runOnUiThread(this::initExport);
+                    return;
+                }
+                exportFileKeys = ExportUtils.getExportFileKeys(directoryFiles);
+                exportManifest = ExportManifest.read(ExportActivity.this, ExportUtils.getAllFileUris(ExportActivity.this, documentFile));
+                runOnUiThread(this::initExport);
+            }).start();
         }
     }
 
@@ -181,11 +238,14 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
         outState.putInt(BUNDLE_TOTAL_COUNT, trackExportTotalCount);
         outState.putStringArrayList(BUNDLE_DIRECTORY_FILES, (ArrayList<String>) directoryFiles);
         outState.putStringArrayList(BUNDLE_TRACK_ERRORS, trackErrors);
+        outState.putParcelableArrayList(BUNDLE_FINISHED_TRACK_IDS, finishedTrackIds);
+        outState.putParcelableArrayList(BUNDLE_ARCHIVE_URIS, archiveUris);
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        viewModel.detach();
         conflictsQueue.clear();
         tracks.clear();
     }
@@ -203,7 +263,10 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
         new Handler().postDelayed(() -> doubleBackToCancel=false, 2000);
     }
 
-    private void initExport(int from) {
+    /**
+     * Loads all tracks that are not finished yet and exports those that are not exported by a running job (see {@link ExportViewModel}).
+     */
+    private void initExport() {
         try (Cursor cursor = contentProviderUtils.getTrackCursor(null, null, TracksColumns._ID)) {
             if (cursor == null) {
                 onExportEnded();
@@ -212,36 +275,124 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
 
             trackExportTotalCount = cursor.getCount();
             viewBinding.exportProgressTotal.setText("" + trackExportTotalCount);
-            for (int i = from; i < trackExportTotalCount; i++) {
-                cursor.moveToPosition(i);
+            HashSet<Track.Id> finished = new HashSet<>(finishedTrackIds);
+            while (cursor.moveToNext()) {
                 Track track = ContentProviderUtils.createTrack(cursor);
-                tracks.add(track);
+                if (!finished.contains(track.getId())) {
+                    tracks.add(track);
+                }
             }
 
-            if (!tracks.isEmpty()) {
-                export(tracks.get(0));
-            } else {
+            if (reattachArchive) {
+                // Only the tracks of the running jobs; tracks created meanwhile are not part of their archives.
+                tracks.removeIf(track -> !viewModel.isInFlight(track.getId()));
+                trackExportTotalCount = finishedTrackIds.size() + tracks.size();
+                viewBinding.exportProgressTotal.setText("" + trackExportTotalCount);
+            }
+
+            // Receive the results (incl. those of jobs started before a configuration change) after the tracks are known.
+            viewModel.attach(this);
+
+            if (tracks.isEmpty()) {
                 onExportEnded();
+                return;
+            }
+
+            if (archive) {
+                exportArchive();
+                return;
+            }
+
+            // Resolve conflicts up front using directoryFiles; all other tracks are exported in parallel.
+            for (Track track : new ArrayList<>(tracks)) {
+                if (viewModel.isInFlight(track.getId())) {
+                    // Still exported by a job started before a configuration change.
+                    continue;
+                }
+                export(track);
             }
+            enqueuePendingExports();
         }
     }
 
     /**
-     * Enqueue track identified by UUID to be exported if not exported already or there is a conflict resolution.
+     * Adds track identified by UUID to the pending exports if not exported already or there is a conflict resolution.
+     * Tracks in the {@link ExportManifest} are not conflicts: they are skipped if unchanged and overwritten otherwise.
+     * The pending exports must be enqueued afterwards (see {@link #enqueuePendingExports()}).
      *
      * @param track              Track object.
      * @param conflictResolution conflict resolution to be applied if needed.
      */
     private void export(Track track, int conflictResolution) {
-        boolean fileExists = ExportUtils.isExportFileExists(track.getUuid(), trackFileFormat.getExtension(), directoryFiles);
+        boolean fileExists = ExportUtils.isExportFileExists(track.getUuid(), trackFileFormat.getExtension(), exportFileKeys);
 
-        if (fileExists && conflictResolution == CONFLICT_NONE) {
+        if (fileExists && exportManifest.isUnchanged(track, trackFileFormat)) {
+            trackExportSkippedCount++;
+            onExportCompleted(track);
+        } else if (fileExists && exportManifest.contains(track, trackFileFormat)) {
+            pendingExports.add(track.getId());
+        } else if (fileExists && conflictResolution == CONFLICT_NONE) {
             conflict(track);
         } else if (fileExists && conflictResolution == CONFLICT_SKIP) {
             trackExportSkippedCount++;
             onExportCompleted(track);
         } else {
-            ExportService.enqueue(this, resultReceiver, track.getId(), trackFileFormat, directoryUri);
+            pendingExports.add(track.getId());
+        }
+    }
+
+    /**
+     * Creates one archive per {@link ExportService#ARCHIVE_BATCH_SIZE} tracks.
+     *
+     * @return null if an archive could not be created.
+     */
+    private ArrayList<Uri> createArchives(DocumentFile directory) {
+        int trackCount;
+        try (Cursor cursor = contentProviderUtils.getTrackCursor(null, null, TracksColumns._ID)) {
+            trackCount = cursor != null ? cursor.getCount() : 0;
+        }
+        int parts = Math.max(1, (trackCount + ExportService.ARCHIVE_BATCH_SIZE - 1) / ExportService.ARCHIVE_BATCH_SIZE);
+
+        ArrayList<Uri> uris = new ArrayList<>();
+        for (String fileName : ExportUtils.getExportArchiveFileNames(this, parts)) {
+            DocumentFile archiveFile = directory.createFile(ZipTrackExporter.MIME_TYPE, fileName);
+            if (archiveFile == null) {
+                Log.e(TAG, "Couldn't create document file for archive");
+                return null;
+            }
+            uris.add(archiveFile.getUri());
+        }
+        return uris;
+    }
+
+    /**
+     * Exports the tracks in batches into the archives (one job per archive); there are no conflicts.
+     * On recreation, the running jobs are not restarted, but their results are awaited.
+     */
+    private void exportArchive() {
+        if (reattachArchive) {
+            return;
+        }
+
+        if (archiveUris == null) {
+            for (Track track : tracks) {
+                trackErrors.add(track.getName());
+            }
+            trackExportErrorCount += tracks.size();
+            tracks.clear();
+            setProgress();
+            onExportEnded();
+            return;
+        }
+
+        ArrayList<Track.Id> trackIds = tracks.stream().map(Track::getId).collect(Collectors.toCollection(ArrayList::new));
+        viewModel.setArchiveUris(archiveUris);
+        viewModel.onEnqueued(trackIds);
+        for (int part = 0; part < archiveUris.size(); part++) {
+            int start = Math.min(part * ExportService.ARCHIVE_BATCH_SIZE, trackIds.size());
+            // Tracks created after the archives were created go into the last one.
+            int end = part == archiveUris.size() - 1 ? trackIds.size() : Math.min(start + ExportService.ARCHIVE_BATCH_SIZE, trackIds.size());
+            ExportService.enqueueArchive(this, viewModel.getResultReceiver(), new ArrayList<>(trackIds.subList(start, end)), trackFileFormat, archiveUris.get(part));
         }
     }
 
@@ -249,6 +400,14 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
         export(track, autoConflict);
     }
 
+    private void enqueuePendingExports() {
+        if (!pendingExports.isEmpty()) {
+            viewModel.onEnqueued(pendingExports);
+            ExportService.enqueue(this, viewModel.getResultReceiver(), new ArrayList<>(pendingExports), trackFileFormat, directoryUri);
+            pendingExports.clear();
+        }
+    }
+
     private void setConflictVisibility(int visibility) {
         viewBinding.exportProgressAlertIcon.setVisibility(visibility);
         viewBinding.exportProgressAlertMsg.setVisibility(visibility);
@@ -280,13 +439,12 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
 
     private void onExportCompleted(Track track) {
         tracks.remove(track);
+        finishedTrackIds.add(track.getId());
 
         setProgress();
         if (tracks.isEmpty()) {
             onExportEnded();
-            return;
         }
-        export(tracks.get(0));
     }
 
     private void onExportEnded() {
@@ -318,7 +476,12 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
         }
 
         Track.Id trackId = resultData.getParcelable(ExportServiceResultReceiver.RESULT_EXTRA_TRACK_ID);
-        Track track = contentProviderUtils.getTrack(trackId);
+        Track track = tracks.stream().filter(t -> t.getId().equals(trackId)).findFirst().orElse(null);
+        if (track == null) {
+            // E.g., a job that was stopped by the system and restarted reports its finished tracks again.
+            Log.w(TAG, "Result for unknown track " + trackId);
+            return;
+        }
 
         switch (resultCode) {
             case ExportServiceResultReceiver.RESULT_CODE_ERROR:
@@ -326,7 +489,7 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
                 trackErrors.add(track.getName());
                 break;
             case ExportServiceResultReceiver.RESULT_CODE_SUCCESS:
-                if (ExportUtils.isExportFileExists(track.getUuid(), trackFileFormat.getExtension(), directoryFiles)) {
+                if (!archive && ExportUtils.isExportFileExists(track.getUuid(), trackFileFormat.getExtension(), exportFileKeys)) {
                     trackExportOverwrittenCount++;
                 } else {
                     trackExportSuccessCount++;
@@ -373,6 +536,7 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
             }
 
             export(track);
+            enqueuePendingExports();
             return true;
         }
 
@@ -381,6 +545,7 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
          */
         public void overwrite() {
             export(track, CONFLICT_OVERWRITE);
+            enqueuePendingExports();
 
             if (viewBinding.exportProgressApplyToAll.isChecked()) {
                 autoConflict = CONFLICT_OVERWRITE;
@@ -392,6 +557,7 @@ public class ExportActivity extends FragmentActivity implements ExportServiceRes
          */
         public void skip() {
             export(track, CONFLICT_SKIP);
+            enqueuePendingExports();
 
             if (viewBinding.exportProgressApplyToAll.isChecked()) {
                 autoConflict = CONFLICT_SKIP;
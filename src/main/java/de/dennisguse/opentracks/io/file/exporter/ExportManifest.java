@@ -0,0 +1,180 @@
+package de.dennisguse.opentracks.io.file.exporter;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import androidx.documentfile.provider.DocumentFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.io.file.TrackFileFormat;
+import de.dennisguse.opentracks.stats.TrackStatistics;
+
+/**
+ * Remembers the version of every track exported to a directory (stored as a file in the directory).
+ * Used to export only new or modified tracks into a directory that already contains an export.
+ * <p>
+ * The version is a checksum of the track's metadata and statistics; changes that do not affect these (e.g., marker edits) are not detected.
+ * <p>
+ * Thread-safe.
+ */
+public class ExportManifest {
+
+    private static final String TAG = ExportManifest.class.getSimpleName();
+
+    public static final String FILE_NAME = ".opentracks-export-manifest";
+
+    private static final String MIME_TYPE = "application/octet-stream";
+    private static final String HEADER = "# OpenTracks export manifest 1";
+
+    // uuid.extension -> version
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+
+    @VisibleForTesting
+    ExportManifest() {
+    }
+
+    /**
+     * @param directoryFiles the files of the export directory by name (see {@link de.dennisguse.opentracks.util.ExportUtils#getAllFileUris(Context, DocumentFile)}).
+     * @return the manifest; empty if the directory does not contain one (or it is unreadable).
+     */
+    public static ExportManifest read(@NonNull Context context, @NonNull Map<String, Uri> directoryFiles) {
+        ExportManifest manifest = new ExportManifest();
+        Uri uri = directoryFiles.get(FILE_NAME);
+        if (uri == null) {
+            return manifest;
+        }
+
+        try (InputStream inputStream = context.getContentResolver().openInputStream(uri)) {
+            manifest.read(inputStream);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Unable to read export manifest; exporting all tracks", e);
+            manifest.versions.clear();
+        }
+        return manifest;
+    }
+
+    @VisibleForTesting
+    void read(@NonNull InputStream inputStream) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        if (!HEADER.equals(reader.readLine())) {
+            Log.w(TAG, "Unknown export manifest version; ignoring it.");
+            return;
+        }
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int separator = line.indexOf(' ');
+            if (separator <= 0) {
+                continue;
+            }
+            versions.put(line.substring(0, separator), Long.parseLong(line.substring(separator + 1), 16));
+        }
+    }
+
+    /**
+     * Writes the manifest into the directory (replacing an existing one).
+     *
+     * @param directoryFiles the files of the export directory by name.
+     * @return true if successful.
+     */
+    public boolean write(@NonNull Context context, @NonNull DocumentFile directory, @NonNull Map<String, Uri> directoryFiles) {
+        Uri uri = directoryFiles.get(FILE_NAME);
+        if (uri == null) {
+            DocumentFile file = directory.createFile(MIME_TYPE, FILE_NAME);
+            if (file == null) {
+                Log.e(TAG, "Unable to create export manifest");
+                return false;
+            }
+            uri = file.getUri();
+            directoryFiles.put(FILE_NAME, uri);
+        }
+
+        try (OutputStream outputStream = context.getContentResolver().openOutputStream(uri, "wt")) {
+            write(outputStream);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Unable to write export manifest", e);
+            return false;
+        }
+    }
+
+    @VisibleForTesting
+    void write(@NonNull OutputStream outputStream) {
+        PrintWriter printWriter = new PrintWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        printWriter.print(HEADER);
+        printWriter.print('\n');
+        for (Map.Entry<String, Long> entry : versions.entrySet()) {
+            printWriter.print(entry.getKey());
+            printWriter.print(' ');
+            printWriter.print(Long.toHexString(entry.getValue()));
+            printWriter.print('\n');
+        }
+        printWriter.flush();
+    }
+
+    /**
+     * @return true if the track is in the manifest (with any version).
+     */
+    public boolean contains(@NonNull Track track, @NonNull TrackFileFormat trackFileFormat) {
+        return versions.containsKey(getKey(track, trackFileFormat));
+    }
+
+    /**
+     * @return true if the track was exported and did not change since.
+     */
+    public boolean isUnchanged(@NonNull Track track, @NonNull TrackFileFormat trackFileFormat) {
+        Long version = versions.get(getKey(track, trackFileFormat));
+        return version != null && version == getVersion(track);
+    }
+
+    /**
+     * Remembers the current version of the track as exported.
+     */
+    public void put(@NonNull Track track, @NonNull TrackFileFormat trackFileFormat) {
+        versions.put(getKey(track, trackFileFormat), getVersion(track));
+    }
+
+    private static String getKey(Track track, TrackFileFormat trackFileFormat) {
+        return track.getUuid() + "." + trackFileFormat.getExtension();
+    }
+
+    @VisibleForTesting
+    static long getVersion(@NonNull Track track) {
+        StringBuilder content = new StringBuilder()
+                .append(track.getName()).append('\n')
+                .append(track.getDescription()).append('\n')
+                .append(track.getCategory()).append('\n')
+                .append(track.getIcon()).append('\n');
+
+        TrackStatistics trackStatistics = track.getTrackStatistics();
+        content.append(trackStatistics.getStartTime()).append('\n')
+                .append(trackStatistics.getStopTime()).append('\n')
+                .append(trackStatistics.getTotalDistance().toM()).append('\n')
+                .append(trackStatistics.getTotalTime()).append('\n')
+                .append(trackStatistics.getMovingTime()).append('\n')
+                .append(trackStatistics.getMaxSpeed().toMPS()).append('\n')
+                .append(trackStatistics.getMinAltitude()).append('\n')
+                .append(trackStatistics.getMaxAltitude()).append('\n')
+                .append(trackStatistics.getTotalAltitudeGain()).append('\n')
+                .append(trackStatistics.getTotalAltitudeLoss());
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(content.toString().getBytes(StandardCharsets.UTF_8));
+        return crc32.getValue();
+    }
+}
@@ -6,31 +6,84 @@ import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.ResultReceiver;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import androidx.core.app.JobIntentService;
 import androidx.documentfile.provider.DocumentFile;
 
+import java.io.BufferedOutputStream;
+import java.io.FileNotFoundException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
 import de.dennisguse.opentracks.io.file.TrackFileFormat;
 import de.dennisguse.opentracks.util.ExportUtils;
 
+/**
+ * Exports a batch of tracks; the tracks are exported in parallel (one thread per core) and one result per track is sent as soon as it is done.
+ * Large exports are split into jobs of at most {@link #BATCH_SIZE} tracks: a job stopped by the system (e.g., after 10 minutes on API 26+) is restarted with its batch only.
+ * The export directory is listed once per batch (instead of once per track).
+ * The {@link ExportManifest} of the directory is updated after each batch.
+ * Alternatively, a batch can be exported as one ZIP archive (see {@link ZipTrackExporter}); large exports are split into several archives.
+ */
 public class ExportService extends JobIntentService {
 
+    private static final String TAG = ExportService.class.getSimpleName();
+
     private static final int JOB_ID = 1;
 
+    // Tracks per job; the tracks of a job are exported in parallel.
+    @VisibleForTesting
+    static final int BATCH_SIZE = 64;
+
+    // Tracks per archive; each archive is written by one job.
+    static final int ARCHIVE_BATCH_SIZE = 100;
+
     private static final String EXTRA_RECEIVER = "extra_receiver";
-    private static final String EXTRA_TRACK_ID = "extra_track_id";
+    private static final String EXTRA_TRACK_IDS = "extra_track_ids";
     private static final String EXTRA_TRACK_FILE_FORMAT = "extra_track_file_format";
     private static final String EXTRA_DIRECTORY_URI = "extra_directory_uri";
+    private static final String EXTRA_ARCHIVE_URI = "extra_archive_uri";
 
     public static void enqueue(Context context, ExportServiceResultReceiver receiver, Track.Id trackId, TrackFileFormat trackFileFormat, Uri directoryUri) {
+        enqueue(context, receiver, new ArrayList<>(Collections.singletonList(trackId)), trackFileFormat, directoryUri);
+    }
+
+    public static void enqueue(Context context, ExportServiceResultReceiver receiver, ArrayList<Track.Id> trackIds, TrackFileFormat trackFileFormat, Uri directoryUri) {
+        for (int start = 0; start < trackIds.size(); start += BATCH_SIZE) {
+            ArrayList<Track.Id> batch = new ArrayList<>(trackIds.subList(start, Math.min(start + BATCH_SIZE, trackIds.size())));
+
+            Intent intent = new Intent(context, JobService.class);
+            intent.putExtra(EXTRA_RECEIVER, receiver);
+            intent.putParcelableArrayListExtra(EXTRA_TRACK_IDS, batch);
+            intent.putExtra(EXTRA_TRACK_FILE_FORMAT, trackFileFormat);
+            intent.putExtra(EXTRA_DIRECTORY_URI, directoryUri);
+            enqueueWork(context, ExportService.class, JOB_ID, intent);
+        }
+    }
+
+    /**
+     * Exports the tracks as entries of one ZIP archive in one job; at most {@link #ARCHIVE_BATCH_SIZE} tracks should be passed.
+     * A ZIP archive cannot be continued, so a stopped job writes its archive again.
+     *
+     * @param archiveUri the (already created) document of the archive; it is overwritten.
+     */
+    public static void enqueueArchive(Context context, ExportServiceResultReceiver receiver, ArrayList<Track.Id> trackIds, TrackFileFormat trackFileFormat, Uri archiveUri) {
         Intent intent = new Intent(context, JobService.class);
         intent.putExtra(EXTRA_RECEIVER, receiver);
-        intent.putExtra(EXTRA_TRACK_ID, trackId);
+        intent.putParcelableArrayListExtra(EXTRA_TRACK_IDS, trackIds);
         intent.putExtra(EXTRA_TRACK_FILE_FORMAT, trackFileFormat);
-        intent.putExtra(EXTRA_DIRECTORY_URI, directoryUri);
+        intent.putExtra(EXTRA_ARCHIVE_URI, archiveUri);
         enqueueWork(context, ExportService.class, JOB_ID, intent);
     }
 
@@ -38,18 +91,96 @@ public class ExportService extends JobIntentService {
     protected void onHandleWork(@NonNull Intent intent) {
         // Get all data.
         ResultReceiver resultReceiver = intent.getParcelableExtra(EXTRA_RECEIVER);
-        Track.Id trackId = intent.getParcelableExtra(EXTRA_TRACK_ID);
+        ArrayList<Track.Id> trackIds = intent.getParcelableArrayListExtra(EXTRA_TRACK_IDS);
         TrackFileFormat trackFileFormat = (TrackFileFormat) intent.getSerializableExtra(EXTRA_TRACK_FILE_FORMAT);
         Uri directoryUri = intent.getParcelableExtra(EXTRA_DIRECTORY_URI);
+        Uri archiveUri = intent.getParcelableExtra(EXTRA_ARCHIVE_URI);
+
+        if (archiveUri != null) {
+            exportArchive(this, trackIds, trackFileFormat, archiveUri, getParallelism(), resultReceiver);
+            return;
+        }
 
         // Build directory file.
         DocumentFile directoryFile = DocumentFile.fromTreeUri(this, directoryUri);
 
-        // Export.
-        ContentProviderUtils contentProviderUtils = new ContentProviderUtils(this);
-        Track track = contentProviderUtils.getTrack(trackId);
-        boolean success = ExportUtils.exportTrack(this, trackFileFormat, directoryFile, track);
+        exportTracks(this, trackIds, trackFileFormat, directoryFile, getParallelism(), resultReceiver);
+    }
+
+    static int getParallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Exports the tracks on a pool of parallelism threads; returns after all tracks were exported.
+     */
+    @VisibleForTesting
+    static void exportTracks(@NonNull Context context, @NonNull List<Track.Id> trackIds, @NonNull TrackFileFormat trackFileFormat, @NonNull DocumentFile directoryFile, int parallelism, @NonNull ResultReceiver resultReceiver) {
+        ContentProviderUtils contentProviderUtils = new ContentProviderUtils(context);
+        Map<String, Uri> directoryFiles = ExportUtils.getAllFileUris(context, directoryFile);
+        ExportManifest exportManifest = ExportManifest.read(context, directoryFiles);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, trackIds.size())));
+        for (Track.Id trackId : trackIds) {
+            executorService.execute(() -> exportTrack(context, contentProviderUtils, trackId, trackFileFormat, directoryFile, directoryFiles, exportManifest, resultReceiver));
+        }
+        executorService.shutdown();
+        try {
+            executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Log.w(TAG, "Export interrupted", e);
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        exportManifest.write(context, directoryFile, directoryFiles);
+    }
+
+    /**
+     * Exports the tracks into the archive; returns after all tracks were exported.
+     */
+    @VisibleForTesting
+    static void exportArchive(@NonNull Context context, @NonNull List<Track.Id> trackIds, @NonNull TrackFileFormat trackFileFormat, @NonNull Uri archiveUri, int parallelism, @NonNull ResultReceiver resultReceiver) {
+        ZipTrackExporter zipTrackExporter = new ZipTrackExporter(context, trackFileFormat, parallelism);
+        ZipTrackExporter.Callback callback = (trackId, success) -> sendResult(resultReceiver, trackId, success);
+
+        OutputStream outputStream;
+        try {
+            outputStream = context.getContentResolver().openOutputStream(archiveUri, "wt");
+        } catch (FileNotFoundException | RuntimeException e) {
+            Log.e(TAG, "Unable to open archive " + archiveUri, e);
+            outputStream = null;
+        }
+        if (outputStream == null) {
+            // Report it: the ExportActivity waits for one result per track.
+            for (Track.Id trackId : trackIds) {
+                sendResult(resultReceiver, trackId, false);
+            }
+            return;
+        }
+
+        // Closes the archive before the tracks are reported.
+        zipTrackExporter.writeTracks(trackIds, new BufferedOutputStream(outputStream), callback);
+    }
+
+    private static void exportTrack(Context context, ContentProviderUtils contentProviderUtils, Track.Id trackId, TrackFileFormat trackFileFormat, DocumentFile directoryFile, Map<String, Uri> directoryFiles, ExportManifest exportManifest, ResultReceiver resultReceiver) {
+        boolean success;
+        try {
+            Track track = contentProviderUtils.getTrack(trackId);
+            success = track != null && ExportUtils.exportTrack(context, trackFileFormat, directoryFile, track, directoryFiles);
+            if (success) {
+                exportManifest.put(track, trackFileFormat);
+            }
+        } catch (RuntimeException e) {
+            // Report it: the ExportActivity waits for one result per track.
+            Log.e(TAG, "Unable to export track " + trackId.getId(), e);
+            success = false;
+        }
+
+        sendResult(resultReceiver, trackId, success);
+    }
 
+    private static void sendResult(ResultReceiver resultReceiver, Track.Id trackId, boolean success) {
         // Prepare resultCode and bundle to send to the receiver.
         Bundle bundle = new Bundle();
         bundle.putParcelable(ExportServiceResultReceiver.RESULT_EXTRA_TRACK_ID, trackId);
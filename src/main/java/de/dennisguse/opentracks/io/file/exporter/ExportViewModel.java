@@ -0,0 +1,100 @@
+package de.dennisguse.opentracks.io.file.exporter;
+
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.util.Pair;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.ViewModel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import de.dennisguse.opentracks.content.data.Track;
+
+/**
+ * Keeps the {@link ExportService} jobs of an {@link ExportActivity} across configuration changes.
+ * The jobs report to the receiver of this model, which forwards the results to the current activity.
+ * Thus, tracks that are still exported are neither enqueued again nor are their results lost.
+ */
+public class ExportViewModel extends ViewModel implements ExportServiceResultReceiver.Receiver {
+
+    private final ExportServiceResultReceiver resultReceiver = new ExportServiceResultReceiver(new Handler(), this);
+
+    // Tracks enqueued but whose result was not delivered to an activity yet.
+    private final Set<Track.Id> inFlightTrackIds = new HashSet<>();
+
+    // Results received while no activity was attached.
+    private final List<Pair<Integer, Bundle>> pendingResults = new ArrayList<>();
+
+    private ExportServiceResultReceiver.Receiver receiver;
+
+    // The archives of a running archive export.
+    private List<Uri> archiveUris;
+
+    void attach(@NonNull ExportServiceResultReceiver.Receiver receiver) {
+        this.receiver = receiver;
+        for (Pair<Integer, Bundle> result : pendingResults) {
+            deliver(result.first, result.second);
+        }
+        pendingResults.clear();
+    }
+
+    void detach() {
+        receiver = null;
+    }
+
+    @NonNull
+    ExportServiceResultReceiver getResultReceiver() {
+        return resultReceiver;
+    }
+
+    void onEnqueued(@NonNull Collection<Track.Id> trackIds) {
+        inFlightTrackIds.addAll(trackIds);
+    }
+
+    boolean isInFlight(@NonNull Track.Id trackId) {
+        return inFlightTrackIds.contains(trackId);
+    }
+
+    boolean hasInFlight() {
+        return !inFlightTrackIds.isEmpty();
+    }
+
+    @Nullable
+    List<Uri> getArchiveUris() {
+        return archiveUris;
+    }
+
+    void setArchiveUris(@Nullable List<Uri> archiveUris) {
+        this.archiveUris = archiveUris;
+    }
+
+    @Override
+    public void onReceiveResult(int resultCode, Bundle resultData) {
+        if (receiver != null) {
+            deliver(resultCode, resultData);
+        } else {
+            pendingResults.add(new Pair<>(resultCode, resultData));
+        }
+    }
+
+    private void deliver(int resultCode, Bundle resultData) {
+        if (resultData != null) {
+            Track.Id trackId = resultData.getParcelable(ExportServiceResultReceiver.RESULT_EXTRA_TRACK_ID);
+            inFlightTrackIds.remove(trackId);
+        }
+        receiver.onReceiveResult(resultCode, resultData);
+    }
+
+    @Override
+    protected void onCleared() {
+        receiver = null;
+        pendingResults.clear();
+    }
+}
@@ -0,0 +1,62 @@
+package de.dennisguse.opentracks.io.file.exporter;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of optional float values backed by primitive arrays (i.e., without boxing).
+ * The capacity is kept on {@link #clear()}, so it is reused by the next segment.
+ */
+final class FloatValueList {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private float[] values = new float[INITIAL_CAPACITY];
+    private boolean[] present = new boolean[INITIAL_CAPACITY];
+    private int size = 0;
+    private boolean hasValue = false;
+
+    void add(float value) {
+        ensureCapacity();
+        values[size] = value;
+        present[size] = true;
+        size++;
+        hasValue = true;
+    }
+
+    void addMissing() {
+        ensureCapacity();
+        present[size] = false;
+        size++;
+    }
+
+    void clear() {
+        size = 0;
+        hasValue = false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return true if at least one value is present.
+     */
+    boolean hasValue() {
+        return hasValue;
+    }
+
+    boolean isPresent(int index) {
+        return present[index];
+    }
+
+    float get(int index) {
+        return values[index];
+    }
+
+    private void ensureCapacity() {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            present = Arrays.copyOf(present, size * 2);
+        }
+    }
+}
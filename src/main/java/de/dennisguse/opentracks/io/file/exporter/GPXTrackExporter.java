@@ -35,6 +35,7 @@ import de.dennisguse.opentracks.util.StringUtils;
 
 /**
  * Convert {@link Track} incl. {@link Marker} and {@link TrackPoint} to GPX.
+ * Numbers and times of {@link TrackPoint}s are written via {@link StreamingFormatter} (no String per value).
  * NOTE:
  * * does not export {@link TrackPoint} without a latitude/longitude (not supported by GPX 1.1).
  * * cannot export multiple {@link Track}s - all {@link TrackPoint}s are exported as if they would belong to the first track.
@@ -79,10 +80,20 @@ public class GPXTrackExporter implements TrackExporter {
         POWER_FORMAT.setGroupingUsed(false);
     }
 
+    // NumberFormat is not thread-safe: one copy per exporter (tracks may be exported in parallel).
+    private final NumberFormat altitudeFormat = (NumberFormat) ALTITUDE_FORMAT.clone();
+    private final NumberFormat coordinateFormat = (NumberFormat) COORDINATE_FORMAT.clone();
+    private final NumberFormat speedFormat = (NumberFormat) SPEED_FORMAT.clone();
+    private final NumberFormat distanceFormat = (NumberFormat) DISTANCE_FORMAT.clone();
+    private final NumberFormat heartRateFormat = (NumberFormat) HEARTRATE_FORMAT.clone();
+    private final NumberFormat cadenceFormat = (NumberFormat) CADENCE_FORMAT.clone();
+    private final NumberFormat powerFormat = (NumberFormat) POWER_FORMAT.clone();
+
     private final ContentProviderUtils contentProviderUtils;
 
     private final String creator;
     private PrintWriter printWriter;
+    private StreamingFormatter formatter;
 
     public GPXTrackExporter(ContentProviderUtils contentProviderUtils, String creator) {
         this.contentProviderUtils = contentProviderUtils;
@@ -179,12 +190,14 @@ public class GPXTrackExporter implements TrackExporter {
 
     public void prepare(OutputStream outputStream) {
         this.printWriter = new PrintWriter(outputStream);
+        this.formatter = new StreamingFormatter(printWriter);
     }
 
     public void close() {
         if (printWriter != null) {
             printWriter.flush();
             printWriter = null;
+            formatter = null;
         }
     }
 
@@ -235,11 +248,15 @@ public class GPXTrackExporter implements TrackExporter {
 
     public void writeMarker(Marker marker) {
         if (printWriter != null) {
-            printWriter.println("<wpt " + formatLocation(marker.getLatitude(), marker.getLongitude()) + ">");
+            printWriter.print("<wpt ");
+            writeLocation(marker.getLatitude(), marker.getLongitude());
+            printWriter.println(">");
             if (marker.hasAltitude()) {
-                printWriter.println("<ele>" + ALTITUDE_FORMAT.format(marker.getAltitude()) + "</ele>");
+                writeElement("ele", marker.getAltitude(), altitudeFormat);
             }
-            printWriter.println("<time>" + StringUtils.formatDateTimeIso8601(marker.getTime()) + "</time>");
+            printWriter.print("<time>");
+            formatter.writeTime(marker.getTime());
+            printWriter.println("</time>");
             printWriter.println("<name>" + StringUtils.formatCData(marker.getName()) + "</name>");
             printWriter.println("<desc>" + StringUtils.formatCData(marker.getDescription()) + "</desc>");
             printWriter.println("<type>" + StringUtils.formatCData(marker.getCategory()) + "</type>");
@@ -278,43 +295,47 @@ public class GPXTrackExporter implements TrackExporter {
     public void writeTrackPoint(TrackPoint trackPoint) {
         if (printWriter != null) {
 
-            printWriter.println("<trkpt " + formatLocation(trackPoint.getLatitude(), trackPoint.getLongitude()) + ">");
+            printWriter.print("<trkpt ");
+            writeLocation(trackPoint.getLatitude(), trackPoint.getLongitude());
+            printWriter.println(">");
 
             if (trackPoint.hasAltitude()) {
-                printWriter.println("<ele>" + ALTITUDE_FORMAT.format(trackPoint.getAltitude()) + "</ele>");
+                writeElement("ele", trackPoint.getAltitude(), altitudeFormat);
             }
 
-            printWriter.println("<time>" + StringUtils.formatDateTimeIso8601(trackPoint.getTime()) + "</time>");
+            printWriter.print("<time>");
+            formatter.writeTime(trackPoint.getTime());
+            printWriter.println("</time>");
 
             if (trackPoint.hasSpeed() || trackPoint.hasHeartRate() || trackPoint.hasCyclingCadence() || trackPoint.hasAltitudeGain() || trackPoint.hasAltitudeLoss()) {
                 printWriter.println("<extensions><gpxtpx:TrackPointExtension>");
 
                 if (trackPoint.hasSpeed()) {
-                    printWriter.println("<gpxtpx:speed>" + SPEED_FORMAT.format(trackPoint.getSpeed().toMPS()) + "</gpxtpx:speed>");
+                    writeElement("gpxtpx:speed", trackPoint.getSpeed().toMPS(), speedFormat);
                 }
 
                 if (trackPoint.hasHeartRate()) {
-                    printWriter.println("<gpxtpx:hr>" + HEARTRATE_FORMAT.format(trackPoint.getHeartRate_bpm()) + "</gpxtpx:hr>");
+                    writeElement("gpxtpx:hr", trackPoint.getHeartRate_bpm(), heartRateFormat);
                 }
 
                 if (trackPoint.hasCyclingCadence()) {
-                    printWriter.println("<gpxtpx:cad>" + CADENCE_FORMAT.format(trackPoint.getCyclingCadence_rpm()) + "</gpxtpx:cad>");
+                    writeElement("gpxtpx:cad", trackPoint.getCyclingCadence_rpm(), cadenceFormat);
                 }
 
                 if (trackPoint.hasPower()) {
-                    printWriter.println("<pwr:PowerInWatts>" + POWER_FORMAT.format(trackPoint.getPower()) + "</pwr:PowerInWatts>");
+                    writeElement("pwr:PowerInWatts", trackPoint.getPower(), powerFormat);
                 }
 
                 if (trackPoint.hasAltitudeGain()) {
-                    printWriter.println("<opentracks:gain>" + ALTITUDE_FORMAT.format(trackPoint.getAltitudeGain()) + "</opentracks:gain>");
+                    writeElement("opentracks:gain", trackPoint.getAltitudeGain(), altitudeFormat);
                 }
 
                 if (trackPoint.hasAltitudeLoss()) {
-                    printWriter.println("<opentracks:loss>" + ALTITUDE_FORMAT.format(trackPoint.getAltitudeLoss()) + "</opentracks:loss>");
+                    writeElement("opentracks:loss", trackPoint.getAltitudeLoss(), altitudeFormat);
                 }
 
                 if (trackPoint.hasSensorDistance()) {
-                    printWriter.println("<opentracks:distance>" + DISTANCE_FORMAT.format(trackPoint.getSensorDistance().toM()) + "</opentracks:distance>");
+                    writeElement("opentracks:distance", trackPoint.getSensorDistance().toM(), distanceFormat);
                 }
 
                 printWriter.println("</gpxtpx:TrackPointExtension></extensions>");
@@ -324,7 +345,24 @@ public class GPXTrackExporter implements TrackExporter {
         }
     }
 
-    private String formatLocation(double latitude, double longitude) {
-        return "lat=\"" + COORDINATE_FORMAT.format(latitude) + "\" lon=\"" + COORDINATE_FORMAT.format(longitude) + "\"";
+    private void writeLocation(double latitude, double longitude) {
+        printWriter.print("lat=\"");
+        formatter.writeDecimal(latitude, coordinateFormat);
+        printWriter.print("\" lon=\"");
+        formatter.writeDecimal(longitude, coordinateFormat);
+        printWriter.print("\"");
+    }
+
+    /**
+     * Writes {@code <tag>value</tag>} and a line separator.
+     */
+    private void writeElement(String tag, double value, NumberFormat numberFormat) {
+        printWriter.print('<');
+        printWriter.print(tag);
+        printWriter.print('>');
+        formatter.writeDecimal(value, numberFormat);
+        printWriter.print("</");
+        printWriter.print(tag);
+        printWriter.println('>');
     }
 }
@@ -28,9 +28,6 @@ import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
 
 import de.dennisguse.opentracks.R;
 import de.dennisguse.opentracks.content.data.Marker;
@@ -74,13 +71,13 @@ public class KMLTrackExporter implements TrackExporter {
     private final ContentProviderUtils contentProviderUtils;
 
     private PrintWriter printWriter;
-    private final List<Float> speedList = new ArrayList<>();
-    private final List<Float> distanceList = new ArrayList<>();
-    private final List<Float> powerList = new ArrayList<>();
-    private final List<Float> cadenceList = new ArrayList<>();
-    private final List<Float> heartRateList = new ArrayList<>();
-    private final List<Float> altitudeGainList = new ArrayList<>();
-    private final List<Float> altitudeLossList = new ArrayList<>();
+    private final FloatValueList speedList = new FloatValueList();
+    private final FloatValueList distanceList = new FloatValueList();
+    private final FloatValueList powerList = new FloatValueList();
+    private final FloatValueList cadenceList = new FloatValueList();
+    private final FloatValueList heartRateList = new FloatValueList();
+    private final FloatValueList altitudeGainList = new FloatValueList();
+    private final FloatValueList altitudeLossList = new FloatValueList();
 
     @Deprecated // Figure out a better way to do this! (if needed)
     private TrackPoint startTrackPoint;
@@ -354,26 +351,26 @@ public class KMLTrackExporter implements TrackExporter {
         if (printWriter != null) {
             printWriter.println("<ExtendedData>");
             printWriter.println("<SchemaData schemaUrl=\"#" + SCHEMA_ID + "\">");
-            if (speedList.stream().anyMatch(Objects::nonNull)) {
+            if (speedList.hasValue()) {
                 writeSimpleArrayData(speedList, EXTENDED_DATA_TYPE_SPEED);
             }
             if (exportSensorData) {
-                if (distanceList.stream().anyMatch(Objects::nonNull)) {
+                if (distanceList.hasValue()) {
                     writeSimpleArrayData(distanceList, EXTENDED_DATA_TYPE_DISTANCE);
                 }
-                if (powerList.stream().anyMatch(Objects::nonNull)) {
+                if (powerList.hasValue()) {
                     writeSimpleArrayData(powerList, EXTENDED_DATA_TYPE_POWER);
                 }
-                if (cadenceList.stream().anyMatch(Objects::nonNull)) {
+                if (cadenceList.hasValue()) {
                     writeSimpleArrayData(cadenceList, EXTENDED_DATA_TYPE_CADENCE);
                 }
-                if (heartRateList.stream().anyMatch(Objects::nonNull)) {
+                if (heartRateList.hasValue()) {
                     writeSimpleArrayData(heartRateList, EXTENDED_DATA_TYPE_HEART_RATE);
                 }
-                if (altitudeGainList.stream().anyMatch(Objects::nonNull)) {
+                if (altitudeGainList.hasValue()) {
                     writeSimpleArrayData(altitudeGainList, EXTENDED_DATA_TYPE_ALTITUDE_GAIN);
                 }
-                if (altitudeLossList.stream().anyMatch(Objects::nonNull)) {
+                if (altitudeLossList.hasValue()) {
                     writeSimpleArrayData(altitudeLossList, EXTENDED_DATA_TYPE_ALTITUDE_LOSS);
                 }
             }
@@ -395,16 +392,44 @@ public class KMLTrackExporter implements TrackExporter {
             } else {
                 printWriter.println("<gx:coord/>");
             }
-            speedList.add(trackPoint.hasSpeed() ? (float) trackPoint.getSpeed().toMPS() : null);
+            if (trackPoint.hasSpeed()) {
+                speedList.add((float) trackPoint.getSpeed().toMPS());
+            } else {
+                speedList.addMissing();
+            }
 
             if (exportSensorData) {
-                distanceList.add(trackPoint.hasSensorDistance() ? (float) trackPoint.getSensorDistance().toM() : null);
-                heartRateList.add(trackPoint.hasHeartRate() ? trackPoint.getHeartRate_bpm() : null);
-                cadenceList.add(trackPoint.hasCyclingCadence() ? trackPoint.getCyclingCadence_rpm() : null);
-                powerList.add(trackPoint.hasPower() ? trackPoint.getPower() : null);
+                if (trackPoint.hasSensorDistance()) {
+                    distanceList.add((float) trackPoint.getSensorDistance().toM());
+                } else {
+                    distanceList.addMissing();
+                }
+                if (trackPoint.hasHeartRate()) {
+                    heartRateList.add(trackPoint.getHeartRate_bpm());
+                } else {
+                    heartRateList.addMissing();
+                }
+                if (trackPoint.hasCyclingCadence()) {
+                    cadenceList.add(trackPoint.getCyclingCadence_rpm());
+                } else {
+                    cadenceList.addMissing();
+                }
+                if (trackPoint.hasPower()) {
+                    powerList.add(trackPoint.getPower());
+                } else {
+                    powerList.addMissing();
+                }
 
-                altitudeGainList.add(trackPoint.hasAltitudeGain() ? trackPoint.getAltitudeGain() : null);
-                altitudeLossList.add(trackPoint.hasAltitudeLoss() ? trackPoint.getAltitudeLoss() : null);
+                if (trackPoint.hasAltitudeGain()) {
+                    altitudeGainList.add(trackPoint.getAltitudeGain());
+                } else {
+                    altitudeGainList.addMissing();
+                }
+                if (trackPoint.hasAltitudeLoss()) {
+                    altitudeLossList.add(trackPoint.getAltitudeLoss());
+                } else {
+                    altitudeLossList.addMissing();
+                }
             }
         }
     }
@@ -415,14 +440,15 @@ public class KMLTrackExporter implements TrackExporter {
      * @param list a list of simple array data
      * @param name the name of the simple array data
      */
-    private void writeSimpleArrayData(List<Float> list, String name) {
+    private void writeSimpleArrayData(FloatValueList list, String name) {
         printWriter.println("<gx:SimpleArrayData name=\"" + name + "\">");
         for (int i = 0; i < list.size(); i++) {
-            Float value = list.get(i);
-            if (value == null) {
+            if (!list.isPresent(i)) {
                 printWriter.println("<gx:value />");
             } else {
-                printWriter.println("<gx:value>" + list.get(i) + "</gx:value>");
+                printWriter.print("<gx:value>");
+                printWriter.print(list.get(i));
+                printWriter.println("</gx:value>");
             }
         }
         printWriter.println("</gx:SimpleArrayData>");
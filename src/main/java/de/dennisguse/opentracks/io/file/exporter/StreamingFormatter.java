@@ -0,0 +1,203 @@
+package de.dennisguse.opentracks.io.file.exporter;
+
+import androidx.annotation.NonNull;
+
+import java.io.PrintWriter;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * Writes numbers and timestamps to a {@link PrintWriter} using a reusable char buffer (no String per value).
+ * <p>
+ * The output is identical to {@link NumberFormat#format(double)} (US locale) and {@link Instant#toString()}.
+ * Values close to a rounding tie (where the decimal representation of the double matters), values that need grouping separators, and values out of range are handed to the original formatters.
+ * Timestamps are formatted incrementally: the date is only re-computed if the day changes.
+ * <p>
+ * Not thread-safe.
+ */
+final class StreamingFormatter {
+
+    private static final int MAX_DIGITS = 9;
+    private static final double MAX_SCALED_VALUE = 1e12;
+    // Rounding error of value * 10^fractionDigits is below 1e-4 for MAX_SCALED_VALUE.
+    private static final double TIE_TOLERANCE = 1e-3;
+
+    private static final long[] LONG_POW10 = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L};
+    private static final double[] DOUBLE_POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9};
+
+    private static final long SECONDS_PER_DAY = 86400;
+    // 0000-01-01T00:00:00Z and 10000-01-01T00:00:00Z: Instant.toString() uses four digit years in between.
+    private static final long MIN_EPOCH_SECOND = -62167219200L;
+    private static final long MAX_EPOCH_SECOND = 253402300800L;
+
+    private final PrintWriter printWriter;
+
+    private final char[] buffer = new char[32];
+
+    // "yyyy-MM-ddT" of cachedEpochDay
+    private final char[] datePrefix = new char[11];
+    private long cachedEpochDay = Long.MIN_VALUE;
+
+    StreamingFormatter(@NonNull PrintWriter printWriter) {
+        this.printWriter = printWriter;
+    }
+
+    /**
+     * Same as printWriter.print(numberFormat.format(value)) for a US {@link NumberFormat}.
+     */
+    void writeDecimal(double value, @NonNull NumberFormat numberFormat) {
+        int fractionDigits = numberFormat.getMaximumFractionDigits();
+        int integerDigits = Math.min(numberFormat.getMaximumIntegerDigits(), MAX_DIGITS);
+        double abs = Math.abs(value);
+        if (fractionDigits > MAX_DIGITS || !(abs < DOUBLE_POW10[integerDigits])) {
+            // Includes NaN and infinity
+            printWriter.print(numberFormat.format(value));
+            return;
+        }
+
+        double scaled = abs * DOUBLE_POW10[fractionDigits];
+        double floor = Math.floor(scaled);
+        double remainder = scaled - floor;
+        if (scaled >= MAX_SCALED_VALUE || Math.abs(remainder - 0.5) < TIE_TOLERANCE) {
+            printWriter.print(numberFormat.format(value));
+            return;
+        }
+
+        long rounded = (long) floor + (remainder > 0.5 ? 1 : 0);
+        boolean negative = value < 0 || (value == 0 && 1 / value < 0);
+        if (negative && rounded == 0) {
+            // Negative zero
+            printWriter.print(numberFormat.format(value));
+            return;
+        }
+
+        long integerPart = rounded / LONG_POW10[fractionDigits];
+        long fractionPart = rounded % LONG_POW10[fractionDigits];
+        if (integerPart >= LONG_POW10[integerDigits]) {
+            // Rounded up to more integer digits than allowed
+            printWriter.print(numberFormat.format(value));
+            return;
+        }
+        if (numberFormat.isGroupingUsed() && integerPart >= getMinGroupedValue(numberFormat)) {
+            // Needs grouping separators (e.g., 1,234.5)
+            printWriter.print(numberFormat.format(value));
+            return;
+        }
+
+        int length = 0;
+        if (negative) {
+            buffer[length++] = '-';
+        }
+        length = appendLong(integerPart, length);
+
+        if (fractionPart != 0) {
+            // Without trailing zeros
+            int digits = fractionDigits;
+            while (fractionPart % 10 == 0) {
+                fractionPart /= 10;
+                digits--;
+            }
+            buffer[length++] = '.';
+            for (int i = digits - 1; i >= 0; i--) {
+                buffer[length + i] = (char) ('0' + fractionPart % 10);
+                fractionPart /= 10;
+            }
+            length += digits;
+        }
+
+        printWriter.write(buffer, 0, length);
+    }
+
+    /**
+     * @return the smallest integer part that is written with a grouping separator.
+     */
+    private static long getMinGroupedValue(@NonNull NumberFormat numberFormat) {
+        if (numberFormat instanceof DecimalFormat) {
+            int groupingSize = ((DecimalFormat) numberFormat).getGroupingSize();
+            if (groupingSize <= 0) {
+                return Long.MAX_VALUE;
+            }
+            if (groupingSize < LONG_POW10.length) {
+                return LONG_POW10[groupingSize];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Same as printWriter.print(time.toString()).
+     */
+    void writeTime(@NonNull Instant time) {
+        long epochSecond = time.getEpochSecond();
+        if (epochSecond < MIN_EPOCH_SECOND || epochSecond >= MAX_EPOCH_SECOND) {
+            printWriter.print(time.toString());
+            return;
+        }
+
+        long epochDay = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        if (epochDay != cachedEpochDay) {
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            appendDigits(datePrefix, 0, date.getYear(), 4);
+            datePrefix[4] = '-';
+            appendDigits(datePrefix, 5, date.getMonthValue(), 2);
+            datePrefix[7] = '-';
+            appendDigits(datePrefix, 8, date.getDayOfMonth(), 2);
+            datePrefix[10] = 'T';
+            cachedEpochDay = epochDay;
+        }
+        printWriter.write(datePrefix, 0, datePrefix.length);
+
+        int secondOfDay = (int) Math.floorMod(epochSecond, SECONDS_PER_DAY);
+        appendDigits(buffer, 0, secondOfDay / 3600, 2);
+        buffer[2] = ':';
+        appendDigits(buffer, 3, secondOfDay / 60 % 60, 2);
+        buffer[5] = ':';
+        appendDigits(buffer, 6, secondOfDay % 60, 2);
+        int length = 8;
+
+        int nano = time.getNano();
+        if (nano > 0) {
+            buffer[length++] = '.';
+            if (nano % 1_000_000 == 0) {
+                appendDigits(buffer, length, nano / 1_000_000, 3);
+                length += 3;
+            } else if (nano % 1_000 == 0) {
+                appendDigits(buffer, length, nano / 1_000, 6);
+                length += 6;
+            } else {
+                appendDigits(buffer, length, nano, 9);
+                length += 9;
+            }
+        }
+        buffer[length++] = 'Z';
+
+        printWriter.write(buffer, 0, length);
+    }
+
+    /**
+     * @return the new length
+     */
+    private int appendLong(long value, int start) {
+        int digits = 1;
+        while (digits < LONG_POW10.length && value >= LONG_POW10[digits]) {
+            digits++;
+        }
+        for (int i = start + digits - 1; i >= start; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return start + digits;
+    }
+
+    /**
+     * Writes value with leading zeros.
+     */
+    private static void appendDigits(char[] chars, int start, int value, int digits) {
+        for (int i = start + digits - 1; i >= start; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package de.dennisguse.opentracks.io.file.exporter;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+import de.dennisguse.opentracks.io.file.TrackFileFormat;
+import de.dennisguse.opentracks.util.ExportUtils;
+import de.dennisguse.opentracks.util.FileUtils;
+
+/**
+ * Exports multiple tracks as entries of one ZIP archive written through a single {@link OutputStream}.
+ * The entries are named like the files of a directory export.
+ * <p>
+ * The tracks are encoded in parallel while the entries are written in the order of the tracks.
+ * At most two encoded tracks per thread are buffered; each in memory up to {@link #MAX_BUFFER_SIZE} and in a temporary file beyond.
+ * Thus, the memory usage does not depend on the size of the tracks.
+ */
+public class ZipTrackExporter {
+
+    private static final String TAG = ZipTrackExporter.class.getSimpleName();
+
+    public static final String MIME_TYPE = "application/zip";
+    public static final String EXTENSION = "zip";
+
+    // Per encoded track: larger tracks (e.g., hundreds of MB of GPX) are spilled into a temporary file.
+    private static final int MAX_BUFFER_SIZE = 512 * 1024;
+
+    public interface Callback {
+        /**
+         * Called once per track.
+         * Failed tracks are reported right away; written tracks only after the archive was finished and closed.
+         * If the archive could not be finalized, all tracks are reported as failed.
+         */
+        void onTrackExported(@NonNull Track.Id trackId, boolean success);
+    }
+
+    private final Context context;
+    private final ContentProviderUtils contentProviderUtils;
+    private final TrackFileFormat trackFileFormat;
+    private final int parallelism;
+
+    public ZipTrackExporter(@NonNull Context context, @NonNull TrackFileFormat trackFileFormat, int parallelism) {
+        this.context = context;
+        this.contentProviderUtils = new ContentProviderUtils(context);
+        this.trackFileFormat = trackFileFormat;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Writes the tracks and closes the outputStream.
+     *
+     * @return true if the archive could be written (even if single tracks failed).
+     */
+    public boolean writeTracks(@NonNull List<Track.Id> trackIds, @NonNull OutputStream outputStream, @NonNull Callback callback) {
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, trackIds.size())));
+        Queue<Future<EncodedTrack>> pending = new ArrayDeque<>();
+        Iterator<Track.Id> trackIdIterator = trackIds.iterator();
+        int reported = 0;
+        List<Track.Id> written = new ArrayList<>();
+        boolean finalized = false;
+        try {
+            try (ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream)) {
+                while (trackIdIterator.hasNext() || !pending.isEmpty()) {
+                    while (trackIdIterator.hasNext() && pending.size() < 2 * parallelism) {
+                        Track.Id trackId = trackIdIterator.next();
+                        pending.add(executorService.submit(() -> encode(trackId)));
+                    }
+
+                    EncodedTrack encodedTrack = pending.remove().get();
+                    try {
+                        if (encodedTrack.data != null) {
+                            ZipEntry zipEntry = new ZipEntry(encodedTrack.entryName);
+                            if (encodedTrack.time != null) {
+                                zipEntry.setTime(encodedTrack.time);
+                            }
+                            zipOutputStream.putNextEntry(zipEntry);
+                            encodedTrack.data.writeTo(zipOutputStream);
+                            zipOutputStream.closeEntry();
+                            written.add(encodedTrack.trackId);
+                        } else {
+                            callback.onTrackExported(encodedTrack.trackId, false);
+                        }
+                    } finally {
+                        encodedTrack.discard();
+                    }
+                    reported++;
+                }
+                zipOutputStream.finish();
+            }
+            finalized = true;
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Unable to write archive", e);
+        } catch (ExecutionException e) {
+            // encode() handles its own errors.
+            Log.e(TAG, "Unable to encode track", e);
+        } catch (InterruptedException e) {
+            Log.w(TAG, "Export interrupted", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            executorService.shutdownNow();
+            discard(pending);
+        }
+
+        // An entry is only readable once the archive is finished and closed.
+        for (Track.Id trackId : written) {
+            callback.onTrackExported(trackId, finalized);
+        }
+        if (finalized) {
+            return true;
+        }
+
+        // All remaining tracks failed.
+        for (Track.Id trackId : trackIds.subList(reported, trackIds.size())) {
+            callback.onTrackExported(trackId, false);
+        }
+        return false;
+    }
+
+    /**
+     * Removes the temporary files of encoded tracks that were not written (e.g., the archive failed).
+     */
+    private static void discard(Queue<Future<EncodedTrack>> pending) {
+        for (Future<EncodedTrack> future : pending) {
+            try {
+                future.get().discard();
+            } catch (ExecutionException | CancellationException e) {
+                // Nothing was encoded.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        pending.clear();
+    }
+
+    private EncodedTrack encode(Track.Id trackId) {
+        SpillingOutputStream data = null;
+        try {
+            Track track = contentProviderUtils.getTrack(trackId);
+            if (track == null) {
+                Log.e(TAG, "Track " + trackId.getId() + " does not exist");
+                return new EncodedTrack(trackId, null, null, null);
+            }
+
+            data = new SpillingOutputStream(context.getCacheDir());
+            boolean success;
+            try {
+                success = trackFileFormat.createTrackExporter(context).writeTrack(track, data);
+            } finally {
+                data.close();
+            }
+            if (!success) {
+                Log.e(TAG, "Unable to export track " + trackId.getId());
+                data.discard();
+                return new EncodedTrack(trackId, null, null, null);
+            }
+
+            String entryName = FileUtils.sanitizeFileName(ExportUtils.getExportFileNameForTrack(track, trackFileFormat.getExtension()));
+            Long time = track.getTrackStatistics().getStartTime() != null ? track.getTrackStatistics().getStartTime().toEpochMilli() : null;
+            return new EncodedTrack(trackId, entryName, time, data);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Unable to export track " + trackId.getId(), e);
+            if (data != null) {
+                data.discard();
+            }
+            return new EncodedTrack(trackId, null, null, null);
+        }
+    }
+
+    private static class EncodedTrack {
+        private final Track.Id trackId;
+        private final String entryName;
+        private final Long time;
+        // null if the track could not be encoded.
+        private final SpillingOutputStream data;
+
+        EncodedTrack(@NonNull Track.Id trackId, @Nullable String entryName, @Nullable Long time, @Nullable SpillingOutputStream data) {
+            this.trackId = trackId;
+            this.entryName = entryName;
+            this.time = time;
+            this.data = data;
+        }
+
+        void discard() {
+            if (data != null) {
+                data.discard();
+            }
+        }
+    }
+
+    /**
+     * Buffers in memory up to {@link #MAX_BUFFER_SIZE} bytes and in a temporary file beyond.
+     */
+    private static class SpillingOutputStream extends OutputStream {
+        private final File directory;
+        private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+        private File file;
+        private OutputStream fileOutputStream;
+
+        SpillingOutputStream(@NonNull File directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            getOutputStream(1).write(b);
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            getOutputStream(len).write(b, off, len);
+        }
+
+        private OutputStream getOutputStream(int length) throws IOException {
+            if (fileOutputStream == null && memory.size() + length > MAX_BUFFER_SIZE) {
+                file = File.createTempFile("export", ".tmp", directory);
+                fileOutputStream = new BufferedOutputStream(new FileOutputStream(file));
+                memory.writeTo(fileOutputStream);
+                memory = null;
+            }
+            return fileOutputStream != null ? fileOutputStream : memory;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (fileOutputStream != null) {
+                fileOutputStream.close();
+            }
+        }
+
+        /**
+         * Must be closed before.
+         */
+        void writeTo(@NonNull OutputStream outputStream) throws IOException {
+            if (file == null) {
+                memory.writeTo(outputStream);
+                return;
+            }
+            try (InputStream inputStream = new FileInputStream(file)) {
+                byte[] buffer = new byte[8192];
+                int length;
+                while ((length = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, length);
+                }
+            }
+        }
+
+        void discard() {
+            memory = null;
+            if (file != null) {
+                try {
+                    close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Unable to close temporary file", e);
+                }
+                if (!file.delete()) {
+                    Log.w(TAG, "Unable to delete temporary file " + file);
+                }
+                file = null;
+            }
+        }
+    }
+}
@@ -23,6 +23,7 @@ import android.net.Uri;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
@@ -34,6 +35,7 @@ import java.io.InputStream;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
@@ -49,6 +51,9 @@ import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.data.TrackPoint;
 import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
 import de.dennisguse.opentracks.content.provider.TrackPointIterator;
+import de.dennisguse.opentracks.stats.BestEffortsCalculator;
+import de.dennisguse.opentracks.stats.HistogramCalculator;
+import de.dennisguse.opentracks.stats.MeanMaxCurvesCalculator;
 import de.dennisguse.opentracks.stats.TrackStatistics;
 import de.dennisguse.opentracks.stats.TrackStatisticsUpdater;
 import de.dennisguse.opentracks.util.FileUtils;
@@ -59,6 +64,9 @@ import de.dennisguse.opentracks.util.TrackIconUtils;
 
 /**
  * Abstract class for file track importers.
+ * <p>
+ * The track is inserted on track start and the {@link TrackPoint}s are flushed in chunks of {@link #MAX_BUFFERED_TRACK_POINTS} while parsing (incl. the statistics), so the memory usage does not depend on the file size.
+ * If the import fails, the inserted track is deleted again; if the process is killed while importing, it is deleted on next start (see {@link IncompleteImports}).
  *
  * @author Jimmy Shih
  */
@@ -66,12 +74,17 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
 
     private static final String TAG = AbstractFileTrackImporter.class.getSimpleName();
 
+    @VisibleForTesting
+    static final int MAX_BUFFERED_TRACK_POINTS = 2000;
+
     private final Context context;
     private final ContentProviderUtils contentProviderUtils;
     private final Distance recordingDistanceInterval;
 
     private final List<Track.Id> trackIds = new ArrayList<>();
+    // Markers parsed before the track started are matched while streaming; the others on file end.
     private final List<Marker> markers = new ArrayList<>();
+    private final List<Marker> lateMarkers = new ArrayList<>();
 
     // The current element content
     //TODO Should be made private and getter be used by child classes.
@@ -99,6 +112,9 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
     // The current track data
     private TrackData trackData;
 
+    // The UUID for the imported track; null until the parsed uuid was checked (see onTrackUuid()).
+    private UUID trackUuid;
+
     // The SAX locator to get the current line information
     private Locator locator;
 
@@ -131,90 +147,49 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
     @NonNull
     public List<Track.Id> importFile(InputStream inputStream) {
         try {
-            SAXParserFactory.newInstance().newSAXParser().parse(inputStream, this);
+            parse(inputStream);
+            IncompleteImports.remove(context, trackIds);
             return trackIds;
         } catch (IOException | SAXException | ParserConfigurationException | ParsingException e) {
             Log.e(TAG, "Unable to import file", e);
-            if (trackIds.size() > 0) {
-                cleanImport();
-            }
+            cleanImport();
             throw new ImportParserException(e);
         } catch (SQLiteConstraintException e) {
             Log.e(TAG, "Unable to import file", e);
+            cleanImport();
             throw new ImportAlreadyExistsException(e);
+        } catch (ImportParserException | ImportAlreadyExistsException e) {
+            Log.e(TAG, "Unable to import file", e);
+            cleanImport();
+            throw e;
+        } catch (RuntimeException e) {
+            // The track is inserted while parsing: do not leave a partial track.
+            Log.e(TAG, "Unable to import file", e);
+            cleanImport();
+            throw e;
         }
     }
 
+    /**
+     * Parses the inputStream and calls the callbacks (e.g., {@link #onTrackStart()}).
+     */
+    protected void parse(InputStream inputStream) throws IOException, SAXException, ParserConfigurationException {
+        SAXParserFactory.newInstance().newSAXParser().parse(inputStream, this);
+    }
+
     protected void onFileEnd() {
-        // Add markers to the last imported track
-        int size = trackIds.size();
-        if (size == 0) {
-            return;
-        }
-        Track.Id trackId = trackIds.get(size - 1);
-        Track track = contentProviderUtils.getTrack(trackId);
-        if (track == null) {
+        // Markers parsed after the track started (e.g., Placemarks after the track in KML) could not be matched while streaming.
+        if (lateMarkers.isEmpty() || trackData == null || trackIds.isEmpty()) {
             return;
         }
 
-        int markerPosition = -1;
-        Marker marker = null;
-        TrackPoint trackPoint = null;
+        MarkerMatcher markerMatcher = new MarkerMatcher(lateMarkers);
         TrackStatisticsUpdater trackStatisticsUpdater = new TrackStatisticsUpdater();
-
-        // TODO We are doing in memory processing for trackpoints; so we can do this in memory as well.
-        try (TrackPointIterator trackPointIterator = contentProviderUtils.getTrackPointLocationIterator(track.getId(), null)) {
-
-            while (true) {
-                if (marker == null) {
-                    markerPosition++;
-                    marker = markerPosition < markers.size() ? markers.get(markerPosition) : null;
-                    if (marker == null) {
-                        // No more markers
-                        return;
-                    }
-                    // If marker had photo it must be translated to internal photo url (depend on track id)
-                    if (marker.hasPhoto()) {
-                        marker.setPhotoUrl(getInternalPhotoUrl(marker.getPhotoUrl()));
-                    }
-                }
-
-                if (trackPoint == null) {
-                    if (!trackPointIterator.hasNext()) {
-                        // No more track points. Ignore the rest of the markers.
-                        return;
-                    }
-                    trackPoint = trackPointIterator.next();
-                    trackStatisticsUpdater.addTrackPoint(trackPoint, recordingDistanceInterval);
-                }
-
-                if ((marker.getTime()).isAfter(trackPoint.getTime())) {
-                    trackPoint = null;
-                } else if (marker.getTime().isBefore(trackPoint.getTime())) {
-                    Log.w(TAG, "Ignoring marker: current trackPoint was after marker.");
-                    marker = null;
-                } else {
-                    // The marker trackPoint time matches the track point time
-                    if (!trackPoint.hasLocation()) {
-                        // Invalid trackPoint, load the next trackPoint
-                        trackPoint = null;
-                        continue;
-                    }
-
-                    // Valid trackPoint
-                    if (trackPoint.getLatitude() == marker.getLatitude() && trackPoint.getLongitude() == marker.getLongitude()) {
-                        String markerDescription = marker.getDescription();
-                        String icon = context.getString(R.string.marker_icon_url);
-                        TrackStatistics stats = trackStatisticsUpdater.getTrackStatistics();
-
-                        // Insert marker
-                        Marker newMarker = new Marker(marker.getName(), markerDescription, marker.getCategory(), icon, track.getId(), stats, trackPoint, marker.getPhotoUrl());
-                        contentProviderUtils.insertMarker(newMarker);
-                    }
-
-                    // Load the next marker
-                    marker = null;
-                }
+        try (TrackPointIterator trackPointIterator = contentProviderUtils.getTrackPointLocationIterator(trackData.track.getId(), null)) {
+            while (trackPointIterator.hasNext() && !markerMatcher.isDone()) {
+                TrackPoint trackPoint = trackPointIterator.next();
+                trackStatisticsUpdater.addTrackPoint(trackPoint, recordingDistanceInterval);
+                markerMatcher.onTrackPoint(trackPoint, trackStatisticsUpdater);
             }
         }
     }
@@ -223,23 +198,39 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
      * On track start.
      */
     protected void onTrackStart() throws SAXException {
+        if (trackIds.size() > 0) {
+            // TODO Multi track is not supported yet.
+            throw new ImportParserException("Multi track not supported");
+        }
+
         trackData = new TrackData();
+        trackData.markerMatcher = new MarkerMatcher(markers);
+
+        // Name, description, category, and statistics are only known on track end; the UUID might be parsed later.
+        trackData.track.setUuid(UUID.randomUUID());
+        Uri uri = contentProviderUtils.insertTrack(trackData.track);
+        Track.Id trackId = new Track.Id(Long.parseLong(uri.getLastPathSegment()));
+        trackIds.add(trackId);
+        IncompleteImports.add(context, trackId);
+        trackData.track.setId(trackId);
     }
 
     /**
      * On track end.
      */
     protected void onTrackEnd() {
+        flushTrackPoints();
+        if (!trackData.trackStatisticsUpdater.isTrackInitialized()) {
+            throw new ImportParserException("Track did not contain any locations.");
+        }
+        trackData.track.setTrackStatistics(trackData.trackStatisticsUpdater.getTrackStatistics());
+
         if (name != null) {
             trackData.track.setName(name);
         }
 
-        try {
-            trackData.track.setUuid(UUID.fromString(uuid));
-        } catch (IllegalArgumentException | NullPointerException e) {
-            Log.w(TAG, "could not parse Track UUID, generating a new one.");
-            trackData.track.setUuid(UUID.randomUUID());
-        }
+        onTrackUuid();
+        trackData.track.setUuid(trackUuid);
 
         if (description != null) {
             trackData.track.setDescription(description);
@@ -254,37 +245,47 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
             trackData.track.setIcon(icon);
         }
 
-        TrackStatisticsUpdater statistics = new TrackStatisticsUpdater();
-        //TODO I guess, we should not filter by recordingDistanceInterval on import; the data is already recorded, so we should not change it.
-        for (TrackPoint trackPoint : trackData.bufferedTrackPoints) {
-            statistics.addTrackPoint(trackPoint, recordingDistanceInterval);
+        contentProviderUtils.updateTrack(trackData.track);
+        contentProviderUtils.updateBestEfforts(trackData.track.getId(), trackData.bestEffortsCalculator.getBestEfforts());
+        contentProviderUtils.updateHistograms(trackData.track.getId(), trackData.histogramCalculator.getHistograms());
+        contentProviderUtils.updateMeanMaxCurves(trackData.track.getId(), trackData.meanMaxCurvesCalculator.getCurves());
+    }
+
+    /**
+     * On the track's uuid parsed: checks whether the track was already imported before any TrackPoint is inserted.
+     * Also called on track end, if the file does not contain a uuid.
+     */
+    protected void onTrackUuid() {
+        if (trackUuid != null) {
+            return;
         }
-        if (!statistics.isTrackInitialized()) {
-            throw new ImportParserException("Track did not contain any locations.");
+
+        UUID parsedUuid;
+        try {
+            parsedUuid = UUID.fromString(uuid);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            Log.w(TAG, "could not parse Track UUID, generating a new one.");
+            trackUuid = UUID.randomUUID();
+            return;
         }
-        trackData.track.setTrackStatistics(statistics.getTrackStatistics());
 
-        Track track = contentProviderUtils.getTrack(trackData.track.getUuid());
-        if (track != null) {
-            if (PreferencesUtils.getPreventReimportTracks(sharedPreferences, context)) {
+        trackUuid = getUuidForImport(context, contentProviderUtils, parsedUuid);
+    }
+
+    /**
+     * @return the uuid for an imported track: the track's uuid or, if a track with it exists, a new one.
+     * @throws ImportAlreadyExistsException if a track with the uuid exists and re-import is prevented.
+     */
+    static UUID getUuidForImport(Context context, ContentProviderUtils contentProviderUtils, @NonNull UUID uuid) {
+        if (contentProviderUtils.getTrack(uuid) != null) {
+            if (PreferencesUtils.getPreventReimportTracks(PreferencesUtils.getSharedPreferences(context), context)) {
                 throw new ImportAlreadyExistsException(context.getString(R.string.import_prevent_reimport));
             }
 
             //TODO This is a workaround until we have proper UI.
-            trackData.track.setUuid(UUID.randomUUID());
-        }
-
-        if (trackIds.size() > 0) {
-            // TODO Multi track is not supported yet.
-            cleanImport();
-            throw new ImportParserException("Multi track not supported");
+            return UUID.randomUUID();
         }
-        Uri uri = contentProviderUtils.insertTrack(trackData.track);
-        Track.Id trackId = new Track.Id(Long.parseLong(uri.getLastPathSegment()));
-        trackIds.add(trackId);
-        trackData.track.setId(trackId);
-
-        flushTrackPoints();
+        return uuid;
     }
 
     protected void onTrackSegmentStart() {
@@ -318,8 +319,13 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
             return;
         }
 
-        TrackPoint trackPoint = createTrackPoint();
+        addMarker(createTrackPoint());
+    }
 
+    /**
+     * @param trackPoint the time and location of the marker
+     */
+    protected void addMarker(@NonNull TrackPoint trackPoint) {
         if (!trackPoint.hasLocation()) {
             Log.w(TAG, "Marker with invalid coordinates ignored: " + trackPoint.getLocation());
             return;
@@ -339,12 +345,21 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
         if (photoUrl != null) {
             marker.setPhotoUrl(photoUrl);
         }
-        markers.add(marker);
+        if (trackData == null) {
+            markers.add(marker);
+        } else {
+            lateMarkers.add(marker);
+        }
     }
 
     protected TrackPoint getTrackPoint() throws ParsingException {
-        TrackPoint trackPoint = createTrackPoint();
+        return getTrackPoint(createTrackPoint());
+    }
 
+    /**
+     * Validates the parsed trackPoint and calculates derived attributes from the previous trackPoint.
+     */
+    protected TrackPoint getTrackPoint(@NonNull TrackPoint trackPoint) throws ParsingException {
         if (trackPoint.hasLocation()) {
             Instant time = trackPoint.getTime();
             if (trackPoint.getLatitude() == 100) {
@@ -521,6 +536,10 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
      * @param trackPoint the trackPoint
      */
     protected void insertTrackPoint(TrackPoint trackPoint) {
+        if (trackData.bufferedTrackPoints.size() >= MAX_BUFFERED_TRACK_POINTS) {
+            // Flush before adding: only the latest trackPoint might still be modified (see onTrackSegmentEnd()).
+            flushTrackPoints();
+        }
         trackData.bufferedTrackPoints.add(trackPoint);
     }
 
@@ -529,20 +548,35 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
     }
 
     /**
-     * Flushes the TrackPoints to the database.
+     * Adds the buffered TrackPoints to the statistics and flushes them to the database.
      */
     private void flushTrackPoints() {
-        if (trackData.bufferedTrackPoints.size() > 0) {
-            contentProviderUtils.bulkInsertTrackPoint(trackData.bufferedTrackPoints, trackData.track.getId());
-            trackData.bufferedTrackPoints.clear();
+        if (trackData.bufferedTrackPoints.isEmpty()) {
+            return;
         }
+
+        //TODO I guess, we should not filter by recordingDistanceInterval on import; the data is already recorded, so we should not change it.
+        for (TrackPoint trackPoint : trackData.bufferedTrackPoints) {
+            trackData.trackStatisticsUpdater.addTrackPoint(trackPoint, recordingDistanceInterval);
+            trackData.bestEffortsCalculator.addTrackPoint(trackPoint);
+            trackData.histogramCalculator.addTrackPoint(trackPoint);
+            trackData.meanMaxCurvesCalculator.addTrackPoint(trackPoint);
+            trackData.markerMatcher.onTrackPoint(trackPoint, trackData.trackStatisticsUpdater);
+        }
+
+        contentProviderUtils.bulkInsertTrackPoint(trackData.bufferedTrackPoints, trackData.track.getId());
+        trackData.bufferedTrackPoints.clear();
     }
 
     /**
-     * Cleans up import.
+     * Cleans up import: deletes the inserted tracks (incl. their trackPoints and markers).
      */
     private void cleanImport() {
-        contentProviderUtils.deleteTracks(context, trackIds);
+        if (!trackIds.isEmpty()) {
+            contentProviderUtils.deleteTracks(context, trackIds);
+            IncompleteImports.remove(context, trackIds);
+            trackIds.clear();
+        }
     }
 
     /**
@@ -561,17 +595,79 @@ abstract class AbstractFileTrackImporter extends DefaultHandler implements Track
         // The last location in the current segment; Null if the current segment doesn't have a last location
         TrackPoint lastLocationInCurrentSegment;
 
-        // The buffered locations
-        final List<TrackPoint> bufferedTrackPoints = new ArrayList<>();
+        // The buffered locations (not yet flushed)
+        final List<TrackPoint> bufferedTrackPoints = new ArrayList<>(MAX_BUFFERED_TRACK_POINTS);
+
+        // Statistics of the flushed locations
+        final TrackStatisticsUpdater trackStatisticsUpdater = new TrackStatisticsUpdater();
+        final BestEffortsCalculator bestEffortsCalculator = new BestEffortsCalculator();
+        final HistogramCalculator histogramCalculator = new HistogramCalculator();
+        final MeanMaxCurvesCalculator meanMaxCurvesCalculator = new MeanMaxCurvesCalculator();
+
+        MarkerMatcher markerMatcher;
+    }
+
+    /**
+     * Merges markers (sorted by time) with the trackPoints (in order) and inserts a marker if a trackPoint has the same time and location.
+     */
+    private class MarkerMatcher {
+
+        private final List<Marker> markers;
+        private int nextMarker = 0;
+
+        MarkerMatcher(List<Marker> markers) {
+            this.markers = new ArrayList<>(markers);
+            this.markers.sort(Comparator.comparing(Marker::getTime));
+        }
+
+        boolean isDone() {
+            return nextMarker >= markers.size();
+        }
+
+        /**
+         * @param trackStatisticsUpdater contains the statistics up to (and including) the trackPoint
+         */
+        void onTrackPoint(@NonNull TrackPoint trackPoint, @NonNull TrackStatisticsUpdater trackStatisticsUpdater) {
+            while (!isDone()) {
+                Marker marker = markers.get(nextMarker);
+                if (marker.getTime().isAfter(trackPoint.getTime())) {
+                    return;
+                }
+
+                if (marker.getTime().isBefore(trackPoint.getTime())) {
+                    Log.w(TAG, "Ignoring marker: current trackPoint was after marker.");
+                } else {
+                    // The marker time matches the trackPoint time
+                    if (!trackPoint.hasLocation()) {
+                        // Invalid trackPoint, try the next trackPoint
+                        return;
+                    }
+
+                    if (trackPoint.getLatitude() == marker.getLatitude() && trackPoint.getLongitude() == marker.getLongitude()) {
+                        insertMarker(marker, trackPoint, trackStatisticsUpdater.getTrackStatistics());
+                    }
+                }
+                nextMarker++;
+            }
+        }
+
+        private void insertMarker(Marker marker, TrackPoint trackPoint, TrackStatistics trackStatistics) {
+            // If marker had photo it must be translated to internal photo url (depend on track id)
+            String photoUrl = marker.hasPhoto() ? getInternalPhotoUrl(marker.getPhotoUrl()) : marker.getPhotoUrl();
+            String icon = context.getString(R.string.marker_icon_url);
+
+            Marker newMarker = new Marker(marker.getName(), marker.getDescription(), marker.getCategory(), icon, trackData.track.getId(), trackStatistics, trackPoint, photoUrl);
+            contentProviderUtils.insertMarker(newMarker);
+        }
     }
 
     public static class ParsingException extends RuntimeException {
 
-        private ParsingException(@NonNull String message) {
+        ParsingException(@NonNull String message) {
             super(message);
         }
 
-        private ParsingException(@NonNull String message, Exception cause) {
+        ParsingException(@NonNull String message, Exception cause) {
             super(message, cause);
         }
 
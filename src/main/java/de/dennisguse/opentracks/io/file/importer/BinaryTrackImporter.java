@@ -0,0 +1,284 @@
+package de.dennisguse.opentracks.io.file.importer;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteConstraintException;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import de.dennisguse.opentracks.content.data.Distance;
+import de.dennisguse.opentracks.content.data.Marker;
+import de.dennisguse.opentracks.content.data.Speed;
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.data.TrackPoint;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+import de.dennisguse.opentracks.io.file.BinaryTrackFormat;
+import de.dennisguse.opentracks.stats.BestEffortsCalculator;
+import de.dennisguse.opentracks.stats.HistogramCalculator;
+import de.dennisguse.opentracks.stats.MeanMaxCurvesCalculator;
+import de.dennisguse.opentracks.stats.TrackStatistics;
+
+import static de.dennisguse.opentracks.io.file.BinaryTrackFormat.readString;
+import static de.dennisguse.opentracks.io.file.BinaryTrackFormat.readVarInt;
+import static de.dennisguse.opentracks.io.file.BinaryTrackFormat.readVarLong;
+import static de.dennisguse.opentracks.io.file.BinaryTrackFormat.readZigZag;
+
+/**
+ * Imports tracks in the {@link BinaryTrackFormat}.
+ * <p>
+ * The statistics and markers are taken from the file (no recomputation); each block of trackPoints is inserted with one bulk insert.
+ * If the import fails, the inserted tracks are deleted again; if the process is killed while importing, they are deleted on next start (see {@link IncompleteImports}).
+ */
+public class BinaryTrackImporter implements TrackImporter {
+
+    private static final String TAG = BinaryTrackImporter.class.getSimpleName();
+
+    private final Context context;
+    private final ContentProviderUtils contentProviderUtils;
+
+    private final List<Track.Id> trackIds = new ArrayList<>();
+
+    // Previous values for the delta encoding (per track).
+    private long previousTime;
+    private int previousLatitude;
+    private int previousLongitude;
+
+    public BinaryTrackImporter(Context context) {
+        this(context, new ContentProviderUtils(context));
+    }
+
+    public BinaryTrackImporter(Context context, ContentProviderUtils contentProviderUtils) {
+        this.context = context;
+        this.contentProviderUtils = contentProviderUtils;
+    }
+
+    @NonNull
+    @Override
+    public List<Track.Id> importFile(InputStream inputStream) {
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(inputStream));
+            if (input.readInt() != BinaryTrackFormat.MAGIC) {
+                throw new ImportParserException("Not an OpenTracks binary file.");
+            }
+            long version = readVarLong(input);
+            if (version > BinaryTrackFormat.VERSION) {
+                throw new ImportParserException("Unsupported OpenTracks binary file version: " + version);
+            }
+
+            int trackCount = readVarInt(input);
+            for (int i = 0; i < trackCount; i++) {
+                importTrack(input);
+            }
+            IncompleteImports.remove(context, trackIds);
+            return trackIds;
+        } catch (EOFException e) {
+            Log.e(TAG, "Unable to import file", e);
+            cleanImport();
+            throw new ImportParserException("Unexpected end of file.");
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to import file", e);
+            cleanImport();
+            throw new ImportParserException(e);
+        } catch (SQLiteConstraintException e) {
+            Log.e(TAG, "Unable to import file", e);
+            cleanImport();
+            throw new ImportAlreadyExistsException(e);
+        } catch (ImportParserException | ImportAlreadyExistsException e) {
+            Log.e(TAG, "Unable to import file", e);
+            cleanImport();
+            throw e;
+        } catch (RuntimeException e) {
+            // Invalid values (e.g., unknown trackPoint type)
+            Log.e(TAG, "Unable to import file", e);
+            cleanImport();
+            throw new ImportParserException(e);
+        }
+    }
+
+    private void importTrack(DataInputStream input) throws IOException {
+        Track track = new Track();
+        track.setUuid(new UUID(input.readLong(), input.readLong()));
+        track.setName(readString(input));
+        track.setDescription(readString(input));
+        track.setCategory(readString(input));
+        track.setIcon(readString(input));
+        track.setTrackStatistics(readTrackStatistics(input));
+
+        track.setUuid(AbstractFileTrackImporter.getUuidForImport(context, contentProviderUtils, track.getUuid()));
+
+        Uri uri = contentProviderUtils.insertTrack(track);
+        Track.Id trackId = new Track.Id(Long.parseLong(uri.getLastPathSegment()));
+        trackIds.add(trackId);
+        IncompleteImports.add(context, trackId);
+
+        int markerCount = readVarInt(input);
+        for (int i = 0; i < markerCount; i++) {
+            contentProviderUtils.insertMarker(readMarker(input, trackId));
+        }
+
+        previousTime = 0;
+        previousLatitude = 0;
+        previousLongitude = 0;
+        BestEffortsCalculator bestEffortsCalculator = new BestEffortsCalculator();
+        HistogramCalculator histogramCalculator = new HistogramCalculator();
+        MeanMaxCurvesCalculator meanMaxCurvesCalculator = new MeanMaxCurvesCalculator();
+        List<TrackPoint> block = new ArrayList<>(BinaryTrackFormat.BLOCK_SIZE);
+        while (readBlock(input, block)) {
+            bestEffortsCalculator.addTrackPoints(block);
+            histogramCalculator.addTrackPoints(block);
+            meanMaxCurvesCalculator.addTrackPoints(block);
+            contentProviderUtils.bulkInsertTrackPoint(block, trackId);
+            block.clear();
+        }
+
+        contentProviderUtils.updateBestEfforts(trackId, bestEffortsCalculator.getBestEfforts());
+        contentProviderUtils.updateHistograms(trackId, histogramCalculator.getHistograms());
+        contentProviderUtils.updateMeanMaxCurves(trackId, meanMaxCurvesCalculator.getCurves());
+    }
+
+    private static TrackStatistics readTrackStatistics(DataInputStream input) throws IOException {
+        TrackStatistics trackStatistics = new TrackStatistics();
+        int flags = readVarInt(input);
+        if ((flags & BinaryTrackFormat.HAS_START_TIME) != 0) {
+            trackStatistics.setStartTime(Instant.ofEpochMilli(readZigZag(input)));
+        }
+        if ((flags & BinaryTrackFormat.HAS_STOP_TIME) != 0) {
+            trackStatistics.setStopTime(Instant.ofEpochMilli(readZigZag(input)));
+        }
+        trackStatistics.setTotalDistance(Distance.of(input.readFloat()));
+        trackStatistics.setTotalTime(Duration.ofMillis(readVarLong(input)));
+        trackStatistics.setMovingTime(Duration.ofMillis(readVarLong(input)));
+        trackStatistics.setMaxSpeed(Speed.of(input.readFloat()));
+        trackStatistics.setMinAltitude(input.readFloat());
+        trackStatistics.setMaxAltitude(input.readFloat());
+        if ((flags & BinaryTrackFormat.HAS_TOTAL_ALTITUDE_GAIN) != 0) {
+            trackStatistics.setTotalAltitudeGain(input.readFloat());
+        }
+        if ((flags & BinaryTrackFormat.HAS_TOTAL_ALTITUDE_LOSS) != 0) {
+            trackStatistics.setTotalAltitudeLoss(input.readFloat());
+        }
+        return trackStatistics;
+    }
+
+    private static Marker readMarker(DataInputStream input, Track.Id trackId) throws IOException {
+        String name = readString(input);
+        String description = readString(input);
+        String category = readString(input);
+        String icon = readString(input);
+        String photoUrl = readString(input);
+
+        Marker marker = new Marker(trackId, Instant.ofEpochMilli(readZigZag(input)));
+        marker.setName(name);
+        marker.setDescription(description);
+        marker.setCategory(category);
+        marker.setIcon(icon);
+        marker.setPhotoUrl(photoUrl);
+        marker.setLength(Distance.of(input.readFloat()));
+        marker.setDuration(Duration.ofMillis(readVarLong(input)));
+
+        int flags = readVarInt(input);
+        if ((flags & BinaryTrackFormat.HAS_LOCATION) != 0) {
+            marker.setLatitude(BinaryTrackFormat.fromE6(input.readInt()));
+            marker.setLongitude(BinaryTrackFormat.fromE6(input.readInt()));
+        }
+        if ((flags & BinaryTrackFormat.HAS_ALTITUDE) != 0) marker.setAltitude(input.readFloat());
+        if ((flags & BinaryTrackFormat.HAS_ACCURACY) != 0) marker.setAccuracy(input.readFloat());
+        if ((flags & BinaryTrackFormat.HAS_BEARING) != 0) marker.setBearing(input.readFloat());
+        return marker;
+    }
+
+    /**
+     * @return false if the track ended.
+     */
+    private boolean readBlock(DataInputStream input, List<TrackPoint> block) throws IOException {
+        int size = readVarInt(input);
+        if (size == 0) {
+            return false;
+        }
+        if (size > BinaryTrackFormat.BLOCK_SIZE) {
+            throw new ImportParserException("Invalid block size: " + size);
+        }
+
+        for (int i = 0; i < size; i++) {
+            block.add(new TrackPoint(TrackPoint.Type.getById((int) readZigZag(input))));
+        }
+        int[] flags = new int[size];
+        for (int i = 0; i < size; i++) {
+            flags[i] = readVarInt(input);
+        }
+
+        for (int i = 0; i < size; i++) {
+            if ((flags[i] & BinaryTrackFormat.HAS_TIME) != 0) {
+                previousTime += readZigZag(input);
+                block.get(i).setTime(Instant.ofEpochMilli(previousTime));
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if ((flags[i] & BinaryTrackFormat.HAS_LOCATION) != 0) {
+                previousLatitude += readZigZag(input);
+                block.get(i).setLatitude(BinaryTrackFormat.fromE6(previousLatitude));
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if ((flags[i] & BinaryTrackFormat.HAS_LOCATION) != 0) {
+                previousLongitude += readZigZag(input);
+                block.get(i).setLongitude(BinaryTrackFormat.fromE6(previousLongitude));
+            }
+        }
+
+        for (int i = 0; i < size; i++) {
+            if ((flags[i] & BinaryTrackFormat.HAS_ALTITUDE) != 0) block.get(i).setAltitude(input.readFloat());
+        }
+        for (int i = 0; i < size; i++) {
+            if ((flags[i] & BinaryTrackFormat.HAS_ACCURACY) != 0) block.get(i).setAccuracy(input.readFloat());
+        }
+        for (int i = 0; i < size; i++) {
+            if ((flags[i] & BinaryTrackFormat.HAS_SPEED) != 0) block.get(i).setSpeed(Speed.of(input.readFloat()));
+        }
+        for (int i = 0; i < size; i++) {
+            if ((flags[i] & BinaryTrackFormat.HAS_BEARING) != 0) block.get(i).setBearing(input.readFloat());
+        }
+        for (int i = 0; i < size; i++) {
+            if ((flags[i] & BinaryTrackFormat.HAS_HEART_RATE) != 0) block.get(i).setHeartRate_bpm(input.readFloat());
+        }
+        for (int i = 0; i < size; i++) {
+            if ((flags[i] & BinaryTrackFormat.HAS_CADENCE) != 0) block.get(i).setCyclingCadence_rpm(input.readFloat());
+        }
+        for (int i = 0; i < size; i++) {
+            if ((flags[i] & BinaryTrackFormat.HAS_POWER) != 0) block.get(i).setPower(input.readFloat());
+        }
+        for (int i = 0; i < size; i++) {
+            if ((flags[i] & BinaryTrackFormat.HAS_SENSOR_DISTANCE) != 0) block.get(i).setSensorDistance(Distance.of(input.readFloat()));
+        }
+        for (int i = 0; i < size; i++) {
+            if ((flags[i] & BinaryTrackFormat.HAS_ALTITUDE_GAIN) != 0) block.get(i).setAltitudeGain(input.readFloat());
+        }
+        for (int i = 0; i < size; i++) {
+            if ((flags[i] & BinaryTrackFormat.HAS_ALTITUDE_LOSS) != 0) block.get(i).setAltitudeLoss(input.readFloat());
+        }
+        return true;
+    }
+
+    /**
+     * Cleans up import: deletes the inserted tracks (incl. their trackPoints and markers).
+     */
+    private void cleanImport() {
+        if (!trackIds.isEmpty()) {
+            contentProviderUtils.deleteTracks(context, trackIds);
+            IncompleteImports.remove(context, trackIds);
+            trackIds.clear();
+        }
+    }
+}
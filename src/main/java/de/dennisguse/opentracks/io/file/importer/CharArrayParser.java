@@ -0,0 +1,226 @@
+package de.dennisguse.opentracks.io.file.importer;
+
+import androidx.annotation.NonNull;
+
+import java.time.Instant;
+
+import de.dennisguse.opentracks.util.StringUtils;
+
+/**
+ * Parses numbers and XML dateTime values (ISO 8601) directly from a char array (e.g., the text buffer of an XmlPullParser) without creating Strings.
+ * <p>
+ * The fast paths cover plain decimals and dateTime values with offset (as written by the exporters); all other input is handed to the JDK parsers.
+ * Thus, the results (and errors) are identical to {@link Double#parseDouble(String)}, {@link Float#parseFloat(String)}, and {@link StringUtils#parseTime(String)} of the trimmed text.
+ */
+final class CharArrayParser {
+
+    // Exact integers below 2^53 resp. 2^24 and exact powers of ten: a single division is correctly rounded (Clinger's fast path).
+    private static final int MAX_DOUBLE_DIGITS = 15;
+    private static final long MAX_FLOAT_MANTISSA = 1 << 24;
+    private static final int MAX_FLOAT_FRACTION_DIGITS = 10;
+
+    private static final double[] DOUBLE_POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+    private static final float[] FLOAT_POW10 = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+
+    private static final int[] NANO_SCALE = {100_000_000, 10_000_000, 1_000_000, 100_000, 10_000, 1_000, 100, 10, 1};
+
+    private static final long DAYS_0000_TO_1970 = 719528;
+
+    private CharArrayParser() {
+    }
+
+    static double parseDouble(@NonNull char[] ch, int start, int length) {
+        int end = trimEnd(ch, start, start + length);
+        start = trimStart(ch, start, end);
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (ch[i] == '-' || ch[i] == '+')) {
+            negative = ch[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            char c = ch[i];
+            if (c >= '0' && c <= '9' && digits < MAX_DOUBLE_DIGITS) {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (fraction) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                return Double.parseDouble(new String(ch, start, end - start));
+            }
+        }
+        if (digits == 0) {
+            return Double.parseDouble(new String(ch, start, end - start));
+        }
+
+        double value = mantissa / DOUBLE_POW10[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    static float parseFloat(@NonNull char[] ch, int start, int length) {
+        int end = trimEnd(ch, start, start + length);
+        start = trimStart(ch, start, end);
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (ch[i] == '-' || ch[i] == '+')) {
+            negative = ch[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        for (; i < end; i++) {
+            char c = ch[i];
+            if (c >= '0' && c <= '9' && mantissa <= MAX_FLOAT_MANTISSA) {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (fraction) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else {
+                return Float.parseFloat(new String(ch, start, end - start));
+            }
+        }
+        if (digits == 0 || mantissa > MAX_FLOAT_MANTISSA || fractionDigits > MAX_FLOAT_FRACTION_DIGITS) {
+            return Float.parseFloat(new String(ch, start, end - start));
+        }
+
+        float value = (float) mantissa / FLOAT_POW10[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Fast path: yyyy-MM-ddTHH:mm:ss[.fraction](Z|+HH:MM|-HH:MM).
+     */
+    static Instant parseTime(@NonNull char[] ch, int start, int length) {
+        int end = trimEnd(ch, start, start + length);
+        start = trimStart(ch, start, end);
+
+        int i = start;
+        if (end - i < 20 || ch[i + 4] != '-' || ch[i + 7] != '-' || ch[i + 10] != 'T' || ch[i + 13] != ':' || ch[i + 16] != ':') {
+            return parseTimeFallback(ch, start, end);
+        }
+        int year = parseDigits(ch, i, 4);
+        int month = parseDigits(ch, i + 5, 2);
+        int day = parseDigits(ch, i + 8, 2);
+        int hour = parseDigits(ch, i + 11, 2);
+        int minute = parseDigits(ch, i + 14, 2);
+        int second = parseDigits(ch, i + 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month) || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return parseTimeFallback(ch, start, end);
+        }
+        i += 19;
+
+        int nanos = 0;
+        if (ch[i] == '.') {
+            i++;
+            int fractionDigits = 0;
+            while (i < end && ch[i] >= '0' && ch[i] <= '9' && fractionDigits < NANO_SCALE.length) {
+                nanos += (ch[i] - '0') * NANO_SCALE[fractionDigits];
+                fractionDigits++;
+                i++;
+            }
+            if (fractionDigits == 0 || i == end) {
+                return parseTimeFallback(ch, start, end);
+            }
+        }
+
+        int offsetSeconds;
+        if (ch[i] == 'Z' && i + 1 == end) {
+            offsetSeconds = 0;
+        } else if ((ch[i] == '+' || ch[i] == '-') && i + 6 == end && ch[i + 3] == ':') {
+            int offsetHours = parseDigits(ch, i + 1, 2);
+            int offsetMinutes = parseDigits(ch, i + 4, 2);
+            if (offsetHours < 0 || offsetHours > 17 || offsetMinutes < 0 || offsetMinutes > 59) {
+                return parseTimeFallback(ch, start, end);
+            }
+            offsetSeconds = (offsetHours * 3600 + offsetMinutes * 60) * (ch[i] == '-' ? -1 : 1);
+        } else {
+            return parseTimeFallback(ch, start, end);
+        }
+
+        long epochSecond = toEpochDay(year, month, day) * 86400 + hour * 3600 + minute * 60 + second - offsetSeconds;
+        return Instant.ofEpochSecond(epochSecond, nanos);
+    }
+
+    private static Instant parseTimeFallback(char[] ch, int start, int end) {
+        return StringUtils.parseTime(new String(ch, start, end - start));
+    }
+
+    /**
+     * @return the value or -1 if not all characters are digits.
+     */
+    private static int parseDigits(char[] ch, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = ch[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Same as {@link java.time.LocalDate#toEpochDay()} (for years 0 to 9999).
+     */
+    private static long toEpochDay(int year, int month, int day) {
+        long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367 * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeapYear(year)) {
+                total--;
+            }
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+
+    private static int trimStart(char[] ch, int start, int end) {
+        while (start < end && ch[start] <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(char[] ch, int start, int end) {
+        while (end > start && ch[end - 1] <= ' ') {
+            end--;
+        }
+        return end;
+    }
+}
@@ -99,6 +99,7 @@ public abstract class DirectoryChooserActivity extends AppCompatActivity {
             Intent intent = IntentUtils.newIntent(this, ExportActivity.class);
             intent.putExtra(ExportActivity.EXTRA_DIRECTORY_URI_KEY, directoryUri);
             intent.putExtra(ExportActivity.EXTRA_TRACKFILEFORMAT_KEY, PreferencesUtils.getExportTrackFileFormat(sharedPreferences, this));
+            intent.putExtra(ExportActivity.EXTRA_ARCHIVE_KEY, PreferencesUtils.shouldExportArchive(sharedPreferences, this));
             return intent;
         }
     }
@@ -168,6 +168,7 @@ public class GpxFileTrackImporter extends AbstractFileTrackImporter {
             case TAG_ID:
                 if (content != null) {
                     uuid = content.trim();
+                    onTrackUuid();
                 }
                 break;
             case TAG_EXTENSION_GAIN:
@@ -0,0 +1,377 @@
+package de.dennisguse.opentracks.io.file.importer;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.Xml;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Locale;
+
+import de.dennisguse.opentracks.content.data.Distance;
+import de.dennisguse.opentracks.content.data.Speed;
+import de.dennisguse.opentracks.content.data.TrackPoint;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+
+/**
+ * Imports a GPX file like {@link GpxFileTrackImporter}, but uses an {@link XmlPullParser}.
+ * <p>
+ * Numbers and times are parsed directly from the parser's text buffer using {@link CharArrayParser} (no String per value).
+ * Values that cannot be parsed are kept as text and reported when used (like {@link GpxFileTrackImporter}), so the result is identical.
+ * <p>
+ * Not yet used by {@link ImportService}; GPX files are still imported with {@link GpxFileTrackImporter}.
+ */
+public class GpxPullFileTrackImporter extends AbstractFileTrackImporter {
+
+    private static final String TAG = GpxPullFileTrackImporter.class.getSimpleName();
+
+    private static final String TAG_DESCRIPTION = "desc";
+    private static final String TAG_COMMENT = "cmt";
+    private static final String TAG_ALTITUDE = "ele";
+    private static final String TAG_GPX = "gpx";
+    private static final String TAG_NAME = "name";
+    private static final String TAG_TIME = "time";
+    private static final String TAG_TRACK = "trk";
+    private static final String TAG_TRACK_POINT = "trkpt";
+    private static final String TAG_TRACK_SEGMENT = "trkseg";
+    private static final String TAG_TYPE = "type";
+    private static final String TAG_MARKER = "wpt";
+    private static final String TAG_ID = "opentracks:trackid";
+
+    private static final String ATTRIBUTE_LAT = "lat";
+    private static final String ATTRIBUTE_LON = "lon";
+
+    private static final String TAG_EXTENSION_SPEED = "gpxtpx:speed";
+    private static final String TAG_EXTENSION_HEARTRATE = "gpxtpx:hr";
+    private static final String TAG_EXTENSION_CADENCE = "gpxtpx:cad";
+    private static final String TAG_EXTENSION_POWER = "pwr:PowerInWatts";
+
+    private static final String TAG_EXTENSION_GAIN = "opentracks:gain";
+    private static final String TAG_EXTENSION_LOSS = "opentracks:loss";
+    private static final String TAG_EXTENSION_DISTANCE = "opentracks:distance";
+
+    private final int[] textHolder = new int[2];
+
+    // The tag of the innermost open element; null after its end tag.
+    private String currentTag;
+
+    private final Value timeValue = new Value();
+    private final Value altitudeValue = new Value();
+    private final Value speedValue = new Value();
+    private final Value heartRateValue = new Value();
+    private final Value cadenceValue = new Value();
+    private final Value powerValue = new Value();
+    private final Value gainValue = new Value();
+    private final Value lossValue = new Value();
+    private final Value distanceValue = new Value();
+
+    private Instant parsedTime;
+
+    public GpxPullFileTrackImporter(Context context) {
+        this(context, new ContentProviderUtils(context));
+    }
+
+    @VisibleForTesting
+    GpxPullFileTrackImporter(Context context, ContentProviderUtils contentProviderUtils) {
+        super(context, contentProviderUtils);
+    }
+
+    @Override
+    protected void parse(InputStream inputStream) throws IOException, SAXException {
+        XmlPullParser parser = Xml.newPullParser();
+        try {
+            parser.setInput(inputStream, null);
+            setDocumentLocator(new PullParserLocator(parser));
+
+            int eventType = parser.getEventType();
+            while (eventType != XmlPullParser.END_DOCUMENT) {
+                switch (eventType) {
+                    case XmlPullParser.START_TAG:
+                        currentTag = parser.getName();
+                        onStartTag(parser, currentTag);
+                        break;
+                    case XmlPullParser.TEXT:
+                        if (currentTag != null) {
+                            onText(parser, currentTag);
+                        }
+                        break;
+                    case XmlPullParser.END_TAG:
+                        currentTag = null;
+                        onEndTag(parser.getName());
+                        break;
+                }
+                eventType = parser.next();
+            }
+        } catch (XmlPullParserException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    private void onStartTag(XmlPullParser parser, String tag) throws SAXException {
+        switch (tag) {
+            case TAG_MARKER:
+                onMarkerStart(parser);
+                break;
+            case TAG_TRACK:
+                onTrackStart();
+                name = null;
+                description = null;
+                category = null;
+                break;
+            case TAG_TRACK_SEGMENT:
+                onTrackSegmentStart();
+                break;
+            case TAG_TRACK_POINT:
+                onTrackPointStart(parser);
+                break;
+        }
+    }
+
+    private void onText(XmlPullParser parser, String tag) {
+        switch (tag) {
+            case TAG_TIME:
+                char[] ch = parser.getTextCharacters(textHolder);
+                timeValue.present = true;
+                try {
+                    parsedTime = CharArrayParser.parseTime(ch, textHolder[0], textHolder[1]);
+                    timeValue.text = null;
+                } catch (Exception e) {
+                    parsedTime = null;
+                    timeValue.text = parser.getText().trim();
+                }
+                break;
+            case TAG_ALTITUDE:
+                altitudeValue.setDouble(parser, textHolder);
+                break;
+            case TAG_EXTENSION_SPEED:
+                speedValue.setFloat(parser, textHolder);
+                break;
+            case TAG_EXTENSION_HEARTRATE:
+                heartRateValue.setFloat(parser, textHolder);
+                break;
+            case TAG_EXTENSION_CADENCE:
+                cadenceValue.setFloat(parser, textHolder);
+                break;
+            case TAG_EXTENSION_POWER:
+                powerValue.setFloat(parser, textHolder);
+                break;
+            case TAG_EXTENSION_GAIN:
+                gainValue.setFloat(parser, textHolder);
+                break;
+            case TAG_EXTENSION_LOSS:
+                lossValue.setFloat(parser, textHolder);
+                break;
+            case TAG_EXTENSION_DISTANCE:
+                distanceValue.setFloat(parser, textHolder);
+                break;
+            case TAG_NAME:
+                name = parser.getText().trim();
+                break;
+            case TAG_DESCRIPTION:
+                description = parser.getText().trim();
+                break;
+            case TAG_TYPE:
+                category = parser.getText().trim();
+                break;
+            case TAG_COMMENT:
+                markerType = parser.getText().trim();
+                break;
+            case TAG_ID:
+                uuid = parser.getText().trim();
+                onTrackUuid();
+                break;
+        }
+    }
+
+    private void onEndTag(String tag) {
+        switch (tag) {
+            case TAG_GPX:
+                onFileEnd();
+                break;
+            case TAG_MARKER:
+                onMarkerEnd();
+                break;
+            case TAG_TRACK:
+                onTrackEnd();
+                break;
+            case TAG_TRACK_SEGMENT:
+                onTrackSegmentEnd();
+                break;
+            case TAG_TRACK_POINT:
+                onTrackPointEnd();
+                break;
+        }
+    }
+
+    private void onTrackPointStart(XmlPullParser parser) {
+        latitude = parser.getAttributeValue(null, ATTRIBUTE_LAT);
+        longitude = parser.getAttributeValue(null, ATTRIBUTE_LON);
+        altitudeValue.reset();
+        timeValue.reset();
+        speedValue.reset();
+        powerValue.reset();
+        gainValue.reset();
+        lossValue.reset();
+    }
+
+    private void onTrackPointEnd() {
+        boolean isFirstTrackPointInSegment = isFirstTrackPointInSegment();
+        TrackPoint trackPoint = getTrackPoint(createTrackPoint());
+        if (isFirstTrackPointInSegment) {
+            trackPoint.setType(TrackPoint.Type.SEGMENT_START_AUTOMATIC);
+        }
+        insertTrackPoint(trackPoint);
+    }
+
+    private void onMarkerStart(XmlPullParser parser) {
+        name = null;
+        description = null;
+        category = null;
+        photoUrl = null;
+        latitude = parser.getAttributeValue(null, ATTRIBUTE_LAT);
+        longitude = parser.getAttributeValue(null, ATTRIBUTE_LON);
+        altitudeValue.reset();
+        timeValue.reset();
+        markerType = null;
+    }
+
+    private void onMarkerEnd() {
+        // Markers must have a time, else cannot match to the track points
+        if (!timeValue.present) {
+            Log.w(TAG, "Marker without time ignored.");
+            return;
+        }
+        addMarker(createTrackPoint());
+    }
+
+    /**
+     * Same as {@link AbstractFileTrackImporter#getTrackPoint()}, but uses the parsed values.
+     */
+    private TrackPoint createTrackPoint() throws ParsingException {
+        TrackPoint trackPoint = new TrackPoint(TrackPoint.Type.TRACKPOINT);
+
+        if (parsedTime == null || !timeValue.present) {
+            throw new ParsingException(createErrorMessage(String.format(Locale.US, "Unable to parse time: %s", timeValue.text)));
+        }
+        trackPoint.setTime(parsedTime);
+
+        if (latitude == null || longitude == null) {
+            return trackPoint;
+        }
+
+        try {
+            trackPoint.setLatitude(Double.parseDouble(latitude));
+            trackPoint.setLongitude(Double.parseDouble(longitude));
+        } catch (NumberFormatException e) {
+            throw new ParsingException(createErrorMessage(String.format(Locale.US, "Unable to parse latitude longitude: %s %s", latitude, longitude)), e);
+        }
+
+        if (altitudeValue.present) {
+            trackPoint.setAltitude(altitudeValue.get("altitude"));
+        }
+        if (speedValue.present) {
+            trackPoint.setSpeed(Speed.of(speedValue.get("speed")));
+        }
+        if (heartRateValue.present) {
+            trackPoint.setHeartRate_bpm((float) heartRateValue.get("heart rate"));
+        }
+        if (cadenceValue.present) {
+            trackPoint.setCyclingCadence_rpm((float) cadenceValue.get("cadence"));
+        }
+        if (powerValue.present) {
+            trackPoint.setPower((float) powerValue.get("power"));
+        }
+        if (gainValue.present) {
+            trackPoint.setAltitudeGain((float) gainValue.get("altitude gain"));
+        }
+        if (lossValue.present) {
+            trackPoint.setAltitudeLoss((float) lossValue.get("altitude loss"));
+        }
+        if (distanceValue.present) {
+            trackPoint.setSensorDistance(Distance.of(distanceValue.get("distance")));
+        }
+
+        return trackPoint;
+    }
+
+    /**
+     * The parsed value of an element; the text is only kept if it could not be parsed.
+     */
+    private class Value {
+        boolean present = false;
+        double value;
+        String text;
+
+        void reset() {
+            present = false;
+            text = null;
+        }
+
+        void setDouble(XmlPullParser parser, int[] holder) {
+            char[] ch = parser.getTextCharacters(holder);
+            present = true;
+            try {
+                value = CharArrayParser.parseDouble(ch, holder[0], holder[1]);
+                text = null;
+            } catch (NumberFormatException e) {
+                text = parser.getText().trim();
+            }
+        }
+
+        void setFloat(XmlPullParser parser, int[] holder) {
+            char[] ch = parser.getTextCharacters(holder);
+            present = true;
+            try {
+                value = CharArrayParser.parseFloat(ch, holder[0], holder[1]);
+                text = null;
+            } catch (NumberFormatException e) {
+                text = parser.getText().trim();
+            }
+        }
+
+        double get(String name) throws ParsingException {
+            if (text != null) {
+                throw new ParsingException(createErrorMessage(String.format(Locale.US, "Unable to parse %s: %s", name, text)));
+            }
+            return value;
+        }
+    }
+
+    private static class PullParserLocator implements Locator {
+
+        private final XmlPullParser parser;
+
+        PullParserLocator(@NonNull XmlPullParser parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        public String getPublicId() {
+            return null;
+        }
+
+        @Override
+        public String getSystemId() {
+            return null;
+        }
+
+        @Override
+        public int getLineNumber() {
+            return parser.getLineNumber();
+        }
+
+        @Override
+        public int getColumnNumber() {
+            return parser.getColumnNumber();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package de.dennisguse.opentracks.io.file.importer;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.annotation.NonNull;
+import androidx.documentfile.provider.DocumentFile;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+
+/**
+ * Remembers imported source documents (size, last modified, and SHA-256) to skip unchanged files before parsing.
+ * <p>
+ * A file is unchanged if size and last modified match; if only last modified differs, the content hash decides.
+ * Entries are removed with their track (foreign key), so deleted tracks can be imported again.
+ */
+public class ImportLedger {
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    private final ContentProviderUtils contentProviderUtils;
+
+    ImportLedger(@NonNull ContentProviderUtils contentProviderUtils) {
+        this.contentProviderUtils = contentProviderUtils;
+    }
+
+    /**
+     * @return true if the file was imported before and did not change since.
+     */
+    boolean isUnchanged(@NonNull Context context, @NonNull DocumentFile file) throws IOException {
+        Entry entry = contentProviderUtils.getImportLedgerEntry(file.getUri());
+        if (entry == null || entry.size != file.length()) {
+            return false;
+        }
+
+        long modified = file.lastModified();
+        if (entry.modified == modified) {
+            return true;
+        }
+
+        byte[] hash;
+        try (InputStream inputStream = context.getContentResolver().openInputStream(file.getUri())) {
+            hash = new HashingInputStream(inputStream).finish();
+        }
+        if (!Arrays.equals(entry.hash, hash)) {
+            return false;
+        }
+
+        // Only touched: remember the new time to skip hashing next time.
+        contentProviderUtils.insertImportLedgerEntry(new Entry(file.getUri(), entry.size, modified, hash, entry.trackId));
+        return true;
+    }
+
+    void record(@NonNull DocumentFile file, @NonNull byte[] hash, @NonNull Track.Id trackId) {
+        contentProviderUtils.insertImportLedgerEntry(new Entry(file.getUri(), file.length(), file.lastModified(), hash, trackId));
+    }
+
+    public static class Entry {
+        private final Uri source;
+        private final long size;
+        private final long modified;
+        private final byte[] hash;
+        private final Track.Id trackId;
+
+        public Entry(@NonNull Uri source, long size, long modified, @NonNull byte[] hash, @NonNull Track.Id trackId) {
+            this.source = source;
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+            this.trackId = trackId;
+        }
+
+        public Uri getSource() {
+            return source;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getModified() {
+            return modified;
+        }
+
+        public byte[] getHash() {
+            return hash;
+        }
+
+        public Track.Id getTrackId() {
+            return trackId;
+        }
+    }
+
+    /**
+     * Computes the hash of everything read; closing does not close the wrapped stream (parsers may close their input early).
+     */
+    static class HashingInputStream extends FilterInputStream {
+
+        private final MessageDigest messageDigest;
+
+        HashingInputStream(@NonNull InputStream inputStream) {
+            super(inputStream);
+            try {
+                messageDigest = MessageDigest.getInstance(HASH_ALGORITHM);
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                messageDigest.update((byte) b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count > 0) {
+                messageDigest.update(b, off, count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes must be hashed as well.
+            if (n <= 0) {
+                return 0;
+            }
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            long skipped = 0;
+            while (skipped < n) {
+                int count = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (count == -1) {
+                    break;
+                }
+                skipped += count;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        /**
+         * Reads the remaining bytes.
+         *
+         * @return the hash of the whole stream.
+         */
+        byte[] finish() throws IOException {
+            byte[] buffer = new byte[8192];
+            while (read(buffer, 0, buffer.length) != -1) {
+                // Only hashing
+            }
+            return messageDigest.digest();
+        }
+    }
+}
@@ -9,18 +9,31 @@ import android.os.ResultReceiver;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import androidx.core.app.JobIntentService;
 import androidx.documentfile.provider.DocumentFile;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import de.dennisguse.opentracks.R;
 import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
 import de.dennisguse.opentracks.io.file.TrackFileFormat;
 import de.dennisguse.opentracks.util.FileUtils;
+import de.dennisguse.opentracks.util.PreferencesUtils;
 
+/**
+ * Imports a batch of files; the files are parsed in parallel (one thread per core).
+ * The database writes of the importers are chunked (see {@link AbstractFileTrackImporter}) and serialized by SQLite's single writer connection.
+ * If re-import is prevented, files that did not change since their last import are skipped without parsing (see {@link ImportLedger}).
+ */
 public class ImportService extends JobIntentService {
 
     private static final String TAG = ImportService.class.getSimpleName();
@@ -28,61 +41,104 @@ public class ImportService extends JobIntentService {
     private static final int JOB_ID = 2;
 
     private static final String EXTRA_RECEIVER = "extra_receiver";
-    private static final String EXTRA_URI = "extra_uri";
+    private static final String EXTRA_URIS = "extra_uris";
 
-    private ResultReceiver resultReceiver;
-
-    public static void enqueue(Context context, ImportServiceResultReceiver receiver, Uri uri) {
+    /**
+     * @param uris the files to import; one result per file is sent to the receiver.
+     */
+    public static void enqueue(Context context, ImportServiceResultReceiver receiver, ArrayList<Uri> uris) {
         Intent intent = new Intent(context, JobService.class);
         intent.putExtra(EXTRA_RECEIVER, receiver);
-        intent.putExtra(EXTRA_URI, uri);
+        intent.putParcelableArrayListExtra(EXTRA_URIS, uris);
         enqueueWork(context, ImportService.class, JOB_ID, intent);
     }
 
     @Override
     protected void onHandleWork(@NonNull Intent intent) {
-        resultReceiver = intent.getParcelableExtra(EXTRA_RECEIVER);
-        Uri uri = intent.getParcelableExtra(EXTRA_URI);
-        importFile(DocumentFile.fromSingleUri(this, uri));
+        ResultReceiver resultReceiver = intent.getParcelableExtra(EXTRA_RECEIVER);
+        ArrayList<Uri> uris = intent.getParcelableArrayListExtra(EXTRA_URIS);
+        List<DocumentFile> files = uris.stream().map(uri -> DocumentFile.fromSingleUri(this, uri)).collect(Collectors.toList());
+        importFiles(this, files, getParallelism(), resultReceiver);
+    }
+
+    static int getParallelism() {
+        return Runtime.getRuntime().availableProcessors();
     }
 
-    private void importFile(DocumentFile file) {
+    /**
+     * Imports the files on a pool of parallelism threads; returns after all files were imported.
+     */
+    @VisibleForTesting
+    static void importFiles(@NonNull Context context, @NonNull List<DocumentFile> files, int parallelism, @NonNull ResultReceiver resultReceiver) {
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, files.size())));
+        for (DocumentFile file : files) {
+            executorService.execute(() -> importFile(context, file, resultReceiver));
+        }
+        executorService.shutdown();
+        try {
+            executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Log.w(TAG, "Import interrupted", e);
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void importFile(Context context, DocumentFile file, ResultReceiver resultReceiver) {
         TrackImporter trackImporter;
         String fileExtension = FileUtils.getExtension(file);
 
         if (TrackFileFormat.GPX.getExtension().equals(fileExtension)) {
-            trackImporter = new GpxFileTrackImporter(this);
+            trackImporter = new GpxFileTrackImporter(context);
         } else if (TrackFileFormat.KML_WITH_TRACKDETAIL_AND_SENSORDATA.getExtension().equals(fileExtension)) {
-            trackImporter = new KmlFileTrackImporter(this);
+            trackImporter = new KmlFileTrackImporter(context);
         } else if (TrackFileFormat.KMZ_WITH_TRACKDETAIL_AND_SENSORDATA_AND_PICTURES.getExtension().equals(fileExtension)) {
-            trackImporter = new KmzTrackImporter(this, file.getUri());
+            trackImporter = new KmzTrackImporter(context, file.getUri());
+        } else if (TrackFileFormat.OPENTRACKS_BINARY.getExtension().equals(fileExtension)) {
+            trackImporter = new BinaryTrackImporter(context);
         } else {
             Log.d(TAG, "Unsupported file format.");
-            sendResult(ImportServiceResultReceiver.RESULT_CODE_ERROR, null, file, getString(R.string.import_unsupported_format));
+            sendResult(resultReceiver, ImportServiceResultReceiver.RESULT_CODE_ERROR, null, file, context.getString(R.string.import_unsupported_format));
             return;
         }
 
-        try (InputStream inputStream = getContentResolver().openInputStream(file.getUri())) {
-            ArrayList<Track.Id> trackIds = new ArrayList<>(trackImporter.importFile(inputStream));
+        ImportLedger importLedger = new ImportLedger(new ContentProviderUtils(context));
+        try {
+            // Before opening the file: unchanged files are not opened (except for hashing if only the modification time changed).
+            if (PreferencesUtils.getPreventReimportTracks(PreferencesUtils.getSharedPreferences(context), context) && importLedger.isUnchanged(context, file)) {
+                Log.d(TAG, "Skipping unchanged file " + file.getName());
+                sendResult(resultReceiver, ImportServiceResultReceiver.RESULT_CODE_ALREADY_EXISTS, null, file, context.getString(R.string.import_prevent_reimport));
+                return;
+            }
+
+            try (InputStream inputStream = context.getContentResolver().openInputStream(file.getUri())) {
+                ImportLedger.HashingInputStream hashingInputStream = new ImportLedger.HashingInputStream(inputStream);
+                ArrayList<Track.Id> trackIds = new ArrayList<>(trackImporter.importFile(hashingInputStream));
 
-            if (!trackIds.isEmpty()) {
-                sendResult(ImportServiceResultReceiver.RESULT_CODE_IMPORTED, trackIds, file, getString(R.string.import_file_imported, file.getName()));
-            } else {
-                sendResult(ImportServiceResultReceiver.RESULT_CODE_ERROR, trackIds, file, getString(R.string.import_unable_to_import_file, file.getName()));
+                if (!trackIds.isEmpty()) {
+                    importLedger.record(file, hashingInputStream.finish(), trackIds.get(0));
+                    sendResult(resultReceiver, ImportServiceResultReceiver.RESULT_CODE_IMPORTED, trackIds, file, context.getString(R.string.import_file_imported, file.getName()));
+                } else {
+                    sendResult(resultReceiver, ImportServiceResultReceiver.RESULT_CODE_ERROR, trackIds, file, context.getString(R.string.import_unable_to_import_file, file.getName()));
+                }
             }
         } catch (IOException e) {
             Log.d(TAG, "Unable to import file", e);
-            sendResult(ImportServiceResultReceiver.RESULT_CODE_ERROR, null, file, getString(R.string.import_unable_to_import_file, e.getMessage()));
+            sendResult(resultReceiver, ImportServiceResultReceiver.RESULT_CODE_ERROR, null, file, context.getString(R.string.import_unable_to_import_file, e.getMessage()));
         } catch (ImportParserException e) {
             Log.d(TAG, "Parser error: " + e.getMessage(), e);
-            sendResult(ImportServiceResultReceiver.RESULT_CODE_ERROR, null, file, getString(R.string.import_parser_error, e.getMessage()));
+            sendResult(resultReceiver, ImportServiceResultReceiver.RESULT_CODE_ERROR, null, file, context.getString(R.string.import_parser_error, e.getMessage()));
         } catch (ImportAlreadyExistsException e) {
             Log.d(TAG, "Track already exists: " + e.getMessage(), e);
-            sendResult(ImportServiceResultReceiver.RESULT_CODE_ALREADY_EXISTS, null, file, e.getMessage());
+            sendResult(resultReceiver, ImportServiceResultReceiver.RESULT_CODE_ALREADY_EXISTS, null, file, e.getMessage());
+        } catch (RuntimeException e) {
+            // Report it: the ImportViewModel waits for one result per file.
+            Log.e(TAG, "Unable to import file", e);
+            sendResult(resultReceiver, ImportServiceResultReceiver.RESULT_CODE_ERROR, null, file, context.getString(R.string.import_unable_to_import_file, e.getMessage()));
         }
     }
 
-    private void sendResult(int resultCode, ArrayList<Track.Id> trackId, DocumentFile file, String message) {
+    private static void sendResult(ResultReceiver resultReceiver, int resultCode, ArrayList<Track.Id> trackId, DocumentFile file, String message) {
         Bundle bundle = new Bundle();
         bundle.putParcelableArrayList(ImportServiceResultReceiver.RESULT_EXTRA_LIST_TRACK_ID, trackId);
         bundle.putString(ImportServiceResultReceiver.RESULT_EXTRA_FILENAME, file.getName());
@@ -1,6 +1,7 @@
 package de.dennisguse.opentracks.io.file.importer;
 
 import android.app.Application;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 
@@ -23,11 +24,15 @@ public class ImportViewModel extends AndroidViewModel implements ImportServiceRe
 
     private static final String TAG = ImportViewModel.class.getSimpleName();
 
+    // Files per ImportService job; the files of a job are imported in parallel.
+    private static final int BATCH_SIZE = 64;
+
     private MutableLiveData<Summary> importData;
     private final ImportServiceResultReceiver resultReceiver;
     private final Summary summary;
     private boolean cancel = false;
     private final List<DocumentFile> filesToImport = new ArrayList<>();
+    private int pendingResults = 0;
 
     public ImportViewModel(@NonNull Application application) {
         super(application);
@@ -51,15 +56,19 @@ public class ImportViewModel extends AndroidViewModel implements ImportServiceRe
         List<DocumentFile> fileList = documentFiles.stream().map(FileUtils::getFiles).flatMap(Collection::stream).collect(Collectors.toList());
         summary.totalCount = fileList.size();
         filesToImport.addAll(fileList);
-        importNextFile();
+        importNextBatch();
     }
 
-    private void importNextFile() {
+    private void importNextBatch() {
         if (cancel || filesToImport.isEmpty()) {
             return;
         }
-        ImportService.enqueue(getApplication(), resultReceiver, filesToImport.get(0).getUri());
-        filesToImport.remove(0);
+        List<DocumentFile> batch = filesToImport.subList(0, Math.min(BATCH_SIZE, filesToImport.size()));
+        ArrayList<Uri> uris = batch.stream().map(DocumentFile::getUri).collect(Collectors.toCollection(ArrayList::new));
+        pendingResults = uris.size();
+        batch.clear();
+
+        ImportService.enqueue(getApplication(), resultReceiver, uris);
     }
 
     @Override
@@ -89,7 +98,11 @@ public class ImportViewModel extends AndroidViewModel implements ImportServiceRe
         }
 
         importData.postValue(summary);
-        importNextFile();
+
+        pendingResults--;
+        if (pendingResults == 0) {
+            importNextBatch();
+        }
     }
 
     static class Summary {
@@ -0,0 +1,68 @@
+package de.dennisguse.opentracks.io.file.importer;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+import de.dennisguse.opentracks.util.PreferencesUtils;
+
+/**
+ * Remembers the tracks that are imported right now.
+ * <p>
+ * Importers insert a track while its file is parsed; so, if the process is killed meanwhile, an incomplete track is left.
+ * Such tracks are deleted on the next start (see {@link #deleteInterrupted(Context)}).
+ * While an import runs, its track is already shown (e.g., in the track list), but without name and statistics.
+ */
+public class IncompleteImports {
+
+    private static final String TAG = IncompleteImports.class.getSimpleName();
+
+    private IncompleteImports() {
+    }
+
+    static synchronized void add(@NonNull Context context, @NonNull Track.Id trackId) {
+        SharedPreferences sharedPreferences = PreferencesUtils.getSharedPreferences(context);
+        Set<Track.Id> trackIds = PreferencesUtils.getIncompleteImports(sharedPreferences, context);
+        trackIds.add(trackId);
+        PreferencesUtils.setIncompleteImports(sharedPreferences, context, trackIds);
+    }
+
+    /**
+     * The tracks were either imported completely or deleted.
+     */
+    static synchronized void remove(@NonNull Context context, @NonNull List<Track.Id> completedTrackIds) {
+        if (completedTrackIds.isEmpty()) {
+            return;
+        }
+        SharedPreferences sharedPreferences = PreferencesUtils.getSharedPreferences(context);
+        Set<Track.Id> trackIds = PreferencesUtils.getIncompleteImports(sharedPreferences, context);
+        if (trackIds.removeAll(completedTrackIds)) {
+            PreferencesUtils.setIncompleteImports(sharedPreferences, context, trackIds);
+        }
+    }
+
+    /**
+     * Deletes the tracks of imports that were interrupted (i.e., the process was killed).
+     * To be called on startup before any import is started: the tracks are determined right away and deleted in the background.
+     */
+    public static void deleteInterrupted(@NonNull Context context) {
+        List<Track.Id> trackIds = new ArrayList<>(PreferencesUtils.getIncompleteImports(PreferencesUtils.getSharedPreferences(context), context));
+        if (trackIds.isEmpty()) {
+            return;
+        }
+
+        Log.w(TAG, "Deleting " + trackIds.size() + " incompletely imported tracks.");
+        new Thread(() -> {
+            new ContentProviderUtils(context).deleteTracks(context, trackIds);
+            remove(context, trackIds);
+        }).start();
+    }
+}
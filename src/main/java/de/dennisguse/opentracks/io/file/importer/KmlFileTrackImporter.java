@@ -142,6 +142,7 @@ public class KmlFileTrackImporter extends AbstractFileTrackImporter {
             case TAG_UUID:
                 if (content != null) {
                     uuid = content.trim();
+                    onTrackUuid();
                 }
                 break;
             case TAG_DESCRIPTION:
@@ -0,0 +1,281 @@
+package de.dennisguse.opentracks.services;
+
+import android.app.job.JobService;
+import android.content.ContentProviderOperation;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.database.sqlite.SQLiteException;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import androidx.core.app.JobIntentService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.dennisguse.opentracks.content.data.Distance;
+import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.content.data.TrackPoint;
+import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+import de.dennisguse.opentracks.content.provider.TrackPointIterator;
+import de.dennisguse.opentracks.stats.BestEfforts;
+import de.dennisguse.opentracks.stats.BestEffortsCalculator;
+import de.dennisguse.opentracks.stats.Histogram;
+import de.dennisguse.opentracks.stats.HistogramCalculator;
+import de.dennisguse.opentracks.stats.MeanMaxCalculator;
+import de.dennisguse.opentracks.stats.MeanMaxCurvesCalculator;
+import de.dennisguse.opentracks.stats.TrackStatistics;
+import de.dennisguse.opentracks.stats.TrackStatisticsUpdater;
+import de.dennisguse.opentracks.util.PreferencesUtils;
+
+/**
+ * Recomputes the {@link TrackStatistics}, {@link BestEfforts}, {@link Histogram}s, and mean-maximal curves (see {@link MeanMaxCalculator}) of all stored tracks in the background (e.g., after the recordingDistanceInterval was changed).
+ * <p>
+ * Tracks are processed in batches (ordered by id): the TrackPoints of each track are streamed on a bounded worker pool and the results of a batch are written in one transaction.
+ * After each batch the last processed track is stored as checkpoint, so an interrupted job resumes where it stopped.
+ * While a track is recorded, the job throttles itself and skips the recording track; it is recomputed once its recording ends (see {@link #enqueueBestEfforts(Context, Track.Id)}).
+ * <p>
+ * Can also compute only the {@link BestEfforts}, {@link Histogram}s, and mean-maximal curves of one track (e.g., after recording) or of all tracks that have no best efforts stored yet (backfill).
+ * NOTE: SensorStatistics are computed on demand from the trackpoints (see {@link ContentProviderUtils#getSensorStats(Track.Id)}) and are therefore always up to date.
+ */
+public class StatisticsRecomputeService extends JobIntentService {
+
+    private static final String TAG = StatisticsRecomputeService.class.getSimpleName();
+
+    private static final int JOB_ID = 3;
+
+    private static final String EXTRA_TRACK_ID = "extra_track_id";
+    private static final String EXTRA_BACKFILL_BEST_EFFORTS = "extra_backfill_best_efforts";
+
+    @VisibleForTesting
+    static final int BATCH_SIZE = 50;
+
+    private static final int MAX_WORKERS = 4;
+
+    private static final long THROTTLE_WHILE_RECORDING_MS = 2000;
+
+    private final TrackRecordingServiceConnection trackRecordingServiceConnection = new TrackRecordingServiceConnection();
+
+    /**
+     * @param restart true to discard a stored checkpoint and process all tracks again.
+     */
+    public static void enqueue(Context context, boolean restart) {
+        if (restart) {
+            // Not in onHandleWork(): a redelivered job must resume from the checkpoint.
+            PreferencesUtils.setRecomputeStatisticsCheckpoint(PreferencesUtils.getSharedPreferences(context), context, null);
+        }
+        Intent intent = new Intent(context, JobService.class);
+        enqueueWork(context, StatisticsRecomputeService.class, JOB_ID, intent);
+    }
+
+    /**
+     * Computes and stores only the {@link BestEfforts} of one track.
+     * If the track was skipped by the recomputation while it was recorded, its {@link TrackStatistics} are recomputed as well.
+     */
+    public static void enqueueBestEfforts(Context context, @NonNull Track.Id trackId) {
+        Intent intent = new Intent(context, JobService.class);
+        intent.putExtra(EXTRA_TRACK_ID, trackId);
+        enqueueWork(context, StatisticsRecomputeService.class, JOB_ID, intent);
+    }
+
+    /**
+     * Computes and stores the {@link BestEfforts} of all tracks without any; only once.
+     */
+    public static void enqueueBestEffortsBackfill(Context context) {
+        if (PreferencesUtils.isBestEffortsBackfilled(PreferencesUtils.getSharedPreferences(context), context)) {
+            return;
+        }
+        Intent intent = new Intent(context, JobService.class);
+        intent.putExtra(EXTRA_BACKFILL_BEST_EFFORTS, true);
+        enqueueWork(context, StatisticsRecomputeService.class, JOB_ID, intent);
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Only binds if the TrackRecordingService is running; does not start it.
+        trackRecordingServiceConnection.bind(this);
+    }
+
+    @Override
+    public void onDestroy() {
+        trackRecordingServiceConnection.unbind(this);
+        super.onDestroy();
+    }
+
+    @Override
+    protected void onHandleWork(@NonNull Intent intent) {
+        SharedPreferences sharedPreferences = PreferencesUtils.getSharedPreferences(this);
+        Distance recordingDistanceInterval = PreferencesUtils.getRecordingDistanceInterval(sharedPreferences, this);
+        ContentProviderUtils contentProviderUtils = new ContentProviderUtils(this);
+
+        if (intent.hasExtra(EXTRA_TRACK_ID)) {
+            Track.Id trackId = intent.getParcelableExtra(EXTRA_TRACK_ID);
+            boolean skipped = trackId.equals(PreferencesUtils.getRecomputeStatisticsSkippedTrack(sharedPreferences, this));
+            if (process(contentProviderUtils, Collections.singletonList(trackId), recordingDistanceInterval, skipped, false) && skipped) {
+                PreferencesUtils.setRecomputeStatisticsSkippedTrack(sharedPreferences, this, null);
+            }
+            return;
+        }
+
+        if (intent.getBooleanExtra(EXTRA_BACKFILL_BEST_EFFORTS, false)) {
+            List<Track.Id> trackIds = contentProviderUtils.getTrackIdsWithoutBestEfforts();
+            Log.i(TAG, "Computing best efforts of " + trackIds.size() + " tracks.");
+            if (process(contentProviderUtils, trackIds, recordingDistanceInterval, false, false)) {
+                PreferencesUtils.setBestEffortsBackfilled(sharedPreferences, this);
+            }
+            return;
+        }
+
+        List<Track.Id> trackIds = contentProviderUtils.getTrackIds(PreferencesUtils.getRecomputeStatisticsCheckpoint(sharedPreferences, this));
+        Log.i(TAG, "Recomputing statistics of " + trackIds.size() + " tracks.");
+        if (process(contentProviderUtils, trackIds, recordingDistanceInterval, true, true)) {
+            PreferencesUtils.setRecomputeStatisticsCheckpoint(sharedPreferences, this, null);
+            Log.i(TAG, "Recomputing statistics finished.");
+        }
+    }
+
+    /**
+     * @param updateStatistics true to store the {@link TrackStatistics}; otherwise only the {@link BestEfforts}, {@link Histogram}s, and mean-maximal curves are stored.
+     * @param useCheckpoint    true to store the last processed track after each batch
+     * @return true if all tracks were processed
+     */
+    private boolean process(ContentProviderUtils contentProviderUtils, List<Track.Id> trackIds, Distance recordingDistanceInterval, boolean updateStatistics, boolean useCheckpoint) {
+        SharedPreferences sharedPreferences = PreferencesUtils.getSharedPreferences(this);
+        int workers = Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors() - 1));
+        ExecutorService executorService = Executors.newFixedThreadPool(workers);
+        try {
+            for (int start = 0; start < trackIds.size(); start += BATCH_SIZE) {
+                if (isStopped()) {
+                    Log.i(TAG, "Stopped; will resume.");
+                    return false;
+                }
+
+                Track.Id recordingTrackId = getRecordingTrackId();
+                if (recordingTrackId != null) {
+                    try {
+                        Thread.sleep(THROTTLE_WHILE_RECORDING_MS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+
+                List<Track.Id> batch = trackIds.subList(start, Math.min(start + BATCH_SIZE, trackIds.size()));
+                List<Future<Result>> futures = new ArrayList<>(batch.size());
+                for (Track.Id trackId : batch) {
+                    if (trackId.equals(recordingTrackId)) {
+                        if (updateStatistics) {
+                            // Processed with its best efforts once the recording ends; the checkpoint may advance past it.
+                            PreferencesUtils.setRecomputeStatisticsSkippedTrack(sharedPreferences, this, trackId);
+                        }
+                        continue;
+                    }
+                    futures.add(executorService.submit(() -> recompute(contentProviderUtils, trackId, recordingDistanceInterval)));
+                }
+
+                List<Result> results = new ArrayList<>(futures.size());
+                for (Future<Result> future : futures) {
+                    Result result = future.get();
+                    if (result != null) {
+                        results.add(result);
+                    }
+                }
+
+                // All results of the batch within one transaction.
+                ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+                for (Result result : results) {
+                    if (updateStatistics) {
+                        contentProviderUtils.addUpdateTrackStatistics(operations, result.track);
+                    }
+                    contentProviderUtils.addUpdateBestEfforts(operations, result.track.getId(), result.bestEfforts);
+                    contentProviderUtils.addUpdateHistograms(operations, result.track.getId(), result.histograms);
+                    contentProviderUtils.addUpdateMeanMaxCurves(operations, result.track.getId(), result.meanMaxCurves);
+                }
+                if (!operations.isEmpty()) {
+                    contentProviderUtils.applyBatch(operations);
+                }
+
+                if (useCheckpoint) {
+                    PreferencesUtils.setRecomputeStatisticsCheckpoint(sharedPreferences, this, batch.get(batch.size() - 1));
+                }
+            }
+            return true;
+        } catch (ExecutionException | SQLiteException e) {
+            Log.e(TAG, "Recomputing statistics failed; will resume.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executorService.shutdownNow();
+        }
+        return false;
+    }
+
+    @Override
+    public boolean onStopCurrentWork() {
+        // Reschedule: the work continues from the checkpoint.
+        return true;
+    }
+
+    private Track.Id getRecordingTrackId() {
+        TrackRecordingService trackRecordingService = trackRecordingServiceConnection.getServiceIfBound();
+        if (trackRecordingService == null || !trackRecordingService.isRecording()) {
+            return null;
+        }
+        return trackRecordingService.getRecordingTrackId();
+    }
+
+    /**
+     * Streams all {@link TrackPoint}s of a track once and computes its {@link TrackStatistics}, {@link BestEfforts}, {@link Histogram}s, and mean-maximal curves.
+     *
+     * @return the result (the track has only id and statistics set) or null if the track does not contain any {@link TrackPoint}.
+     */
+    @VisibleForTesting
+    static Result recompute(ContentProviderUtils contentProviderUtils, Track.Id trackId, Distance recordingDistanceInterval) {
+        TrackStatisticsUpdater trackStatisticsUpdater = new TrackStatisticsUpdater();
+        BestEffortsCalculator bestEffortsCalculator = new BestEffortsCalculator();
+        HistogramCalculator histogramCalculator = new HistogramCalculator();
+        MeanMaxCurvesCalculator meanMaxCurvesCalculator = new MeanMaxCurvesCalculator();
+        try (TrackPointIterator trackPointIterator = contentProviderUtils.getTrackPointLocationIterator(trackId, null)) {
+            while (trackPointIterator.hasNext()) {
+                TrackPoint trackPoint = trackPointIterator.next();
+                trackStatisticsUpdater.addTrackPoint(trackPoint, recordingDistanceInterval);
+                bestEffortsCalculator.addTrackPoint(trackPoint);
+                histogramCalculator.addTrackPoint(trackPoint);
+                meanMaxCurvesCalculator.addTrackPoint(trackPoint);
+            }
+        }
+
+        if (!trackStatisticsUpdater.isTrackInitialized()) {
+            return null;
+        }
+
+        Track track = new Track();
+        track.setId(trackId);
+        track.setTrackStatistics(trackStatisticsUpdater.getTrackStatistics());
+        return new Result(track, bestEffortsCalculator.getBestEfforts(), histogramCalculator.getHistograms(), meanMaxCurvesCalculator.getCurves());
+    }
+
+    @VisibleForTesting
+    static class Result {
+        final Track track;
+        final BestEfforts bestEfforts;
+        final Map<Histogram.Type, Histogram> histograms;
+        final Map<MeanMaxCalculator.Sensor, MeanMaxCalculator.Curve> meanMaxCurves;
+
+        Result(Track track, BestEfforts bestEfforts, Map<Histogram.Type, Histogram> histograms, Map<MeanMaxCalculator.Sensor, MeanMaxCalculator.Curve> meanMaxCurves) {
+            this.track = track;
+            this.bestEfforts = bestEfforts;
+            this.histograms = histograms;
+            this.meanMaxCurves = meanMaxCurves;
+        }
+    }
+}
@@ -46,6 +46,7 @@ import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.data.TrackPoint;
 import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
 import de.dennisguse.opentracks.content.provider.CustomContentProvider;
+import de.dennisguse.opentracks.content.provider.TrackPointIterator;
 import de.dennisguse.opentracks.content.sensor.SensorDataSet;
 import de.dennisguse.opentracks.io.file.exporter.ExportServiceResultReceiver;
 import de.dennisguse.opentracks.services.handlers.GpsStatusValue;
@@ -63,6 +64,7 @@ import de.dennisguse.opentracks.util.PreferencesUtils;
 import de.dennisguse.opentracks.util.SystemUtils;
 import de.dennisguse.opentracks.util.TrackIconUtils;
 import de.dennisguse.opentracks.util.TrackNameUtils;
+import de.dennisguse.opentracks.viewmodels.IntervalStatistics;
 
 /**
  * A background service that registers a location listener and records track points.
@@ -91,6 +93,10 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
                 boolean metricUnits = PreferencesUtils.isMetricUnits(sharedPreferences, context);
                 voiceExecutor.setMetricUnits(metricUnits);
                 notificationManager.setMetricUnits(metricUnits);
+                if (key != null && isRecording()) {
+                    // Interval length depends on the unit.
+                    loadIntervalStatistics(getRecordingTrackId());
+                }
             }
             if (PreferencesUtils.isKey(context, R.string.voice_frequency_key, key)) {
                 voiceExecutor.setTaskFrequency(PreferencesUtils.getVoiceFrequency(sharedPreferences, context));
@@ -112,6 +118,11 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
     private AltitudeSumManager altitudeSumManager;
 
     private TrackStatisticsUpdater trackStatisticsUpdater;
+    // Intervals of the recording track (for announcements); guarded by intervalStatisticsLock
+    private IntervalStatistics intervalStatistics;
+    // Incremented whenever intervalStatistics is replaced, so an outdated rebuild is discarded; guarded by intervalStatisticsLock
+    private int intervalStatisticsGeneration;
+    private final Object intervalStatisticsLock = new Object();
     private TrackPoint lastTrackPoint;
     private boolean isIdle;
 
@@ -192,6 +203,10 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
         return serviceStatus.getRecordingTrackPaused();
     }
 
+    public Track.Id getRecordingTrackId() {
+        return serviceStatus.getRecordingTrackId();
+    }
+
     public TrackStatistics getTrackStatistics() {
         if (trackStatisticsUpdater == null) {
             return null;
@@ -199,6 +214,59 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
         return trackStatisticsUpdater.getTrackStatistics();
     }
 
+    /**
+     * @return the last completed interval of the recording track (interval length: {@link Distance#one(boolean)}) or null.
+     */
+    public IntervalStatistics.Interval getLastInterval() {
+        synchronized (intervalStatisticsLock) {
+            if (intervalStatistics == null) {
+                return null;
+            }
+            return intervalStatistics.getLastInterval();
+        }
+    }
+
+    /**
+     * Loads the intervals of a track from the database (e.g., when resuming a track) in the background.
+     * Until then, there are no intervals.
+     */
+    private void loadIntervalStatistics(@NonNull Track.Id trackId) {
+        Distance intervalDistance = Distance.one(PreferencesUtils.isMetricUnits(sharedPreferences, this));
+        int generation;
+        synchronized (intervalStatisticsLock) {
+            intervalStatistics = null;
+            generation = ++intervalStatisticsGeneration;
+        }
+
+        new Thread(() -> {
+            IntervalStatistics newIntervalStatistics = new IntervalStatistics(intervalDistance);
+            TrackPoint.Id lastTrackPointId = addTrackPoints(newIntervalStatistics, trackId, null);
+            synchronized (intervalStatisticsLock) {
+                if (generation != intervalStatisticsGeneration) {
+                    return;
+                }
+                // Catch up with the TrackPoints inserted meanwhile; insertTrackPoint() holds the lock while inserting.
+                addTrackPoints(newIntervalStatistics, trackId, lastTrackPointId != null ? new TrackPoint.Id(lastTrackPointId.getId() + 1) : null);
+                intervalStatistics = newIntervalStatistics;
+            }
+        }).start();
+    }
+
+    /**
+     * @return the id of the last added TrackPoint; null if none.
+     */
+    private TrackPoint.Id addTrackPoints(IntervalStatistics intervalStatistics, Track.Id trackId, TrackPoint.Id startTrackPointId) {
+        TrackPoint.Id lastTrackPointId = null;
+        try (TrackPointIterator trackPointIterator = contentProviderUtils.getTrackPointLocationIterator(trackId, startTrackPointId)) {
+            while (trackPointIterator.hasNext()) {
+                TrackPoint trackPoint = trackPointIterator.next();
+                intervalStatistics.addTrackPoint(trackPoint);
+                lastTrackPointId = trackPoint.getId();
+            }
+        }
+        return lastTrackPointId;
+    }
+
     //TODO Throw exception, when not recording.
     public Duration getTotalTime() {
         if (trackStatisticsUpdater == null) {
@@ -269,6 +337,10 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
 
         TrackPoint segmentStartTrackPoint = TrackPoint.createSegmentStartManual();
         trackStatisticsUpdater = new TrackStatisticsUpdater();
+        synchronized (intervalStatisticsLock) {
+            intervalStatistics = new IntervalStatistics(Distance.one(PreferencesUtils.isMetricUnits(sharedPreferences, this)));
+            intervalStatisticsGeneration++;
+        }
         insertTrackPoint(track, segmentStartTrackPoint);
 
         //TODO Pass TrackPoint
@@ -300,6 +372,7 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
         // Sync the real time setting the stop time with current time.
         track.getTrackStatistics().setStopTime(Instant.now());
         trackStatisticsUpdater = new TrackStatisticsUpdater(track.getTrackStatistics());
+        loadIntervalStatistics(trackId);
 
         insertTrackPoint(track, TrackPoint.createSegmentStartManual());
 
@@ -388,6 +461,7 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
 
         Track track = contentProviderUtils.getTrack(trackId);
         ExportUtils.postWorkoutExport(this, track, new ExportServiceResultReceiver(new Handler(), this));
+        StatisticsRecomputeService.enqueueBestEfforts(this, trackId);
 
         endRecording(true);
 
@@ -603,7 +677,13 @@ public class TrackRecordingService extends Service implements HandlerServer.Hand
                 fillWithSensorDataSet(trackPoint);
                 remoteSensorManager.reset();
             }
-            contentProviderUtils.insertTrackPoint(trackPoint, track.getId());
+            // Insert under the lock: a rebuild of the intervals (see loadIntervalStatistics()) either reads the trackPoint or gets it added.
+            synchronized (intervalStatisticsLock) {
+                contentProviderUtils.insertTrackPoint(trackPoint, track.getId());
+                if (intervalStatistics != null) {
+                    intervalStatistics.addTrackPoint(trackPoint);
+                }
+            }
             trackStatisticsUpdater.addTrackPoint(trackPoint, recordingDistanceInterval);
 
             track.setTrackStatistics(trackStatisticsUpdater.getTrackStatistics());
@@ -14,6 +14,9 @@ import de.dennisguse.opentracks.services.handlers.GpsStatusValue;
  */
 public class TrackRecordingServiceStatus {
 
+    // There is only one TrackRecordingService per process.
+    private static volatile boolean anyTrackRecording;
+
     private Track.Id recordingTrackId;
     private boolean recordingTrackPaused;
 
@@ -37,6 +40,7 @@ public class TrackRecordingServiceStatus {
     }
 
     public void onStop() {
+        anyTrackRecording = false;
         for (Listener listener : listeners) {
             listener.onGpsStatus(GpsStatusValue.GPS_NONE);
             listener.onTrackRecordingId(null);
@@ -49,8 +53,16 @@ public class TrackRecordingServiceStatus {
         return recordingTrackId != null;
     }
 
+    /**
+     * @return true if a track is recorded within this process (e.g., for components that cannot bind the service).
+     */
+    public static boolean isAnyTrackRecording() {
+        return anyTrackRecording;
+    }
+
     void onChange(Track.Id trackId, boolean paused) {
         recordingTrackId = trackId;
+        anyTrackRecording = trackId != null;
         recordingTrackPaused = paused;
         for (Listener listener : listeners) {
             listener.onTrackRecordingId(recordingTrackId);
@@ -23,14 +23,10 @@ import android.speech.tts.TextToSpeech;
 import android.speech.tts.UtteranceProgressListener;
 import android.util.Log;
 
-import java.util.ArrayList;
 import java.util.Locale;
 
-import de.dennisguse.opentracks.content.data.Distance;
 import de.dennisguse.opentracks.content.data.Track;
-import de.dennisguse.opentracks.content.data.TrackPoint;
 import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
-import de.dennisguse.opentracks.content.provider.TrackPointIterator;
 import de.dennisguse.opentracks.services.TrackRecordingService;
 import de.dennisguse.opentracks.services.TrackRecordingServiceStatus;
 import de.dennisguse.opentracks.stats.TrackStatistics;
@@ -148,15 +144,16 @@ public class AnnouncementPeriodicTask implements PeriodicTask {
                 recordingTrackId = trackId;
             }
         });
-        announce(trackRecordingService.getTrackStatistics());
+        announce(trackRecordingService.getTrackStatistics(), trackRecordingService.getLastInterval());
     }
 
     /**
      * Runs this task.
      *
      * @param trackStatistics the track statistics
+     * @param lastInterval    the last completed interval; maintained by the {@link TrackRecordingService}
      */
-    private void announce(TrackStatistics trackStatistics) {
+    private void announce(TrackStatistics trackStatistics, IntervalStatistics.Interval lastInterval) {
         if (trackStatistics == null) {
             Log.e(TAG, "TrackStatistics is null.");
             return;
@@ -183,19 +180,9 @@ public class AnnouncementPeriodicTask implements PeriodicTask {
         Track track = contentProviderUtils.getTrack(recordingTrackId);
         String category = track != null ? track.getCategory() : "";
 
-        //TODO Querying all TrackPoints all the time is inefficient; use TrackDataHub or something else.
-        TrackPointIterator trackPointIterator = contentProviderUtils.getTrackPointLocationIterator(track.getId(), null);
-        ArrayList<TrackPoint> trackPoints = new ArrayList<>();
-        while (trackPointIterator.hasNext()) {
-            trackPoints.add(trackPointIterator.next());
-        }
-
         boolean isMetricUnits = PreferencesUtils.isMetricUnits(sharedPreferences, context);
         boolean isReportSpeed = PreferencesUtils.isReportSpeed(sharedPreferences, context, category);
 
-        IntervalStatistics intervalStatistics = new IntervalStatistics(trackPoints, Distance.one(isMetricUnits));
-        IntervalStatistics.Interval lastInterval = intervalStatistics.getLastInterval();
-
         String announcement = AnnouncementUtils.getAnnouncement(context, trackStatistics, isMetricUnits, isReportSpeed, lastInterval);
         speakAnnouncement(announcement);
     }
@@ -1,12 +1,18 @@
 package de.dennisguse.opentracks.settings;
 
+import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.View;
 import android.widget.Toast;
 
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.widget.Toolbar;
 import androidx.documentfile.provider.DocumentFile;
@@ -22,7 +28,9 @@ import de.dennisguse.opentracks.AbstractActivity;
 import de.dennisguse.opentracks.R;
 import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.fragments.ChooseActivityTypeDialogFragment;
+import de.dennisguse.opentracks.io.file.DatabaseBackup;
 import de.dennisguse.opentracks.io.file.TrackFileFormat;
+import de.dennisguse.opentracks.services.StatisticsRecomputeService;
 import de.dennisguse.opentracks.services.TrackRecordingService;
 import de.dennisguse.opentracks.services.TrackRecordingServiceConnection;
 import de.dennisguse.opentracks.services.TrackRecordingServiceStatus;
@@ -32,6 +40,7 @@ import de.dennisguse.opentracks.settings.bluetooth.BluetoothLeHeartRatePreferenc
 import de.dennisguse.opentracks.settings.bluetooth.BluetoothLeSensorPreference;
 import de.dennisguse.opentracks.util.ActivityUtils;
 import de.dennisguse.opentracks.util.BluetoothUtils;
+import de.dennisguse.opentracks.util.ExportUtils;
 import de.dennisguse.opentracks.util.HackUtils;
 import de.dennisguse.opentracks.util.PreferencesUtils;
 import de.dennisguse.opentracks.util.StringUtils;
@@ -95,6 +104,9 @@ public class SettingsActivity extends AbstractActivity implements ChooseActivity
 
     public static class PrefsFragment extends PreferenceFragmentCompat implements TrackRecordingServiceStatus.Listener {
 
+        private static final int DATABASE_BACKUP_REQUEST_CODE = 7;
+        private static final int DATABASE_RESTORE_REQUEST_CODE = 8;
+
         private SharedPreferences sharedPreferences;
 
         private final SharedPreferences.OnSharedPreferenceChangeListener sharedPreferenceChangeListener = (sharedPreferences, key) -> {
@@ -104,6 +116,10 @@ public class SettingsActivity extends AbstractActivity implements ChooseActivity
             if (PreferencesUtils.isKey(getActivity(), R.string.night_mode_key, key)) {
                 getActivity().runOnUiThread(() -> ActivityUtils.applyNightMode(sharedPreferences, getContext()));
             }
+            if (key != null && PreferencesUtils.isKey(getActivity(), R.string.recording_distance_interval_key, key)) {
+                // Stored statistics depend on the recordingDistanceInterval.
+                StatisticsRecomputeService.enqueue(getContext(), true);
+            }
         };
 
         private TrackRecordingServiceConnection trackRecordingServiceConnection;
@@ -141,6 +157,32 @@ public class SettingsActivity extends AbstractActivity implements ChooseActivity
             setExportTrackFileFormatOptions();
             setWheelCircumferenceInputFilter();
 
+            Preference recomputeStatisticsPreference = findPreference(getString(R.string.settings_recompute_statistics));
+            recomputeStatisticsPreference.setOnPreferenceClickListener(preference -> {
+                StatisticsRecomputeService.enqueue(getContext(), true);
+                Toast.makeText(getContext(), R.string.settings_recompute_statistics_started, Toast.LENGTH_SHORT).show();
+                return true;
+            });
+
+            Preference databaseBackupPreference = findPreference(getString(R.string.settings_database_backup));
+            databaseBackupPreference.setOnPreferenceClickListener(preference -> {
+                Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+                intent.addCategory(Intent.CATEGORY_OPENABLE);
+                intent.setType(DatabaseBackup.MIME_TYPE);
+                intent.putExtra(Intent.EXTRA_TITLE, ExportUtils.getDatabaseBackupFileName(getContext()));
+                startActivityForResult(intent, DATABASE_BACKUP_REQUEST_CODE);
+                return true;
+            });
+
+            Preference databaseRestorePreference = findPreference(getString(R.string.settings_database_restore));
+            databaseRestorePreference.setOnPreferenceClickListener(preference -> {
+                Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+                intent.addCategory(Intent.CATEGORY_OPENABLE);
+                intent.setType("*/*");
+                startActivityForResult(intent, DATABASE_RESTORE_REQUEST_CODE);
+                return true;
+            });
+
             Preference instantExportDirectoryPreference = findPreference(getString(R.string.settings_default_export_directory_key));
             instantExportDirectoryPreference.setSummaryProvider(preference -> {
                 DocumentFile directory = PreferencesUtils.getDefaultExportDirectoryUri(sharedPreferences, getContext());
@@ -149,6 +191,38 @@ public class SettingsActivity extends AbstractActivity implements ChooseActivity
             });
         }
 
+        @Override
+        public void onActivityResult(int requestCode, int resultCode, @Nullable Intent resultData) {
+            super.onActivityResult(requestCode, resultCode, resultData);
+            if (resultCode != Activity.RESULT_OK || resultData == null || resultData.getData() == null) {
+                return;
+            }
+
+            Uri uri = resultData.getData();
+            Context context = getContext().getApplicationContext();
+            if (requestCode == DATABASE_BACKUP_REQUEST_CODE) {
+                new Thread(() -> {
+                    boolean success = DatabaseBackup.backup(context, uri);
+                    showToast(context, success ? R.string.settings_database_backup_success : R.string.settings_database_backup_error);
+                }).start();
+            } else if (requestCode == DATABASE_RESTORE_REQUEST_CODE) {
+                new AlertDialog.Builder(getContext())
+                        .setTitle(R.string.settings_database_restore_title)
+                        .setMessage(R.string.settings_database_restore_confirm_message)
+                        .setNegativeButton(R.string.generic_cancel, null)
+                        .setPositiveButton(R.string.generic_yes, (dialog, which) -> new Thread(() -> {
+                            boolean success = DatabaseBackup.restore(context, uri);
+                            showToast(context, success ? R.string.settings_database_restore_success : R.string.settings_database_restore_error);
+                        }).start())
+                        .create()
+                        .show();
+            }
+        }
+
+        private static void showToast(Context context, int messageId) {
+            new Handler(Looper.getMainLooper()).post(() -> Toast.makeText(context, messageId, Toast.LENGTH_LONG).show());
+        }
+
         @Override
         public void onResume() {
             super.onResume();
@@ -217,14 +291,17 @@ public class SettingsActivity extends AbstractActivity implements ChooseActivity
             Preference resetPreference = findPreference(getString(R.string.settings_reset_key));
             Preference importPreference = findPreference(getString(R.string.settings_import));
             Preference exportPreference = findPreference(getString(R.string.settings_export));
+            Preference databaseRestorePreference = findPreference(getString(R.string.settings_database_restore));
 
             resetPreference.setSummary(isRecording ? getString(R.string.settings_not_while_recording) : "");
             importPreference.setSummary(isRecording ? getString(R.string.settings_not_while_recording) : "");
             exportPreference.setSummary(isRecording ? getString(R.string.settings_not_while_recording) : "");
+            databaseRestorePreference.setSummary(isRecording ? getString(R.string.settings_not_while_recording) : "");
 
             resetPreference.setEnabled(!isRecording);
             importPreference.setEnabled(!isRecording);
             exportPreference.setEnabled(!isRecording);
+            databaseRestorePreference.setEnabled(!isRecording);
         }
 
         private void updateBluetooth() {
@@ -260,7 +337,7 @@ public class SettingsActivity extends AbstractActivity implements ChooseActivity
 
 
         private void setExportTrackFileFormatOptions() {
-            final TrackFileFormat[] trackFileFormats = {TrackFileFormat.KMZ_WITH_TRACKDETAIL_AND_SENSORDATA_AND_PICTURES, TrackFileFormat.KMZ_WITH_TRACKDETAIL_AND_SENSORDATA, TrackFileFormat.KML_WITH_TRACKDETAIL_AND_SENSORDATA, TrackFileFormat.GPX};
+            final TrackFileFormat[] trackFileFormats = {TrackFileFormat.KMZ_WITH_TRACKDETAIL_AND_SENSORDATA_AND_PICTURES, TrackFileFormat.KMZ_WITH_TRACKDETAIL_AND_SENSORDATA, TrackFileFormat.KML_WITH_TRACKDETAIL_AND_SENSORDATA, TrackFileFormat.GPX, TrackFileFormat.OPENTRACKS_BINARY};
             String[] entries = new String[trackFileFormats.length];
             String[] entryValues = new String[trackFileFormats.length];
 
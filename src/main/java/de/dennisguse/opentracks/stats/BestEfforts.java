@@ -0,0 +1,194 @@
+package de.dennisguse.opentracks.stats;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+
+import de.dennisguse.opentracks.content.data.Distance;
+import de.dennisguse.opentracks.content.data.Speed;
+import de.dennisguse.opentracks.content.data.Track;
+
+/**
+ * The best efforts (best splits) of a track: the fastest time for a fixed distance and the highest average speed for a fixed duration.
+ * Values are stored as raw doubles (seconds or m/s) as they are also persisted that way.
+ */
+public class BestEfforts {
+
+    public enum Type {
+        DISTANCE_400M(0, 400),
+        DISTANCE_1KM(1, 1000),
+        DISTANCE_5KM(2, 5000),
+        DISTANCE_10KM(3, 10000),
+        DISTANCE_HALF_MARATHON(4, 21097.5),
+        DISTANCE_MARATHON(5, 42195),
+
+        DURATION_1MIN(10, 60),
+        DURATION_5MIN(11, 5 * 60),
+        DURATION_20MIN(12, 20 * 60),
+        DURATION_60MIN(13, 60 * 60);
+
+        public final int type_db;
+
+        /**
+         * Distance in m or duration in s.
+         */
+        private final double window;
+
+        Type(int type_db, double window) {
+            this.type_db = type_db;
+            this.window = window;
+        }
+
+        public boolean isDistance() {
+            return type_db < DURATION_1MIN.type_db;
+        }
+
+        public Distance getDistance() {
+            if (!isDistance()) {
+                throw new IllegalStateException(this + " is not a distance.");
+            }
+            return Distance.of(window);
+        }
+
+        public Duration getDuration() {
+            if (isDistance()) {
+                throw new IllegalStateException(this + " is not a duration.");
+            }
+            return Duration.ofSeconds((long) window);
+        }
+
+        double getWindow() {
+            return window;
+        }
+
+        /**
+         * @return true if value1 is a better effort than value2.
+         */
+        public boolean isBetter(double value1, double value2) {
+            return isDistance() ? value1 < value2 : value1 > value2;
+        }
+
+        public static Type getById(int id) {
+            for (Type type : values()) {
+                if (type.type_db == id) {
+                    return type;
+                }
+            }
+
+            throw new RuntimeException("unknown id: " + id);
+        }
+    }
+
+    private final Map<Type, Double> values = new EnumMap<>(Type.class);
+
+    public boolean has(@NonNull Type type) {
+        return values.containsKey(type);
+    }
+
+    /**
+     * @return duration in s (distance types) or speed in m/s (duration types); null if not reached.
+     */
+    @Nullable
+    public Double getValue(@NonNull Type type) {
+        return values.get(type);
+    }
+
+    public void setValue(@NonNull Type type, double value) {
+        values.put(type, value);
+    }
+
+    /**
+     * @return the fastest time for a distance type; null if the distance was not reached.
+     */
+    @Nullable
+    public Duration getDuration(@NonNull Type type) {
+        Double value = values.get(type);
+        if (value == null) {
+            return null;
+        }
+        return Duration.ofMillis(Math.round(value * 1000));
+    }
+
+    /**
+     * @return the best average speed for a duration type; null if the duration was not reached.
+     */
+    @Nullable
+    public Speed getSpeed(@NonNull Type type) {
+        Double value = values.get(type);
+        if (value == null) {
+            return null;
+        }
+        return Speed.of(value);
+    }
+
+    public Map<Type, Double> getValues() {
+        return values;
+    }
+
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        BestEfforts that = (BestEfforts) o;
+        return values.equals(that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(values);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "BestEfforts{" +
+                "values=" + values +
+                '}';
+    }
+
+    /**
+     * One best effort of a track; used for personal record lists across tracks.
+     */
+    public static class Record {
+
+        private final Track.Id trackId;
+        private final Type type;
+        private final double value;
+
+        public Record(@NonNull Track.Id trackId, @NonNull Type type, double value) {
+            this.trackId = trackId;
+            this.type = type;
+            this.value = value;
+        }
+
+        public Track.Id getTrackId() {
+            return trackId;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public double getValue() {
+            return value;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "Record{" +
+                    "trackId=" + trackId +
+                    ", type=" + type +
+                    ", value=" + value +
+                    '}';
+        }
+    }
+}
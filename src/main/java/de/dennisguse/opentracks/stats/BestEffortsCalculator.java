@@ -0,0 +1,136 @@
+package de.dennisguse.opentracks.stats;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import de.dennisguse.opentracks.content.data.TrackPoint;
+
+/**
+ * Computes the {@link BestEfforts} of a track.
+ * <p>
+ * The {@link TrackPoint}s are reduced to two primitive arrays (cumulative distance and cumulative time); each {@link BestEfforts.Type} is then computed with one sliding window (two pointers) in O(n).
+ * The window boundaries are linearly interpolated, so the result does not depend on the sampling rate.
+ * Time between segments (pauses) is not counted.
+ */
+public class BestEffortsCalculator {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private double[] distance_m = new double[INITIAL_CAPACITY];
+    private double[] time_s = new double[INITIAL_CAPACITY];
+    private int size = 0;
+
+    private double totalDistance_m = 0;
+    private double totalTime_s = 0;
+
+    // Last trackPoint of the current segment; null if no segment is active.
+    private TrackPoint lastTrackPoint;
+
+    public void addTrackPoints(@NonNull List<TrackPoint> trackPoints) {
+        for (TrackPoint trackPoint : trackPoints) {
+            addTrackPoint(trackPoint);
+        }
+    }
+
+    public void addTrackPoint(@NonNull TrackPoint trackPoint) {
+        if (trackPoint.getTime() == null) {
+            return;
+        }
+
+        if (trackPoint.isSegmentStart()) {
+            lastTrackPoint = trackPoint;
+            append();
+            return;
+        }
+
+        if (lastTrackPoint == null) {
+            lastTrackPoint = trackPoint.isSegmentEnd() ? null : trackPoint;
+            append();
+            return;
+        }
+
+        Duration delta = Duration.between(lastTrackPoint.getTime(), trackPoint.getTime());
+        if (delta.isNegative()) {
+            lastTrackPoint = trackPoint;
+            return;
+        }
+
+        if (trackPoint.hasSensorDistance()) {
+            totalDistance_m += trackPoint.getSensorDistance().toM();
+        } else if (trackPoint.hasLocation() && lastTrackPoint.hasLocation()) {
+            totalDistance_m += trackPoint.distanceToPrevious(lastTrackPoint).toM();
+        }
+        totalTime_s += delta.toMillis() / 1000d;
+        append();
+
+        lastTrackPoint = trackPoint.isSegmentEnd() ? null : trackPoint;
+    }
+
+    private void append() {
+        if (size == distance_m.length) {
+            distance_m = Arrays.copyOf(distance_m, size * 2);
+            time_s = Arrays.copyOf(time_s, size * 2);
+        }
+        distance_m[size] = totalDistance_m;
+        time_s[size] = totalTime_s;
+        size++;
+    }
+
+    @NonNull
+    public BestEfforts getBestEfforts() {
+        BestEfforts bestEfforts = new BestEfforts();
+        for (BestEfforts.Type type : BestEfforts.Type.values()) {
+            if (type.isDistance()) {
+                double fastestTime_s = bestIncrease(distance_m, time_s, size, type.getWindow(), false);
+                if (!Double.isNaN(fastestTime_s) && fastestTime_s > 0) {
+                    bestEfforts.setValue(type, fastestTime_s);
+                }
+            } else {
+                double maxDistance_m = bestIncrease(time_s, distance_m, size, type.getWindow(), true);
+                if (!Double.isNaN(maxDistance_m)) {
+                    bestEfforts.setValue(type, maxDistance_m / type.getWindow());
+                }
+            }
+        }
+        return bestEfforts;
+    }
+
+    /**
+     * Finds the minimal (or maximal) increase of `other` over all windows in which `window` increases by exactly windowSize.
+     * For distance windows this is the fastest time; for time windows the longest distance.
+     *
+     * @param window   monotonically increasing values the window is defined on
+     * @param other    monotonically increasing values to be optimized
+     * @param maximize true to find the maximal increase; false for the minimal increase
+     * @return NaN if window never increases by windowSize
+     */
+    @VisibleForTesting
+    static double bestIncrease(double[] window, double[] other, int size, double windowSize, boolean maximize) {
+        double best = Double.NaN;
+        int i = 0;
+        for (int j = 1; j < size; j++) {
+            if (window[j] - window[0] < windowSize) {
+                continue;
+            }
+            // Largest i such that window[j] - window[i] >= windowSize
+            while (window[j] - window[i + 1] >= windowSize) {
+                i++;
+            }
+
+            // Interpolate the start of the window between i and i + 1 (window[i + 1] > window[i] by construction).
+            double start = window[j] - windowSize;
+            double fraction = (start - window[i]) / (window[i + 1] - window[i]);
+            double otherStart = other[i] + fraction * (other[i + 1] - other[i]);
+            double value = other[j] - otherStart;
+
+            if (Double.isNaN(best) || (maximize ? value > best : value < best)) {
+                best = value;
+            }
+        }
+        return best;
+    }
+}
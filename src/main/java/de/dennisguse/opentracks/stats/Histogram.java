@@ -0,0 +1,221 @@
+package de.dennisguse.opentracks.stats;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Time-weighted histogram with fixed bins (per {@link Type}) of a value (e.g., heart rate).
+ * <p>
+ * As the bins are fixed, histograms of the same type can be merged by adding bins; so aggregating many tracks does not require the trackpoints.
+ * Values outside the range are counted in the first or last bin.
+ * NOTE: pace is the inverse of speed, so pace distributions (and quantiles) can be derived from the speed histogram.
+ */
+public class Histogram {
+
+    public enum Type {
+        HEART_RATE(0, 1, 250), // bpm
+        SPEED(1, 0.1, 400), // m/s
+        POWER(2, 5, 500); // W
+
+        public final int type_db;
+
+        private final double binWidth;
+        private final int bins;
+
+        Type(int type_db, double binWidth, int bins) {
+            this.type_db = type_db;
+            this.binWidth = binWidth;
+            this.bins = bins;
+        }
+
+        public double getBinWidth() {
+            return binWidth;
+        }
+
+        public static Type getById(int id) {
+            for (Type type : values()) {
+                if (type.type_db == id) {
+                    return type;
+                }
+            }
+
+            throw new RuntimeException("unknown id: " + id);
+        }
+    }
+
+    private final Type type;
+
+    private final long[] bins_ms;
+
+    private long total_ms = 0;
+
+    public Histogram(@NonNull Type type) {
+        this.type = type;
+        this.bins_ms = new long[type.bins];
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void add(double value, long duration_ms) {
+        if (Double.isNaN(value) || duration_ms <= 0) {
+            return;
+        }
+        bins_ms[getBin(value)] += duration_ms;
+        total_ms += duration_ms;
+    }
+
+    private int getBin(double value) {
+        int bin = (int) (value / type.binWidth);
+        return Math.max(0, Math.min(bin, bins_ms.length - 1));
+    }
+
+    public void merge(@NonNull Histogram histogram) {
+        if (histogram.type != type) {
+            throw new IllegalArgumentException("Cannot merge " + histogram.type + " into " + type);
+        }
+        for (int i = 0; i < bins_ms.length; i++) {
+            bins_ms[i] += histogram.bins_ms[i];
+        }
+        total_ms += histogram.total_ms;
+    }
+
+    public boolean isEmpty() {
+        return total_ms == 0;
+    }
+
+    public long getTotal_ms() {
+        return total_ms;
+    }
+
+    /**
+     * @return the time spent with a value within [from, to) (bin resolution); e.g., time in heart rate zone.
+     */
+    public long getDuration_ms(double from, double to) {
+        long duration_ms = 0;
+        for (int i = getBin(from); i < bins_ms.length && i * type.binWidth < to; i++) {
+            duration_ms += bins_ms[i];
+        }
+        return duration_ms;
+    }
+
+    /**
+     * @param boundaries the ascending zone boundaries (n + 1 values for n zones)
+     * @return the time spent within each zone.
+     */
+    public long[] getDurations_ms(double[] boundaries) {
+        long[] durations_ms = new long[Math.max(0, boundaries.length - 1)];
+        for (int i = 0; i < durations_ms.length; i++) {
+            durations_ms[i] = getDuration_ms(boundaries[i], boundaries[i + 1]);
+        }
+        return durations_ms;
+    }
+
+    /**
+     * @param quantile within [0, 1]; e.g., 0.5 for the median
+     * @return the value (linearly interpolated within the bin); NaN if empty.
+     */
+    public double getQuantile(double quantile) {
+        if (total_ms == 0) {
+            return Double.NaN;
+        }
+
+        double target = quantile * total_ms;
+        long cumulative_ms = 0;
+        for (int i = 0; i < bins_ms.length; i++) {
+            if (bins_ms[i] == 0) {
+                continue;
+            }
+            if (cumulative_ms + bins_ms[i] >= target) {
+                double fraction = (target - cumulative_ms) / bins_ms[i];
+                return (i + fraction) * type.binWidth;
+            }
+            cumulative_ms += bins_ms[i];
+        }
+        return bins_ms.length * type.binWidth;
+    }
+
+    /**
+     * Sparse encoding: for each non-empty bin the gap to the previous non-empty bin and its duration (ms) as unsigned varints.
+     */
+    @NonNull
+    public byte[] toBytes() {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        int previous = -1;
+        for (int i = 0; i < bins_ms.length; i++) {
+            if (bins_ms[i] == 0) {
+                continue;
+            }
+            writeVarint(outputStream, i - previous);
+            writeVarint(outputStream, bins_ms[i]);
+            previous = i;
+        }
+        return outputStream.toByteArray();
+    }
+
+    @NonNull
+    public static Histogram fromBytes(@NonNull Type type, @NonNull byte[] data) {
+        Histogram histogram = new Histogram(type);
+        int[] position = {0};
+        int bin = -1;
+        while (position[0] < data.length) {
+            bin += (int) readVarint(data, position);
+            long duration_ms = readVarint(data, position);
+            if (bin >= histogram.bins_ms.length) {
+                throw new IllegalArgumentException("Invalid histogram data for " + type);
+            }
+            histogram.bins_ms[bin] += duration_ms;
+            histogram.total_ms += duration_ms;
+        }
+        return histogram;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream outputStream, long value) {
+        while ((value & ~0x7FL) != 0) {
+            outputStream.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        outputStream.write((int) value);
+    }
+
+    private static long readVarint(byte[] data, int[] position) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            if (position[0] >= data.length || shift > 63) {
+                throw new IllegalArgumentException("Invalid varint");
+            }
+            byte b = data[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Histogram histogram = (Histogram) o;
+        return type == histogram.type && Arrays.equals(bins_ms, histogram.bins_ms);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * type.hashCode() + Arrays.hashCode(bins_ms);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "Histogram{" +
+                "type=" + type +
+                ", total_ms=" + total_ms +
+                '}';
+    }
+}
@@ -0,0 +1,72 @@
+package de.dennisguse.opentracks.stats;
+
+import androidx.annotation.NonNull;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import de.dennisguse.opentracks.content.data.TrackPoint;
+
+/**
+ * Computes the {@link Histogram}s of a track in one pass.
+ * A value is valid until the next {@link TrackPoint} (same as the sensor statistics); time between segments is not counted.
+ */
+public class HistogramCalculator {
+
+    private final Map<Histogram.Type, Histogram> histograms = new EnumMap<>(Histogram.Type.class);
+
+    // Last trackPoint of the current segment; null if no segment is active.
+    private TrackPoint lastTrackPoint;
+
+    public HistogramCalculator() {
+        for (Histogram.Type type : Histogram.Type.values()) {
+            histograms.put(type, new Histogram(type));
+        }
+    }
+
+    public void addTrackPoints(@NonNull List<TrackPoint> trackPoints) {
+        for (TrackPoint trackPoint : trackPoints) {
+            addTrackPoint(trackPoint);
+        }
+    }
+
+    public void addTrackPoint(@NonNull TrackPoint trackPoint) {
+        if (trackPoint.getTime() == null) {
+            return;
+        }
+
+        if (lastTrackPoint != null && !trackPoint.isSegmentStart()) {
+            Duration delta = Duration.between(lastTrackPoint.getTime(), trackPoint.getTime());
+            if (!delta.isNegative()) {
+                long duration_ms = delta.toMillis();
+                if (lastTrackPoint.hasHeartRate()) {
+                    histograms.get(Histogram.Type.HEART_RATE).add(lastTrackPoint.getHeartRate_bpm(), duration_ms);
+                }
+                if (lastTrackPoint.hasSpeed()) {
+                    histograms.get(Histogram.Type.SPEED).add(lastTrackPoint.getSpeed().toMPS(), duration_ms);
+                }
+                if (lastTrackPoint.hasPower()) {
+                    histograms.get(Histogram.Type.POWER).add(lastTrackPoint.getPower(), duration_ms);
+                }
+            }
+        }
+
+        lastTrackPoint = trackPoint.isSegmentEnd() ? null : trackPoint;
+    }
+
+    /**
+     * @return the non-empty histograms.
+     */
+    @NonNull
+    public Map<Histogram.Type, Histogram> getHistograms() {
+        Map<Histogram.Type, Histogram> result = new EnumMap<>(Histogram.Type.class);
+        for (Histogram histogram : histograms.values()) {
+            if (!histogram.isEmpty()) {
+                result.put(histogram.getType(), histogram);
+            }
+        }
+        return result;
+    }
+}
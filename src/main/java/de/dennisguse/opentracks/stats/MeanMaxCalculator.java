@@ -0,0 +1,298 @@
+package de.dennisguse.opentracks.stats;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import de.dennisguse.opentracks.content.data.TrackPoint;
+
+/**
+ * Computes the mean-maximal curve (highest average over a duration) of a sensor value (e.g., power or heart rate) and the normalized average (i.e., normalized power).
+ * <p>
+ * The {@link TrackPoint}s are resampled to 1Hz (a value is valid until the next {@link TrackPoint}; time between segments and without a value is skipped) and kept as prefix sums in a primitive array.
+ * The curve is computed for log-spaced durations ({@link #DURATIONS_S}) and the whole track; every new sample updates each duration in O(1).
+ * So, it can be used incrementally (while recording) and the total effort is O(n log n).
+ */
+public class MeanMaxCalculator {
+
+    public enum Sensor {
+        POWER(0) {
+            @Override
+            boolean hasValue(TrackPoint trackPoint) {
+                return trackPoint.hasPower();
+            }
+
+            @Override
+            float getValue(TrackPoint trackPoint) {
+                return trackPoint.getPower();
+            }
+        },
+        HEART_RATE(1) {
+            @Override
+            boolean hasValue(TrackPoint trackPoint) {
+                return trackPoint.hasHeartRate();
+            }
+
+            @Override
+            float getValue(TrackPoint trackPoint) {
+                return trackPoint.getHeartRate_bpm();
+            }
+        };
+
+        public final int type_db;
+
+        Sensor(int type_db) {
+            this.type_db = type_db;
+        }
+
+        abstract boolean hasValue(TrackPoint trackPoint);
+
+        abstract float getValue(TrackPoint trackPoint);
+
+        public static Sensor getById(int id) {
+            for (Sensor sensor : values()) {
+                if (sensor.type_db == id) {
+                    return sensor;
+                }
+            }
+
+            throw new RuntimeException("unknown id: " + id);
+        }
+    }
+
+    /**
+     * Durations of the curve (in seconds); roughly log-spaced up to 24h.
+     */
+    @VisibleForTesting
+    static final int[] DURATIONS_S = {1, 2, 3, 5, 10, 15, 20, 30, 45, 60, 90, 120, 180, 240, 300, 420, 600, 900, 1200, 1800, 2700, 3600, 5400, 7200, 10800, 14400, 21600, 28800, 43200, 86400};
+
+    private static final int NORMALIZED_ROLLING_AVERAGE_S = 30;
+
+    private static final int INITIAL_CAPACITY = 3600;
+
+    private final Sensor sensor;
+
+    // prefixSum[i] is the sum of the first i samples (1Hz).
+    private double[] prefixSum = new double[INITIAL_CAPACITY + 1];
+    private int size = 0;
+
+    private final double[] best = new double[DURATIONS_S.length];
+
+    private double normalizedSum = 0;
+    private int normalizedCount = 0;
+
+    // Resampling state
+    private TrackPoint lastTrackPoint;
+    private long elapsed_ms = 0;
+
+    public MeanMaxCalculator(@NonNull Sensor sensor) {
+        this.sensor = sensor;
+        Arrays.fill(best, Double.NaN);
+    }
+
+    public void addTrackPoints(@NonNull List<TrackPoint> trackPoints) {
+        for (TrackPoint trackPoint : trackPoints) {
+            addTrackPoint(trackPoint);
+        }
+    }
+
+    public void addTrackPoint(@NonNull TrackPoint trackPoint) {
+        if (trackPoint.getTime() == null) {
+            return;
+        }
+
+        if (lastTrackPoint != null && !trackPoint.isSegmentStart()) {
+            Duration delta = Duration.between(lastTrackPoint.getTime(), trackPoint.getTime());
+            if (delta.isNegative()) {
+                lastTrackPoint = trackPoint;
+                return;
+            }
+            if (sensor.hasValue(lastTrackPoint)) {
+                appendUntil(elapsed_ms + delta.toMillis(), sensor.getValue(lastTrackPoint));
+            }
+        }
+
+        lastTrackPoint = trackPoint.isSegmentEnd() ? null : trackPoint;
+    }
+
+    /**
+     * Appends 1Hz samples with a constant value.
+     */
+    private void appendUntil(long newElapsed_ms, float value) {
+        elapsed_ms = newElapsed_ms;
+        while ((size + 1) * 1000L <= elapsed_ms) {
+            append(value);
+        }
+    }
+
+    @VisibleForTesting
+    void append(double value) {
+        if (size + 1 == prefixSum.length) {
+            prefixSum = Arrays.copyOf(prefixSum, prefixSum.length * 2);
+        }
+        prefixSum[size + 1] = prefixSum[size] + value;
+        size++;
+
+        for (int i = 0; i < DURATIONS_S.length && DURATIONS_S[i] <= size; i++) {
+            double average = average(size - DURATIONS_S[i], size);
+            if (Double.isNaN(best[i]) || average > best[i]) {
+                best[i] = average;
+            }
+        }
+
+        if (size >= NORMALIZED_ROLLING_AVERAGE_S) {
+            double rollingAverage = average(size - NORMALIZED_ROLLING_AVERAGE_S, size);
+            normalizedSum += rollingAverage * rollingAverage * rollingAverage * rollingAverage;
+            normalizedCount++;
+        }
+    }
+
+    private double average(int from, int to) {
+        return (prefixSum[to] - prefixSum[from]) / (to - from);
+    }
+
+    /**
+     * @return the duration with values (in seconds)
+     */
+    public int getDuration_s() {
+        return size;
+    }
+
+    public Sensor getSensor() {
+        return sensor;
+    }
+
+    /**
+     * @return the mean-maximal curve (incl. the normalized average); empty if there is no value.
+     */
+    @NonNull
+    public Curve getCurve() {
+        int count = 0;
+        while (count < DURATIONS_S.length && DURATIONS_S[count] <= size) {
+            count++;
+        }
+        boolean addWholeTrack = size > 0 && (count == 0 || DURATIONS_S[count - 1] != size);
+
+        int[] durations_s = new int[count + (addWholeTrack ? 1 : 0)];
+        double[] values = new double[durations_s.length];
+        for (int i = 0; i < count; i++) {
+            durations_s[i] = DURATIONS_S[i];
+            values[i] = best[i];
+        }
+        if (addWholeTrack) {
+            durations_s[count] = size;
+            values[count] = average(0, size);
+        }
+        return new Curve(durations_s, values, getNormalizedAverage());
+    }
+
+    /**
+     * The fourth root of the mean of the fourth power of the 30s rolling average (for power: normalized power).
+     *
+     * @return NaN if less than 30s are available.
+     */
+    public double getNormalizedAverage() {
+        if (normalizedCount == 0) {
+            return Double.NaN;
+        }
+        return Math.pow(normalizedSum / normalizedCount, 0.25);
+    }
+
+    /**
+     * Mean-maximal curve: for each duration the highest average value.
+     */
+    public static class Curve {
+
+        private final int[] durations_s;
+        private final double[] values;
+        private final double normalizedAverage;
+
+        Curve(int[] durations_s, double[] values, double normalizedAverage) {
+            this.durations_s = durations_s;
+            this.values = values;
+            this.normalizedAverage = normalizedAverage;
+        }
+
+        public int size() {
+            return durations_s.length;
+        }
+
+        public boolean isEmpty() {
+            return durations_s.length == 0;
+        }
+
+        /**
+         * @return NaN if less than 30s are available (see {@link MeanMaxCalculator#getNormalizedAverage()}).
+         */
+        public double getNormalizedAverage() {
+            return normalizedAverage;
+        }
+
+        public Duration getDuration(int index) {
+            return Duration.ofSeconds(durations_s[index]);
+        }
+
+        public double getValue(int index) {
+            return values[index];
+        }
+
+        /**
+         * @return the highest average for exactly this duration; NaN if not part of the curve.
+         */
+        public double getValue(@NonNull Duration duration) {
+            int index = Arrays.binarySearch(durations_s, (int) duration.getSeconds());
+            return index >= 0 ? values[index] : Double.NaN;
+        }
+
+        /**
+         * Encodes the curve for storage: the normalized average followed by (duration, value) pairs.
+         */
+        @NonNull
+        public byte[] toBytes() {
+            ByteBuffer buffer = ByteBuffer.allocate(Double.BYTES + durations_s.length * (Integer.BYTES + Double.BYTES));
+            buffer.putDouble(normalizedAverage);
+            for (int i = 0; i < durations_s.length; i++) {
+                buffer.putInt(durations_s[i]);
+                buffer.putDouble(values[i]);
+            }
+            return buffer.array();
+        }
+
+        @NonNull
+        public static Curve fromBytes(@NonNull byte[] data) {
+            if (data.length < Double.BYTES || (data.length - Double.BYTES) % (Integer.BYTES + Double.BYTES) != 0) {
+                throw new IllegalArgumentException("Invalid mean-maximal curve data");
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            double normalizedAverage = buffer.getDouble();
+            int size = buffer.remaining() / (Integer.BYTES + Double.BYTES);
+            int[] durations_s = new int[size];
+            double[] values = new double[size];
+            for (int i = 0; i < size; i++) {
+                durations_s[i] = buffer.getInt();
+                values[i] = buffer.getDouble();
+            }
+            return new Curve(durations_s, values, normalizedAverage);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Curve curve = (Curve) o;
+            return Double.compare(curve.normalizedAverage, normalizedAverage) == 0 && Arrays.equals(durations_s, curve.durations_s) && Arrays.equals(values, curve.values);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Arrays.hashCode(durations_s);
+            result = 31 * result + Arrays.hashCode(values);
+            result = 31 * result + Double.hashCode(normalizedAverage);
+            return result;
+        }
+    }
+}
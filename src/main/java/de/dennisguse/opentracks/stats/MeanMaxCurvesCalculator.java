@@ -0,0 +1,50 @@
+package de.dennisguse.opentracks.stats;
+
+import androidx.annotation.NonNull;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import de.dennisguse.opentracks.content.data.TrackPoint;
+
+/**
+ * Computes the {@link MeanMaxCalculator.Curve}s of all {@link MeanMaxCalculator.Sensor}s of a track in one pass.
+ */
+public class MeanMaxCurvesCalculator {
+
+    private final Map<MeanMaxCalculator.Sensor, MeanMaxCalculator> calculators = new EnumMap<>(MeanMaxCalculator.Sensor.class);
+
+    public MeanMaxCurvesCalculator() {
+        for (MeanMaxCalculator.Sensor sensor : MeanMaxCalculator.Sensor.values()) {
+            calculators.put(sensor, new MeanMaxCalculator(sensor));
+        }
+    }
+
+    public void addTrackPoints(@NonNull List<TrackPoint> trackPoints) {
+        for (TrackPoint trackPoint : trackPoints) {
+            addTrackPoint(trackPoint);
+        }
+    }
+
+    public void addTrackPoint(@NonNull TrackPoint trackPoint) {
+        for (MeanMaxCalculator calculator : calculators.values()) {
+            calculator.addTrackPoint(trackPoint);
+        }
+    }
+
+    /**
+     * @return the non-empty curves.
+     */
+    @NonNull
+    public Map<MeanMaxCalculator.Sensor, MeanMaxCalculator.Curve> getCurves() {
+        Map<MeanMaxCalculator.Sensor, MeanMaxCalculator.Curve> result = new EnumMap<>(MeanMaxCalculator.Sensor.class);
+        for (MeanMaxCalculator calculator : calculators.values()) {
+            MeanMaxCalculator.Curve curve = calculator.getCurve();
+            if (!curve.isEmpty()) {
+                result.put(calculator.getSensor(), curve);
+            }
+        }
+        return result;
+    }
+}
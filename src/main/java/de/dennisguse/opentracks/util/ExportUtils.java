@@ -8,26 +8,42 @@ import android.net.Uri;
 import android.provider.DocumentsContract;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
 import androidx.documentfile.provider.DocumentFile;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.regex.Pattern;
 
+import de.dennisguse.opentracks.R;
 import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.io.file.DatabaseBackup;
 import de.dennisguse.opentracks.io.file.TrackFileFormat;
 import de.dennisguse.opentracks.io.file.exporter.ExportService;
 import de.dennisguse.opentracks.io.file.exporter.ExportServiceResultReceiver;
 import de.dennisguse.opentracks.io.file.exporter.TrackExporter;
+import de.dennisguse.opentracks.io.file.exporter.ZipTrackExporter;
 
 public class ExportUtils {
 
     private static final String TAG = ExportUtils.class.getSimpleName();
 
+    private static final int EXPORT_FILE_UUID_LENGTH = 8;
+
+    private static final DateTimeFormatter ARCHIVE_DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss", Locale.US);
+
     public static void postWorkoutExport(Context context, Track track, ExportServiceResultReceiver resultReceiver) {
         SharedPreferences sharedPreferences = PreferencesUtils.getSharedPreferences(context);
         if (PreferencesUtils.shouldInstantExportAfterWorkout(sharedPreferences, context)) {
@@ -39,9 +55,16 @@ public class ExportUtils {
     }
 
     public static boolean exportTrack(Context context, TrackFileFormat trackFileFormat, DocumentFile directory, Track track) {
+        return exportTrack(context, trackFileFormat, directory, track, null);
+    }
+
+    /**
+     * @param directoryFiles the files of the directory by name (see {@link #getAllFileUris(Context, DocumentFile)}); null to query the directory.
+     */
+    public static boolean exportTrack(Context context, TrackFileFormat trackFileFormat, DocumentFile directory, Track track, @Nullable Map<String, Uri> directoryFiles) {
         TrackExporter trackExporter = trackFileFormat.createTrackExporter(context);
 
-        Uri exportDocumentFileUri = getExportDocumentFileUri(context, track, trackFileFormat, directory);
+        Uri exportDocumentFileUri = getExportDocumentFileUri(context, track, trackFileFormat, directory, directoryFiles);
         if (exportDocumentFileUri == null) {
             Log.e(TAG, "Couldn't create document file for export");
             return false;
@@ -67,30 +90,67 @@ public class ExportUtils {
     }
 
     public static boolean isExportFileExists(UUID uuuid, String trackFileFormatExtension, List<String> filesName) {
-        String word = uuuid.toString().substring(0, 8) + ".*\\." + trackFileFormatExtension;
-        Pattern pattern = Pattern.compile(word);
-        return filesName.stream().anyMatch(w -> pattern.matcher(w).matches());
+        return isExportFileExists(uuuid, trackFileFormatExtension, getExportFileKeys(filesName));
     }
 
-    public static List<String> getAllFiles(Context context, Uri directoryUri) {
-        List<String> fileNames = new ArrayList<>();
-        final ContentResolver resolver = context.getContentResolver();
-        final Uri childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree(directoryUri, DocumentsContract.getDocumentId(directoryUri));
+    /**
+     * @param exportFileKeys see {@link #getExportFileKeys(Collection)}.
+     */
+    public static boolean isExportFileExists(UUID uuuid, String trackFileFormatExtension, Set<String> exportFileKeys) {
+        return exportFileKeys.contains(getExportFileKey(uuuid.toString().substring(0, EXPORT_FILE_UUID_LENGTH), trackFileFormatExtension));
+    }
 
-        try (Cursor c = resolver.query(childrenUri, new String[]{DocumentsContract.Document.COLUMN_DISPLAY_NAME}, null, null, null)) {
-            while (c.moveToNext()) {
-                fileNames.add(c.getString(0));
+    /**
+     * Computes the lookup keys (uuid prefix and extension) of the exported files of a directory once; a lookup is then a hash set query instead of matching every file name.
+     */
+    public static Set<String> getExportFileKeys(Collection<String> filesName) {
+        Set<String> exportFileKeys = new HashSet<>();
+        for (String fileName : filesName) {
+            int extensionStart = fileName.lastIndexOf('.');
+            if (fileName.length() < EXPORT_FILE_UUID_LENGTH || extensionStart < EXPORT_FILE_UUID_LENGTH) {
+                continue;
+            }
+            exportFileKeys.add(getExportFileKey(fileName.substring(0, EXPORT_FILE_UUID_LENGTH), fileName.substring(extensionStart + 1)));
+        }
+        return exportFileKeys;
+    }
+
+    private static String getExportFileKey(String uuidPrefix, String trackFileFormatExtension) {
+        return uuidPrefix + "." + trackFileFormatExtension;
+    }
+
+    /**
+     * Lists the files of a directory with a single query.
+     *
+     * @return the document uris by file name.
+     */
+    public static Map<String, Uri> getAllFileUris(Context context, DocumentFile directory) {
+        Map<String, Uri> files = new HashMap<>();
+        Uri directoryUri = directory.getUri();
+        if (ContentResolver.SCHEME_FILE.equals(directoryUri.getScheme())) {
+            for (DocumentFile file : directory.listFiles()) {
+                files.put(file.getName(), file.getUri());
+            }
+            return files;
+        }
+
+        final ContentResolver resolver = context.getContentResolver();
+        try {
+            final Uri childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree(directoryUri, DocumentsContract.getDocumentId(directoryUri));
+            try (Cursor c = resolver.query(childrenUri, new String[]{DocumentsContract.Document.COLUMN_DOCUMENT_ID, DocumentsContract.Document.COLUMN_DISPLAY_NAME}, null, null, null)) {
+                while (c.moveToNext()) {
+                    files.put(c.getString(1), DocumentsContract.buildDocumentUriUsingTree(directoryUri, c.getString(0)));
+                }
             }
         } catch (Exception e) {
             Log.w(TAG, "Failed query: " + e);
         }
-
-        return fileNames;
+        return files;
     }
 
-    private static Uri getExportDocumentFileUri(Context context, Track track, TrackFileFormat trackFileFormat, DocumentFile directory) {
+    private static Uri getExportDocumentFileUri(Context context, Track track, TrackFileFormat trackFileFormat, DocumentFile directory, @Nullable Map<String, Uri> directoryFiles) {
         String exportFileName = getExportFileNameForTrack(track, trackFileFormat.getExtension());
-        Uri exportDocumentFileUri = findFile(context, directory.getUri(), exportFileName);
+        Uri exportDocumentFileUri = directoryFiles != null ? directoryFiles.get(exportFileName) : findFile(context, directory.getUri(), exportFileName);
         if (exportDocumentFileUri == null) {
             final DocumentFile file = directory.createFile(trackFileFormat.getMimeType(), exportFileName);
             if (file != null) {
@@ -100,8 +160,32 @@ public class ExportUtils {
         return exportDocumentFileUri;
     }
 
-    private static String getExportFileNameForTrack(Track track, String trackFileFormatExtension) {
-        return track.getUuid().toString().substring(0, 8) + "_" + track.getName() + "." + trackFileFormatExtension;
+    /**
+     * @param parts the number of archives of the export
+     * @return the file names of a ZIP archive export (see {@link ZipTrackExporter}); numbered if there is more than one.
+     */
+    public static List<String> getExportArchiveFileNames(Context context, int parts) {
+        String name = context.getString(R.string.app_name) + "_" + LocalDateTime.now().format(ARCHIVE_DATE_TIME_FORMATTER);
+        if (parts == 1) {
+            return Collections.singletonList(name + "." + ZipTrackExporter.EXTENSION);
+        }
+
+        List<String> fileNames = new ArrayList<>();
+        for (int part = 1; part <= parts; part++) {
+            fileNames.add(name + "_" + part + "." + ZipTrackExporter.EXTENSION);
+        }
+        return fileNames;
+    }
+
+    /**
+     * @return the file name of a database backup (see {@link DatabaseBackup}).
+     */
+    public static String getDatabaseBackupFileName(Context context) {
+        return context.getString(R.string.app_name) + "_" + LocalDateTime.now().format(ARCHIVE_DATE_TIME_FORMATTER) + "." + DatabaseBackup.EXTENSION;
+    }
+
+    public static String getExportFileNameForTrack(Track track, String trackFileFormatExtension) {
+        return track.getUuid().toString().substring(0, EXPORT_FILE_UUID_LENGTH) + "_" + track.getName() + "." + trackFileFormatExtension;
     }
 
     private static Uri findFile(Context context, Uri directoryUri, String exportFileName) {
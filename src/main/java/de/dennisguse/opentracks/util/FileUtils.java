@@ -35,6 +35,7 @@ import java.util.Date;
 
 import de.dennisguse.opentracks.BuildConfig;
 import de.dennisguse.opentracks.content.data.Track;
+import de.dennisguse.opentracks.io.file.exporter.ExportManifest;
 
 /**
  * Utilities for dealing with files.
@@ -340,6 +341,10 @@ public class FileUtils {
 
         for (DocumentFile candidate : file.listFiles()) {
             if (!candidate.isDirectory()) {
+                if (ExportManifest.FILE_NAME.equals(candidate.getName())) {
+                    // Not a track; written by the export.
+                    continue;
+                }
                 files.add(candidate);
             } else {
                 files.addAll(getFiles(candidate));
@@ -26,8 +26,13 @@ import androidx.annotation.VisibleForTesting;
 import androidx.documentfile.provider.DocumentFile;
 import androidx.preference.PreferenceManager;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 import de.dennisguse.opentracks.R;
 import de.dennisguse.opentracks.content.data.Distance;
+import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.io.file.TrackFileFormat;
 
 /**
@@ -236,11 +241,106 @@ public class PreferencesUtils {
         }
     }
 
+    public static boolean shouldExportArchive(SharedPreferences sharedPreferences, Context context) {
+        final boolean EXPORT_ARCHIVE_DEFAULT = context.getResources().getBoolean(R.bool.export_archive_default);
+        return getBoolean(sharedPreferences, context, R.string.export_archive_key, EXPORT_ARCHIVE_DEFAULT);
+    }
+
     public static boolean getPreventReimportTracks(SharedPreferences sharedPreferences, Context context) {
         final boolean defaultValue = getBoolean(sharedPreferences, context, R.bool.import_prevent_reimport_default, false);
         return getBoolean(sharedPreferences, context, R.string.import_prevent_reimport_key, defaultValue);
     }
 
+    /**
+     * @return the last track that was processed by the statistics recomputation; null if it should start from the beginning.
+     */
+    public static Track.Id getRecomputeStatisticsCheckpoint(SharedPreferences sharedPreferences, Context context) {
+        long trackId = sharedPreferences.getLong(getKey(context, R.string.recompute_statistics_checkpoint_key), -1L);
+        return trackId >= 0 ? new Track.Id(trackId) : null;
+    }
+
+    /**
+     * @param trackId the last processed track; null to reset.
+     */
+    public static void setRecomputeStatisticsCheckpoint(SharedPreferences sharedPreferences, Context context, Track.Id trackId) {
+        Editor editor = sharedPreferences.edit();
+        if (trackId != null) {
+            editor.putLong(getKey(context, R.string.recompute_statistics_checkpoint_key), trackId.getId());
+        } else {
+            editor.remove(getKey(context, R.string.recompute_statistics_checkpoint_key));
+        }
+        editor.apply();
+    }
+
+    /**
+     * @return the track that was skipped by the statistics recomputation as it was recorded; null if none.
+     */
+    public static Track.Id getRecomputeStatisticsSkippedTrack(SharedPreferences sharedPreferences, Context context) {
+        long trackId = sharedPreferences.getLong(getKey(context, R.string.recompute_statistics_skipped_track_key), -1L);
+        return trackId >= 0 ? new Track.Id(trackId) : null;
+    }
+
+    /**
+     * @param trackId the skipped track; null to reset.
+     */
+    public static void setRecomputeStatisticsSkippedTrack(SharedPreferences sharedPreferences, Context context, Track.Id trackId) {
+        Editor editor = sharedPreferences.edit();
+        if (trackId != null) {
+            editor.putLong(getKey(context, R.string.recompute_statistics_skipped_track_key), trackId.getId());
+        } else {
+            editor.remove(getKey(context, R.string.recompute_statistics_skipped_track_key));
+        }
+        editor.apply();
+    }
+
+    /**
+     * @return the tracks that are imported right now or whose import was interrupted.
+     */
+    public static Set<Track.Id> getIncompleteImports(SharedPreferences sharedPreferences, Context context) {
+        Set<Track.Id> trackIds = new HashSet<>();
+        for (String trackId : sharedPreferences.getStringSet(getKey(context, R.string.import_incomplete_tracks_key), Collections.emptySet())) {
+            trackIds.add(new Track.Id(Long.parseLong(trackId)));
+        }
+        return trackIds;
+    }
+
+    /**
+     * Written synchronously: the tracks must be known before their data is inserted.
+     */
+    public static void setIncompleteImports(SharedPreferences sharedPreferences, Context context, Set<Track.Id> trackIds) {
+        Set<String> values = new HashSet<>();
+        for (Track.Id trackId : trackIds) {
+            values.add(Long.toString(trackId.getId()));
+        }
+        sharedPreferences.edit()
+                .putStringSet(getKey(context, R.string.import_incomplete_tracks_key), values)
+                .commit();
+    }
+
+    /**
+     * @return the time zone (id) the aggregates table was computed in; null if unknown.
+     */
+    public static String getAggregatesTimeZone(SharedPreferences sharedPreferences, Context context) {
+        return getString(sharedPreferences, context, R.string.aggregates_time_zone_key, null);
+    }
+
+    public static void setAggregatesTimeZone(SharedPreferences sharedPreferences, Context context, String timeZone) {
+        setString(sharedPreferences, context, R.string.aggregates_time_zone_key, timeZone);
+    }
+
+    /**
+     * @return true if the best efforts of all tracks recorded or imported before best efforts were stored have been computed.
+     */
+    public static boolean isBestEffortsBackfilled(SharedPreferences sharedPreferences, Context context) {
+        return sharedPreferences.getBoolean(getKey(context, R.string.best_efforts_backfilled_key), false);
+    }
+
+    public static void setBestEffortsBackfilled(SharedPreferences sharedPreferences, Context context) {
+        Editor editor = sharedPreferences.edit();
+        editor.putBoolean(getKey(context, R.string.best_efforts_backfilled_key), true);
+        editor.apply();
+    }
+
     /**
      * @return {@link androidx.appcompat.app.AppCompatDelegate}.MODE_*
      */
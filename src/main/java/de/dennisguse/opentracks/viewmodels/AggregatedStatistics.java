@@ -14,6 +14,16 @@ import de.dennisguse.opentracks.stats.TrackStatistics;
 
 public class AggregatedStatistics {
 
+    /**
+     * Time range of the aggregated tracks (by start time; device local time).
+     */
+    public enum TimeFilter {
+        ALL,
+        YEAR,
+        MONTH,
+        WEEK
+    }
+
     private final Map<String, AggregatedStatistic> dataMap = new HashMap<>();
 
     private final List<AggregatedStatistic> dataList = new ArrayList<>();
@@ -22,7 +32,25 @@ public class AggregatedStatistics {
         for (Track track : tracks) {
             aggregate(track);
         }
+        sort();
+    }
+
+    private AggregatedStatistics() {
+    }
+
+    /**
+     * @param aggregatedStatistics already aggregated statistics (one per category)
+     */
+    public static AggregatedStatistics of(@NonNull List<AggregatedStatistic> aggregatedStatistics) {
+        AggregatedStatistics result = new AggregatedStatistics();
+        for (AggregatedStatistic aggregatedStatistic : aggregatedStatistics) {
+            result.dataMap.put(aggregatedStatistic.getCategory(), aggregatedStatistic);
+        }
+        result.sort();
+        return result;
+    }
 
+    private void sort() {
         dataList.addAll(dataMap.values());
         Collections.sort(dataList, (o1, o2) -> {
             if (o1.getCountTracks() == o2.getCountTracks()) {
@@ -64,6 +92,11 @@ public class AggregatedStatistics {
             this.trackStatistics = trackStatistics;
         }
 
+        public AggregatedStatistic(String category, TrackStatistics trackStatistics, int countTracks) {
+            this(category, trackStatistics);
+            this.countTracks = countTracks;
+        }
+
         public String getCategory() {
             return category;
         }
@@ -1,21 +1,33 @@
 package de.dennisguse.opentracks.viewmodels;
 
 import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
 
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
-import java.util.List;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-import de.dennisguse.opentracks.content.data.Track;
 import de.dennisguse.opentracks.content.provider.ContentProviderUtils;
+import de.dennisguse.opentracks.util.PreferencesUtils;
 
+/**
+ * Loads the {@link AggregatedStatistics} from the aggregates table (one query; independent of the number of tracks).
+ */
 public class AggregatedStatisticsModel extends AndroidViewModel {
 
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+
     private MutableLiveData<AggregatedStatistics> aggregatedStats;
 
+    private AggregatedStatistics.TimeFilter timeFilter = AggregatedStatistics.TimeFilter.ALL;
+
     public AggregatedStatisticsModel(@NonNull Application application) {
         super(application);
     }
@@ -28,14 +40,42 @@ public class AggregatedStatisticsModel extends AndroidViewModel {
         return aggregatedStats;
     }
 
+    public AggregatedStatistics.TimeFilter getTimeFilter() {
+        return timeFilter;
+    }
+
+    public void setTimeFilter(@NonNull AggregatedStatistics.TimeFilter timeFilter) {
+        if (this.timeFilter == timeFilter) {
+            return;
+        }
+        this.timeFilter = timeFilter;
+        if (aggregatedStats != null) {
+            loadAggregatedStats();
+        }
+    }
+
     private void loadAggregatedStats() {
-        new Thread(() -> {
-            ContentProviderUtils contentProviderUtils = new ContentProviderUtils(getApplication().getApplicationContext());
-            List<Track> tracks = contentProviderUtils.getTracks();
+        final AggregatedStatistics.TimeFilter timeFilter = this.timeFilter;
+        executorService.execute(() -> {
+            Context context = getApplication().getApplicationContext();
+            ContentProviderUtils contentProviderUtils = new ContentProviderUtils(context);
 
-            AggregatedStatistics aggregatedStatistics = new AggregatedStatistics(tracks);
+            // The buckets are in local time.
+            SharedPreferences sharedPreferences = PreferencesUtils.getSharedPreferences(context);
+            String timeZone = ZoneId.systemDefault().getId();
+            if (!timeZone.equals(PreferencesUtils.getAggregatesTimeZone(sharedPreferences, context)) && contentProviderUtils.rebuildAggregates()) {
+                PreferencesUtils.setAggregatesTimeZone(sharedPreferences, context, timeZone);
+            }
+
+            AggregatedStatistics aggregatedStatistics = contentProviderUtils.getAggregatedStatistics(timeFilter, LocalDate.now());
 
             aggregatedStats.postValue(aggregatedStatistics);
-        }).start();
+        });
+    }
+
+    @Override
+    protected void onCleared() {
+        executorService.shutdownNow();
+        super.onCleared();
     }
 }
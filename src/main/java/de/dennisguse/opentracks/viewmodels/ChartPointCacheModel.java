@@ -0,0 +1,27 @@
+package de.dennisguse.opentracks.viewmodels;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.ViewModel;
+
+import de.dennisguse.opentracks.chart.ChartPointCache;
+import de.dennisguse.opentracks.content.data.Track;
+
+/**
+ * Keeps the {@link ChartPointCache} of the shown track; shared by the charts (by time and by distance) and survives configuration changes.
+ */
+public class ChartPointCacheModel extends ViewModel {
+
+    private Track.Id trackId;
+    private ChartPointCache chartPointCache;
+
+    /**
+     * @return the cache for the track; a new one if the track changed.
+     */
+    public synchronized ChartPointCache getChartPointCache(@NonNull Track.Id trackId) {
+        if (chartPointCache == null || !trackId.equals(this.trackId)) {
+            this.trackId = trackId;
+            chartPointCache = new ChartPointCache();
+        }
+        return chartPointCache;
+    }
+}
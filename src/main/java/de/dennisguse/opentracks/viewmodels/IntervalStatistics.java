@@ -10,48 +10,76 @@ import de.dennisguse.opentracks.content.data.Distance;
 import de.dennisguse.opentracks.content.data.Speed;
 import de.dennisguse.opentracks.content.data.TrackPoint;
 
+/**
+ * Splits a track into intervals of distanceInterval.
+ * The intervals are computed incrementally: {@link #addTrackPoint(TrackPoint)} only updates the open (last) interval and appends an interval once it is completed.
+ */
 public class IntervalStatistics {
     private final List<Interval> intervalList = new ArrayList<>();
     private final Distance distanceInterval;
 
-    public IntervalStatistics(@NonNull List<TrackPoint> trackPoints, Distance distanceInterval) {
-        intervalList.clear();
+    // The open (not yet completed) interval
+    private Interval interval;
+    private TrackPoint lastTrackPoint;
+
+    public IntervalStatistics(Distance distanceInterval) {
         this.distanceInterval = distanceInterval;
+    }
 
-        if (trackPoints.size() == 0) {
+    public IntervalStatistics(@NonNull List<TrackPoint> trackPoints, Distance distanceInterval) {
+        this(distanceInterval);
+        addTrackPoints(trackPoints);
+    }
+
+    public Distance getDistanceInterval() {
+        return distanceInterval;
+    }
+
+    public void addTrackPoints(@NonNull List<TrackPoint> trackPoints) {
+        for (TrackPoint trackPoint : trackPoints) {
+            addTrackPoint(trackPoint);
+        }
+    }
+
+    public void addTrackPoint(@NonNull TrackPoint trackPoint) {
+        if (lastTrackPoint == null) {
+            interval = new Interval();
+            interval.gain_m += trackPoint.hasAltitudeGain() ? trackPoint.getAltitudeGain() : 0;
+            interval.loss_m += trackPoint.hasAltitudeLoss() ? trackPoint.getAltitudeLoss() : 0;
+            lastTrackPoint = trackPoint;
             return;
         }
 
-        Interval interval = new Interval();
-        interval.gain_m += trackPoints.get(0).hasAltitudeGain() ? trackPoints.get(0).getAltitudeGain() : 0;
-        interval.loss_m += trackPoints.get(0).hasAltitudeLoss() ? trackPoints.get(0).getAltitudeLoss() : 0;
-        for (int i = 1; i < trackPoints.size(); i++) {
-            TrackPoint prevTrackPoint = trackPoints.get(i - 1);
-            TrackPoint trackPoint = trackPoints.get(i);
+        TrackPoint prevTrackPoint = lastTrackPoint;
+        lastTrackPoint = trackPoint;
 
-            if (trackPoint.hasLocation() && prevTrackPoint.hasLocation()) {
-                interval.distance = interval.distance.plus(prevTrackPoint.distanceToPrevious(trackPoint));
-                interval.time = interval.time.plus(Duration.between(prevTrackPoint.getTime(), trackPoint.getTime()));
-                interval.gain_m += trackPoint.hasAltitudeGain() ? trackPoint.getAltitudeGain() : 0;
-                interval.loss_m += trackPoint.hasAltitudeLoss() ? trackPoint.getAltitudeLoss() : 0;
+        if (trackPoint.hasLocation() && prevTrackPoint.hasLocation()) {
+            interval.distance = interval.distance.plus(prevTrackPoint.distanceToPrevious(trackPoint));
+            interval.time = interval.time.plus(Duration.between(prevTrackPoint.getTime(), trackPoint.getTime()));
+            interval.gain_m += trackPoint.hasAltitudeGain() ? trackPoint.getAltitudeGain() : 0;
+            interval.loss_m += trackPoint.hasAltitudeLoss() ? trackPoint.getAltitudeLoss() : 0;
 
-                if (interval.distance.greaterThan(distanceInterval)) {
-                    Interval adjustedInterval = new Interval(interval, distanceInterval.dividedBy(interval.distance));
+            if (interval.distance.greaterThan(distanceInterval)) {
+                Interval adjustedInterval = new Interval(interval, distanceInterval.dividedBy(interval.distance));
 
-                    intervalList.add(adjustedInterval);
+                intervalList.add(adjustedInterval);
 
-                    interval = new Interval(interval.distance.minus(adjustedInterval.distance), interval.time.minus(adjustedInterval.time));
-                }
+                interval = new Interval(interval.distance.minus(adjustedInterval.distance), interval.time.minus(adjustedInterval.time));
             }
         }
-
-        if (interval.distance.greaterThan(Distance.of(1))) {
-            intervalList.add(interval);
-        }
     }
 
+    /**
+     * @return the completed intervals and the open interval (if it is longer than 1m).
+     */
     public List<Interval> getIntervalList() {
-        return intervalList;
+        List<Interval> intervals = new ArrayList<>(intervalList.size() + 1);
+        intervals.addAll(intervalList);
+        if (interval != null && interval.distance.greaterThan(Distance.of(1))) {
+            // Copy as the open interval is still being updated.
+            intervals.add(new Interval(interval));
+        }
+        return intervals;
     }
 
     /**
@@ -61,17 +89,10 @@ public class IntervalStatistics {
      * @return the interval object or null if any interval is completed.
      */
     public Interval getLastInterval() {
-        if (intervalList.size() == 1 && intervalList.get(0).getDistance().lessThan(distanceInterval)) {
+        if (intervalList.isEmpty()) {
             return null;
         }
-
-        for (int i = intervalList.size() - 1; i >= 0; i--) {
-            if (intervalList.get(i).getDistance().greaterOrEqualThan(distanceInterval)) {
-                return this.intervalList.get(i);
-            }
-        }
-
-        return null;
+        return intervalList.get(intervalList.size() - 1);
     }
 
     public static class Interval {
@@ -88,6 +109,13 @@ public class IntervalStatistics {
             this.time = time;
         }
 
+        public Interval(Interval i) {
+            distance = i.distance;
+            time = i.time;
+            gain_m = i.gain_m;
+            loss_m = i.loss_m;
+        }
+
         public Interval(Interval i, double adjustFactor) {
             distance = i.distance.multipliedBy(adjustFactor);
             time = Duration.ofMillis((long) (i.time.toMillis() * adjustFactor));
@@ -21,7 +21,7 @@ public class IntervalStatisticsModel extends AndroidViewModel {
 
     private final List<TrackPoint> trackPoints = new ArrayList<>();
     private MutableLiveData<List<IntervalStatistics.Interval>> intervalsLiveData;
-    private Distance distanceInterval;
+    private IntervalStatistics intervalStatistics;
 
     public IntervalStatisticsModel(@NonNull Application application) {
         super(application);
@@ -35,28 +35,33 @@ public class IntervalStatisticsModel extends AndroidViewModel {
                 }
 
                 intervalsLiveData = new MutableLiveData<>();
-                distanceInterval = interval.getValue();
-                loadIntervalStatistics();
+                rebuildIntervalStatistics(interval.getValue());
             }
             return intervalsLiveData;
         }
     }
 
-    private void loadIntervalStatistics() {
-        IntervalStatistics intervalStatistics = new IntervalStatistics(trackPoints, distanceInterval);
+    /**
+     * Computes all intervals from scratch; only needed if the interval length changes.
+     */
+    private void rebuildIntervalStatistics(Distance distanceInterval) {
+        intervalStatistics = new IntervalStatistics(trackPoints, distanceInterval);
         intervalsLiveData.postValue(intervalStatistics.getIntervalList());
     }
 
     public void add(TrackPoint trackPoint) {
         synchronized (trackPoints) {
             trackPoints.add(trackPoint);
+            if (intervalStatistics != null) {
+                intervalStatistics.addTrackPoint(trackPoint);
+            }
         }
     }
 
     public void onNewTrackPoints() {
         synchronized (trackPoints) {
             if (intervalsLiveData != null) {
-                loadIntervalStatistics();
+                intervalsLiveData.postValue(intervalStatistics.getIntervalList());
             }
         }
     }
@@ -64,6 +69,9 @@ public class IntervalStatisticsModel extends AndroidViewModel {
     public void clear() {
         synchronized (trackPoints) {
             trackPoints.clear();
+            if (intervalStatistics != null) {
+                intervalStatistics = new IntervalStatistics(intervalStatistics.getDistanceInterval());
+            }
         }
     }
 
@@ -73,8 +81,10 @@ public class IntervalStatisticsModel extends AndroidViewModel {
                 interval = IntervalOption.OPTION_1;
             }
 
-            distanceInterval = interval.getValue();
-            loadIntervalStatistics();
+            if (intervalsLiveData == null) {
+                intervalsLiveData = new MutableLiveData<>();
+            }
+            rebuildIntervalStatistics(interval.getValue());
         }
     }
 